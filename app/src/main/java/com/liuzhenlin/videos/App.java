@@ -9,6 +9,7 @@ import android.app.Application;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.os.Environment;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -17,6 +18,8 @@ import androidx.multidex.MultiDex;
 import com.bumptech.glide.Glide;
 import com.liuzhenlin.floatingmenu.DensityUtils;
 import com.liuzhenlin.texturevideoview.utils.SystemBarUtils;
+import com.liuzhenlin.videos.utils.GestureFrameMonitor;
+import com.liuzhenlin.videos.utils.MailOutbox;
 import com.squareup.leakcanary.LeakCanary;
 import com.squareup.leakcanary.RefWatcher;
 
@@ -65,6 +68,24 @@ public class App extends Application {
         sApp = this;
         mStatusHeight = SystemBarUtils.getStatusHeight(this);
         registerComponentCallbacks(Glide.get(this));
+        // 发送上次未能成功发送的邮件（如果有）
+        MailOutbox.getSingleton(this).drainAsync();
+
+        if (BuildConfig.DEBUG) {
+            // 调试时记录各手势控件的帧耗时
+            GestureFrameMonitor monitor = GestureFrameMonitor.getSingleton();
+            monitor.setEnabled(this, true);
+            monitor.addOnGestureFrameStatsListener(
+                    new GestureFrameMonitor.OnGestureFrameStatsListener() {
+                        @Override
+                        public void onGestureFrameStatsRecorded(
+                                @NonNull GestureFrameMonitor.FrameStats stats) {
+                            if (stats.jankyFrameCount > 0) {
+                                Log.d("GestureFrameMonitor", stats.toString());
+                            }
+                        }
+                    });
+        }
     }
 
     @NonNull
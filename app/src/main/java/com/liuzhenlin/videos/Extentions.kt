@@ -15,7 +15,6 @@ import com.liuzhenlin.videos.bean.VideoListItem
 import com.liuzhenlin.videos.dao.IVideoDirectoryDao
 import com.liuzhenlin.videos.dao.VideoListItemDao
 import java.io.File
-import java.util.*
 
 /**
  * @author 刘振林
@@ -24,49 +23,29 @@ import java.util.*
 inline val Fragment.contextThemedFirst get() = activity ?: contextRequired
 inline val Fragment.contextRequired get() = context ?: App.getInstanceUnsafe()!!
 
-private val sVideoListItemComparator = Comparator<VideoListItem> { item, item2 ->
-    if (item is Video) {
-        if (item2 !is Video) {
-            return@Comparator 1
-        }
-    } else if (item2 is Video) {
-        return@Comparator -1
-    }
-
-    val result = item.name.compareTo(item2.name, ignoreCase = true)
-    if (result == 0) {
-        item.path.compareTo(item2.path, ignoreCase = true)
-    } else {
-        result
-    }
-}
-
-@JvmName("sortVideoListItemsByName")
-fun <T : VideoListItem> List<T>?.sortByElementName() {
-    Collections.sort(this ?: return, sVideoListItemComparator)
+@JvmName("sortVideoListItems")
+fun <T : VideoListItem> MutableList<T>?.sortByPreferredOrder() {
+    VideoListSorter.getDefault().sort(this ?: return)
 }
 
+/**
+ * Returns a copy of this list sorted in the preferred order, with the topped items first.
+ */
 @JvmName("reorderedVideoListItems")
 fun <T : VideoListItem> List<T>.reordered(): MutableList<T> {
     val items = toMutableList()
-    items.sortByElementName()
-
-    var toppedItems: MutableList<T>? = null
-    for (item in items) {
-        if (item.isTopped) {
-            if (toppedItems == null) toppedItems = LinkedList()
-            toppedItems.add(item)
-        }
-    }
-
-    if (toppedItems != null) {
-        items.removeAll(toppedItems)
-        items.addAll(0, toppedItems)
-    }
-
+    VideoListSorter.getDefault().reorder(items)
     return items
 }
 
+/**
+ * Returns the index [item] should be moved to in this [reordered] list after it has changed
+ * in what the list is sorted by, e.g., has been renamed or (un)topped.
+ */
+@JvmName("reorderedIndexOfVideoListItem")
+fun <T : VideoListItem> List<T>.reorderedIndexOf(item: T) =
+        VideoListSorter.getDefault().indexInOrder(this, item)
+
 fun <T : VideoListItem> List<T>?.allEqual(other: List<T>?): Boolean {
     this ?: return other == null
 
@@ -162,7 +141,7 @@ fun Collection<Video>?.toVideoListItems(): MutableList<VideoListItem>? {
                                     dao.setVideoListItemTopped(video, false)
                                 }
                         }
-                        videos.sortByElementName()
+                        videos.sortByPreferredOrder()
                         videos
                     }
 
@@ -172,27 +151,14 @@ fun Collection<Video>?.toVideoListItems(): MutableList<VideoListItem>? {
     }
 
     var items: MutableList<VideoListItem>? = null
-    var toppedItems: MutableList<VideoListItem>? = null
     index = 0
     while (index < videosMap.size) {
-        if (items == null) items = mutableListOf()
-
-        val item = videosMap.valueAt(index) as VideoListItem
-        if (item.isTopped) {
-            if (toppedItems == null) toppedItems = LinkedList()
-            toppedItems.add(item)
-        } else {
-            items.add(item)
-        }
-
+        if (items == null) items = ArrayList(videosMap.size)
+        items.add(videosMap.valueAt(index) as VideoListItem)
         index++
     }
     if (items != null) {
-        items.sortByElementName()
-        if (toppedItems != null) {
-            toppedItems.sortByElementName()
-            items.addAll(0, toppedItems)
-        }
+        VideoListSorter.getDefault().reorder(items)
     }
 
     return items
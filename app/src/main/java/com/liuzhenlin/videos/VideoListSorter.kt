@@ -0,0 +1,186 @@
+/*
+ * Created on 2026-10-20 12:14:52 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos
+
+import com.liuzhenlin.videos.bean.Video
+import com.liuzhenlin.videos.bean.VideoDirectory
+import com.liuzhenlin.videos.bean.VideoListItem
+import com.liuzhenlin.videos.dao.AppPrefs
+import java.io.File
+import java.text.CollationKey
+import java.text.Collator
+import java.util.*
+
+/**
+ * The orders the video list can be sorted in. Except for [NAME], items are sorted in descending
+ * order of the sort value, with those of the same value sorted by name.
+ */
+enum class VideoListSortOrder {
+    NAME,
+    SIZE,
+    DURATION,
+    RESOLUTION,
+    /** The last modification time of the video file (directory). */
+    DATE
+}
+
+/**
+ * Sorts video list items, directories before videos, in the given [order] and compares names
+ * by the collation rules of [locale], ignoring case.
+ *
+ * The collation key of an item name and its sort value are computed once per item for a sort,
+ * rather than for every comparison, so that sorting a large library takes mostly the cost of
+ * comparing byte arrays and longs. After a single item has changed, [indexInOrder] finds its new
+ * position in a list sorted by the same sorter with a binary search, instead of sorting the list
+ * all over again.
+ *
+ * @author 刘振林
+ */
+class VideoListSorter @JvmOverloads constructor(
+        val order: VideoListSortOrder,
+        val locale: Locale = Locale.getDefault()) {
+
+    private class Keyed<out T : VideoListItem>(
+            val item: T, val isVideo: Boolean, val nameKey: CollationKey, val value: Long)
+
+    private val mKeyedComparator = Comparator<Keyed<*>> { keyed, keyed2 ->
+        if (keyed.isVideo != keyed2.isVideo) {
+            return@Comparator if (keyed.isVideo) 1 else -1
+        }
+        if (keyed.value != keyed2.value) {
+            return@Comparator if (keyed.value > keyed2.value) -1 else 1
+        }
+        val result = keyed.nameKey.compareTo(keyed2.nameKey)
+        if (result == 0) {
+            keyed.item.path.compareTo(keyed2.item.path, ignoreCase = true)
+        } else {
+            result
+        }
+    }
+
+    /** The Collator is not thread-safe, so each sort uses its own. */
+    private fun newCollator(): Collator =
+            Collator.getInstance(locale).apply { strength = Collator.SECONDARY }
+
+    private fun <T : VideoListItem> keyOf(item: T, collator: Collator) =
+            Keyed(item, item is Video, collator.getCollationKey(item.name), sortValueOf(item))
+
+    private fun sortValueOf(item: VideoListItem): Long = when (order) {
+        VideoListSortOrder.NAME -> 0L
+        VideoListSortOrder.SIZE -> item.size
+        VideoListSortOrder.DURATION -> when (item) {
+            is Video -> item.duration.toLong()
+            is VideoDirectory -> item.videos.fold(0L) { sum, video -> sum + video.duration }
+            else -> 0L
+        }
+        VideoListSortOrder.RESOLUTION -> when (item) {
+            is Video -> item.width.toLong() * item.height
+            is VideoDirectory -> item.videos.fold(0L) { maxPixels, video ->
+                maxOf(maxPixels, video.width.toLong() * video.height)
+            }
+            else -> 0L
+        }
+        VideoListSortOrder.DATE -> File(item.path).lastModified()
+    }
+
+    /** Sorts the items in place. */
+    fun <T : VideoListItem> sort(items: MutableList<T>) = sort(items, false)
+
+    /**
+     * Sorts the items in place, with the topped ones, in order, before all the others.
+     */
+    fun <T : VideoListItem> reorder(items: MutableList<T>) = sort(items, true)
+
+    private fun <T : VideoListItem> sort(items: MutableList<T>, toppedFirst: Boolean) {
+        val size = items.size
+        if (size == 0) return
+
+        val collator = newCollator()
+        var toppedCount = 0
+        val keyeds = items.mapTo(ArrayList(size)) { item ->
+            if (item.isTopped) toppedCount++
+            keyOf(item, collator)
+        }
+        keyeds.sortWith(mKeyedComparator)
+
+        // 一次遍历将置顶项与非置顶项分开，各自保持排序后的相对顺序
+        val sorted = arrayOfNulls<VideoListItem>(size)
+        var toppedIndex = 0
+        var untoppedIndex = if (toppedFirst) toppedCount else 0
+        for (keyed in keyeds) {
+            val item = keyed.item
+            if (toppedFirst && item.isTopped) {
+                sorted[toppedIndex++] = item
+            } else {
+                sorted[untoppedIndex++] = item
+            }
+        }
+        val iterator = items.listIterator()
+        for (item in sorted) {
+            iterator.next()
+            @Suppress("UNCHECKED_CAST")
+            iterator.set(item as T)
+        }
+    }
+
+    /**
+     * Returns the index the given item should be moved to after it was renamed, topped or
+     * untopped, or otherwise changed in what it is sorted by, with all the other items of the list
+     * remaining [reordered][reorder] by this sorter. The item may or may not be in the list.
+     */
+    fun <T : VideoListItem> indexInOrder(items: List<T>, item: T): Int {
+        val collator = newCollator()
+        val keyed = keyOf(item, collator)
+        val currentIndex = items.indexOf(item)
+        val size = if (currentIndex == -1) items.size else items.size - 1
+
+        // Binary search the list as if the item was not in it
+        var low = 0
+        var high = size - 1
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            val other = items[if (currentIndex == -1 || mid < currentIndex) mid else mid + 1]
+            val result = if (other.isTopped != item.isTopped) {
+                if (other.isTopped) 1 else -1
+            } else {
+                mKeyedComparator.compare(keyed, keyOf(other, collator))
+            }
+            if (result > 0) {
+                low = mid + 1
+            } else {
+                high = mid - 1
+            }
+        }
+        return low
+    }
+
+    companion object {
+        @Volatile
+        private var sDefault: VideoListSorter? = null
+
+        /**
+         * Returns the sorter in the order the user prefers and the current locale, which the
+         * video lists of the app are sorted by.
+         */
+        @JvmStatic
+        fun getDefault(): VideoListSorter {
+            val order = try {
+                VideoListSortOrder.valueOf(
+                        AppPrefs.getSingleton(App.getInstanceUnsafe()!!).videoListSortOrder)
+            } catch (e: IllegalArgumentException) {
+                VideoListSortOrder.NAME
+            }
+            val locale = Locale.getDefault()
+
+            var sorter = sDefault
+            if (sorter == null || sorter.order != order || sorter.locale != locale) {
+                sorter = VideoListSorter(order, locale)
+                sDefault = sorter
+            }
+            return sorter
+        }
+    }
+}
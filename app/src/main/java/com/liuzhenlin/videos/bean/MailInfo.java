@@ -24,6 +24,9 @@ public class MailInfo {
     /** 是否需要身份验证 */
     private boolean validate = true;
 
+    /** 是否使用SSL连接邮件服务器 */
+    private boolean sslEnabled = true;
+
     /** 邮件发送者的用户名 */
     private String userName;
     /** 邮件发送者的密码 */
@@ -43,6 +46,9 @@ public class MailInfo {
     /** 邮件附件的路径 */
     private String[] attachmentPaths;
 
+    private static final int TIMEOUT_CONNECTION = 10 * 1000; // ms
+    private static final int TIMEOUT_READ = 30 * 1000; // ms
+
     /**
      * 获得邮件会话属性
      */
@@ -51,7 +57,10 @@ public class MailInfo {
         p.put("mail.smtp.host", mailServerHost);
         p.put("mail.smtp.port", mailServerPort);
         p.put("mail.smtp.auth", validate ? "true" : "false");
-        p.put("mail.smtp.ssl.enable", "true");
+        p.put("mail.smtp.ssl.enable", sslEnabled ? "true" : "false");
+        p.put("mail.smtp.connectiontimeout", String.valueOf(TIMEOUT_CONNECTION));
+        p.put("mail.smtp.timeout", String.valueOf(TIMEOUT_READ));
+        p.put("mail.smtp.writetimeout", String.valueOf(TIMEOUT_READ));
         return p;
     }
 
@@ -99,6 +108,14 @@ public class MailInfo {
         this.validate = validate;
     }
 
+    public boolean isSslEnabled() {
+        return sslEnabled;
+    }
+
+    public void setSslEnabled(boolean sslEnabled) {
+        this.sslEnabled = sslEnabled;
+    }
+
     public String getUserName() {
         return userName;
     }
@@ -171,6 +188,7 @@ public class MailInfo {
 
         MailInfo mailInfo = (MailInfo) o;
         return validate == mailInfo.validate &&
+                sslEnabled == mailInfo.sslEnabled &&
                 ObjectsCompat.equals(mailServerHost, mailInfo.mailServerHost) &&
                 ObjectsCompat.equals(mailServerPort, mailInfo.mailServerPort) &&
                 ObjectsCompat.equals(userName, mailInfo.userName) &&
@@ -187,7 +205,7 @@ public class MailInfo {
     public int hashCode() {
         int result = ObjectsCompat.hash(
                 mailServerHost, mailServerPort,
-                validate,
+                validate, sslEnabled,
                 userName, password,
                 fromAddress, toAddress,
                 title, text, textRelatedImagePath);
@@ -202,6 +220,7 @@ public class MailInfo {
                 "mailServerHost='" + mailServerHost + '\'' +
                 ", mailServerPort='" + mailServerPort + '\'' +
                 ", validate=" + validate +
+                ", sslEnabled=" + sslEnabled +
                 ", userName='" + userName + '\'' +
                 ", password='" + password + '\'' +
                 ", fromAddress='" + fromAddress + '\'' +
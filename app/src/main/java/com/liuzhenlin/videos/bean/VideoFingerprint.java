@@ -0,0 +1,77 @@
+/*
+ * Created on 2026-10-20 2:02:18 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.bean;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The content hashes of a video file, valid as long as the file keeps the same size and
+ * last modification time.
+ *
+ * @author 刘振林
+ */
+public class VideoFingerprint {
+    private final String path;
+    private final long size;
+    private final long lastModified;
+    private final String sampleHash;
+    private final String fullHash;
+
+    public VideoFingerprint(@NonNull String path, long size, long lastModified,
+                            @NonNull String sampleHash, @Nullable String fullHash) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.sampleHash = sampleHash;
+        this.fullHash = fullHash;
+    }
+
+    @NonNull
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /** The hash of the sampled blocks of the file, or of the whole file if it is small enough. */
+    @NonNull
+    public String getSampleHash() {
+        return sampleHash;
+    }
+
+    /** The hash of the whole file, or null if it has not been computed. */
+    @Nullable
+    public String getFullHash() {
+        return fullHash;
+    }
+
+    /**
+     * @return whether this fingerprint was computed from the file of the given size and last
+     *         modification time, rather than from an earlier version of it
+     */
+    public boolean matches(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "VideoFingerprint{" +
+                "path='" + path + '\'' +
+                ", size=" + size +
+                ", lastModified=" + lastModified +
+                ", sampleHash='" + sampleHash + '\'' +
+                ", fullHash='" + fullHash + '\'' +
+                '}';
+    }
+}
@@ -8,12 +8,18 @@ package com.liuzhenlin.videos.dao;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Environment;
 
+import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.liuzhenlin.texturevideoview.utils.Singleton;
 import com.liuzhenlin.videos.Files;
+import com.liuzhenlin.videos.VideoListSortOrder;
+
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * @author 刘振林
@@ -23,8 +29,15 @@ public final class AppPrefs {
     private final SharedPreferences mSP;
 
     private static final String DRAWER_BACKGROUND_PATH = "drawerBackgroundPath";
+    private static final String DRAWER_BACKGROUND_CACHE_KEY = "drawerBackgroundCacheKey";
+    private static final String DRAWER_BACKGROUND_DOMINANT_COLOR = "drawerBackgroundDominantColor";
     private static final String IS_LIGHT_DRAWER_STATUS = "isLightDrawerStatus";
     private static final String IS_LIGHT_DRAWER_LIST_FOREGROUND = "isLightDrawerListForeground";
+    private static final String LAST_APP_UPDATE_CHECK_TIME = "lastAppUpdateCheckTime";
+    private static final String LAST_APP_UPDATE_CHECK_FOUND_NEW_VERSION = "lastAppUpdateCheckFoundNewVersion";
+    private static final String VIDEO_LIST_SORT_ORDER = "videoListSortOrder";
+    private static final String IS_VIDEO_CRAWLER_ENABLED = "isVideoCrawlerEnabled";
+    private static final String VIDEO_CRAWLER_ROOTS = "videoCrawlerRoots";
 
     private static final Singleton<Context, AppPrefs> sAppPrefsSingleton =
             new Singleton<Context, AppPrefs>() {
@@ -54,6 +67,57 @@ public final class AppPrefs {
         mSP.edit().putString(DRAWER_BACKGROUND_PATH, path).apply();
     }
 
+    /**
+     * @return the key identifying the picture and the size the cached, processed drawer
+     *         background was created from, or {@code null} if there is no such cache
+     */
+    @Nullable
+    public String getDrawerBackgroundCacheKey() {
+        return mSP.getString(DRAWER_BACKGROUND_CACHE_KEY, null);
+    }
+
+    public void setDrawerBackgroundCacheKey(@Nullable String key) {
+        mSP.edit().putString(DRAWER_BACKGROUND_CACHE_KEY, key).apply();
+    }
+
+    public boolean hasDrawerBackgroundDominantColor() {
+        return mSP.contains(DRAWER_BACKGROUND_DOMINANT_COLOR);
+    }
+
+    @ColorInt
+    public int getDrawerBackgroundDominantColor(@ColorInt int defaultColor) {
+        return mSP.getInt(DRAWER_BACKGROUND_DOMINANT_COLOR, defaultColor);
+    }
+
+    /**
+     * Saves the drawer background picture along with everything derived from it in one go,
+     * so that they never get out of sync with each other.
+     */
+    public void setDrawerBackground(@NonNull String path, @Nullable String cacheKey,
+                                    @ColorInt int dominantColor,
+                                    boolean lightDrawerStatus, boolean lightDrawerListForeground) {
+        mSP.edit()
+                .putString(DRAWER_BACKGROUND_PATH, path)
+                .putString(DRAWER_BACKGROUND_CACHE_KEY, cacheKey)
+                .putInt(DRAWER_BACKGROUND_DOMINANT_COLOR, dominantColor)
+                .putBoolean(IS_LIGHT_DRAWER_STATUS, lightDrawerStatus)
+                .putBoolean(IS_LIGHT_DRAWER_LIST_FOREGROUND, lightDrawerListForeground)
+                .apply();
+    }
+
+    /**
+     * Restores the default drawer background, for which no picture is shown.
+     */
+    public void clearDrawerBackground() {
+        mSP.edit()
+                .remove(DRAWER_BACKGROUND_PATH)
+                .remove(DRAWER_BACKGROUND_CACHE_KEY)
+                .remove(DRAWER_BACKGROUND_DOMINANT_COLOR)
+                .putBoolean(IS_LIGHT_DRAWER_STATUS, true)
+                .putBoolean(IS_LIGHT_DRAWER_LIST_FOREGROUND, false)
+                .apply();
+    }
+
     public boolean isLightDrawerStatus() {
         return mSP.getBoolean(IS_LIGHT_DRAWER_STATUS, true);
     }
@@ -69,4 +133,66 @@ public final class AppPrefs {
     public void setLightDrawerListForeground(boolean light) {
         mSP.edit().putBoolean(IS_LIGHT_DRAWER_LIST_FOREGROUND, light).apply();
     }
+
+    /**
+     * @return the wall clock time in milliseconds at which the last app update check successfully
+     *         completed, or 0 if no check has ever completed
+     */
+    public long getLastAppUpdateCheckTime() {
+        return mSP.getLong(LAST_APP_UPDATE_CHECK_TIME, 0L);
+    }
+
+    public boolean didLastAppUpdateCheckFindNewVersion() {
+        return mSP.getBoolean(LAST_APP_UPDATE_CHECK_FOUND_NEW_VERSION, false);
+    }
+
+    public void setLastAppUpdateCheckResult(long time, boolean findNewVersion) {
+        mSP.edit()
+                .putLong(LAST_APP_UPDATE_CHECK_TIME, time)
+                .putBoolean(LAST_APP_UPDATE_CHECK_FOUND_NEW_VERSION, findNewVersion)
+                .apply();
+    }
+
+    /**
+     * @return the name of the {@link VideoListSortOrder} the video lists
+     *         are sorted in
+     */
+    @NonNull
+    public String getVideoListSortOrder() {
+        //noinspection ConstantConditions
+        return mSP.getString(VIDEO_LIST_SORT_ORDER, VideoListSortOrder.NAME.name());
+    }
+
+    public void setVideoListSortOrder(@NonNull String order) {
+        mSP.edit().putString(VIDEO_LIST_SORT_ORDER, order).apply();
+    }
+
+    /**
+     * @return whether the storage is to be crawled for the videos MediaStore has not indexed
+     *         each time the video list is refreshed
+     */
+    public boolean isVideoCrawlerEnabled() {
+        return mSP.getBoolean(IS_VIDEO_CRAWLER_ENABLED, false);
+    }
+
+    public void setVideoCrawlerEnabled(boolean enabled) {
+        mSP.edit().putBoolean(IS_VIDEO_CRAWLER_ENABLED, enabled).apply();
+    }
+
+    /**
+     * @return the paths of the directories to be crawled for videos, or the primary external
+     *         storage directory if none has been set
+     */
+    @NonNull
+    public Set<String> getVideoCrawlerRoots() {
+        Set<String> roots = mSP.getStringSet(VIDEO_CRAWLER_ROOTS, null);
+        if (roots == null || roots.isEmpty()) {
+            return Collections.singleton(Environment.getExternalStorageDirectory().getAbsolutePath());
+        }
+        return roots;
+    }
+
+    public void setVideoCrawlerRoots(@Nullable Set<String> roots) {
+        mSP.edit().putStringSet(VIDEO_CRAWLER_ROOTS, roots).apply();
+    }
 }
@@ -28,8 +28,20 @@ class DbOpenHelper extends SQLiteOpenHelper {
     public static final String VIDEODIRS_COL_PATH = "path";
     public static final String VIDEODIRS_COL_IS_TOPPED = "isTopped";
 
+    public static final String TABLE_VIDEO_FINGERPRINTS = "videoFingerprints";
+    public static final String VIDEO_FINGERPRINTS_COL_PATH = "path";
+    public static final String VIDEO_FINGERPRINTS_COL_SIZE = "size";
+    public static final String VIDEO_FINGERPRINTS_COL_LAST_MODIFIED = "lastModified";
+    public static final String VIDEO_FINGERPRINTS_COL_SAMPLE_HASH = "sampleHash";
+    public static final String VIDEO_FINGERPRINTS_COL_FULL_HASH = "fullHash";
+
+    private static final int DB_VERSION = 2;
+
+    /** The version in which {@link #TABLE_VIDEO_FINGERPRINTS} was added. */
+    private static final int VERSION_VIDEO_FINGERPRINTS = 2;
+
     public DbOpenHelper(@NonNull Context context) {
-        super(context, Files.DB, null, 1);
+        super(context, Files.DB, null, DB_VERSION);
     }
 
     @Override
@@ -47,9 +59,24 @@ class DbOpenHelper extends SQLiteOpenHelper {
                 + VIDEODIRS_COL_IS_TOPPED + " int NOT NULL DEFAULT 0" +
                         " CHECK(" + VIDEODIRS_COL_IS_TOPPED + " IN (0,1)))");
         //@formatter:on
+        createVideoFingerprintsTable(db);
+    }
+
+    private static void createVideoFingerprintsTable(SQLiteDatabase db) {
+        //@formatter:off
+        db.execSQL("CREATE TABLE " + TABLE_VIDEO_FINGERPRINTS + "("
+                + VIDEO_FINGERPRINTS_COL_PATH + " text PRIMARY KEY, "
+                + VIDEO_FINGERPRINTS_COL_SIZE + " long NOT NULL, "
+                + VIDEO_FINGERPRINTS_COL_LAST_MODIFIED + " long NOT NULL, "
+                + VIDEO_FINGERPRINTS_COL_SAMPLE_HASH + " text NOT NULL, "
+                + VIDEO_FINGERPRINTS_COL_FULL_HASH + " text)");
+        //@formatter:on
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < VERSION_VIDEO_FINGERPRINTS) {
+            createVideoFingerprintsTable(db);
+        }
     }
 }
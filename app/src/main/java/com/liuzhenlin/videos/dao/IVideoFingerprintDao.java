@@ -0,0 +1,33 @@
+/*
+ * Created on 2026-10-20 2:06:31 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.dao;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.liuzhenlin.videos.bean.VideoFingerprint;
+
+import java.util.Collection;
+
+/**
+ * @author 刘振林
+ */
+public interface IVideoFingerprintDao {
+    /**
+     * Inserts the fingerprints, or replaces the ones stored for the same paths, in one transaction.
+     */
+    boolean updateVideoFingerprints(@NonNull Collection<VideoFingerprint> fingerprints);
+
+    int deleteVideoFingerprints(@NonNull Collection<String> paths /* video paths */);
+
+    @Nullable
+    Cursor queryAllVideoFingerprints();
+
+    @NonNull
+    VideoFingerprint buildVideoFingerprint(@NonNull Cursor cursor);
+}
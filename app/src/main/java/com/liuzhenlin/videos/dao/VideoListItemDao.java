@@ -20,16 +20,21 @@ import androidx.annotation.Nullable;
 
 import com.liuzhenlin.texturevideoview.utils.FileUtils;
 import com.liuzhenlin.texturevideoview.utils.Singleton;
+import com.liuzhenlin.texturevideoview.utils.VideoHeaderProbe;
 import com.liuzhenlin.videos.Consts;
 import com.liuzhenlin.videos.bean.Video;
 import com.liuzhenlin.videos.bean.VideoDirectory;
+import com.liuzhenlin.videos.bean.VideoFingerprint;
 import com.liuzhenlin.videos.bean.VideoListItem;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 
 import kotlin.text.StringsKt;
 
 import static com.liuzhenlin.videos.dao.DbOpenHelper.TABLE_VIDEODIRS;
+import static com.liuzhenlin.videos.dao.DbOpenHelper.TABLE_VIDEO_FINGERPRINTS;
 import static com.liuzhenlin.videos.dao.DbOpenHelper.TABLE_VIDEOS;
 import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEODIRS_COL_IS_TOPPED;
 import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEODIRS_COL_NAME;
@@ -37,11 +42,16 @@ import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEODIRS_COL_PATH;
 import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEOS_COL_ID;
 import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEOS_COL_IS_TOPPED;
 import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEOS_COL_PROGRESS;
+import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEO_FINGERPRINTS_COL_FULL_HASH;
+import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEO_FINGERPRINTS_COL_LAST_MODIFIED;
+import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEO_FINGERPRINTS_COL_PATH;
+import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEO_FINGERPRINTS_COL_SAMPLE_HASH;
+import static com.liuzhenlin.videos.dao.DbOpenHelper.VIDEO_FINGERPRINTS_COL_SIZE;
 
 /**
  * @author 刘振林
  */
-public final class VideoListItemDao implements IVideoListItemDao {
+public final class VideoListItemDao implements IVideoListItemDao, IVideoFingerprintDao {
 
     private final ContentResolver mContentResolver;
     private final SQLiteDatabase mDB;
@@ -424,6 +434,20 @@ public final class VideoListItemDao implements IVideoListItemDao {
     }
 
     public boolean invalidateVideoDurationAndResolution(@NonNull Video video) {
+        // 先从文件头读取，仅在无法解析时才使用 MediaMetadataRetriever
+        try {
+            VideoHeaderProbe.Result result = VideoHeaderProbe.probe(new File(video.getPath()));
+            if (result != null) {
+                final boolean rotated = result.rotation == 90 || result.rotation == 270;
+                video.setDuration((int) result.durationMs);
+                video.setWidth(rotated ? result.height : result.width);
+                video.setHeight(rotated ? result.width : result.height);
+                return true;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
         MediaMetadataRetriever mmr = new MediaMetadataRetriever();
         try {
             mmr.setDataSource(video.getPath());
@@ -545,4 +569,66 @@ public final class VideoListItemDao implements IVideoListItemDao {
         }
         return false;
     }
+
+    @Override
+    public boolean updateVideoFingerprints(@NonNull Collection<VideoFingerprint> fingerprints) {
+        if (fingerprints.isEmpty()) return true;
+
+        ContentValues values = new ContentValues(5);
+        mDB.beginTransactionNonExclusive();
+        try {
+            for (VideoFingerprint fingerprint : fingerprints) {
+                values.put(VIDEO_FINGERPRINTS_COL_PATH, fingerprint.getPath());
+                values.put(VIDEO_FINGERPRINTS_COL_SIZE, fingerprint.getSize());
+                values.put(VIDEO_FINGERPRINTS_COL_LAST_MODIFIED, fingerprint.getLastModified());
+                values.put(VIDEO_FINGERPRINTS_COL_SAMPLE_HASH, fingerprint.getSampleHash());
+                values.put(VIDEO_FINGERPRINTS_COL_FULL_HASH, fingerprint.getFullHash());
+                if (mDB.replace(TABLE_VIDEO_FINGERPRINTS, null, values) == Consts.NO_ID) {
+                    return false;
+                }
+            }
+            mDB.setTransactionSuccessful();
+            return true;
+        } finally {
+            mDB.endTransaction();
+        }
+    }
+
+    @Override
+    public int deleteVideoFingerprints(@NonNull Collection<String> paths) {
+        if (paths.isEmpty()) return 0;
+
+        int count = 0;
+        final String[] whereArgs = new String[1];
+        mDB.beginTransactionNonExclusive();
+        try {
+            for (String path : paths) {
+                whereArgs[0] = path;
+                count += mDB.delete(
+                        TABLE_VIDEO_FINGERPRINTS, VIDEO_FINGERPRINTS_COL_PATH + "=?", whereArgs);
+            }
+            mDB.setTransactionSuccessful();
+        } finally {
+            mDB.endTransaction();
+        }
+        return count;
+    }
+
+    @Nullable
+    @Override
+    public Cursor queryAllVideoFingerprints() {
+        return mDB.rawQuery("SELECT * FROM " + TABLE_VIDEO_FINGERPRINTS, null);
+    }
+
+    @NonNull
+    @Override
+    public VideoFingerprint buildVideoFingerprint(@NonNull Cursor cursor) {
+        final int fullHashIndex = cursor.getColumnIndexOrThrow(VIDEO_FINGERPRINTS_COL_FULL_HASH);
+        return new VideoFingerprint(
+                cursor.getString(cursor.getColumnIndexOrThrow(VIDEO_FINGERPRINTS_COL_PATH)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(VIDEO_FINGERPRINTS_COL_SIZE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(VIDEO_FINGERPRINTS_COL_LAST_MODIFIED)),
+                cursor.getString(cursor.getColumnIndexOrThrow(VIDEO_FINGERPRINTS_COL_SAMPLE_HASH)),
+                cursor.isNull(fullHashIndex) ? null : cursor.getString(fullHashIndex));
+    }
 }
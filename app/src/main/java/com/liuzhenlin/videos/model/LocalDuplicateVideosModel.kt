@@ -0,0 +1,46 @@
+/*
+ * Created on 2026-10-20 2:41:27 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.model
+
+import android.annotation.SuppressLint
+import android.content.Context
+import android.os.AsyncTask
+import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor
+import com.liuzhenlin.videos.bean.Video
+import com.liuzhenlin.videos.utils.DuplicateVideoFinder
+
+/**
+ * Finds the groups of videos of the same content among all the local videos.
+ *
+ * @author 刘振林
+ */
+class LocalDuplicateVideosModel(context: Context) : BaseModel<Nothing, List<List<Video>>?>(context) {
+
+    private var mVideos: List<Video>? = null
+
+    /**
+     * Starts finding the duplicates among the given videos, which should be all the videos of
+     * the library, stopping the search for the ones given before, if it is still running.
+     */
+    fun startLoader(videos: List<Video>) {
+        stopLoader()
+        mVideos = videos
+        startLoader()
+    }
+
+    override fun createAndStartLoader(): AsyncTask<*, *, *> {
+        val loader = FindDuplicatesTask(mVideos ?: emptyList())
+        loader.executeOnExecutor(ParallelThreadExecutor.getSingleton())
+        return loader
+    }
+
+    @SuppressLint("StaticFieldLeak")
+    private inner class FindDuplicatesTask(private val videos: List<Video>) : Loader<Void>() {
+
+        override fun doInBackground(vararg params: Void): List<List<Video>>? =
+                DuplicateVideoFinder(mContext).find(videos)
+    }
+}
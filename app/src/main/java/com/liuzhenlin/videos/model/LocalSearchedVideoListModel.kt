@@ -11,7 +11,7 @@ import android.os.AsyncTask
 import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor
 import com.liuzhenlin.videos.bean.Video
 import com.liuzhenlin.videos.dao.VideoListItemDao
-import com.liuzhenlin.videos.sortByElementName
+import com.liuzhenlin.videos.sortByPreferredOrder
 
 /**
  * @author 刘振林
@@ -42,7 +42,7 @@ class LocalSearchedVideoListModel(context: Context) : BaseModel<Nothing, Mutable
             }
             videoCursor.close()
 
-            videos.sortByElementName()
+            videos.sortByPreferredOrder()
             return videos
         }
     }
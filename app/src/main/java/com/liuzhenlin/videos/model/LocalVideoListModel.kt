@@ -13,7 +13,7 @@ import com.liuzhenlin.videos.bean.Video
 import com.liuzhenlin.videos.bean.VideoListItem
 import com.liuzhenlin.videos.dao.VideoListItemDao
 import com.liuzhenlin.videos.deepCopy
-import com.liuzhenlin.videos.sortByElementName
+import com.liuzhenlin.videos.sortByPreferredOrder
 import com.liuzhenlin.videos.toVideoListItems
 import java.util.*
 
@@ -72,7 +72,7 @@ class LocalVideoListModel(context: Context) : BaseModel<Nothing, MutableList<Vid
             }
             videoCursor.close()
 
-            videos.sortByElementName()
+            videos.sortByPreferredOrder()
             val items = videos.toVideoListItems() ?: return null
 
             val videodirCursor = dao.queryAllVideoDirs()
@@ -8,16 +8,13 @@ package com.liuzhenlin.videos.model
 import android.annotation.SuppressLint
 import android.content.Context
 import android.os.AsyncTask
-import androidx.core.util.AtomicFile
 import com.google.gson.Gson
 import com.liuzhenlin.texturevideoview.InternalConsts
-import com.liuzhenlin.texturevideoview.utils.FileUtils
 import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor
 import com.liuzhenlin.videos.bean.TVGroup
+import com.liuzhenlin.videos.net.HttpClient
 import com.liuzhenlin.videos.utils.Utils
-import java.io.*
-import java.net.HttpURLConnection
-import java.net.URL
+import java.io.IOException
 
 /**
  * @author 刘振林
@@ -34,88 +31,29 @@ class OnlineVideoListModel(context: Context) : BaseModel<Nothing, Array<TVGroup>
     private inner class LoadTVsAsyncTask : Loader<Context>() {
 
         override fun doInBackground(vararg ctxs: Context): Array<TVGroup>? {
-            var json: StringBuilder? = null
-
-            val jsonDirectory = File(FileUtils.getAppCacheDir(ctxs[0]), "data/json")
-            if (!jsonDirectory.exists()) {
-                jsonDirectory.mkdirs()
-            }
-            val jsonFile = AtomicFile(File(jsonDirectory, "tvs.json"))
+            val httpClient = HttpClient.getSingleton(ctxs[0])
 
+            var json: String? = null
             var ioException: IOException? = null
-
-            var conn: HttpURLConnection? = null
-            var reader: BufferedReader? = null
-            var writer: BufferedWriter? = null
-            var jsonFileOut: FileOutputStream? = null
             try {
-                val url = URL(LINK_TVS_JSON)
-                conn = url.openConnection() as HttpURLConnection
-//                conn.connectTimeout = TIMEOUT_CONNECTION;
-//                conn.readTimeout = TIMEOUT_READ;
-
-                reader = BufferedReader(InputStreamReader(conn.inputStream, "utf-8"))
-                jsonFileOut = jsonFile.startWrite()
-                writer = BufferedWriter(OutputStreamWriter(jsonFileOut, "utf-8"))
-                val buffer = CharArray(1024)
-                var len: Int
-                while (true) {
-                    if (isCancelled) return null
-
-                    len = reader.read(buffer)
-                    if (len == -1) break
-
-                    if (json == null) {
-                        json = StringBuilder(len)
-                    }
-                    json.append(buffer, 0, len)
-                    writer.write(buffer, 0, len)
-                }
-                writer.flush()
-                jsonFile.finishWrite(jsonFileOut)
-
+                json = httpClient.get(LINK_TVS_JSON).bodyString
             } catch (e: IOException) {
-                json = null
                 ioException = e
-            } finally {
-                if (writer != null) {
-                    try {
-                        writer.close()
-                    } catch (e: IOException) {
-                        //
-                    }
-                }
-                if (reader != null) {
-                    try {
-                        reader.close()
-                    } catch (e: IOException) {
-                        //
-                    }
-                }
-                conn?.disconnect()
             }
 
             if (!isCancelled) {
                 if (ioException != null) {
-                    if (jsonFileOut != null) {
-                        jsonFile.failWrite(jsonFileOut)
-                    }
-
-                    val jsonString = try {
-                        jsonFile.readFully().toString(Charsets.UTF_8)
-                    } catch (e: IOException) {
-                        e.printStackTrace()
-                        null
-                    }
-                    if (jsonString?.isNotEmpty() == true) {
-                        json = StringBuilder(jsonString.length).append(jsonString)
+                    // Falls back to the last successfully fetched tvs, if any, while offline
+                    json = httpClient.getCachedBody(LINK_TVS_JSON)?.toString(Charsets.UTF_8)
+                    if (json?.isNotEmpty() != true) {
+                        json = null
                     }
                 }
 
                 if (!isCancelled) {
                     when {
                         json != null ->
-                            return Gson().fromJson(json.toString(), Array<TVGroup>::class.java)
+                            return Gson().fromJson(json, Array<TVGroup>::class.java)
 
                         ioException != null ->
                             Utils.runOnHandlerSync(InternalConsts.getMainThreadHandler()) {
@@ -0,0 +1,291 @@
+/*
+ * Created on 2026-10-19 10:46:15 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.net;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.liuzhenlin.texturevideoview.utils.FileUtils;
+import com.liuzhenlin.texturevideoview.utils.Singleton;
+import com.liuzhenlin.videos.BuildConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thin, shared wrapper around {@link HttpURLConnection} used by every component of the app
+ * that talks to the server.
+ * <ul>
+ * <li>All connections are opened with the same connect/read timeouts and ask for the
+ *     connection to be kept alive. Process-wide networking properties are left untouched.</li>
+ * <li>Response streams are fully consumed and closed rather than {@link HttpURLConnection#disconnect()
+ *     disconnected}, which hands the underlying socket back to the platform's keep-alive pool,
+ *     so that consecutive requests to the same host skip the TCP and TLS handshakes.</li>
+ * <li>Successful responses are stored in an {@link HttpResponseCache}; those carrying an
+ *     {@code ETag} or {@code Last-Modified} header are revalidated with conditional requests
+ *     later, so unchanged content is not transferred again.</li>
+ * <li>Each request produces a {@link RequestMetrics} that is delivered to the registered
+ *     {@link OnRequestFinishedListener}s.</li>
+ * </ul>
+ *
+ * @author 刘振林
+ */
+public final class HttpClient {
+
+    private static final String TAG = "HttpClient";
+
+    public static final int TIMEOUT_CONNECTION = 10 * 1000; // ms
+    public static final int TIMEOUT_READ = 30 * 1000; // ms
+
+    private static final String HEADER_CONNECTION = "Connection";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    public interface OnRequestFinishedListener {
+        void onRequestFinished(@NonNull RequestMetrics metrics);
+    }
+
+    @Nullable private final HttpResponseCache mCache;
+    private final int mConnectTimeout;
+    private final int mReadTimeout;
+
+    private final List<OnRequestFinishedListener> mListeners = new CopyOnWriteArrayList<>();
+
+    private static final Singleton<Context, HttpClient> sHttpClientSingleton =
+            new Singleton<Context, HttpClient>() {
+                @SuppressLint("SyntheticAccessor")
+                @NonNull
+                @Override
+                protected HttpClient onCreate(Context... ctxs) {
+                    HttpClient client = new HttpClient(
+                            new File(FileUtils.getAppCacheDir(ctxs[0]), "data/http"),
+                            TIMEOUT_CONNECTION, TIMEOUT_READ);
+                    if (BuildConfig.DEBUG) {
+                        client.addOnRequestFinishedListener(new OnRequestFinishedListener() {
+                            @Override
+                            public void onRequestFinished(@NonNull RequestMetrics metrics) {
+                                Log.d(TAG, metrics.toString());
+                            }
+                        });
+                    }
+                    return client;
+                }
+            };
+
+    @NonNull
+    public static HttpClient getSingleton(@NonNull Context context) {
+        return sHttpClientSingleton.get(context);
+    }
+
+    /**
+     * Creates a standalone client, e.g. for talking to a local stand-in server in tests.
+     *
+     * @param cacheDirectory the directory to store cached responses in, or {@code null} to
+     *                       disable response caching entirely
+     */
+    @VisibleForTesting
+    public HttpClient(@Nullable File cacheDirectory, int connectTimeout, int readTimeout) {
+        mCache = cacheDirectory == null ? null : new HttpResponseCache(cacheDirectory);
+        mConnectTimeout = connectTimeout;
+        mReadTimeout = readTimeout;
+    }
+
+    @Nullable
+    public HttpResponseCache getCache() {
+        return mCache;
+    }
+
+    public void addOnRequestFinishedListener(@Nullable OnRequestFinishedListener listener) {
+        if (listener != null && !mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    public void removeOnRequestFinishedListener(@Nullable OnRequestFinishedListener listener) {
+        if (listener != null) {
+            mListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Opens a connection to the given url with this client's timeouts applied. Callers that
+     * stream the response themselves should close its input stream when done, rather than
+     * disconnecting it, to allow the connection to be reused.
+     */
+    @NonNull
+    public HttpURLConnection openConnection(@NonNull String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(mConnectTimeout);
+        conn.setReadTimeout(mReadTimeout);
+        // 只对本客户端打开的连接请求长连接，不修改进程全局的 http.keepAlive 等系统属性
+        conn.setRequestProperty(HEADER_CONNECTION, "keep-alive");
+        return conn;
+    }
+
+    /**
+     * Same as {@link #get(String, boolean) get(url, true)}.
+     */
+    @WorkerThread
+    @NonNull
+    public HttpResponse get(@NonNull String url) throws IOException {
+        return get(url, true);
+    }
+
+    /**
+     * Performs a blocking GET request and buffers the whole response body.
+     *
+     * @param useCache whether to revalidate a previously cached body for this url with a
+     *                 conditional request and store the new body in the cache
+     * @throws IOException if the request fails or the server responds with a non-2xx status
+     *                     (other than a 304 for a cached entry)
+     */
+    @WorkerThread
+    @NonNull
+    public HttpResponse get(@NonNull String url, boolean useCache) throws IOException {
+        final HttpResponseCache cache = useCache ? mCache : null;
+        final HttpResponseCache.Entry cached = cache == null ? null : cache.get(url);
+
+        final long startTime = System.nanoTime();
+        long responseTime = startTime;
+        int code = -1;
+        long bytesReceived = 0;
+        boolean fromCache = false;
+
+        HttpURLConnection conn = null;
+        InputStream in = null;
+        try {
+            conn = openConnection(url);
+            if (cached != null) {
+                if (cached.eTag != null) {
+                    conn.setRequestProperty(HEADER_IF_NONE_MATCH, cached.eTag);
+                }
+                if (cached.lastModified != null) {
+                    conn.setRequestProperty(HEADER_IF_MODIFIED_SINCE, cached.lastModified);
+                }
+            }
+
+            code = conn.getResponseCode();
+            responseTime = System.nanoTime();
+
+            final byte[] body;
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                fromCache = true;
+                body = cached.body;
+                // A 304 carries no body, but drain whatever is there so the socket can be reused
+                in = conn.getInputStream();
+                bytesReceived = drain(in);
+
+            } else if (code >= 200 && code < 300) {
+                in = conn.getInputStream();
+                body = readFully(in, conn.getContentLength());
+                bytesReceived = body.length;
+
+                // Bodies without validators are still kept, as an offline fallback
+                if (cache != null) {
+                    cache.put(url, conn.getHeaderField(HEADER_ETAG),
+                            conn.getHeaderField(HEADER_LAST_MODIFIED), body);
+                }
+            } else {
+                in = conn.getErrorStream();
+                if (in != null) {
+                    drain(in);
+                }
+                throw new IOException("Unexpected HTTP response: " + code + " for " + url);
+            }
+
+            in.close();
+            in = null;
+
+            final long endTime = System.nanoTime();
+            RequestMetrics metrics = new RequestMetrics(url, code, fromCache, bytesReceived,
+                    TimeUnit.NANOSECONDS.toMillis(responseTime - startTime),
+                    TimeUnit.NANOSECONDS.toMillis(endTime - responseTime),
+                    TimeUnit.NANOSECONDS.toMillis(endTime - startTime),
+                    null);
+            notifyRequestFinished(metrics);
+            return new HttpResponse(code, body, fromCache, metrics);
+
+        } catch (IOException e) {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e2) {
+                    //
+                }
+            }
+            // Do not return a broken connection to the pool
+            if (conn != null) {
+                conn.disconnect();
+            }
+
+            final long endTime = System.nanoTime();
+            notifyRequestFinished(new RequestMetrics(url, code, fromCache, bytesReceived,
+                    TimeUnit.NANOSECONDS.toMillis(responseTime - startTime),
+                    TimeUnit.NANOSECONDS.toMillis(endTime - responseTime),
+                    TimeUnit.NANOSECONDS.toMillis(endTime - startTime),
+                    e));
+            throw e;
+        }
+    }
+
+    /**
+     * @return the last body cached for the given url regardless of its freshness, or {@code null}
+     *         if there is none. Useful as an offline fallback when {@link #get(String)} fails.
+     */
+    @WorkerThread
+    @Nullable
+    public byte[] getCachedBody(@NonNull String url) {
+        if (mCache != null) {
+            HttpResponseCache.Entry entry = mCache.get(url);
+            if (entry != null) {
+                return entry.body;
+            }
+        }
+        return null;
+    }
+
+    private void notifyRequestFinished(RequestMetrics metrics) {
+        for (OnRequestFinishedListener listener : mListeners) {
+            listener.onRequestFinished(metrics);
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int contentLength) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                contentLength > 0 ? contentLength : 8 * 1024);
+        final byte[] buffer = new byte[8 * 1024];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        long total = 0;
+        final byte[] buffer = new byte[1024];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            total += len;
+        }
+        return total;
+    }
+}
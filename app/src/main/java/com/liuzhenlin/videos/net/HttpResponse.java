@@ -0,0 +1,63 @@
+/*
+ * Created on 2026-10-19 10:20:04 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.net;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.Charset;
+
+/**
+ * An immutable, fully buffered response returned by {@link HttpClient}.
+ *
+ * @author 刘振林
+ */
+public final class HttpResponse {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int mCode;
+    private final byte[] mBody;
+    private final boolean mFromCache;
+    private final RequestMetrics mMetrics;
+
+    /*package*/ HttpResponse(int code, @NonNull byte[] body, boolean fromCache,
+                             @NonNull RequestMetrics metrics) {
+        mCode = code;
+        mBody = body;
+        mFromCache = fromCache;
+        mMetrics = metrics;
+    }
+
+    /**
+     * @return the status code of the network response. For a body served from the cache after
+     *         a successful revalidation, this is {@link java.net.HttpURLConnection#HTTP_NOT_MODIFIED}.
+     */
+    public int getCode() {
+        return mCode;
+    }
+
+    /**
+     * @return true if the body was not transferred but taken from the local response cache
+     */
+    public boolean isFromCache() {
+        return mFromCache;
+    }
+
+    @NonNull
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    @NonNull
+    public String getBodyString() {
+        return new String(mBody, UTF_8);
+    }
+
+    @NonNull
+    public RequestMetrics getMetrics() {
+        return mMetrics;
+    }
+}
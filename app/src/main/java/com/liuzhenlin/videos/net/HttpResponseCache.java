@@ -0,0 +1,188 @@
+/*
+ * Created on 2026-10-19 10:31:47 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.net;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A small disk cache of response bodies together with their {@code ETag} and
+ * {@code Last-Modified} validators, so that {@link HttpClient} can revalidate them with
+ * conditional requests instead of downloading the same content again.
+ * <p>
+ * Each entry lives in its own file, named after the SHA-1 of its url, and is replaced atomically
+ * through a temporary file, so a crash while writing never leaves a torn entry behind.
+ *
+ * @author 刘振林
+ */
+public final class HttpResponseCache {
+
+    private static final int VERSION = 1;
+
+    private final File mDirectory;
+
+    public static final class Entry {
+        @NonNull public final String url;
+        @Nullable public final String eTag;
+        @Nullable public final String lastModified;
+        @NonNull public final byte[] body;
+
+        /*package*/ Entry(@NonNull String url, @Nullable String eTag, @Nullable String lastModified,
+                          @NonNull byte[] body) {
+            this.url = url;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+    }
+
+    public HttpResponseCache(@NonNull File directory) {
+        mDirectory = directory;
+    }
+
+    @NonNull
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * @return the cached entry for the given url, or {@code null} if there is none or it is
+     *         unreadable.
+     */
+    @Nullable
+    public synchronized Entry get(@NonNull String url) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            // Guard against hash collisions
+            if (!url.equals(in.readUTF())) {
+                return null;
+            }
+            String eTag = readNullableUTF(in);
+            String lastModified = readNullableUTF(in);
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(url, eTag, lastModified, body);
+        } catch (IOException e) {
+            e.printStackTrace();
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //
+                }
+            }
+        }
+    }
+
+    public synchronized void put(@NonNull String url, @Nullable String eTag,
+                                 @Nullable String lastModified, @NonNull byte[] body) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            return;
+        }
+
+        File file = fileFor(url);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        boolean written = false;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(VERSION);
+            out.writeUTF(url);
+            writeNullableUTF(out, eTag);
+            writeNullableUTF(out, lastModified);
+            out.writeInt(body.length);
+            out.write(body);
+            out.flush();
+            written = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    written = false;
+                }
+            }
+        }
+
+        if (!written || !tmpFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        }
+    }
+
+    public synchronized void remove(@NonNull String url) {
+        //noinspection ResultOfMethodCallIgnored
+        fileFor(url).delete();
+    }
+
+    public synchronized void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private File fileFor(String url) {
+        return new File(mDirectory, sha1Hex(url));
+    }
+
+    private static String sha1Hex(String s) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            //noinspection CharsetObjectCanBeUsed
+            byte[] digest = md.digest(s.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Every platform is required to support SHA-1 and UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
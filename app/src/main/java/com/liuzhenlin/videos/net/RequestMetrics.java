@@ -0,0 +1,68 @@
+/*
+ * Created on 2026-10-19 10:12:36 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.net;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Timing and transfer statistics collected for a single request issued through {@link HttpClient}.
+ *
+ * @author 刘振林
+ */
+public final class RequestMetrics {
+
+    @NonNull public final String url;
+
+    /** The HTTP status code, or -1 if the request failed before a response was received. */
+    public final int responseCode;
+
+    /** Whether the body was served from the local cache after a 304 revalidation. */
+    public final boolean fromCache;
+
+    /** Number of body bytes actually transferred over the network. */
+    public final long bytesReceived;
+
+    /** Time spent connecting and waiting for the response headers, in milliseconds. */
+    public final long timeToFirstByteMs;
+
+    /** Time spent reading the response body, in milliseconds. */
+    public final long readTimeMs;
+
+    /** Total wall time of the request, in milliseconds. */
+    public final long totalTimeMs;
+
+    /** The cause of the failure, or {@code null} if the request succeeded. */
+    @Nullable public final Exception error;
+
+    /*package*/ RequestMetrics(@NonNull String url, int responseCode, boolean fromCache,
+                               long bytesReceived, long timeToFirstByteMs, long readTimeMs,
+                               long totalTimeMs, @Nullable Exception error) {
+        this.url = url;
+        this.responseCode = responseCode;
+        this.fromCache = fromCache;
+        this.bytesReceived = bytesReceived;
+        this.timeToFirstByteMs = timeToFirstByteMs;
+        this.readTimeMs = readTimeMs;
+        this.totalTimeMs = totalTimeMs;
+        this.error = error;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "RequestMetrics{" +
+                "url='" + url + '\'' +
+                ", responseCode=" + responseCode +
+                ", fromCache=" + fromCache +
+                ", bytesReceived=" + bytesReceived +
+                ", timeToFirstByteMs=" + timeToFirstByteMs +
+                ", readTimeMs=" + readTimeMs +
+                ", totalTimeMs=" + totalTimeMs +
+                ", error=" + error +
+                '}';
+    }
+}
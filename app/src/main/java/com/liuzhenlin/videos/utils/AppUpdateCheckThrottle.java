@@ -0,0 +1,48 @@
+/*
+ * Created on 2026-10-20 11:05:42 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.utils;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.liuzhenlin.videos.Consts;
+import com.liuzhenlin.videos.dao.AppPrefs;
+
+/**
+ * Decides whether an automatic app update check can be skipped, shared by
+ * {@link AppUpdateChecker} and {@link MergeAppUpdateChecker}.
+ *
+ * @author 刘振林
+ */
+final class AppUpdateCheckThrottle {
+
+    /** Minimum interval between two automatic update checks, in milliseconds. */
+    public static final long MIN_INTERVAL_AUTO_CHECK = 6 * 60 * 60 * 1000L;
+
+    private AppUpdateCheckThrottle() {
+    }
+
+    /**
+     * @return true if the last check completed within {@link #MIN_INTERVAL_AUTO_CHECK} and
+     *         found no new version, in which case an automatic check needs not be run again
+     */
+    public static boolean shouldSkipAutoCheck(@NonNull Context context) {
+        if (Consts.DEBUG_APP_UPDATE) return false;
+
+        final AppPrefs appPrefs = AppPrefs.getSingleton(context);
+        if (appPrefs.didLastAppUpdateCheckFindNewVersion()) return false;
+
+        final long elapsed = System.currentTimeMillis() - appPrefs.getLastAppUpdateCheckTime();
+        return elapsed >= 0 && elapsed < MIN_INTERVAL_AUTO_CHECK;
+    }
+
+    /** Records the result of a check that successfully completed just now. */
+    public static void onCheckCompleted(@NonNull Context context, boolean findNewVersion) {
+        AppPrefs.getSingleton(context)
+                .setLastAppUpdateCheckResult(System.currentTimeMillis(), findNewVersion);
+    }
+}
@@ -43,14 +43,13 @@ import com.liuzhenlin.videos.App;
 import com.liuzhenlin.videos.BuildConfig;
 import com.liuzhenlin.videos.Consts;
 import com.liuzhenlin.videos.R;
+import com.liuzhenlin.videos.net.HttpClient;
 
 import org.apache.http.conn.ConnectTimeoutException;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
@@ -71,8 +70,8 @@ public final class AppUpdateChecker {
 
     private static final String TAG = "AppUpdateChecker";
 
-    private static final int TIMEOUT_CONNECTION = 10 * 1000; // ms
-    private static final int TIMEOUT_READ = 30 * 1000; // ms
+    private static final int TIMEOUT_CONNECTION = HttpClient.TIMEOUT_CONNECTION;
+    private static final int TIMEOUT_READ = HttpClient.TIMEOUT_READ;
 
     private static final String LINK_APP_INFOS =
             "https://raw.githubusercontent.com/lzls/Videos/release/app.json";
@@ -143,11 +142,26 @@ public final class AppUpdateChecker {
         checkUpdate(true);
     }
 
+    /**
+     * Checks for a new version of the app.
+     *
+     * @param toastResult whether the check is explicitly requested by the user, in which case
+     *                    the result will be toasted. Otherwise, it is treated as an automatic check,
+     *                    which is skipped if the last check completed within
+     *                    {@link AppUpdateCheckThrottle#MIN_INTERVAL_AUTO_CHECK} and found
+     *                    no new version.
+     */
     @SuppressLint("StaticFieldLeak")
     public void checkUpdate(boolean toastResult) {
         mToastResult = toastResult;
 
         if (mCheckInProgress) return;
+
+        if (!toastResult && AppUpdateCheckThrottle.shouldSkipAutoCheck(mContext)) {
+            mHandler.sendEmptyMessage(Handler.MSG_NO_NEW_VERSION);
+            return;
+        }
+
         mCheckInProgress = true;
         new AsyncTask<Void, Void, Integer>() {
             static final int RESULT_FIND_NEW_VERSION = 1;
@@ -157,27 +171,11 @@ public final class AppUpdateChecker {
 
             @Override
             protected Integer doInBackground(Void... voids) {
-                StringBuilder json = null;
-
-                HttpURLConnection conn = null;
-                BufferedReader reader = null;
+                String json;
                 try {
-                    URL url = new URL(LINK_APP_INFOS);
-                    conn = (HttpURLConnection) url.openConnection();
-                    conn.setConnectTimeout(TIMEOUT_CONNECTION);
-                    conn.setReadTimeout(TIMEOUT_READ);
-
-                    //noinspection CharsetObjectCanBeUsed
-                    reader = new BufferedReader(
-                            new InputStreamReader(conn.getInputStream(), "utf-8"));
-                    final char[] buffer = new char[1024];
-                    int len;
-                    while ((len = reader.read(buffer)) != -1) {
-                        if (json == null) {
-                            json = new StringBuilder(len);
-                        }
-                        json.append(buffer, 0, len);
-                    }
+                    // Revalidates the cached app infos with ETag/Last-Modified, so that
+                    // the json is only transferred when it is changed on the server.
+                    json = HttpClient.getSingleton(mContext).get(LINK_APP_INFOS).getBodyString();
 
                     // 连接服务器超时
                 } catch (ConnectTimeoutException e) {
@@ -190,22 +188,9 @@ public final class AppUpdateChecker {
                 } catch (IOException e) {
                     e.printStackTrace();
                     return 0;
-
-                } finally {
-                    if (reader != null) {
-                        try {
-                            reader.close();
-                        } catch (IOException e) {
-                            //
-                        }
-                    }
-                    if (conn != null) {
-                        conn.disconnect();
-                    }
                 }
 
-                //noinspection ConstantConditions
-                JsonObject appInfos = JsonParser.parseString(json.toString()).getAsJsonObject()
+                JsonObject appInfos = JsonParser.parseString(json).getAsJsonObject()
                         .get("appInfos").getAsJsonObject();
 
                 final boolean findNewVersion = Consts.DEBUG_APP_UPDATE
@@ -232,6 +217,10 @@ public final class AppUpdateChecker {
 
             @Override
             protected void onPostExecute(Integer result) {
+                if (result == RESULT_FIND_NEW_VERSION || result == RESULT_NO_NEW_VERSION) {
+                    AppUpdateCheckThrottle.onCheckCompleted(
+                            mContext, result == RESULT_FIND_NEW_VERSION);
+                }
                 switch (result) {
                     case RESULT_FIND_NEW_VERSION:
                         mHandler.sendEmptyMessage(Handler.MSG_FIND_NEW_VERSION);
@@ -111,6 +111,78 @@ public class BitmapUtils2 {
         return raw;
     }
 
+    /**
+     * Decodes the picture at the given path, subsampled to about the required size and rotated
+     * upright according to its EXIF orientation.
+     * <p>
+     * Unlike {@link #decodeRotatedBitmapFormFile(String)}, the picture is never decoded at its
+     * full resolution: the {@link BitmapFactory.Options#inSampleSize sample size} is chosen from
+     * the image bounds, and the remaining down-scaling and the rotation are then applied to the
+     * subsampled bitmap together in one pass.
+     *
+     * @param reqWidth  the required width of the upright picture
+     * @param reqHeight the required height of the upright picture
+     * @param fitInside true to make the result fit inside {@code reqWidth x reqHeight}, or false
+     *                  to make it just cover that area (e.g., for a center-cropped thumbnail).
+     *                  The picture is never scaled up in either case.
+     */
+    @Nullable
+    public static Bitmap decodeSampledRotatedBitmapFromFile(
+            @NonNull String path, int reqWidth, int reqHeight, boolean fitInside) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        final int degrees = readPictureRotation(path);
+        // The required size is given for the upright picture, while the bounds and the sample
+        // size apply to the picture as it is stored.
+        if (degrees == 90 || degrees == 270) {
+            final int temp = reqWidth;
+            reqWidth = reqHeight;
+            reqHeight = temp;
+        }
+
+        float scale = fitInside
+                ? Math.min((float) reqWidth / options.outWidth, (float) reqHeight / options.outHeight)
+                : Math.max((float) reqWidth / options.outWidth, (float) reqHeight / options.outHeight);
+        options.inSampleSize = 1;
+        // Use the largest power-of-two sample size that still keeps the decoded bitmap
+        // at least as large as required
+        while (scale * options.inSampleSize * 2f <= 1f) {
+            options.inSampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+
+        Bitmap sampled = BitmapFactory.decodeFile(path, options);
+        if (sampled == null) {
+            return null;
+        }
+
+        scale = fitInside
+                ? Math.min((float) reqWidth / sampled.getWidth(), (float) reqHeight / sampled.getHeight())
+                : Math.max((float) reqWidth / sampled.getWidth(), (float) reqHeight / sampled.getHeight());
+        if (scale >= 1f && degrees == 0) {
+            return sampled;
+        }
+
+        Matrix matrix = new Matrix();
+        if (scale < 1f) {
+            matrix.postScale(scale, scale);
+        }
+        if (degrees != 0) {
+            matrix.postRotate(degrees);
+        }
+        Bitmap out = Bitmap.createBitmap(
+                sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+        if (out != sampled) {
+            sampled.recycle();
+        }
+        return out;
+    }
+
     /**
      * 读取图片旋转角度
      */
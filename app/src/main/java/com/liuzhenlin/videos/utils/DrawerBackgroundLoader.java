@@ -0,0 +1,241 @@
+/*
+ * Created on 2026-10-19 3:12:40 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.utils;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.os.AsyncTask;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.bumptech.glide.util.Synthetic;
+import com.liuzhenlin.texturevideoview.utils.BitmapUtils;
+import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor;
+import com.liuzhenlin.videos.dao.AppPrefs;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Loads the user-chosen drawer background picture in the background.
+ * <p>
+ * The picture is decoded no larger than the drawer, center-cropped to exactly its size and
+ * then cached on disk, with the key identifying the source picture and the size saved in
+ * {@link AppPrefs}. The dominant color of the picture and the light/dark flags derived from it
+ * are persisted there as well, so that on later launches the background can be shown by
+ * decoding just the small cached bitmap, without any palette computation.
+ *
+ * @author 刘振林
+ */
+@MainThread
+public final class DrawerBackgroundLoader {
+
+    public interface OnLoadedListener {
+        /**
+         * @param background the processed background picture, or {@code null} if the picture
+         *                   could not be decoded
+         * @param lightDrawerStatus whether the status bar icons should be dark, i.e., the
+         *                          background is light, while the drawer is open
+         * @param lightDrawerListForeground whether the drawer list should use a light foreground
+         */
+        void onDrawerBackgroundLoaded(@NonNull String path, @Nullable Bitmap background,
+                                      boolean lightDrawerStatus, boolean lightDrawerListForeground);
+    }
+
+    private static final String CACHE_FILE_NAME = "drawer_background.jpg";
+    private static final int CACHE_QUALITY = 90;
+
+    @Synthetic final Context mContext;
+
+    @Synthetic LoadTask mTask;
+
+    public DrawerBackgroundLoader(@NonNull Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Asynchronously loads the picture at the given path as the drawer background, cancelling
+     * any previous load that has not finished yet.
+     *
+     * @param width  the width of the drawer, in pixels
+     * @param height the height of the drawer, in pixels
+     */
+    public void load(@NonNull String path, int width, int height, @NonNull OnLoadedListener listener) {
+        cancel();
+        mTask = new LoadTask(path, width, height, listener);
+        mTask.executeOnExecutor(ParallelThreadExecutor.getSingleton());
+    }
+
+    /**
+     * @return the path of the picture being loaded, or {@code null} if nothing is being loaded
+     */
+    @Nullable
+    public String getLoadingPath() {
+        return mTask == null ? null : mTask.mPath;
+    }
+
+    public void cancel() {
+        if (mTask != null) {
+            mTask.cancel(false);
+            mTask = null;
+        }
+    }
+
+    /**
+     * Forgets the drawer background picture and deletes its cache.
+     */
+    public static void clear(@NonNull Context context) {
+        AppPrefs.getSingleton(context).clearDrawerBackground();
+        //noinspection ResultOfMethodCallIgnored
+        getCacheFile(context).delete();
+    }
+
+    @Synthetic static File getCacheFile(Context context) {
+        return new File(context.getFilesDir(), CACHE_FILE_NAME);
+    }
+
+    /**
+     * Identifies the picture at the given path in its current version, along with the size
+     * it is processed for.
+     */
+    @Synthetic static String createCacheKey(File file, int width, int height) {
+        return file.getPath() + '|' + file.lastModified() + '|' + file.length()
+                + '|' + width + 'x' + height;
+    }
+
+    @SuppressLint("StaticFieldLeak")
+    private final class LoadTask extends AsyncTask<Void, Void, Bitmap> {
+        final String mPath;
+        final int mWidth;
+        final int mHeight;
+        final OnLoadedListener mListener;
+
+        boolean mLightDrawerStatus;
+        boolean mLightDrawerListForeground;
+
+        LoadTask(String path, int width, int height, OnLoadedListener listener) {
+            mPath = path;
+            mWidth = width;
+            mHeight = height;
+            mListener = listener;
+        }
+
+        @Override
+        protected Bitmap doInBackground(Void... voids) {
+            final AppPrefs asp = AppPrefs.getSingleton(mContext);
+            final File cacheFile = getCacheFile(mContext);
+            final String cacheKey = createCacheKey(new File(mPath), mWidth, mHeight);
+            final boolean isSavedPicture = mPath.equals(asp.getDrawerBackgroundPath());
+
+            if (isSavedPicture) {
+                mLightDrawerStatus = asp.isLightDrawerStatus();
+                mLightDrawerListForeground = asp.isLightDrawerListForeground();
+                // 快速路径：直接解码已处理好的小尺寸缓存图片
+                if (cacheKey.equals(asp.getDrawerBackgroundCacheKey()) && cacheFile.exists()) {
+                    Bitmap cached = BitmapFactory.decodeFile(cacheFile.getPath());
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+            }
+
+            Bitmap background = decodeBackground();
+            if (background == null || isCancelled()) {
+                return background;
+            }
+            final boolean cacheWritten = writeCache(background, cacheFile);
+
+            if (isSavedPicture && asp.hasDrawerBackgroundDominantColor()) {
+                // 图片未变，仅缓存失效了（如图片被修改或抽屉尺寸改变），沿用已保存的颜色信息
+                asp.setDrawerBackgroundCacheKey(cacheWritten ? cacheKey : null);
+            } else {
+                // Only run the palette pass over the down-sampled bitmap
+                final int dominantColor = BitmapUtils.getDominantColor(background, Color.WHITE);
+                final boolean lightBackground = ColorUtils.isLightColor(dominantColor);
+                mLightDrawerStatus = lightBackground;
+                mLightDrawerListForeground = !lightBackground;
+                asp.setDrawerBackground(mPath, cacheWritten ? cacheKey : null, dominantColor,
+                        mLightDrawerStatus, mLightDrawerListForeground);
+            }
+            return background;
+        }
+
+        @WorkerThread
+        private Bitmap decodeBackground() {
+            Bitmap bitmap = BitmapUtils2.decodeSampledRotatedBitmapFromFile(
+                    mPath, mWidth, mHeight, false);
+            if (bitmap == null) {
+                return null;
+            }
+            // 按centerCrop的方式裁剪为抽屉的大小
+            final int width = Math.min(mWidth, bitmap.getWidth());
+            final int height = Math.min(mHeight, bitmap.getHeight());
+            if (width == bitmap.getWidth() && height == bitmap.getHeight()) {
+                return bitmap;
+            }
+            Bitmap cropped = Bitmap.createBitmap(bitmap,
+                    (bitmap.getWidth() - width) / 2, (bitmap.getHeight() - height) / 2,
+                    width, height);
+            if (cropped != bitmap) {
+                bitmap.recycle();
+            }
+            return cropped;
+        }
+
+        @WorkerThread
+        private boolean writeCache(Bitmap bitmap, File cacheFile) {
+            final File tmpFile = new File(cacheFile.getPath() + ".tmp");
+            OutputStream out = null;
+            boolean written = false;
+            try {
+                out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+                written = bitmap.compress(Bitmap.CompressFormat.JPEG, CACHE_QUALITY, out);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        written = false;
+                    }
+                }
+            }
+
+            if (!written || !tmpFile.renameTo(cacheFile)) {
+                //noinspection ResultOfMethodCallIgnored
+                tmpFile.delete();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap background) {
+            if (mTask == this) {
+                mTask = null;
+            }
+            mListener.onDrawerBackgroundLoaded(
+                    mPath, background, mLightDrawerStatus, mLightDrawerListForeground);
+        }
+
+        @Override
+        protected void onCancelled(Bitmap background) {
+            if (background != null) {
+                background.recycle();
+            }
+        }
+    }
+}
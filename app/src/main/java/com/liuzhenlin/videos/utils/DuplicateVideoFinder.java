@@ -0,0 +1,325 @@
+/*
+ * Created on 2026-10-20 2:14:45 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.liuzhenlin.videos.BuildConfig;
+import com.liuzhenlin.videos.bean.Video;
+import com.liuzhenlin.videos.bean.VideoFingerprint;
+import com.liuzhenlin.videos.dao.VideoListItemDao;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the videos of the same content among a library, without reading most of their bytes:
+ * <ol>
+ *     <li>Videos are bucketed by their exact file sizes, and those of unique sizes are dropped
+ *         without being read at all.</li>
+ *     <li>Within a bucket, only three blocks of each file, at its head, middle and tail, are
+ *         hashed, through memory-mapped reads.</li>
+ *     <li>Files whose sampled blocks match are confirmed by hashing them as a whole, unless the
+ *         blocks already cover the whole files.</li>
+ * </ol>
+ * The hashes are persisted through {@link VideoListItemDao}, keyed by the file paths and valid
+ * as long as the files keep the same sizes and last modification times, so that later runs only
+ * read the files added or modified since.
+ *
+ * @author 刘振林
+ */
+public final class DuplicateVideoFinder {
+
+    private static final String TAG = "DuplicateVideoFinder";
+
+    /** The size of each of the blocks hashed at the head, middle and tail of a file. */
+    private static final int SAMPLE_BLOCK_SIZE = 64 * 1024;
+    private static final int SAMPLE_BLOCK_COUNT = 3;
+
+    private static final int FULL_HASH_BUFFER_SIZE = 256 * 1024;
+
+    private static final String HASH_ALGORITHM = "MD5";
+
+    private static final class Candidate {
+        final Video video;
+        final File file;
+        final long size;
+        final long lastModified;
+        String sampleHash;
+        String fullHash;
+
+        Candidate(Video video, File file, long size, long lastModified) {
+            this.video = video;
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        VideoFingerprint toFingerprint() {
+            return new VideoFingerprint(
+                    video.getPath(), size, lastModified, sampleHash, fullHash);
+        }
+    }
+
+    private final VideoListItemDao mDao;
+    private volatile boolean mCancelled;
+
+    private byte[] mBuffer;
+
+    public DuplicateVideoFinder(@NonNull Context context) {
+        mDao = VideoListItemDao.getSingleton(context);
+    }
+
+    /**
+     * Stops the running {@link #find(Collection)} as soon as possible, as does interrupting the
+     * thread it runs on. The hashes computed till then are still persisted.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    private boolean isCancelled() {
+        if (!mCancelled && Thread.currentThread().isInterrupted()) {
+            mCancelled = true;
+        }
+        return mCancelled;
+    }
+
+    /**
+     * Finds the groups of videos of the same content among the given ones, which are supposed to
+     * be all the videos of the library, so that the fingerprints of the videos not in it any more
+     * are dropped.
+     *
+     * @return the groups, each of at least two videos, in descending order of the file sizes, or
+     *         an empty list if none is found or the search is cancelled
+     */
+    @WorkerThread
+    @NonNull
+    public List<List<Video>> find(@NonNull Collection<Video> videos) {
+        final long startTimeMs = System.currentTimeMillis();
+
+        // 按文件大小精确分桶，大小唯一的视频无需读取
+        final Set<String> paths = new HashSet<>((int) (videos.size() / 0.75f) + 1);
+        final Map<Long, List<Candidate>> buckets = new HashMap<>();
+        for (Video video : videos) {
+            if (isCancelled()) return Collections.emptyList();
+
+            final String path = video.getPath();
+            paths.add(path);
+
+            final File file = new File(path);
+            final long size = file.length();
+            if (size <= 0) continue;
+
+            List<Candidate> bucket = buckets.get(size);
+            if (bucket == null) {
+                bucket = new ArrayList<>(2);
+                buckets.put(size, bucket);
+            }
+            bucket.add(new Candidate(video, file, size, file.lastModified()));
+        }
+
+        final Map<String, VideoFingerprint> storedFingerprints = loadFingerprints();
+        final List<String> stalePaths = new ArrayList<>();
+        for (String path : storedFingerprints.keySet()) {
+            if (!paths.contains(path)) {
+                stalePaths.add(path);
+            }
+        }
+
+        final Map<String, VideoFingerprint> updatedFingerprints = new LinkedHashMap<>();
+        final List<List<Candidate>> groups = new ArrayList<>();
+        int hashedFileCount = 0;
+        for (List<Candidate> bucket : buckets.values()) {
+            if (bucket.size() < 2) continue;
+
+            final Map<String, List<Candidate>> sampleGroups = new HashMap<>();
+            for (Candidate candidate : bucket) {
+                if (isCancelled()) break;
+
+                final VideoFingerprint stored = storedFingerprints.get(candidate.video.getPath());
+                if (stored != null && stored.matches(candidate.size, candidate.lastModified)) {
+                    candidate.sampleHash = stored.getSampleHash();
+                    candidate.fullHash = stored.getFullHash();
+                } else {
+                    try {
+                        candidate.sampleHash = computeSampleHash(candidate.file, candidate.size);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Failed to hash " + candidate.file, e);
+                        continue;
+                    }
+                    hashedFileCount++;
+                    updatedFingerprints.put(candidate.video.getPath(), candidate.toFingerprint());
+                }
+                addToGroup(sampleGroups, candidate.sampleHash, candidate);
+            }
+
+            for (List<Candidate> sampleGroup : sampleGroups.values()) {
+                if (sampleGroup.size() < 2) continue;
+
+                // 采样块已覆盖整个文件，无需再次确认
+                if (sampleGroup.get(0).size <= (long) SAMPLE_BLOCK_SIZE * SAMPLE_BLOCK_COUNT) {
+                    groups.add(sampleGroup);
+                    continue;
+                }
+
+                final Map<String, List<Candidate>> fullGroups = new HashMap<>();
+                for (Candidate candidate : sampleGroup) {
+                    if (isCancelled()) break;
+
+                    if (candidate.fullHash == null) {
+                        try {
+                            candidate.fullHash = computeFullHash(candidate.file);
+                        } catch (IOException e) {
+                            Log.w(TAG, "Failed to hash " + candidate.file, e);
+                            continue;
+                        }
+                        if (candidate.fullHash == null) continue; // Cancelled
+                        updatedFingerprints.put(candidate.video.getPath(), candidate.toFingerprint());
+                    }
+                    addToGroup(fullGroups, candidate.fullHash, candidate);
+                }
+                for (List<Candidate> fullGroup : fullGroups.values()) {
+                    if (fullGroup.size() >= 2) {
+                        groups.add(fullGroup);
+                    }
+                }
+            }
+            if (isCancelled()) break;
+        }
+        mBuffer = null;
+
+        mDao.updateVideoFingerprints(updatedFingerprints.values());
+        mDao.deleteVideoFingerprints(stalePaths);
+
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, (mCancelled ? "Cancelled: " : "Finished: ")
+                    + groups.size() + " duplicate groups among " + videos.size() + " videos, "
+                    + hashedFileCount + " files sampled, "
+                    + updatedFingerprints.size() + " fingerprints updated, in "
+                    + (System.currentTimeMillis() - startTimeMs) + " ms");
+        }
+        if (mCancelled) {
+            return Collections.emptyList();
+        }
+
+        Collections.sort(groups,
+                (group, group2) -> Long.compare(group2.get(0).size, group.get(0).size));
+        final List<List<Video>> result = new ArrayList<>(groups.size());
+        for (List<Candidate> group : groups) {
+            final List<Video> duplicates = new ArrayList<>(group.size());
+            for (Candidate candidate : group) {
+                duplicates.add(candidate.video);
+            }
+            result.add(duplicates);
+        }
+        return result;
+    }
+
+    private static void addToGroup(Map<String, List<Candidate>> groups, String hash,
+                                   Candidate candidate) {
+        List<Candidate> group = groups.get(hash);
+        if (group == null) {
+            group = new ArrayList<>(2);
+            groups.put(hash, group);
+        }
+        group.add(candidate);
+    }
+
+    private Map<String, VideoFingerprint> loadFingerprints() {
+        final Map<String, VideoFingerprint> fingerprints = new HashMap<>();
+        final Cursor cursor = mDao.queryAllVideoFingerprints();
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    final VideoFingerprint fingerprint = mDao.buildVideoFingerprint(cursor);
+                    fingerprints.put(fingerprint.getPath(), fingerprint);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return fingerprints;
+    }
+
+    @NonNull
+    private static String computeSampleHash(File file, long size) throws IOException {
+        final MessageDigest digest = newDigest();
+        try (FileInputStream in = new FileInputStream(file)) {
+            final FileChannel channel = in.getChannel();
+            if (size <= (long) SAMPLE_BLOCK_SIZE * SAMPLE_BLOCK_COUNT) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            } else {
+                final long[] offsets = {
+                        0, (size - SAMPLE_BLOCK_SIZE) / 2, size - SAMPLE_BLOCK_SIZE
+                };
+                for (long offset : offsets) {
+                    digest.update(channel.map(
+                            FileChannel.MapMode.READ_ONLY, offset, SAMPLE_BLOCK_SIZE));
+                }
+            }
+        }
+        return toHexString(digest);
+    }
+
+    /**
+     * Hashes the whole file through a reused buffer rather than memory mapping it, as the mapped
+     * regions of a large file would not be unmapped until they are garbage collected.
+     */
+    @Nullable
+    private String computeFullHash(File file) throws IOException {
+        final MessageDigest digest = newDigest();
+        if (mBuffer == null) {
+            mBuffer = new byte[FULL_HASH_BUFFER_SIZE];
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(mBuffer);
+        try (FileInputStream in = new FileInputStream(file)) {
+            final FileChannel channel = in.getChannel();
+            while (channel.read(buffer) != -1) {
+                if (isCancelled()) return null;
+
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHexString(digest);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 is supported on all Android devices
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHexString(MessageDigest digest) {
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+}
@@ -0,0 +1,513 @@
+/*
+ * Created on 2026-10-19 6:02:37 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.utils;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+import android.view.WindowManager;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.liuzhenlin.simrv.SlidingItemMenuRecyclerView;
+import com.liuzhenlin.slidingdrawerlayout.SlidingDrawerLayout;
+import com.liuzhenlin.swipeback.SwipeBackLayout;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An opt-in monitor of the frame timing of the custom gesture widgets.
+ * <p>
+ * Widgets report the scroll states of their gestures through {@link #reportGestureState}.
+ * Each widget instance is recorded on its own, so that live instances of the same widget type
+ * do not overwrite each other's frames. While any gesture is in progress and the monitor is
+ * {@link #setEnabled enabled}, the time between consecutive {@link Choreographer} frames is
+ * recorded, from which the missed vsyncs and the janky frames are counted. When a gesture ends,
+ * its {@link FrameStats} are delivered to the {@link OnGestureFrameStatsListener}s and merged
+ * into the summary of its widget type and gesture type, which can be retrieved through
+ * {@link #getSummary(int, int)} to be logged or uploaded.
+ * <p>
+ * Frame durations are kept in histograms of 1 ms buckets, so nothing is allocated per frame.
+ *
+ * @author 刘振林
+ */
+@MainThread
+public final class GestureFrameMonitor {
+
+    public static final int WIDGET_SLIDING_DRAWER = 0;
+    public static final int WIDGET_SWIPE_BACK = 1;
+    public static final int WIDGET_SLIDING_ITEM_MENU = 2;
+    public static final int WIDGET_SWIPE_REFRESH = 3;
+    private static final int WIDGET_COUNT = 4;
+
+    @IntDef({
+            WIDGET_SLIDING_DRAWER,
+            WIDGET_SWIPE_BACK,
+            WIDGET_SLIDING_ITEM_MENU,
+            WIDGET_SWIPE_REFRESH
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Widget {
+    }
+
+    /** The content is following the user's finger. */
+    public static final int GESTURE_DRAG = 0;
+    /** The content is animating to its final position after the user's finger is lifted. */
+    public static final int GESTURE_SETTLE = 1;
+    private static final int GESTURE_TYPE_COUNT = 2;
+
+    @IntDef({GESTURE_DRAG, GESTURE_SETTLE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface GestureType {
+    }
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_DRAGGING = 1;
+    public static final int STATE_SETTLING = 2;
+
+    @IntDef({STATE_IDLE, STATE_DRAGGING, STATE_SETTLING})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface GestureState {
+    }
+
+    public interface OnGestureFrameStatsListener {
+        /**
+         * Called each time a gesture being recorded ends.
+         */
+        void onGestureFrameStatsRecorded(@NonNull FrameStats stats);
+    }
+
+    /** Frames longer than this fall into the last bucket of the histograms. */
+    private static final int MAX_FRAME_DURATION_MS = 150;
+    private static final int HISTOGRAM_SIZE = MAX_FRAME_DURATION_MS + 1;
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private static volatile GestureFrameMonitor sMonitor;
+
+    private boolean mEnabled;
+    private long mFrameIntervalNanos = (long) (1_000_000_000L / DEFAULT_REFRESH_RATE);
+
+    // 每个控件实例同一时间至多只有一个手势；以弱引用持有控件，不妨碍其被回收
+    private final Map<Object, Recording> mRecordings = new WeakHashMap<>();
+    private int mActiveRecordingCount;
+    private final Recording[][] mSummaries = new Recording[WIDGET_COUNT][GESTURE_TYPE_COUNT];
+
+    private Object mFrameCallback;
+    private boolean mFrameCallbackPosted;
+
+    private List<OnGestureFrameStatsListener> mListeners;
+
+    private GestureFrameMonitor() {
+    }
+
+    @NonNull
+    public static GestureFrameMonitor getSingleton() {
+        if (sMonitor == null) {
+            synchronized (GestureFrameMonitor.class) {
+                if (sMonitor == null) {
+                    sMonitor = new GestureFrameMonitor();
+                }
+            }
+        }
+        return sMonitor;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Sets whether to record the frame timing of the gestures. This has no effect on platforms
+     * prior to Jelly Bean, where {@link Choreographer} is not available.
+     */
+    public void setEnabled(@NonNull Context context, boolean enabled) {
+        enabled &= Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+        if (mEnabled == enabled) return;
+        mEnabled = enabled;
+        if (enabled) {
+            WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+            Display display = wm == null ? null : wm.getDefaultDisplay();
+            float refreshRate = display == null ? 0 : display.getRefreshRate();
+            if (refreshRate < 10f) {
+                refreshRate = DEFAULT_REFRESH_RATE;
+            }
+            mFrameIntervalNanos = (long) (1_000_000_000L / refreshRate);
+        } else {
+            mRecordings.clear();
+            mActiveRecordingCount = 0;
+        }
+    }
+
+    public void addOnGestureFrameStatsListener(@NonNull OnGestureFrameStatsListener listener) {
+        if (mListeners == null) {
+            mListeners = new ArrayList<>(1);
+        }
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    public void removeOnGestureFrameStatsListener(@NonNull OnGestureFrameStatsListener listener) {
+        if (mListeners != null) {
+            mListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Reports a change in the scroll state of the given widget instance. The gesture of the
+     * previous state of that instance, if any, ends, and a new one of the corresponding type
+     * begins unless the new state is {@link #STATE_IDLE}.
+     *
+     * @param instance the widget whose state changed, which is only weakly referenced
+     * @param widget   the type of the widget, whose summaries the gestures are merged into
+     */
+    public void reportGestureState(
+            @NonNull Object instance, @Widget int widget, @GestureState int state) {
+        if (!mEnabled) return;
+
+        final int gestureType = state == STATE_DRAGGING ? GESTURE_DRAG
+                : state == STATE_SETTLING ? GESTURE_SETTLE : -1;
+        Recording recording = mRecordings.get(instance);
+        if (recording == null) {
+            if (gestureType == -1) return;
+            recording = new Recording(widget);
+            mRecordings.put(instance, recording);
+        }
+        if (recording.gestureType == gestureType) return;
+
+        if (recording.gestureType != -1) {
+            mActiveRecordingCount--;
+            finishRecording(recording);
+        }
+        if (gestureType == -1) {
+            mRecordings.remove(instance);
+        } else {
+            recording.reset();
+            recording.gestureType = gestureType;
+            mActiveRecordingCount++;
+            postFrameCallback();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (mFrameCallbackPosted) return;
+        if (mFrameCallback == null) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    mFrameCallbackPosted = false;
+                    onFrame(frameTimeNanos);
+                }
+            };
+        }
+        mFrameCallbackPosted = true;
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    /*synthetic*/ void onFrame(long frameTimeNanos) {
+        if (mActiveRecordingCount == 0) return;
+
+        // 手势进行中被回收的控件，其记录已随之从表中移除，故重新计数
+        mActiveRecordingCount = 0;
+        for (Recording recording : mRecordings.values()) {
+            if (recording.gestureType != -1) {
+                recording.recordFrame(frameTimeNanos, mFrameIntervalNanos);
+                mActiveRecordingCount++;
+            }
+        }
+        if (mActiveRecordingCount > 0) {
+            postFrameCallback();
+        }
+    }
+
+    private void finishRecording(Recording recording) {
+        if (recording.frameCount == 0) return;
+        recording.gestureCount = 1;
+
+        Recording summary = mSummaries[recording.widget][recording.gestureType];
+        if (summary == null) {
+            summary = mSummaries[recording.widget][recording.gestureType] =
+                    new Recording(recording.widget);
+            summary.gestureType = recording.gestureType;
+        }
+        summary.merge(recording);
+
+        if (mListeners != null && !mListeners.isEmpty()) {
+            FrameStats stats = recording.toFrameStats();
+            for (int i = mListeners.size() - 1; i >= 0; i--) {
+                mListeners.get(i).onGestureFrameStatsRecorded(stats);
+            }
+        }
+    }
+
+    /**
+     * @return the accumulated frame statistics of all the recorded gestures of the given type
+     *         on the given widget, or {@code null} if no such gesture has been recorded
+     */
+    @Nullable
+    public FrameStats getSummary(@Widget int widget, @GestureType int gestureType) {
+        Recording summary = mSummaries[widget][gestureType];
+        return summary == null ? null : summary.toFrameStats();
+    }
+
+    /**
+     * @return the summaries of all the widgets and gesture types that have been recorded
+     */
+    @NonNull
+    public List<FrameStats> getSummaries() {
+        List<FrameStats> summaries = new ArrayList<>();
+        for (int widget = 0; widget < WIDGET_COUNT; widget++) {
+            for (int type = 0; type < GESTURE_TYPE_COUNT; type++) {
+                Recording summary = mSummaries[widget][type];
+                if (summary != null) {
+                    summaries.add(summary.toFrameStats());
+                }
+            }
+        }
+        return summaries;
+    }
+
+    public void clearSummaries() {
+        for (Recording[] summaries : mSummaries) {
+            for (int i = 0; i < summaries.length; i++) {
+                summaries[i] = null;
+            }
+        }
+    }
+
+    private static final class Recording {
+        final int widget;
+        int gestureType = -1;
+
+        final int[] histogram = new int[HISTOGRAM_SIZE];
+        long lastFrameTimeNanos;
+        int gestureCount;
+        int frameCount;
+        int jankyFrameCount;
+        int missedVsyncCount;
+        long totalFrameTimeNanos;
+        long maxFrameTimeNanos;
+
+        Recording(int widget) {
+            this.widget = widget;
+        }
+
+        void reset() {
+            for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+                histogram[i] = 0;
+            }
+            lastFrameTimeNanos = 0;
+            gestureCount = 0;
+            frameCount = 0;
+            jankyFrameCount = 0;
+            missedVsyncCount = 0;
+            totalFrameTimeNanos = 0;
+            maxFrameTimeNanos = 0;
+        }
+
+        void recordFrame(long frameTimeNanos, long frameIntervalNanos) {
+            final long lastFrameTimeNanos = this.lastFrameTimeNanos;
+            this.lastFrameTimeNanos = frameTimeNanos;
+            // 手势开始后的第一帧仅作为计时起点
+            if (lastFrameTimeNanos == 0 || frameTimeNanos <= lastFrameTimeNanos) return;
+
+            final long duration = frameTimeNanos - lastFrameTimeNanos;
+            final int missedVsyncs = (int) ((duration + frameIntervalNanos / 2)
+                    / frameIntervalNanos) - 1;
+            if (missedVsyncs > 0) {
+                jankyFrameCount++;
+                missedVsyncCount += missedVsyncs;
+            }
+            histogram[(int) Math.min(duration / 1_000_000L, MAX_FRAME_DURATION_MS)]++;
+            frameCount++;
+            totalFrameTimeNanos += duration;
+            if (duration > maxFrameTimeNanos) {
+                maxFrameTimeNanos = duration;
+            }
+        }
+
+        void merge(Recording other) {
+            for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+                histogram[i] += other.histogram[i];
+            }
+            gestureCount += other.gestureCount;
+            frameCount += other.frameCount;
+            jankyFrameCount += other.jankyFrameCount;
+            missedVsyncCount += other.missedVsyncCount;
+            totalFrameTimeNanos += other.totalFrameTimeNanos;
+            if (other.maxFrameTimeNanos > maxFrameTimeNanos) {
+                maxFrameTimeNanos = other.maxFrameTimeNanos;
+            }
+        }
+
+        int percentileMs(float percentile) {
+            final int threshold = (int) Math.ceil(frameCount * percentile);
+            int count = 0;
+            for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+                count += histogram[i];
+                if (count >= threshold) {
+                    return i;
+                }
+            }
+            return MAX_FRAME_DURATION_MS;
+        }
+
+        FrameStats toFrameStats() {
+            return new FrameStats(widget, gestureType, gestureCount, frameCount,
+                    jankyFrameCount, missedVsyncCount,
+                    totalFrameTimeNanos / 1_000_000L, maxFrameTimeNanos / 1_000_000L,
+                    percentileMs(0.5f), percentileMs(0.9f),
+                    percentileMs(0.95f), percentileMs(0.99f));
+        }
+    }
+
+    /**
+     * The frame statistics of one or more gestures of a type on a widget.
+     * Frame durations are in milliseconds.
+     */
+    public static final class FrameStats {
+        @Widget public final int widget;
+        @GestureType public final int gestureType;
+        public final int gestureCount;
+        public final int frameCount;
+        /** The number of frames that took longer than one vsync interval */
+        public final int jankyFrameCount;
+        public final int missedVsyncCount;
+        public final long totalDurationMs;
+        public final long maxFrameDurationMs;
+        public final int p50FrameDurationMs;
+        public final int p90FrameDurationMs;
+        public final int p95FrameDurationMs;
+        public final int p99FrameDurationMs;
+
+        /*synthetic*/ FrameStats(int widget, int gestureType, int gestureCount, int frameCount,
+                                 int jankyFrameCount, int missedVsyncCount,
+                                 long totalDurationMs, long maxFrameDurationMs,
+                                 int p50FrameDurationMs, int p90FrameDurationMs,
+                                 int p95FrameDurationMs, int p99FrameDurationMs) {
+            this.widget = widget;
+            this.gestureType = gestureType;
+            this.gestureCount = gestureCount;
+            this.frameCount = frameCount;
+            this.jankyFrameCount = jankyFrameCount;
+            this.missedVsyncCount = missedVsyncCount;
+            this.totalDurationMs = totalDurationMs;
+            this.maxFrameDurationMs = maxFrameDurationMs;
+            this.p50FrameDurationMs = p50FrameDurationMs;
+            this.p90FrameDurationMs = p90FrameDurationMs;
+            this.p95FrameDurationMs = p95FrameDurationMs;
+            this.p99FrameDurationMs = p99FrameDurationMs;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s %s: %d gesture(s), %d frames in %d ms, %d janky, %d vsyncs missed, "
+                            + "p50=%dms p90=%dms p95=%dms p99=%dms max=%dms",
+                    widgetToString(widget), gestureTypeToString(gestureType),
+                    gestureCount, frameCount, totalDurationMs, jankyFrameCount, missedVsyncCount,
+                    p50FrameDurationMs, p90FrameDurationMs, p95FrameDurationMs,
+                    p99FrameDurationMs, maxFrameDurationMs);
+        }
+    }
+
+    @NonNull
+    public static String widgetToString(@Widget int widget) {
+        switch (widget) {
+            case WIDGET_SLIDING_DRAWER:
+                return "SlidingDrawerLayout";
+            case WIDGET_SWIPE_BACK:
+                return "SwipeBackLayout";
+            case WIDGET_SLIDING_ITEM_MENU:
+                return "SlidingItemMenuRecyclerView";
+            case WIDGET_SWIPE_REFRESH:
+                return "SwipeRefreshLayout";
+            default:
+                return String.valueOf(widget);
+        }
+    }
+
+    @NonNull
+    public static String gestureTypeToString(@GestureType int gestureType) {
+        switch (gestureType) {
+            case GESTURE_DRAG:
+                return "drag";
+            case GESTURE_SETTLE:
+                return "settle";
+            default:
+                return String.valueOf(gestureType);
+        }
+    }
+
+    /**
+     * Makes the given drawer layout report its scroll states to this monitor.
+     */
+    public void monitor(@NonNull SlidingDrawerLayout layout) {
+        layout.addOnDrawerScrollListener(new SlidingDrawerLayout.SimpleOnDrawerScrollListener() {
+            @Override
+            public void onScrollStateChange(@NonNull SlidingDrawerLayout parent,
+                                            @NonNull View drawer, int state) {
+                reportGestureState(parent, WIDGET_SLIDING_DRAWER,
+                        state == SlidingDrawerLayout.SCROLL_STATE_TOUCH_SCROLL ? STATE_DRAGGING
+                                : state == SlidingDrawerLayout.SCROLL_STATE_AUTO_SCROLL ? STATE_SETTLING
+                                : STATE_IDLE);
+            }
+        });
+    }
+
+    /**
+     * Makes the given swipe-back layout report its scroll states to this monitor.
+     */
+    public void monitor(@NonNull SwipeBackLayout layout) {
+        layout.addSwipeListener(new SwipeBackLayout.SwipeListener() {
+            @Override
+            public void onScrollStateChange(int edge, int state) {
+                reportGestureState(layout, WIDGET_SWIPE_BACK,
+                        state == SwipeBackLayout.STATE_DRAGGING ? STATE_DRAGGING
+                                : state == SwipeBackLayout.STATE_SETTLING ? STATE_SETTLING
+                                : STATE_IDLE);
+            }
+
+            @Override
+            public void onScrollPercentChange(int edge, float percent) {
+            }
+        });
+    }
+
+    /**
+     * Makes the given recycler view report the scroll states of its item views to this monitor.
+     */
+    public void monitor(@NonNull SlidingItemMenuRecyclerView recyclerView) {
+        recyclerView.addOnItemScrollStateChangeListener(
+                new SlidingItemMenuRecyclerView.OnItemScrollStateChangeListener() {
+                    @Override
+                    public void onItemScrollStateChange(
+                            @NonNull SlidingItemMenuRecyclerView parent, int state) {
+                        reportGestureState(parent, WIDGET_SLIDING_ITEM_MENU,
+                                state == SlidingItemMenuRecyclerView.ITEM_SCROLL_STATE_DRAGGING
+                                        ? STATE_DRAGGING
+                                        : state == SlidingItemMenuRecyclerView.ITEM_SCROLL_STATE_SETTLING
+                                        ? STATE_SETTLING
+                                        : STATE_IDLE);
+                    }
+                });
+    }
+}
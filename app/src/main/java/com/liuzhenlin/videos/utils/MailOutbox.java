@@ -0,0 +1,584 @@
+/*
+ * Created on 2026-10-19 4:26:50 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.utils;
+
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.bumptech.glide.util.Synthetic;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.liuzhenlin.texturevideoview.utils.Singleton;
+import com.liuzhenlin.videos.bean.MailInfo;
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import com.sun.mail.smtp.SMTPSenderFailedException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.mail.AuthenticationFailedException;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+/**
+ * A persistent queue of mails waiting to be sent.
+ * <p>
+ * Every enqueued mail is written to disk first, along with copies of its attachments (picture
+ * ones re-encoded to be smaller), so that it survives a network failure or even the process being
+ * killed, and the attachments being deleted or changed meanwhile.
+ * Pending mails are then drained over a single connected {@link Transport}, instead of each
+ * of them paying a separate TCP, TLS and AUTH handshake as {@link Transport#send(Message)}
+ * would. Mails that could not be delivered are retried with an exponential backoff, and
+ * right away once the network becomes available again. Mails the server rejects permanently
+ * (with a 5xx reply) are discarded at once, and if the server rejects the credentials, pending
+ * mails are no longer retried until the next launch.
+ *
+ * @author 刘振林
+ */
+public final class MailOutbox {
+
+    private static final String TAG = "MailOutbox";
+
+    private static final String OUTBOX_FOLDER = "mail_outbox";
+    private static final String SUFFIX_MAIL = ".json";
+
+    /** A mail failing this many times for reasons other than the network is discarded. */
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final long RETRY_DELAY_MIN = 30 * 1000L; // ms
+    private static final long RETRY_DELAY_MAX = 30 * 60 * 1000L; // ms
+
+    /** The persisted part of a pending mail. Server settings and credentials are never stored. */
+    private static final class PendingMail {
+        String title;
+        String text;
+        String textRelatedImagePath;
+        String[] attachmentPaths;
+        int attempts;
+
+        PendingMail() {
+        }
+    }
+
+    private final File mDirectory;
+    private final MailInfo mServerInfo;
+    private final Gson mGson = new Gson();
+    private final Object mDrainLock = new Object();
+
+    @Nullable private final Context mContext;
+    @Nullable private final Handler mHandler;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    /** The ids of the mails discarded without being delivered */
+    private final Set<String> mDiscardedMailIds =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean mCredentialsRejected;
+    @Synthetic long mRetryDelay = RETRY_DELAY_MIN;
+    private boolean mRetryScheduled;
+    private BroadcastReceiver mConnectivityReceiver;
+
+    private final Runnable mRetryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onRetryDue();
+        }
+    };
+
+    private static final Singleton<Context, MailOutbox> sMailOutboxSingleton =
+            new Singleton<Context, MailOutbox>() {
+                @SuppressLint("SyntheticAccessor")
+                @NonNull
+                @Override
+                protected MailOutbox onCreate(Context... ctxs) {
+                    return new MailOutbox(ctxs[0]);
+                }
+            };
+
+    @NonNull
+    public static MailOutbox getSingleton(@NonNull Context context) {
+        return sMailOutboxSingleton.get(context);
+    }
+
+    private MailOutbox(Context context) {
+        mContext = context.getApplicationContext();
+        mHandler = new Handler(Looper.getMainLooper());
+        mDirectory = new File(mContext.getFilesDir(), OUTBOX_FOLDER);
+        mServerInfo = MailUtil.createServerInfo();
+    }
+
+    /**
+     * Creates an outbox that is not bound to any Android component, e.g. for delivering mails
+     * to a local SMTP stand-in in tests. Such an outbox never retries on its own; call
+     * {@link #drain()} to deliver its pending mails.
+     *
+     * @param directory  the directory to persist pending mails in
+     * @param serverInfo the settings of the server to connect to and the sender and recipient
+     *                   of the mails
+     */
+    @VisibleForTesting
+    public MailOutbox(@NonNull File directory, @NonNull MailInfo serverInfo) {
+        mContext = null;
+        mHandler = null;
+        mDirectory = directory;
+        mServerInfo = serverInfo;
+    }
+
+    /**
+     * Persists a mail to be sent later by {@link #drain()}.
+     *
+     * @return the id of the enqueued mail, or {@code null} if it could not be persisted
+     */
+    @WorkerThread
+    @Nullable
+    public String enqueue(String title, String text,
+                          @Nullable String textRelatedImagePath, @Nullable String... attachmentPaths) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            return null;
+        }
+
+        // Ids are increasing so that mails are delivered in the order they were enqueued
+        final String id;
+        synchronized (this) {
+            long time = System.currentTimeMillis();
+            while (getMailFile(Long.toString(time)).exists()
+                    || getAttachmentsDir(Long.toString(time)).exists()) {
+                time++;
+            }
+            id = Long.toString(time);
+            //noinspection ResultOfMethodCallIgnored
+            getAttachmentsDir(id).mkdirs();
+        }
+
+        final File attachmentsDir = getAttachmentsDir(id);
+        PendingMail mail = new PendingMail();
+        mail.title = title;
+        mail.text = text;
+        if (textRelatedImagePath != null) {
+            mail.textRelatedImagePath =
+                    copyAttachment(attachmentsDir, "text_", textRelatedImagePath);
+            if (mail.textRelatedImagePath == null) {
+                deleteMail(id);
+                return null;
+            }
+        }
+        if (attachmentPaths != null && attachmentPaths.length > 0) {
+            // Copy attachments once, up front, into the outbox itself, so that the copies stay
+            // available until the mail is actually delivered. Pictures are shrunk meanwhile.
+            mail.attachmentPaths = new String[attachmentPaths.length];
+            for (int i = 0; i < attachmentPaths.length; i++) {
+                String path = PictureAttachmentPipeline.compressForUpload(
+                        attachmentsDir, attachmentPaths[i]);
+                if (path.equals(attachmentPaths[i])) {
+                    // Not a picture, or one not worth re-encoding
+                    path = copyAttachment(attachmentsDir, i + "_", attachmentPaths[i]);
+                    if (path == null) {
+                        deleteMail(id);
+                        return null;
+                    }
+                }
+                mail.attachmentPaths[i] = path;
+            }
+        }
+
+        if (!writeMail(id, mail)) {
+            deleteMail(id);
+            return null;
+        }
+        return id;
+    }
+
+    /**
+     * Copies an attachment as it is into the directory of the attachments of a mail.
+     *
+     * @return the path of the copy, or null if the attachment could not be copied, in which case
+     *         the mail is not to be enqueued rather than being sent without it
+     */
+    @Nullable
+    private static String copyAttachment(File attachmentsDir, String prefix, String path) {
+        final File srcFile = new File(path);
+        final File outFile = new File(attachmentsDir, prefix + srcFile.getName());
+        try (InputStream in = new FileInputStream(srcFile);
+             OutputStream out = new FileOutputStream(outFile)) {
+            final byte[] buffer = new byte[8 * 1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return outFile.getPath();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to copy attachment " + path + " into the outbox", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the mail with the given id has not been delivered or discarded yet
+     */
+    public boolean isPending(@NonNull String id) {
+        return getMailFile(id).exists();
+    }
+
+    /**
+     * @return true if the mail with the given id was discarded without being delivered, as the
+     *         server rejected it permanently or it failed to be sent too many times
+     */
+    public boolean isDiscarded(@NonNull String id) {
+        return mDiscardedMailIds.contains(id);
+    }
+
+    /**
+     * @return true if the server rejected the credentials on the last connection, in which case
+     *         the pending mails are no longer retried automatically until the next launch
+     */
+    public boolean areCredentialsRejected() {
+        return mCredentialsRejected;
+    }
+
+    /**
+     * @return whether there is any mail waiting to be sent
+     */
+    public boolean hasPendingMails() {
+        return listPendingMailIds().length > 0;
+    }
+
+    /**
+     * Delivers all pending mails, in the order they were enqueued, over a single connection
+     * to the server. Blocks until done; concurrent calls are serialized.
+     *
+     * @return the number of mails that were delivered
+     */
+    @WorkerThread
+    public int drain() {
+        synchronized (mDrainLock) {
+            final String[] ids = listPendingMailIds();
+            if (ids.length == 0) {
+                return 0;
+            }
+
+            final Session session = MultiMailSender.createSession(mServerInfo);
+            Transport transport = null;
+            int sentCount = 0;
+            try {
+                transport = session.getTransport("smtp");
+                try {
+                    transport.connect(mServerInfo.getMailServerHost(),
+                            Integer.parseInt(mServerInfo.getMailServerPort()),
+                            mServerInfo.getFromAddress(), mServerInfo.getPassword());
+                } catch (MessagingException e) {
+                    if (isPermanentFailure(e)) {
+                        // Retrying with the same credentials would be rejected the same way
+                        Log.e(TAG, "The server rejected the credentials; stop retrying", e);
+                        mCredentialsRejected = true;
+                        return 0;
+                    }
+                    throw e;
+                }
+                mCredentialsRejected = false;
+
+                for (String id : ids) {
+                    final PendingMail mail = readMail(id);
+                    if (mail == null) {
+                        deleteMail(id);
+                        continue;
+                    }
+
+                    final Message message;
+                    try {
+                        message = new MultiMailSender(toMailInfo(mail), session).buildMessage();
+                        transport.sendMessage(message, message.getAllRecipients());
+                        deleteMail(id);
+                        sentCount++;
+                    } catch (MessagingException | UnsupportedEncodingException e) {
+                        if (e instanceof MessagingException
+                                && isPermanentFailure((MessagingException) e)) {
+                            Log.e(TAG, "Discarding mail " + id + " rejected by the server", e);
+                            discardMail(id);
+                        } else if (transport.isConnected()) {
+                            Log.w(TAG, "Failed to send mail " + id, e);
+                            if (++mail.attempts >= MAX_ATTEMPTS || !writeMail(id, mail)) {
+                                Log.e(TAG, "Discarding mail " + id
+                                        + " after " + mail.attempts + " attempts");
+                                discardMail(id);
+                            }
+                        }
+                        if (!transport.isConnected()) {
+                            // The connection is lost; leave the rest for the next retry
+                            throw e;
+                        }
+                    }
+                }
+            } catch (MessagingException | UnsupportedEncodingException | NumberFormatException e) {
+                Log.w(TAG, "Failed to drain the outbox; " + sentCount + " mail(s) were sent", e);
+            } finally {
+                if (transport != null) {
+                    try {
+                        transport.close();
+                    } catch (MessagingException e) {
+                        //
+                    }
+                }
+            }
+            return sentCount;
+        }
+    }
+
+    /**
+     * @return true if the server rejected the credentials, or replied with a permanent (5xx)
+     *         failure, anywhere in the chain of the given exception, so that retrying would fail
+     *         the same way
+     */
+    @VisibleForTesting
+    /*package*/ static boolean isPermanentFailure(MessagingException e) {
+        for (Exception ex = e; ex != null; ) {
+            if (ex instanceof AuthenticationFailedException) {
+                return true;
+            }
+            int returnCode = -1;
+            if (ex instanceof SMTPSendFailedException) {
+                returnCode = ((SMTPSendFailedException) ex).getReturnCode();
+            } else if (ex instanceof SMTPAddressFailedException) {
+                returnCode = ((SMTPAddressFailedException) ex).getReturnCode();
+            } else if (ex instanceof SMTPSenderFailedException) {
+                returnCode = ((SMTPSenderFailedException) ex).getReturnCode();
+            }
+            if (returnCode >= 500 && returnCode < 600) {
+                return true;
+            }
+            ex = ex instanceof MessagingException
+                    ? ((MessagingException) ex).getNextException() : null;
+        }
+        return false;
+    }
+
+    /**
+     * Drains the outbox in the background, and schedules a retry if any mail is left undelivered.
+     */
+    public void drainAsync() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+                if (mHandler != null) {
+                    final boolean hasPendingMails = hasPendingMails();
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onDrained(hasPendingMails);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules the next attempt to deliver the pending mails after the current backoff delay,
+     * which doubles after each failed attempt, and watches the network connectivity so that
+     * the attempt is made immediately once the device gets connected.
+     */
+    public void scheduleRetry() {
+        if (mHandler == null) return;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                onDrained(true);
+            }
+        });
+    }
+
+    @Synthetic void onDrained(boolean hasPendingMails) {
+        if (!hasPendingMails || mCredentialsRejected) {
+            mRetryDelay = RETRY_DELAY_MIN;
+            cancelRetry();
+            unregisterConnectivityReceiver();
+            return;
+        }
+
+        //noinspection ConstantConditions
+        if (!mRetryScheduled) {
+            mRetryScheduled = true;
+            mHandler.postDelayed(mRetryRunnable, mRetryDelay);
+            mRetryDelay = Math.min(mRetryDelay * 2, RETRY_DELAY_MAX);
+        }
+        registerConnectivityReceiver();
+    }
+
+    @Synthetic void onRetryDue() {
+        mRetryScheduled = false;
+        //noinspection ConstantConditions
+        if (NetworkUtil.isNetworkConnected(mContext)) {
+            drainAsync();
+        } else {
+            // Wait for the connectivity receiver, but keep a fallback retry in place
+            onDrained(true);
+        }
+    }
+
+    @Synthetic void cancelRetry() {
+        if (mRetryScheduled) {
+            mRetryScheduled = false;
+            //noinspection ConstantConditions
+            mHandler.removeCallbacks(mRetryRunnable);
+        }
+    }
+
+    private void registerConnectivityReceiver() {
+        if (mConnectivityReceiver != null) return;
+        mConnectivityReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (NetworkUtil.isNetworkConnected(context)) {
+                    mRetryDelay = RETRY_DELAY_MIN;
+                    cancelRetry();
+                    drainAsync();
+                }
+            }
+        };
+        //noinspection deprecation,ConstantConditions
+        mContext.registerReceiver(mConnectivityReceiver,
+                new IntentFilter(android.net.ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    private void unregisterConnectivityReceiver() {
+        if (mConnectivityReceiver != null) {
+            //noinspection ConstantConditions
+            mContext.unregisterReceiver(mConnectivityReceiver);
+            mConnectivityReceiver = null;
+        }
+    }
+
+    private MailInfo toMailInfo(PendingMail mail) {
+        MailInfo mailInfo = new MailInfo(
+                mServerInfo.getMailServerHost(), mServerInfo.getMailServerPort(),
+                mServerInfo.isValidate(), mServerInfo.getUserName(), mServerInfo.getPassword(),
+                mServerInfo.getFromAddress(), mServerInfo.getToAddress(),
+                mail.title, mail.text, mail.textRelatedImagePath, mail.attachmentPaths);
+        mailInfo.setSslEnabled(mServerInfo.isSslEnabled());
+        return mailInfo;
+    }
+
+    private String[] listPendingMailIds() {
+        String[] names = mDirectory.list();
+        if (names == null) {
+            return new String[0];
+        }
+        int count = 0;
+        for (String name : names) {
+            if (name.endsWith(SUFFIX_MAIL)) {
+                names[count++] = name.substring(0, name.length() - SUFFIX_MAIL.length());
+            }
+        }
+        final String[] ids = Arrays.copyOf(names, count);
+        // Same length ids compare numerically when compared lexicographically
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private File getMailFile(String id) {
+        return new File(mDirectory, id + SUFFIX_MAIL);
+    }
+
+    private File getAttachmentsDir(String id) {
+        return new File(mDirectory, id);
+    }
+
+    @Nullable
+    private PendingMail readMail(String id) {
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(getMailFile(id)), "utf-8");
+            return mGson.fromJson(reader, PendingMail.class);
+        } catch (IOException | JsonParseException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    //
+                }
+            }
+        }
+    }
+
+    private boolean writeMail(String id, PendingMail mail) {
+        final File file = getMailFile(id);
+        final File tmpFile = new File(mDirectory, id + SUFFIX_MAIL + ".tmp");
+        Writer writer = null;
+        boolean written = false;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "utf-8");
+            mGson.toJson(mail, writer);
+            writer.flush();
+            written = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    written = false;
+                }
+            }
+        }
+        if (!written || !tmpFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return false;
+        }
+        return true;
+    }
+
+    private void discardMail(String id) {
+        mDiscardedMailIds.add(id);
+        deleteMail(id);
+    }
+
+    private void deleteMail(String id) {
+        //noinspection ResultOfMethodCallIgnored
+        getMailFile(id).delete();
+        final File attachmentsDir = getAttachmentsDir(id);
+        final File[] attachments = attachmentsDir.listFiles();
+        if (attachments != null) {
+            for (File attachment : attachments) {
+                //noinspection ResultOfMethodCallIgnored
+                attachment.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        attachmentsDir.delete();
+    }
+}
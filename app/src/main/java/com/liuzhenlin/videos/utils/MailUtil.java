@@ -36,23 +36,47 @@ public class MailUtil {
     private MailUtil() {
     }
 
+    /**
+     * @return the settings of the mail server and the sender and recipient of feedback mails,
+     *         without any mail content
+     */
+    @NonNull
+    public static MailInfo createServerInfo() {
+        return new MailInfo(HOST, PORT, true, USER_NAME, FROM_PSW,
+                FROM_ADDR, TO_ADDR, null, null, null, null);
+    }
+
+    /**
+     * Puts the mail into the {@link MailOutbox} and tries to deliver it immediately. If that fails,
+     * the mail stays in the outbox and will be resent automatically later, unless the server
+     * rejected it or the credentials permanently, in which case the failure is toasted instead.
+     */
     public static void sendMail(@NonNull Context context, String title, String text,
                                 @Nullable String textRelatedImagePath, @Nullable String... attachmentPaths) {
-        MailInfo mailInfo = new MailInfo(HOST, PORT, true, USER_NAME, FROM_PSW,
-                FROM_ADDR, TO_ADDR, title, text, textRelatedImagePath, attachmentPaths);
+        MailInfo mailInfo = createServerInfo();
+        mailInfo.setTitle(title);
+        mailInfo.setText(text);
+        mailInfo.setTextRelatedImagePath(textRelatedImagePath);
+        mailInfo.setAttachmentPaths(attachmentPaths);
         new SendMailAsyncTask(context)
                 .executeOnExecutor(ParallelThreadExecutor.getSingleton(), mailInfo);
     }
 
-    private static final class SendMailAsyncTask extends AsyncTask<MailInfo, Void, Boolean>
+    private static final class SendMailAsyncTask extends AsyncTask<MailInfo, Void, Integer>
             implements Dialog.OnCancelListener {
+        static final int RESULT_SENT = 1;
+        static final int RESULT_PENDING = 2;
+        static final int RESULT_FAILED = 3;
+
         ProgressDialog mProgressDialog;
         @SuppressLint("StaticFieldLeak")
         final Context mContext;
+        final MailOutbox mOutbox;
 
         SendMailAsyncTask(Context context) {
             mProgressDialog = new ProgressDialog(context);
             mContext = context.getApplicationContext();
+            mOutbox = MailOutbox.getSingleton(mContext);
         }
 
         @Override
@@ -66,33 +90,44 @@ public class MailUtil {
         }
 
         @Override
-        protected Boolean doInBackground(MailInfo... mailInfos) {
+        protected Integer doInBackground(MailInfo... mailInfos) {
             MailInfo mailInfo = mailInfos[0];
-            MultiMailSender mms = new MultiMailSender(mailInfo);
-
-            final String imagePath = mailInfo.getTextRelatedImagePath();
-            final String[] attachmentPaths = mailInfo.getAttachmentPaths();
-
-            if (imagePath == null && (attachmentPaths == null || attachmentPaths.length == 0))
-                return mms.sendTextMail(); // 发送纯文本邮件(使用JavaMail)
 
-            else if (imagePath != null && (attachmentPaths == null || attachmentPaths.length == 0))
-                return mms.sendImageRelatedMail(); // 发送正文带图片引用的邮件
-
-            else if (imagePath == null)
-                return mms.sendAttachmentMail(); // 发送带附件的邮件
+            // 先将邮件持久化到发件箱中，即使发送过程中网络中断，或进程被杀，邮件也不会丢失
+            final String id = mOutbox.enqueue(mailInfo.getTitle(), mailInfo.getText(),
+                    mailInfo.getTextRelatedImagePath(), mailInfo.getAttachmentPaths());
+            if (id == null) {
+                return RESULT_FAILED;
+            }
 
-            else // 发送正文带图片引用且包含附件的邮件
-                return mms.sendImageRelatedAndAttachmentMixedMail();
+            // 通过同一连接发送此邮件及之前发送失败的邮件
+            mOutbox.drain();
+            if (mOutbox.isPending(id)) {
+                // 服务器拒绝了登录凭据时重试也无济于事，直接报告失败
+                return mOutbox.areCredentialsRejected() ? RESULT_FAILED : RESULT_PENDING;
+            }
+            return mOutbox.isDiscarded(id) ? RESULT_FAILED : RESULT_SENT;
         }
 
         @Override
-        protected void onPostExecute(Boolean successful) {
+        protected void onPostExecute(Integer result) {
             if (mProgressDialog != null) {
                 mProgressDialog.dismiss();
             }
-            Toast.makeText(mContext, successful ? R.string.sendSuccessful
-                    : R.string.sendFailed, Toast.LENGTH_SHORT).show();
+            final int resId;
+            switch (result) {
+                case RESULT_SENT:
+                    resId = R.string.sendSuccessful;
+                    break;
+                case RESULT_PENDING:
+                    resId = R.string.sendFailedWillRetryLater;
+                    mOutbox.scheduleRetry();
+                    break;
+                default:
+                    resId = R.string.sendFailed;
+                    break;
+            }
+            Toast.makeText(mContext, resId, Toast.LENGTH_SHORT).show();
         }
 
         @Override
@@ -50,16 +50,15 @@ public class MultiMailSender {
      * @param mailInfo 待发送的邮件信息
      */
     public MultiMailSender(@NonNull final MailInfo mailInfo) {
-        mMailInfo = mailInfo;
-        // 根据邮件会话属性和密码验证器构造一个发送邮件的session
-        Session session = Session.getDefaultInstance(mailInfo.getProperties(), new Authenticator() {
-            public PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(mailInfo.getFromAddress(), mailInfo.getPassword());
-            }
-        });
-        // 开启Session的debug模式，这样就可以查看到程序发送email的运行状态
-        session.setDebug(DEBUG_MAIL);
+        this(mailInfo, createSession(mailInfo));
+    }
 
+    /**
+     * @param mailInfo 待发送的邮件信息
+     * @param session  用于构造邮件的session，可由多封邮件共享
+     */
+    public MultiMailSender(@NonNull MailInfo mailInfo, @NonNull Session session) {
+        mMailInfo = mailInfo;
         mMessage = new MimeMessage(session);
         try {
             // 创建邮件发送者地址
@@ -76,16 +75,47 @@ public class MultiMailSender {
         }
     }
 
+    /**
+     * 根据邮件会话属性和密码验证器构造一个发送邮件的session
+     */
+    @NonNull
+    public static Session createSession(@NonNull final MailInfo mailInfo) {
+        Session session = Session.getInstance(mailInfo.getProperties(), new Authenticator() {
+            public PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(mailInfo.getFromAddress(), mailInfo.getPassword());
+            }
+        });
+        // 开启Session的debug模式，这样就可以查看到程序发送email的运行状态
+        session.setDebug(DEBUG_MAIL);
+        return session;
+    }
+
+    /**
+     * 根据邮件信息中是否含有正文图片与附件，构造相应类型的邮件，但不发送。
+     * 附件均以{@link FileDataSource}引用，在写出邮件时才从文件中流式读取，不会整体读入内存。
+     */
+    @NonNull
+    public Message buildMessage() throws MessagingException, UnsupportedEncodingException {
+        final String imagePath = mMailInfo.getTextRelatedImagePath();
+        final String[] attachmentPaths = mMailInfo.getAttachmentPaths();
+        final boolean hasAttachments = attachmentPaths != null && attachmentPaths.length > 0;
+        if (imagePath == null && !hasAttachments)
+            buildTextMail();
+        else if (imagePath != null && !hasAttachments)
+            buildImageRelatedMail();
+        else if (imagePath == null)
+            buildAttachmentMail();
+        else
+            buildImageRelatedAndAttachmentMixedMail();
+        return mMessage;
+    }
+
     /**
      * 发送纯文本邮件
      */
     public boolean sendTextMail() {
         try {
-            // 设置邮件标题
-            mMessage.setSubject(mMailInfo.getTitle());
-            // 设置邮件内容
-            mMessage.setText(mMailInfo.getText());
-
+            buildTextMail();
             Transport.send(mMessage);
             return true;
         } catch (MessagingException e) {
@@ -95,30 +125,19 @@ public class MultiMailSender {
         return false;
     }
 
+    private void buildTextMail() throws MessagingException {
+        // 设置邮件标题
+        mMessage.setSubject(mMailInfo.getTitle());
+        // 设置邮件内容
+        mMessage.setText(mMailInfo.getText());
+    }
+
     /**
      * 发送正文带图片引用的邮件
      */
     public boolean sendImageRelatedMail() {
         try {
-            // 设置邮件标题
-            mMessage.setSubject(mMailInfo.getTitle());
-            // 设置邮件正文，为了避免邮件正文中文乱码问题，指定字符集为UTF-8
-            MimeBodyPart text = new MimeBodyPart();
-            text.setContent(mMailInfo.getText(), "text/html;charset=" + CHARSET);
-
-            // 设置邮件的图片
-            MimeBodyPart image = new MimeBodyPart();
-            DataHandler dh = new DataHandler(new FileDataSource(mMailInfo.getTextRelatedImagePath()));
-            image.setDataHandler(dh);
-            image.setContentID(MimeUtility.encodeText(dh.getName(), CHARSET, ENCODING));
-
-            // 描述数据关系
-            MimeMultipart mm = new MimeMultipart();
-            mm.addBodyPart(text);
-            mm.addBodyPart(image);
-            mm.setSubType("related");
-            mMessage.setContent(mm);
-
+            buildImageRelatedMail();
             Transport.send(mMessage);
             return true;
         } catch (MessagingException | UnsupportedEncodingException e) {
@@ -128,35 +147,33 @@ public class MultiMailSender {
         return false;
     }
 
+    private void buildImageRelatedMail() throws MessagingException, UnsupportedEncodingException {
+        // 设置邮件标题
+        mMessage.setSubject(mMailInfo.getTitle());
+        // 设置邮件正文，为了避免邮件正文中文乱码问题，指定字符集为UTF-8
+        MimeBodyPart text = new MimeBodyPart();
+        text.setContent(mMailInfo.getText(), "text/html;charset=" + CHARSET);
+
+        // 设置邮件的图片
+        MimeBodyPart image = new MimeBodyPart();
+        DataHandler dh = new DataHandler(new FileDataSource(mMailInfo.getTextRelatedImagePath()));
+        image.setDataHandler(dh);
+        image.setContentID(MimeUtility.encodeText(dh.getName(), CHARSET, ENCODING));
+
+        // 描述数据关系
+        MimeMultipart mm = new MimeMultipart();
+        mm.addBodyPart(text);
+        mm.addBodyPart(image);
+        mm.setSubType("related");
+        mMessage.setContent(mm);
+    }
+
     /**
      * 发送包含附件的邮件
      */
     public boolean sendAttachmentMail() {
         try {
-            // 标题
-            mMessage.setSubject(mMailInfo.getTitle());
-            // 正文
-            MimeBodyPart text = new MimeBodyPart();
-            text.setContent(mMailInfo.getText(), "text/html;charset=" + CHARSET);
-
-            final String[] paths = mMailInfo.getAttachmentPaths();
-            MimeBodyPart[] attaches = new MimeBodyPart[paths.length];
-            for (int i = 0; i < attaches.length; i++) {
-                // 邮件附件
-                attaches[i] = new MimeBodyPart();
-                DataHandler dh = new DataHandler(new FileDataSource(paths[i]));
-                attaches[i].setDataHandler(dh);
-                attaches[i].setFileName(MimeUtility.encodeText(dh.getName(), CHARSET, ENCODING));
-            }
-
-            // 创建容器描述数据关系
-            MimeMultipart content = new MimeMultipart();
-            content.addBodyPart(text);
-            for (MimeBodyPart attach : attaches)
-                content.addBodyPart(attach);
-            content.setSubType("mixed");
-            mMessage.setContent(content);
-
+            buildAttachmentMail();
             Transport.send(mMessage);
             return true;
         } catch (MessagingException | UnsupportedEncodingException e) {
@@ -166,51 +183,38 @@ public class MultiMailSender {
         return false;
     }
 
+    private void buildAttachmentMail() throws MessagingException, UnsupportedEncodingException {
+        // 标题
+        mMessage.setSubject(mMailInfo.getTitle());
+        // 正文
+        MimeBodyPart text = new MimeBodyPart();
+        text.setContent(mMailInfo.getText(), "text/html;charset=" + CHARSET);
+
+        final String[] paths = mMailInfo.getAttachmentPaths();
+        MimeBodyPart[] attaches = new MimeBodyPart[paths.length];
+        for (int i = 0; i < attaches.length; i++) {
+            // 邮件附件
+            attaches[i] = new MimeBodyPart();
+            DataHandler dh = new DataHandler(new FileDataSource(paths[i]));
+            attaches[i].setDataHandler(dh);
+            attaches[i].setFileName(MimeUtility.encodeText(dh.getName(), CHARSET, ENCODING));
+        }
+
+        // 创建容器描述数据关系
+        MimeMultipart content = new MimeMultipart();
+        content.addBodyPart(text);
+        for (MimeBodyPart attach : attaches)
+            content.addBodyPart(attach);
+        content.setSubType("mixed");
+        mMessage.setContent(content);
+    }
+
     /**
      * 发送正文带图片引用且包含附件的邮件
      */
     public boolean sendImageRelatedAndAttachmentMixedMail() {
         try {
-            // 标题
-            mMessage.setSubject(mMailInfo.getTitle());
-            // 正文
-            MimeBodyPart text = new MimeBodyPart();
-            text.setContent(mMailInfo.getText(), "text/html;charset=" + CHARSET);
-
-            // 图片
-            MimeBodyPart image = new MimeBodyPart();
-            DataHandler dh = new DataHandler(new FileDataSource(mMailInfo.getTextRelatedImagePath()));
-            image.setDataHandler(dh);
-            image.setContentID(MimeUtility.encodeText(dh.getName(), CHARSET, ENCODING));
-
-            // 附件
-            final String[] attachPaths = mMailInfo.getAttachmentPaths();
-            MimeBodyPart[] attaches = new MimeBodyPart[attachPaths.length];
-            for (int i = 0; i < attaches.length; i++) {
-                // 创建邮件附件
-                attaches[i] = new MimeBodyPart();
-                DataHandler dh2 = new DataHandler(new FileDataSource(attachPaths[i]));
-                attaches[i].setDataHandler(dh2);
-                attaches[i].setFileName(MimeUtility.encodeText(dh2.getName(), CHARSET, ENCODING));
-            }
-
-            // 描述关系：正文和图片
-            MimeMultipart mm_text_image = new MimeMultipart();
-            mm_text_image.addBodyPart(text);
-            mm_text_image.addBodyPart(image);
-            mm_text_image.setSubType("related");
-
-            MimeBodyPart mp_text_image = new MimeBodyPart();
-            mp_text_image.setContent(mm_text_image);
-
-            // 描述关系：正文、图片和附件
-            MimeMultipart content = new MimeMultipart();
-            content.addBodyPart(mp_text_image);
-            for (MimeBodyPart attach : attaches)
-                content.addBodyPart(attach);
-            content.setSubType("mixed");
-            mMessage.setContent(content);
-
+            buildImageRelatedAndAttachmentMixedMail();
             Transport.send(mMessage);
             return true;
         } catch (MessagingException | UnsupportedEncodingException e) {
@@ -219,4 +223,47 @@ public class MultiMailSender {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    private void buildImageRelatedAndAttachmentMixedMail()
+            throws MessagingException, UnsupportedEncodingException {
+        // 标题
+        mMessage.setSubject(mMailInfo.getTitle());
+        // 正文
+        MimeBodyPart text = new MimeBodyPart();
+        text.setContent(mMailInfo.getText(), "text/html;charset=" + CHARSET);
+
+        // 图片
+        MimeBodyPart image = new MimeBodyPart();
+        DataHandler dh = new DataHandler(new FileDataSource(mMailInfo.getTextRelatedImagePath()));
+        image.setDataHandler(dh);
+        image.setContentID(MimeUtility.encodeText(dh.getName(), CHARSET, ENCODING));
+
+        // 附件
+        final String[] attachPaths = mMailInfo.getAttachmentPaths();
+        MimeBodyPart[] attaches = new MimeBodyPart[attachPaths.length];
+        for (int i = 0; i < attaches.length; i++) {
+            // 创建邮件附件
+            attaches[i] = new MimeBodyPart();
+            DataHandler dh2 = new DataHandler(new FileDataSource(attachPaths[i]));
+            attaches[i].setDataHandler(dh2);
+            attaches[i].setFileName(MimeUtility.encodeText(dh2.getName(), CHARSET, ENCODING));
+        }
+
+        // 描述关系：正文和图片
+        MimeMultipart mm_text_image = new MimeMultipart();
+        mm_text_image.addBodyPart(text);
+        mm_text_image.addBodyPart(image);
+        mm_text_image.setSubType("related");
+
+        MimeBodyPart mp_text_image = new MimeBodyPart();
+        mp_text_image.setContent(mm_text_image);
+
+        // 描述关系：正文、图片和附件
+        MimeMultipart content = new MimeMultipart();
+        content.addBodyPart(mp_text_image);
+        for (MimeBodyPart attach : attaches)
+            content.addBodyPart(attach);
+        content.setSubType("mixed");
+        mMessage.setContent(content);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Created on 2026-10-19 2:05:33 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.utils;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.liuzhenlin.texturevideoview.utils.FileUtils;
+import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prepares user-chosen pictures to be attached to a mail: decodes small thumbnails of them
+ * in the background for display, and re-encodes them to a bounded resolution and quality
+ * right before they are sent.
+ * <p>
+ * The decoded thumbnails are owned by this pipeline and shared by every view displaying them,
+ * so callers must not recycle them but call {@link #releaseThumbnail(String)} or
+ * {@link #release()} instead.
+ *
+ * @author 刘振林
+ */
+@MainThread
+public final class PictureAttachmentPipeline {
+
+    public interface OnThumbnailLoadedListener {
+        /**
+         * @param thumbnail the decoded thumbnail, or {@code null} if the picture could not be decoded
+         */
+        void onThumbnailLoaded(@NonNull String path, @Nullable Bitmap thumbnail);
+    }
+
+    /** The max length of either side of a picture that is to be uploaded, in pixels */
+    public static final int MAX_UPLOAD_PICTURE_SIZE = 1920;
+    /** The JPEG quality used to re-encode pictures that are to be uploaded */
+    public static final int UPLOAD_PICTURE_QUALITY = 85;
+
+    private final int mThumbnailWidth;
+    private final int mThumbnailHeight;
+
+    private final Map<String, Bitmap> mThumbnails = new HashMap<>();
+    private final Map<String, LoadThumbnailTask> mPendingTasks = new HashMap<>();
+
+    public PictureAttachmentPipeline(int thumbnailWidth, int thumbnailHeight) {
+        mThumbnailWidth = thumbnailWidth;
+        mThumbnailHeight = thumbnailHeight;
+    }
+
+    /**
+     * @return the already decoded thumbnail of the picture at the given path, or {@code null}
+     *         if it has not been loaded yet
+     */
+    @Nullable
+    public Bitmap getThumbnail(@NonNull String path) {
+        return mThumbnails.get(path);
+    }
+
+    /**
+     * Asynchronously decodes the thumbnail of the picture at the given path, or delivers
+     * the cached one immediately if it was decoded before.
+     */
+    public void loadThumbnail(@NonNull String path, @NonNull OnThumbnailLoadedListener listener) {
+        Bitmap thumbnail = mThumbnails.get(path);
+        if (thumbnail != null) {
+            listener.onThumbnailLoaded(path, thumbnail);
+            return;
+        }
+
+        LoadThumbnailTask task = mPendingTasks.get(path);
+        if (task != null) {
+            task.mListener = listener;
+            return;
+        }
+        task = new LoadThumbnailTask(path, listener);
+        mPendingTasks.put(path, task);
+        task.executeOnExecutor(ParallelThreadExecutor.getSingleton());
+    }
+
+    /**
+     * Stops loading the thumbnail of the picture at the given path, if it is being loaded,
+     * or recycles it if it has been loaded.
+     */
+    public void releaseThumbnail(@NonNull String path) {
+        LoadThumbnailTask task = mPendingTasks.remove(path);
+        if (task != null) {
+            task.cancel(false);
+        }
+        Bitmap thumbnail = mThumbnails.remove(path);
+        if (thumbnail != null) {
+            thumbnail.recycle();
+        }
+    }
+
+    /**
+     * Cancels all pending loads and recycles all the loaded thumbnails.
+     */
+    public void release() {
+        for (LoadThumbnailTask task : mPendingTasks.values()) {
+            task.cancel(false);
+        }
+        mPendingTasks.clear();
+        for (Bitmap thumbnail : mThumbnails.values()) {
+            thumbnail.recycle();
+        }
+        mThumbnails.clear();
+    }
+
+    @SuppressLint("StaticFieldLeak")
+    private final class LoadThumbnailTask extends AsyncTask<Void, Void, Bitmap> {
+        final String mPath;
+        OnThumbnailLoadedListener mListener;
+
+        LoadThumbnailTask(String path, OnThumbnailLoadedListener listener) {
+            mPath = path;
+            mListener = listener;
+        }
+
+        @Override
+        protected Bitmap doInBackground(Void... voids) {
+            return BitmapUtils2.decodeSampledRotatedBitmapFromFile(
+                    mPath, mThumbnailWidth, mThumbnailHeight, false);
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap thumbnail) {
+            mPendingTasks.remove(mPath);
+            if (thumbnail != null) {
+                mThumbnails.put(mPath, thumbnail);
+            }
+            mListener.onThumbnailLoaded(mPath, thumbnail);
+        }
+
+        @Override
+        protected void onCancelled(Bitmap thumbnail) {
+            if (thumbnail != null) {
+                thumbnail.recycle();
+            }
+        }
+    }
+
+    /**
+     * Re-encodes the picture at the given path as a JPEG no larger than
+     * {@link #MAX_UPLOAD_PICTURE_SIZE} on either side, with {@link #UPLOAD_PICTURE_QUALITY}.
+     *
+     * @param outDir the directory to write the re-encoded picture to
+     * @return the path of the re-encoded picture, or the given path itself if the file is not
+     *         a decodable picture or re-encoding it would not make it any smaller
+     */
+    @WorkerThread
+    @NonNull
+    public static String compressForUpload(@NonNull File outDir, @NonNull String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return path;
+        }
+
+        Bitmap bitmap = BitmapUtils2.decodeSampledRotatedBitmapFromFile(
+                path, MAX_UPLOAD_PICTURE_SIZE, MAX_UPLOAD_PICTURE_SIZE, true);
+        if (bitmap == null) {
+            return path;
+        }
+
+        if (!outDir.exists() && !outDir.mkdirs()) {
+            bitmap.recycle();
+            return path;
+        }
+        final File srcFile = new File(path);
+        // Pictures of the same title in different folders must not overwrite each other
+        final File outFile = new File(outDir,
+                FileUtils.getFileTitleFromFileName(srcFile.getName())
+                        + "_" + Integer.toHexString(path.hashCode()) + ".jpg");
+        OutputStream out = null;
+        boolean compressed = false;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(outFile));
+            compressed = bitmap.compress(Bitmap.CompressFormat.JPEG, UPLOAD_PICTURE_QUALITY, out);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    compressed = false;
+                }
+            }
+            bitmap.recycle();
+        }
+
+        if (!compressed || outFile.length() >= srcFile.length()) {
+            //noinspection ResultOfMethodCallIgnored
+            outFile.delete();
+            return path;
+        }
+        return outFile.getPath();
+    }
+}
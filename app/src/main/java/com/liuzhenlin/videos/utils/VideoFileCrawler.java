@@ -0,0 +1,605 @@
+/*
+ * Created on 2026-10-20 1:06:28 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.liuzhenlin.texturevideoview.InternalConsts;
+import com.liuzhenlin.texturevideoview.utils.FileUtils;
+import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor;
+import com.liuzhenlin.videos.BuildConfig;
+import com.liuzhenlin.videos.dao.IVideoDao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks the given root directories for video files that MediaStore has not indexed, such as
+ * those in folders with a {@code .nomedia} file, fresh downloads not yet scanned, or files in
+ * containers the media scanner does not recognize, and registers them to MediaStore in batches.
+ * <p>
+ * Directories are listed by a bounded number of threads in parallel. The modification time and
+ * the subdirectories of each directory are stored after a crawl, so that a directory that has
+ * not changed since is not listed again, as no file can have been added to it; its stored
+ * subdirectories are still visited. A file is taken as a video if it has a video extension, or
+ * no extension at all, and its leading bytes are those of a video container.
+ *
+ * @author 刘振林
+ */
+@MainThread
+public final class VideoFileCrawler {
+
+    private static final String TAG = "VideoFileCrawler";
+
+    public interface Listener {
+        /** Called periodically while crawling. */
+        void onCrawlProgress(@NonNull Stats stats);
+
+        /** Called when the crawl has finished or been cancelled, after all files found are registered. */
+        void onCrawlFinished(@NonNull Stats stats, boolean cancelled);
+    }
+
+    /** A snapshot of the progress of a crawl. */
+    public static final class Stats {
+        public final int directoriesListed;
+        /** The number of directories not listed because they had not changed */
+        public final int directoriesSkipped;
+        public final int filesExamined;
+        public final int videosFound;
+        public final long elapsedMs;
+
+        /*package*/ Stats(int directoriesListed, int directoriesSkipped, int filesExamined,
+                          int videosFound, long elapsedMs) {
+            this.directoriesListed = directoriesListed;
+            this.directoriesSkipped = directoriesSkipped;
+            this.filesExamined = filesExamined;
+            this.videosFound = videosFound;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public float getFilesPerSecond() {
+            return elapsedMs > 0 ? filesExamined * 1000f / elapsedMs : 0;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "directoriesListed=" + directoriesListed +
+                    ", directoriesSkipped=" + directoriesSkipped +
+                    ", filesExamined=" + filesExamined +
+                    ", videosFound=" + videosFound +
+                    ", elapsedMs=" + elapsedMs +
+                    ", filesPerSecond=" + getFilesPerSecond() +
+                    '}';
+        }
+    }
+
+    private static final int MAX_PARALLELISM = 4;
+    private static final int REGISTRATION_BATCH_SIZE = 50;
+    private static final int PROGRESS_INTERVAL_MS = 500;
+
+    /** Files without an extension smaller than this are not sniffed. */
+    private static final long MIN_SNIFFED_FILE_SIZE = 1024 * 1024;
+    private static final int SNIFF_LENGTH = 200;
+
+    private static final String DIRECTORY_CACHE_FILE = "crawled_directories";
+    private static final int DIRECTORY_CACHE_VERSION = 1;
+
+    private static final Set<String> VIDEO_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "mp4", "m4v", "mov", "3gp", "3g2", "mkv", "webm", "avi", "flv", "f4v", "ts", "m2ts",
+            "mts", "mpg", "mpeg", "vob", "wmv", "asf", "rm", "rmvb", "ogv", "divx"));
+
+    private static final String[] NON_VIDEO_FTYP_BRANDS = {
+            "M4A ", "M4B ", "M4P ", "heic", "heix", "mif1", "msf1", "avif", "crx ",
+    };
+
+    private static final String[] EMPTY_STRING_ARRAY = {};
+
+    private final Context mContext;
+    private final List<File> mRoots;
+    private final Listener mListener;
+
+    private ThreadPoolExecutor mExecutor;
+    private long mStartTime;
+
+    private volatile boolean mCancelled;
+    private final AtomicBoolean mFinished = new AtomicBoolean();
+    private final AtomicInteger mPendingDirectories = new AtomicInteger();
+
+    private final AtomicInteger mDirectoriesListed = new AtomicInteger();
+    private final AtomicInteger mDirectoriesSkipped = new AtomicInteger();
+    private final AtomicInteger mFilesExamined = new AtomicInteger();
+    private final AtomicInteger mVideosFound = new AtomicInteger();
+
+    private Map<String, DirectoryRecord> mStoredDirectories;
+    private final Map<String, DirectoryRecord> mCrawledDirectories = new ConcurrentHashMap<>();
+    /** The canonical paths of the directories crawled, by which links back to them are detected */
+    private final Set<String> mCrawledCanonicalPaths =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+    /** The directories that have videos failed to register, whose records are not to be saved */
+    private final Set<String> mUnregisteredDirectories =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private Set<String> mIndexedPaths;
+
+    private final List<File> mBatchFiles = new ArrayList<>(REGISTRATION_BATCH_SIZE);
+    private final List<String> mBatchMimeTypes = new ArrayList<>(REGISTRATION_BATCH_SIZE);
+
+    private final Runnable mProgressReporter = new Runnable() {
+        @Override
+        public void run() {
+            if (isRunning()) {
+                mListener.onCrawlProgress(snapshotStats());
+                InternalConsts.getMainThreadHandler().postDelayed(this, PROGRESS_INTERVAL_MS);
+            }
+        }
+    };
+
+    /** What was seen of a directory on the last crawl. */
+    private static final class DirectoryRecord {
+        final long lastModified;
+        final String[] subdirectories;
+
+        DirectoryRecord(long lastModified, String[] subdirectories) {
+            this.lastModified = lastModified;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    public VideoFileCrawler(@NonNull Context context, @NonNull List<File> roots,
+                            @NonNull Listener listener) {
+        mContext = context.getApplicationContext();
+        mRoots = new ArrayList<>(roots);
+        mListener = listener;
+    }
+
+    public boolean isRunning() {
+        return mExecutor != null && !mFinished.get();
+    }
+
+    /** Starts crawling. A crawler can be started only once. */
+    public void start() {
+        if (mExecutor != null) {
+            throw new IllegalStateException("The crawler has already been started");
+        }
+        final int parallelism = Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors());
+        mExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+                1, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        mExecutor.allowCoreThreadTimeOut(true);
+        mStartTime = SystemClock.elapsedRealtime();
+        InternalConsts.getMainThreadHandler().postDelayed(mProgressReporter, PROGRESS_INTERVAL_MS);
+
+        ParallelThreadExecutor.getSingleton().execute(() -> {
+            mStoredDirectories = loadDirectoryRecords();
+            mIndexedPaths = queryIndexedVideoPaths();
+            if (mCancelled) return;
+
+            mPendingDirectories.set(mRoots.size());
+            if (mRoots.isEmpty()) {
+                finish();
+                return;
+            }
+            for (File root : mRoots) {
+                submitDirectory(root);
+            }
+        });
+    }
+
+    /**
+     * Stops crawling. The videos found so far are still registered before
+     * {@link Listener#onCrawlFinished(Stats, boolean)} is called.
+     */
+    public void cancel() {
+        if (!isRunning() || mCancelled) return;
+        mCancelled = true;
+        final ThreadPoolExecutor executor = mExecutor;
+        executor.shutdownNow();
+        ParallelThreadExecutor.getSingleton().execute(() -> {
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Ignored
+            }
+            finish();
+        });
+    }
+
+    private void submitDirectory(File directory) {
+        try {
+            mExecutor.execute(() -> crawlDirectory(directory));
+        } catch (RuntimeException e) { // RejectedExecutionException when cancelled
+            mPendingDirectories.decrementAndGet();
+        }
+    }
+
+    @WorkerThread
+    private void crawlDirectory(File directory) {
+        try {
+            if (mCancelled) return;
+
+            // Guards against the same directory being reached through links, including those
+            // to one of its ancestors, which would otherwise be followed endlessly
+            if (!mCrawledCanonicalPaths.add(getCanonicalPath(directory))) return;
+
+            final String path = directory.getAbsolutePath();
+            final long lastModified = directory.lastModified();
+            final DirectoryRecord stored = mStoredDirectories.get(path);
+            DirectoryRecord record;
+            if (stored != null && lastModified != 0 && stored.lastModified == lastModified) {
+                // 目录未改变，其中不可能有新文件，只需继续遍历其子目录
+                record = stored;
+                mDirectoriesSkipped.incrementAndGet();
+            } else {
+                record = new DirectoryRecord(lastModified, listDirectory(directory));
+                mDirectoriesListed.incrementAndGet();
+            }
+            mCrawledDirectories.put(path, record);
+
+            mPendingDirectories.addAndGet(record.subdirectories.length);
+            for (String name : record.subdirectories) {
+                submitDirectory(new File(directory, name));
+            }
+        } finally {
+            if (mPendingDirectories.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+    }
+
+    private static String getCanonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Examines the files in the directory and returns the names of its subdirectories
+     * to be crawled.
+     */
+    @WorkerThread
+    private String[] listDirectory(File directory) {
+        final File[] children = directory.listFiles();
+        if (children == null) return EMPTY_STRING_ARRAY;
+
+        List<String> subdirectories = null;
+        for (File child : children) {
+            if (mCancelled) break;
+
+            final String name = child.getName();
+            if (child.isDirectory()) {
+                if (!shouldSkipDirectory(child)) {
+                    if (subdirectories == null) subdirectories = new ArrayList<>();
+                    subdirectories.add(name);
+                }
+            } else {
+                mFilesExamined.incrementAndGet();
+                examineFile(child);
+            }
+        }
+        //noinspection ToArrayCallWithZeroLengthArrayArgument
+        return subdirectories == null
+                ? EMPTY_STRING_ARRAY : subdirectories.toArray(new String[subdirectories.size()]);
+    }
+
+    private static boolean shouldSkipDirectory(File directory) {
+        // Hidden directories are mostly caches and thumbnails, and the private directories of
+        // apps hold no videos for the user
+        final String name = directory.getName();
+        if (name.startsWith(".")) return true;
+        final File parent = directory.getParentFile();
+        return parent != null && "Android".equals(parent.getName())
+                && ("data".equals(name) || "obb".equals(name));
+    }
+
+    @WorkerThread
+    private void examineFile(File file) {
+        final String path = file.getAbsolutePath();
+        if (mIndexedPaths.contains(path)) return;
+
+        final String name = file.getName();
+        final int dotIndex = name.lastIndexOf('.');
+        final String extension =
+                dotIndex == -1 ? "" : name.substring(dotIndex + 1).toLowerCase(Locale.ROOT);
+        if (extension.isEmpty()) {
+            if (file.length() < MIN_SNIFFED_FILE_SIZE) return;
+        } else if (!VIDEO_EXTENSIONS.contains(extension)) {
+            return;
+        }
+
+        final String mimeType = sniffVideoMimeType(file, extension);
+        if (mimeType != null) {
+            mVideosFound.incrementAndGet();
+            addToBatch(file, mimeType);
+        }
+    }
+
+    /**
+     * Identifies the container of a video file by its leading bytes.
+     *
+     * @return the mime type of the video, or null if the file is not (known to be) a video
+     */
+    @WorkerThread
+    @Nullable
+    /*package*/ static String sniffVideoMimeType(@NonNull File file, @NonNull String extension) {
+        final byte[] header = new byte[SNIFF_LENGTH];
+        int length = 0;
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            int read;
+            while (length < header.length
+                    && (read = in.read(header, length, header.length - length)) != -1) {
+                length += read;
+            }
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //
+                }
+            }
+        }
+
+        if (length >= 12 && matches(header, 4, "ftyp")) {
+            final String brand = new String(header, 8, 4);
+            for (String nonVideoBrand : NON_VIDEO_FTYP_BRANDS) {
+                if (nonVideoBrand.equals(brand)) return null;
+            }
+            if (brand.startsWith("3g")) return "video/3gpp";
+            if (brand.equals("qt  ")) return "video/quicktime";
+            return "video/mp4";
+        }
+        if (length >= 4 && (header[0] & 0xFF) == 0x1A && (header[1] & 0xFF) == 0x45
+                && (header[2] & 0xFF) == 0xDF && (header[3] & 0xFF) == 0xA3) {
+            return new String(header, 0, length, Charset.forName("ISO-8859-1"))
+                    .contains("webm") ? "video/webm" : "video/x-matroska";
+        }
+        if (length >= 12 && matches(header, 0, "RIFF") && matches(header, 8, "AVI ")) {
+            return "video/x-msvideo";
+        }
+        if (length >= 3 && matches(header, 0, "FLV")) {
+            return "video/x-flv";
+        }
+        if (length > 188 && header[0] == 0x47 && header[188] == 0x47
+                || length > 196 && header[4] == 0x47 && header[196] == 0x47) {
+            return "video/mp2t";
+        }
+        if (length >= 4 && header[0] == 0 && header[1] == 0 && header[2] == 1
+                && (header[3] & 0xFF) == 0xBA) {
+            return "video/mpeg";
+        }
+        if (length >= 8 && (header[0] & 0xFF) == 0x30 && (header[1] & 0xFF) == 0x26
+                && (header[2] & 0xFF) == 0xB2 && (header[3] & 0xFF) == 0x75
+                && (header[4] & 0xFF) == 0x8E && (header[5] & 0xFF) == 0x66
+                && (header[6] & 0xFF) == 0xCF && (header[7] & 0xFF) == 0x11) {
+            return "video/x-ms-wmv";
+        }
+        if (length >= 4 && matches(header, 0, ".RMF")) {
+            return "application/vnd.rn-realmedia";
+        }
+        // Ogg files are mostly audio
+        if (length >= 4 && matches(header, 0, "OggS") && extension.equals("ogv")) {
+            return "video/ogg";
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] bytes, int offset, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (bytes[offset + i] != ascii.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    @WorkerThread
+    private void addToBatch(File file, String mimeType) {
+        File[] files = null;
+        String[] mimeTypes = null;
+        synchronized (mBatchFiles) {
+            mBatchFiles.add(file);
+            mBatchMimeTypes.add(mimeType);
+            if (mBatchFiles.size() >= REGISTRATION_BATCH_SIZE) {
+                files = mBatchFiles.toArray(new File[0]);
+                mimeTypes = mBatchMimeTypes.toArray(EMPTY_STRING_ARRAY);
+                mBatchFiles.clear();
+                mBatchMimeTypes.clear();
+            }
+        }
+        if (files != null) {
+            registerVideos(files, mimeTypes);
+        }
+    }
+
+    @WorkerThread
+    private void registerVideos(File[] files, String[] mimeTypes) {
+        try {
+            FileUtils.recordMediaFilesToDatabaseAndScan(mContext, IVideoDao.VIDEO_URI, files, mimeTypes);
+        } catch (RuntimeException e) {
+            // MediaStore may refuse files it does not manage
+            Log.w(TAG, "Failed to register " + files.length + " videos", e);
+            // Have the directories of these videos listed again on the next crawl, so that
+            // registering them is retried rather than never attempted any more
+            for (File file : files) {
+                final File parent = file.getParentFile();
+                if (parent != null) {
+                    mUnregisteredDirectories.add(parent.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    @WorkerThread
+    private void finish() {
+        if (!mFinished.compareAndSet(false, true)) return;
+
+        final File[] files;
+        final String[] mimeTypes;
+        synchronized (mBatchFiles) {
+            files = mBatchFiles.toArray(new File[0]);
+            mimeTypes = mBatchMimeTypes.toArray(EMPTY_STRING_ARRAY);
+            mBatchFiles.clear();
+            mBatchMimeTypes.clear();
+        }
+        if (files.length > 0) {
+            registerVideos(files, mimeTypes);
+        }
+        if (!mCancelled) {
+            // Records are only replaced after a complete crawl, as those of the directories not
+            // reached by a cancelled one would otherwise be lost. A directory is only recorded
+            // once all the videos found in it are registered.
+            mCrawledDirectories.keySet().removeAll(mUnregisteredDirectories);
+            saveDirectoryRecords(mCrawledDirectories);
+        }
+        mExecutor.shutdown();
+
+        final Stats stats = snapshotStats();
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, (mCancelled ? "Cancelled: " : "Finished: ") + stats);
+        }
+        final boolean cancelled = mCancelled;
+        InternalConsts.getMainThreadHandler().post(() -> {
+            InternalConsts.getMainThreadHandler().removeCallbacks(mProgressReporter);
+            mListener.onCrawlFinished(stats, cancelled);
+        });
+    }
+
+    /*package*/ Stats snapshotStats() {
+        return new Stats(mDirectoriesListed.get(), mDirectoriesSkipped.get(),
+                mFilesExamined.get(), mVideosFound.get(),
+                SystemClock.elapsedRealtime() - mStartTime);
+    }
+
+    @WorkerThread
+    private Set<String> queryIndexedVideoPaths() {
+        Set<String> paths = new HashSet<>();
+        Cursor cursor = mContext.getContentResolver().query(
+                IVideoDao.VIDEO_URI, new String[]{IVideoDao.VIDEO_PATH}, null, null, null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                final String path = cursor.getString(0);
+                if (path != null) {
+                    paths.add(path);
+                }
+            }
+            cursor.close();
+        }
+        return paths;
+    }
+
+    private File getDirectoryCacheFile() {
+        return new File(mContext.getFilesDir(), DIRECTORY_CACHE_FILE);
+    }
+
+    @WorkerThread
+    private Map<String, DirectoryRecord> loadDirectoryRecords() {
+        final File file = getDirectoryCacheFile();
+        if (!file.exists()) return Collections.emptyMap();
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != DIRECTORY_CACHE_VERSION) return Collections.emptyMap();
+
+            final int count = in.readInt();
+            Map<String, DirectoryRecord> records = new ConcurrentHashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                final String path = in.readUTF();
+                final long lastModified = in.readLong();
+                final String[] subdirectories = new String[in.readInt()];
+                for (int j = 0; j < subdirectories.length; j++) {
+                    subdirectories[j] = in.readUTF();
+                }
+                records.put(path, new DirectoryRecord(lastModified, subdirectories));
+            }
+            return records;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load the crawled directories", e);
+            return Collections.emptyMap();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //
+                }
+            }
+        }
+    }
+
+    @WorkerThread
+    private void saveDirectoryRecords(Map<String, DirectoryRecord> records) {
+        final File file = getDirectoryCacheFile();
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(DIRECTORY_CACHE_VERSION);
+            out.writeInt(records.size());
+            for (Map.Entry<String, DirectoryRecord> entry : records.entrySet()) {
+                final DirectoryRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.lastModified);
+                out.writeInt(record.subdirectories.length);
+                for (String subdirectory : record.subdirectories) {
+                    out.writeUTF(subdirectory);
+                }
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save the crawled directories", e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    //
+                }
+            }
+        }
+    }
+}
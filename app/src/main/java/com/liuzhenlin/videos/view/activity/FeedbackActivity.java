@@ -57,13 +57,14 @@ import com.liuzhenlin.videos.dao.FeedbackSavedPrefs;
 import com.liuzhenlin.videos.observer.OnOrientationChangeListener;
 import com.liuzhenlin.videos.observer.RotationObserver;
 import com.liuzhenlin.videos.observer.ScreenNotchSwitchObserver;
-import com.liuzhenlin.videos.utils.BitmapUtils2;
 import com.liuzhenlin.videos.utils.DisplayCutoutUtils;
+import com.liuzhenlin.videos.utils.GestureFrameMonitor;
 import com.liuzhenlin.videos.utils.MailUtil;
 import com.liuzhenlin.videos.utils.NetworkUtil;
 import com.liuzhenlin.videos.utils.OSHelper;
+import com.liuzhenlin.videos.utils.PictureAttachmentPipeline;
 import com.liuzhenlin.videos.utils.UiUtils;
-import com.liuzhenlin.videos.view.adapter.GalleryPagerAdapter;
+import com.liuzhenlin.videos.view.adapter.ImageGalleryPagerAdapter;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -88,7 +89,8 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
     private EditText mEnterContactWayEditor;
     @Synthetic Button mCommitButton;
 
-    private PictureGridAdapter mGridAdapter;
+    @Synthetic PictureGridAdapter mGridAdapter;
+    @Synthetic PictureAttachmentPipeline mPicturePipeline;
 
     private Dialog mConfirmSaveDataDialog;
     @Synthetic Dialog mPicturePreviewDialog;
@@ -207,6 +209,8 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
         mGridAdapter = new PictureGridAdapter(this);
         gridView.setAdapter(mGridAdapter);
         gridView.setOnItemClickListener(mGridAdapter);
+        final int pictureSize = mGridAdapter.getItemSize();
+        mPicturePipeline = new PictureAttachmentPipeline(pictureSize, pictureSize);
 
         mCommitButton.setOnClickListener(this);
 
@@ -242,6 +246,7 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
         final Window window = getWindow();
         if (Utils.isLayoutRtl(window.getDecorView()))
             getSwipeBackLayout().setEnabledEdges(SwipeBackLayout.EDGE_RIGHT);
+        GestureFrameMonitor.getSingleton().monitor(getSwipeBackLayout());
         getSwipeBackLayout().addSwipeListener(new SwipeBackLayout.SwipeListener() {
             int oldState = SwipeBackLayout.STATE_IDLE;
 
@@ -344,10 +349,9 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
             mPicturePreviewDialog.dismiss();
         }
         // 回收Bitmaps
-        for (Bitmap bitmap : mGridAdapter.mPictures) {
-            bitmap.recycle();
-        }
+        mGridAdapter.mPictures.get(mGridAdapter.mPictures.size() - 1).recycle();
         mGridAdapter.mPictures.clear();
+        mPicturePipeline.release();
     }
 
     @Override
@@ -467,13 +471,11 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
                     mSavedPicturePaths.clear();
                 }
 
-                Bitmap temp = mGridAdapter.mPictures.get(mGridAdapter.mPictures.size() - 1);
-                Iterator<Bitmap> it = mGridAdapter.mPictures.iterator();
-                while (it.hasNext()) {
-                    Bitmap bitmap = it.next();
-                    if (temp == bitmap) continue;
-                    bitmap.recycle();
-                    it.remove();
+                Bitmap addPictureIcon = mGridAdapter.mPictures.get(mGridAdapter.mPictures.size() - 1);
+                mGridAdapter.mPictures.clear();
+                mGridAdapter.mPictures.add(addPictureIcon);
+                for (String path : mGridAdapter.mPicturePaths) {
+                    mPicturePipeline.releaseThumbnail(path);
                 }
                 mGridAdapter.mPicturePaths.clear();
                 // 刷新GridView
@@ -488,17 +490,42 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
     private void addPicture(String path) {
         if (path != null &&
                 (mGridAdapter.mPicturePaths == null || !mGridAdapter.mPicturePaths.contains(path))) {
-            Bitmap bitmap = BitmapUtils2.decodeRotatedBitmapFormFile(path);
-            if (bitmap != null) {
-                if (mGridAdapter.mPicturePaths == null)
-                    mGridAdapter.mPicturePaths = new LinkedList<>();
-                mGridAdapter.mPicturePaths.add(mGridAdapter.mPicturePaths.size(), path);
-                mGridAdapter.mPictures.add(mGridAdapter.mPictures.size() - 1, bitmap);
-                mGridAdapter.notifyDataSetChanged();
-            }
+            if (mGridAdapter.mPicturePaths == null)
+                mGridAdapter.mPicturePaths = new LinkedList<>();
+            mGridAdapter.mPicturePaths.add(mGridAdapter.mPicturePaths.size(), path);
+            // 先占位，待缩略图在后台解码完成后再显示
+            mGridAdapter.mPictures.add(mGridAdapter.mPictures.size() - 1, null);
+            mGridAdapter.notifyDataSetChanged();
+            mPicturePipeline.loadThumbnail(path, mOnThumbnailLoadedListener);
         }
     }
 
+    private final PictureAttachmentPipeline.OnThumbnailLoadedListener mOnThumbnailLoadedListener =
+            new PictureAttachmentPipeline.OnThumbnailLoadedListener() {
+                @Override
+                public void onThumbnailLoaded(@NonNull String path, @Nullable Bitmap thumbnail) {
+                    if (mGridAdapter.mPicturePaths == null) return;
+                    final int index = mGridAdapter.mPicturePaths.indexOf(path);
+                    if (index < 0) return;
+
+                    if (thumbnail == null) {
+                        // 图片无法解码：移除之
+                        if (mPicturePreviewDialog != null) {
+                            mPicturePreviewDialog.dismiss();
+                        }
+                        mGridAdapter.mPicturePaths.remove(index);
+                        mGridAdapter.mPictures.remove(index);
+                    } else {
+                        mGridAdapter.mPictures.set(index, thumbnail);
+                        if (mPicturePreviewDialog instanceof PictureGridAdapter.PicturePreviewDialog) {
+                            ((PictureGridAdapter.PicturePreviewDialog) mPicturePreviewDialog)
+                                    .onPictureLoaded(index, thumbnail);
+                        }
+                    }
+                    mGridAdapter.notifyDataSetChanged();
+                }
+            };
+
     private final class PictureGridAdapter extends BaseAdapter implements AdapterView.OnItemClickListener {
         final Context mContext;
 
@@ -530,6 +557,12 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
             return position;
         }
 
+        int getItemSize() {
+            final int screenWidth = App.getInstance(mContext).getScreenWidthIgnoreOrientation();
+            final int dp_20 = DensityUtils.dp2px(mContext, 20f);
+            return (int) ((screenWidth - dp_20 * 1.5f) / 3f + 0.5f);
+        }
+
         @Override
         public View getView(int position, View convertView, ViewGroup parent) {
             ViewHolder vh;
@@ -542,7 +575,7 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
                 final int dp_20 = DensityUtils.dp2px(mContext, 20f);
 
                 ViewGroup.LayoutParams lp = convertView.getLayoutParams();
-                lp.height = lp.width = (int) ((screenWidth - dp_20 * 1.5f) / 3f + 0.5f);
+                lp.height = lp.width = getItemSize();
 
                 ViewGroup.LayoutParams plp = parent.getLayoutParams();
                 plp.width = screenWidth - dp_20;
@@ -577,7 +610,7 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
                 startActivityForResult(
                         new Intent(Intent.ACTION_GET_CONTENT)
                                 .setType("image/*"), Consts.REQUEST_CODE_ADD_PICTURE);
-            } else {
+            } else if (mPictures.get(position) != null) {
                 mPicturePreviewDialog = new PicturePreviewDialog(position);
                 mPicturePreviewDialog.show();
             }
@@ -589,7 +622,7 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
             final Window mWindow;
 
             final GalleryViewPager mGalleryViewPager;
-            final GalleryPagerAdapter<ImageView> mGalleryPagerAdapter;
+            final ImageGalleryPagerAdapter mGalleryPagerAdapter;
             final FrameLayout mDeleteFrame;
 
             Dialog mConfirmDeletePictureDialog;
@@ -618,16 +651,19 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
                         R.layout.dialog_picture_preview,
                         mWindow.getDecorView().findViewById(Window.ID_ANDROID_CONTENT));
 
-                List<ImageView> images = new ArrayList<>(mPictures.size() - 1);
-                for (int i = 0, count = mPictures.size() - 1; i < count; i++) {
-                    ImageView image = (ImageView) View.inflate(
-                            mContext, R.layout.item_gallery_view_pager, null);
-                    image.setImageBitmap(mPictures.get(i));
-                    image.setOnClickListener(this);
-                    image.setOnLongClickListener(this);
-                    images.add(image);
-                }
-                mGalleryPagerAdapter = new GalleryPagerAdapter<>(images);
+                mGalleryPagerAdapter = new ImageGalleryPagerAdapter(
+                        mContext, R.layout.item_gallery_view_pager, mPicturePaths);
+                // 缩略图作为占位图，原图按需分块解码，放大后依然清晰
+                mGalleryPagerAdapter.setPlaceholderProvider(
+                        new ImageGalleryPagerAdapter.PlaceholderProvider() {
+                            @Override
+                            public Bitmap getPlaceholder(@NonNull String path) {
+                                final int index = mPicturePaths.indexOf(path);
+                                return index < 0 ? null : mPictures.get(index);
+                            }
+                        });
+                mGalleryPagerAdapter.setOnPageClickListener(this);
+                mGalleryPagerAdapter.setOnPageLongClickListener(this);
                 mGalleryViewPager = view.findViewById(R.id.galley_view_pager);
                 mGalleryViewPager.setAdapter(mGalleryPagerAdapter);
                 mGalleryViewPager.setItemCallback(mGalleryPagerAdapter);
@@ -690,6 +726,7 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
             @Override
             public void onDismiss(DialogInterface dialog) {
                 mPicturePreviewDialog = null;
+                mGalleryPagerAdapter.release();
                 if (mNotchSwitchObserver != null) {
                     mNotchSwitchObserver.stopObserver();
                 }
@@ -733,20 +770,28 @@ public class FeedbackActivity extends SwipeBackActivity implements View.OnClickL
                         mConfirmDeletePictureDialog = null;
 
                         final int currentItem = mGalleryViewPager.getCurrentItem();
-                        mGalleryPagerAdapter.views.remove(currentItem);
+                        mGalleryPagerAdapter.sources.remove(currentItem);
                         mGalleryPagerAdapter.notifyDataSetChanged();
                         // 图片全部被删除时，销毁此对话框
                         if (mPictures.size() == 2) {
                             dismiss();
                         }
-                        mPictures.get(currentItem).recycle();
                         mPictures.remove(currentItem);
-                        mPicturePaths.remove(currentItem);
+                        mPicturePipeline.releaseThumbnail(mPicturePaths.remove(currentItem));
                         notifyDataSetChanged();
                         break;
                 }
             }
 
+            // 与网格共享后台解码得到的缩略图，无需重新解码
+            void onPictureLoaded(int index, Bitmap picture) {
+                // 仅需更新已创建且尚无图片的页面，其余页面创建时会取得该缩略图
+                Object item = mGalleryPagerAdapter.getItemAt(index);
+                if (item instanceof ImageView && ((ImageView) item).getDrawable() == null) {
+                    ((ImageView) item).setImageBitmap(picture);
+                }
+            }
+
             @Override
             public boolean onLongClick(View v) {
                 //noinspection SwitchStatementWithTooFewBranches
@@ -52,7 +52,6 @@ import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.tabs.TabLayout;
 import com.liuzhenlin.floatingmenu.DensityUtils;
 import com.liuzhenlin.slidingdrawerlayout.SlidingDrawerLayout;
-import com.liuzhenlin.texturevideoview.utils.BitmapUtils;
 import com.liuzhenlin.texturevideoview.utils.FileUtils;
 import com.liuzhenlin.texturevideoview.utils.SystemBarUtils;
 import com.liuzhenlin.videos.App;
@@ -60,8 +59,8 @@ import com.liuzhenlin.videos.BuildConfig;
 import com.liuzhenlin.videos.Consts;
 import com.liuzhenlin.videos.R;
 import com.liuzhenlin.videos.dao.AppPrefs;
-import com.liuzhenlin.videos.utils.BitmapUtils2;
-import com.liuzhenlin.videos.utils.ColorUtils;
+import com.liuzhenlin.videos.utils.DrawerBackgroundLoader;
+import com.liuzhenlin.videos.utils.GestureFrameMonitor;
 import com.liuzhenlin.videos.utils.MergeAppUpdateChecker;
 import com.liuzhenlin.videos.utils.OSHelper;
 import com.liuzhenlin.videos.utils.TextViewUtils;
@@ -114,6 +113,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     @Synthetic boolean mIsDrawerStatusLight = true;
     @Synthetic boolean mIsDrawerListForegroundLight = false;
     private float mOldDrawerScrollPercent;
+    private DrawerBackgroundLoader mDrawerBackgroundLoader;
 
     private static final int REQUEST_CODE_CHOSE_DRAWER_BACKGROUND_PICTURE = 7;
     private static final int REQUEST_CODE_APPLY_FOR_FLOATING_WINDOW_PERMISSION = 8;
@@ -136,6 +136,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         this$ = this;
+        mDrawerBackgroundLoader = new DrawerBackgroundLoader(this);
 
         setContentView(R.layout.activity_main);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
@@ -196,15 +197,14 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                     setDrawerBackground(path);
                     // 用户从存储卡中删除了该路径下的图片或其路径已改变
                 } else {
-                    asp.setDrawerBackgroundPath(null);
-                    asp.setLightDrawerStatus(true);
-                    asp.setLightDrawerListForeground(false);
+                    DrawerBackgroundLoader.clear(app);
                 }
             }
         });
         mSlidingDrawerLayout.addOnDrawerScrollListener(this);
         mSlidingDrawerLayout.addOnDrawerScrollListener(mLocalVideosFragment);
         mSlidingDrawerLayout.addOnDrawerScrollListener(mOnlineVideosFragment);
+        GestureFrameMonitor.getSingleton().monitor(mSlidingDrawerLayout);
 
         mActionBarContainer = findViewById(R.id.container_actionbar);
         mActionBar = findViewById(R.id.actionbar);
@@ -304,34 +304,44 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     }
 
     @Synthetic void setDrawerBackground(String path) {
-        if (path == null || path.equals(mDrawerImage.getTag())) {
+        if (path == null || path.equals(mDrawerImage.getTag())
+                || path.equals(mDrawerBackgroundLoader.getLoadingPath())) {
             return;
         }
-        Bitmap bitmap = BitmapUtils2.decodeRotatedBitmapFormFile(path);
-        if (bitmap != null) {
-            recycleDrawerImage();
-            mDrawerImage.setImageBitmap(bitmap);
-            mDrawerImage.setTag(path);
-
-            AppPrefs asp = AppPrefs.getSingleton(this);
-            final String savedPath = asp.getDrawerBackgroundPath();
-            if (path.equals(savedPath)) {
-                setLightDrawerStatus(asp.isLightDrawerStatus());
-                mDrawerListAdapter.setLightDrawerListForeground(asp.isLightDrawerListForeground());
-            } else {
-                asp.setDrawerBackgroundPath(path);
-
-                final boolean lightBackground = ColorUtils.isLightColor(
-                        BitmapUtils.getDominantColor(bitmap, Color.WHITE));
-                setLightDrawerStatus(lightBackground);
-                mDrawerListAdapter.setLightDrawerListForeground(!lightBackground);
-            }
+        int width = mDrawerImage.getWidth();
+        int height = mDrawerImage.getHeight();
+        if (width <= 0 || height <= 0) {
+            App app = App.getInstance(this);
+            width = app.getScreenWidthIgnoreOrientation();
+            height = app.getScreenHeightIgnoreOrientation();
         }
+        // 在后台线程中按抽屉的实际尺寸解码图片，并复用已缓存的处理结果与颜色信息
+        mDrawerBackgroundLoader.load(path, width, height, mOnDrawerBackgroundLoadedListener);
     }
 
+    private final DrawerBackgroundLoader.OnLoadedListener mOnDrawerBackgroundLoadedListener =
+            new DrawerBackgroundLoader.OnLoadedListener() {
+                @Override
+                public void onDrawerBackgroundLoaded(@NonNull String path, @Nullable Bitmap background,
+                                                     boolean lightDrawerStatus,
+                                                     boolean lightDrawerListForeground) {
+                    if (background != null) {
+                        final Drawable oldDrawable = mDrawerImage.getDrawable();
+                        mDrawerImage.setImageBitmap(background);
+                        mDrawerImage.setTag(path);
+                        if (oldDrawable instanceof BitmapDrawable) {
+                            ((BitmapDrawable) oldDrawable).getBitmap().recycle();
+                        }
+
+                        setLightDrawerStatus(lightDrawerStatus);
+                        mDrawerListAdapter.setLightDrawerListForeground(lightDrawerListForeground);
+                    }
+                }
+            };
+
     private void recycleDrawerImage() {
-        if (mDrawerImage.getBackground() instanceof BitmapDrawable) {
-            ((BitmapDrawable) mDrawerImage.getBackground()).getBitmap().recycle();
+        if (mDrawerImage.getDrawable() instanceof BitmapDrawable) {
+            ((BitmapDrawable) mDrawerImage.getDrawable()).getBitmap().recycle();
         }
     }
 
@@ -371,6 +381,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     protected void onDestroy() {
         super.onDestroy();
         this$ = null;
+        mDrawerBackgroundLoader.cancel();
         if (mDrawerList != null) {
             recycleDrawerImage();
         }
@@ -70,6 +70,7 @@ import com.liuzhenlin.videos.observer.OnOrientationChangeListener;
 import com.liuzhenlin.videos.observer.RotationObserver;
 import com.liuzhenlin.videos.observer.ScreenNotchSwitchObserver;
 import com.liuzhenlin.videos.utils.DisplayCutoutUtils;
+import com.liuzhenlin.videos.utils.GestureFrameMonitor;
 import com.liuzhenlin.videos.utils.OSHelper;
 import com.liuzhenlin.videos.utils.UiUtils;
 import com.liuzhenlin.videos.utils.VideoUtils2;
@@ -543,6 +544,36 @@ public class VideoActivity extends SwipeBackActivity {
                 notifyItemSelectionChanged(oldVideoIndex, mVideoIndex, true);
             }
         });
+        videoPlayer.setPlaylistCallback(new VideoPlayer.PlaylistCallback() {
+            @Nullable
+            @Override
+            public Uri getNextVideoUri() {
+                if (mVideos.length <= 1) {
+                    return null;
+                }
+                Video video = mVideos[getNextVideoIndex()];
+                final int progress = video.getProgress();
+                if (progress > 0 && progress < video.getDuration() - Consts.TOLERANCE_VIDEO_DURATION) {
+                    // 需从保存的播放位置开始播放的视频，交由跳转下一个时重新准备播放
+                    return null;
+                }
+                return Uri.parse(video.getPath());
+            }
+
+            @Override
+            public void onAdvancedToNextVideo(@NonNull Uri uri) {
+                Video video = mVideos[mVideoIndex];
+                // The previous video was played to its end
+                recordVideoProgress(video, video.getDuration());
+
+                final int oldVideoIndex = mVideoIndex;
+                mVideoIndex = getNextVideoIndex();
+                video = mVideos[mVideoIndex];
+                video.setProgress(0);
+                mVideoView.setTitle(FileUtils.getFileTitleFromFileName(video.getName()));
+                notifyItemSelectionChanged(oldVideoIndex, mVideoIndex, true);
+            }
+        });
         mVideoView.setEventListener(new TextureVideoView.EventListener() {
 
             @Override
@@ -623,6 +654,10 @@ public class VideoActivity extends SwipeBackActivity {
         });
     }
 
+    @Synthetic int getNextVideoIndex() {
+        return mVideoIndex == mVideos.length - 1 ? 0 : mVideoIndex + 1;
+    }
+
     @Synthetic void setVideoToPlay(Video video) {
         mVideoPlayer.setVideoPath(video.getPath());
         mVideoView.setTitle(FileUtils.getFileTitleFromFileName(video.getName()));
@@ -706,6 +741,7 @@ public class VideoActivity extends SwipeBackActivity {
         if (Utils.isLayoutRtl(decorView)) {
             getSwipeBackLayout().setEnabledEdges(SwipeBackLayout.EDGE_RIGHT);
         }
+        GestureFrameMonitor.getSingleton().monitor(getSwipeBackLayout());
         setFullscreenMode(mVideoView.isInFullscreenMode());
 
         mHandler = decorView.getHandler();
@@ -796,7 +832,11 @@ public class VideoActivity extends SwipeBackActivity {
     }
 
     private void recordVideoProgress(Video video) {
-        video.setProgress(mVideoPlayer.getVideoProgress());
+        recordVideoProgress(video, mVideoPlayer.getVideoProgress());
+    }
+
+    @Synthetic void recordVideoProgress(Video video, int progress) {
+        video.setProgress(progress);
 
         final long id = video.getId();
         if (id != Consts.NO_ID) {
@@ -0,0 +1,196 @@
+/*
+ * Created on 2026-10-19 5:41:20 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos.view.adapter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.viewpager.widget.PagerAdapter;
+
+import com.liuzhenlin.galleryviewer.GalleryViewPager;
+import com.liuzhenlin.galleryviewer.GestureImageView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A data-driven variant of {@link GalleryPagerAdapter} that takes the paths of the pictures to
+ * show instead of pre-created pages.
+ * <p>
+ * Only the pages the ViewPager currently holds, i.e., the current page and its neighbors within
+ * the offscreen page limit, have a {@link GestureImageView}, which loads its picture in the
+ * background through {@link GestureImageView#setImageFile(String)}. Views of destroyed pages
+ * are cleared and recycled into a small pool for the pages to come, so the memory used stays flat
+ * regardless of how many pictures there are.
+ * <p>
+ * Pages keep their positions across {@link #notifyDataSetChanged()} as long as their pictures
+ * are still in {@link #sources}, so changing the data only rebuilds the pages actually affected.
+ *
+ * @author 刘振林
+ */
+public class ImageGalleryPagerAdapter extends PagerAdapter implements GalleryViewPager.ItemCallback {
+
+    public interface PlaceholderProvider {
+        /**
+         * @return a small bitmap to show for the picture at the given path until it is loaded,
+         *         e.g., an already decoded thumbnail of it, or {@code null} if there is none
+         */
+        @Nullable
+        Bitmap getPlaceholder(@NonNull String path);
+    }
+
+    private static final int MAX_POOL_SIZE = 3;
+
+    /**
+     * The paths of the pictures to show. Call {@link #notifyDataSetChanged()} after modifying it.
+     */
+    @NonNull
+    public final List<String> sources;
+
+    private final LayoutInflater mInflater;
+    @LayoutRes private final int mPageLayoutId;
+
+    private final List<Page> mActivePages = new ArrayList<>(MAX_POOL_SIZE);
+    private final Deque<GestureImageView> mViewPool = new ArrayDeque<>(MAX_POOL_SIZE);
+
+    private View.OnClickListener mOnPageClickListener;
+    private View.OnLongClickListener mOnPageLongClickListener;
+    private PlaceholderProvider mPlaceholderProvider;
+
+    private static final class Page {
+        final String source;
+        final GestureImageView view;
+        int position;
+
+        Page(String source, GestureImageView view, int position) {
+            this.source = source;
+            this.view = view;
+            this.position = position;
+        }
+    }
+
+    /**
+     * @param pageLayoutId the layout of a page, whose root must be a {@link GestureImageView}
+     */
+    public ImageGalleryPagerAdapter(@NonNull Context context, @LayoutRes int pageLayoutId,
+                                    @Nullable Collection<String> sources) {
+        mInflater = LayoutInflater.from(context);
+        mPageLayoutId = pageLayoutId;
+        this.sources = sources == null ? new ArrayList<>(0) : new ArrayList<>(sources);
+    }
+
+    public void setOnPageClickListener(@Nullable View.OnClickListener listener) {
+        mOnPageClickListener = listener;
+        for (Page page : mActivePages) {
+            page.view.setOnClickListener(listener);
+        }
+    }
+
+    public void setOnPageLongClickListener(@Nullable View.OnLongClickListener listener) {
+        mOnPageLongClickListener = listener;
+        for (Page page : mActivePages) {
+            page.view.setOnLongClickListener(listener);
+        }
+    }
+
+    public void setPlaceholderProvider(@Nullable PlaceholderProvider provider) {
+        mPlaceholderProvider = provider;
+    }
+
+    @Override
+    public int getCount() {
+        return sources.size();
+    }
+
+    @Override
+    public boolean isViewFromObject(@NonNull View view, @NonNull Object object) {
+        return view == ((Page) object).view;
+    }
+
+    @NonNull
+    @Override
+    public Object instantiateItem(@NonNull ViewGroup container, int position) {
+        GestureImageView view = mViewPool.poll();
+        if (view == null) {
+            view = (GestureImageView) mInflater.inflate(mPageLayoutId, container, false);
+        }
+        view.setOnClickListener(mOnPageClickListener);
+        view.setOnLongClickListener(mOnPageLongClickListener);
+
+        final String source = sources.get(position);
+        if (mPlaceholderProvider != null) {
+            view.setImageBitmap(mPlaceholderProvider.getPlaceholder(source));
+        }
+        view.setImageFile(source);
+        container.addView(view);
+
+        Page page = new Page(source, view, position);
+        mActivePages.add(page);
+        return page;
+    }
+
+    @Override
+    public void destroyItem(@NonNull ViewGroup container, int position, @NonNull Object object) {
+        Page page = (Page) object;
+        container.removeView(page.view);
+        mActivePages.remove(page);
+        recycleView(page.view);
+    }
+
+    private void recycleView(GestureImageView view) {
+        // 释放解码器与图片，使回收的View不持有任何位图
+        view.setImageFile(null);
+        view.setImageDrawable(null);
+        view.setOnClickListener(null);
+        view.setOnLongClickListener(null);
+        if (mViewPool.size() < MAX_POOL_SIZE) {
+            mViewPool.offer(view);
+        }
+    }
+
+    @Override
+    public int getItemPosition(@NonNull Object object) {
+        Page page = (Page) object;
+        final int position = sources.indexOf(page.source);
+        if (position < 0) {
+            return POSITION_NONE;
+        }
+        if (position == page.position) {
+            return POSITION_UNCHANGED;
+        }
+        page.position = position;
+        return position;
+    }
+
+    @Override
+    public Object getItemAt(int position) {
+        for (Page page : mActivePages) {
+            if (page.position == position) {
+                return page.view;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Releases the pictures held by all the pages and drops the recycled views.
+     */
+    public void release() {
+        for (Page page : mActivePages) {
+            page.view.setImageFile(null);
+        }
+        mViewPool.clear();
+    }
+}
@@ -36,6 +36,7 @@ import com.liuzhenlin.videos.model.LocalFoldedVideoListModel
 import com.liuzhenlin.videos.model.OnLoadListener
 import com.liuzhenlin.videos.model.OnReloadVideosListener
 import com.liuzhenlin.videos.utils.FileUtils2
+import com.liuzhenlin.videos.utils.GestureFrameMonitor
 import com.liuzhenlin.videos.utils.VideoUtils2
 import com.liuzhenlin.videos.view.fragment.PackageConsts.*
 import com.liuzhenlin.videos.view.swiperefresh.SwipeRefreshLayout
@@ -211,6 +212,7 @@ class LocalFoldedVideosFragment : SwipeBackFragment(), View.OnClickListener, Vie
         mRecyclerView.addItemDecoration(
                 DividerItemDecoration(contentView.context, DividerItemDecoration.VERTICAL))
         mRecyclerView.setHasFixedSize(true)
+        GestureFrameMonitor.getSingleton().monitor(mRecyclerView)
 
         mBackButton = actionbar.findViewById(R.id.btn_back)
         mCancelButton = actionbar.findViewById(R.id.btn_cancel)
@@ -305,7 +307,7 @@ class LocalFoldedVideosFragment : SwipeBackFragment(), View.OnClickListener, Vie
                 video.isTopped = topped
                 VideoListItemDao.getSingleton(v.context).setVideoListItemTopped(video, topped)
 
-                val newIndex = mVideos.reordered().indexOf(video)
+                val newIndex = mVideos.reorderedIndexOf(video)
                 if (newIndex == index) {
                     mAdapter.notifyItemChanged(index, PAYLOAD_CHANGE_ITEM_LPS_AND_BG)
                 } else {
@@ -373,7 +375,7 @@ class LocalFoldedVideosFragment : SwipeBackFragment(), View.OnClickListener, Vie
                 hideMultiselectVideoControls()
                 mVideoOpCallback?.showRenameItemDialog(video) {
                     val index = mVideos.indexOf(video)
-                    val newIndex = mVideos.reordered().indexOf(video)
+                    val newIndex = mVideos.reorderedIndexOf(video)
                     if (newIndex == index) {
                         mAdapter.notifyItemChanged(index, PAYLOAD_REFRESH_ITEM_NAME)
                     } else {
@@ -228,15 +228,21 @@ class LocalSearchedVideosFragment : Fragment(), View.OnClickListener, View.OnLon
                     updateSearchResult()
                 }
                 R.drawable.ic_edit_24dp_menu -> mVideoOpCallback?.showRenameItemDialog(video) {
-                    mVideos.sortByElementName()
+                    val videoIndex = mVideos.indexOf(video)
+                    if (videoIndex != -1) {
+                        val newVideoIndex = mVideos.reorderedIndexOf(video)
+                        if (newVideoIndex != videoIndex) {
+                            mVideos.add(newVideoIndex, mVideos.removeAt(videoIndex))
+                        }
+                    }
 
                     if (mSearchText.length ==
                             AlgorithmUtil.lcs(video.name, mSearchText, true).length) {
-                        mSearchedVideos.sortByElementName()
-                        val newIndex = mSearchedVideos.indexOf(video)
+                        val newIndex = mSearchedVideos.reorderedIndexOf(video)
                         if (newIndex == index) {
                             mAdapterWrapper.notifyItemChanged(position, PAYLOAD_REFRESH_ITEM_NAME)
                         } else {
+                            mSearchedVideos.add(newIndex, mSearchedVideos.removeAt(index))
                             val newPosition = headersCount + newIndex
                             mAdapterWrapper.notifyItemRemoved(position)
                             mAdapterWrapper.notifyItemInserted(newPosition)
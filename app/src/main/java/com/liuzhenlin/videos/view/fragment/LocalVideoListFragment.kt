@@ -45,15 +45,20 @@ import com.liuzhenlin.videos.*
 import com.liuzhenlin.videos.bean.Video
 import com.liuzhenlin.videos.bean.VideoDirectory
 import com.liuzhenlin.videos.bean.VideoListItem
+import com.liuzhenlin.videos.dao.AppPrefs
 import com.liuzhenlin.videos.dao.IVideoDao
 import com.liuzhenlin.videos.dao.VideoListItemDao
+import com.liuzhenlin.videos.model.LocalDuplicateVideosModel
 import com.liuzhenlin.videos.model.LocalVideoListModel
 import com.liuzhenlin.videos.model.OnLoadListener
 import com.liuzhenlin.videos.utils.FileUtils2
+import com.liuzhenlin.videos.utils.GestureFrameMonitor
 import com.liuzhenlin.videos.utils.UiUtils
+import com.liuzhenlin.videos.utils.VideoFileCrawler
 import com.liuzhenlin.videos.utils.VideoUtils2
 import com.liuzhenlin.videos.view.fragment.PackageConsts.*
 import com.liuzhenlin.videos.view.swiperefresh.SwipeRefreshLayout
+import java.io.File
 import java.util.*
 import kotlin.math.abs
 import kotlin.math.min
@@ -87,10 +92,15 @@ class LocalVideoListFragment : SwipeBackFragment(),
     private var mDetailsButton_IOW: TextView? = null
 
     private var mNeedReloadVideos = false
+    private var mVideoFileCrawler: VideoFileCrawler? = null
     private var mVideoObserver: VideoObserver? = null
     private val mVideoListItems = mutableListOf<VideoListItem>()
     internal val model: LocalVideoListModel = LocalVideoListModel(App.getInstanceUnsafe()!!)
 
+    private val mDuplicateVideosModel = LocalDuplicateVideosModel(App.getInstanceUnsafe()!!)
+    /** The number of copies of each video that has duplicates, by the path of it */
+    private var mDuplicateVideoCounts: Map<String, Int> = emptyMap()
+
     internal val allVideos: ArrayList<Video>?
         get() {
             var videos: ArrayList<Video>? = null
@@ -103,7 +113,7 @@ class LocalVideoListFragment : SwipeBackFragment(),
             }
             return videos?.apply {
                 deepCopy(videos)
-                sortByElementName()
+                sortByPreferredOrder()
             }
         }
 
@@ -188,6 +198,14 @@ class LocalVideoListFragment : SwipeBackFragment(),
                 onReloadVideoListItems(result)
                 mRecyclerView.isItemDraggable = true
                 mInteractionCallback.isRefreshLayoutRefreshing = false
+
+                val videos = allVideos
+                if (videos == null) {
+                    mDuplicateVideosModel.stopLoader()
+                    mDuplicateVideoCounts = emptyMap()
+                } else {
+                    mDuplicateVideosModel.startLoader(videos)
+                }
             }
 
             override fun onLoadCanceled() {
@@ -195,6 +213,10 @@ class LocalVideoListFragment : SwipeBackFragment(),
                 mInteractionCallback.isRefreshLayoutRefreshing = false
             }
         })
+        mDuplicateVideosModel.addOnLoadListener(object : OnLoadListener<Nothing, List<List<Video>>?> {
+            override fun onLoadFinish(result: List<List<Video>>?) =
+                    onDuplicateVideosFound(result ?: emptyList())
+        })
     }
 
     override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View? {
@@ -205,6 +227,7 @@ class LocalVideoListFragment : SwipeBackFragment(),
         mRecyclerView.addItemDecoration(
                 DividerItemDecoration(contentView.context, DividerItemDecoration.VERTICAL))
         mRecyclerView.setHasFixedSize(true)
+        GestureFrameMonitor.getSingleton().monitor(mRecyclerView)
 
         isSwipeBackEnabled = false
         return attachViewToSwipeBackLayout(contentView)
@@ -247,7 +270,11 @@ class LocalVideoListFragment : SwipeBackFragment(),
         mVideoObserver?.stopWatching()
         mNeedReloadVideos = false
 
+        mVideoFileCrawler?.cancel()
+        mVideoFileCrawler = null
+
         model.stopLoader()
+        mDuplicateVideosModel.stopLoader()
 //        mVideoListItems.clear()
 //        notifyListenersOnReloadVideos()
     }
@@ -317,7 +344,7 @@ class LocalVideoListFragment : SwipeBackFragment(),
                                 }
 
                                 mVideoListItems[i] = video
-                                val newIndex = mVideoListItems.reordered().indexOf(video)
+                                val newIndex = mVideoListItems.reorderedIndexOf(video)
                                 if (newIndex == i) {
                                     mAdapter.notifyItemChanged(i) // without payload
                                 } else {
@@ -342,7 +369,7 @@ class LocalVideoListFragment : SwipeBackFragment(),
                                     videodir.size = videos.allVideoSize()
 
                                     mVideoListItems[i] = videodir
-                                    val newIndex = mVideoListItems.reordered().indexOf(videodir)
+                                    val newIndex = mVideoListItems.reorderedIndexOf(videodir)
                                     if (newIndex == i) {
                                         mAdapter.notifyItemChanged(i) // without payload
                                     } else {
@@ -406,6 +433,36 @@ class LocalVideoListFragment : SwipeBackFragment(),
         }
     }
 
+    private fun onDuplicateVideosFound(groups: List<List<Video>>) {
+        val counts = HashMap<String, Int>()
+        for (group in groups) {
+            for (video in group) {
+                counts[video.path] = group.size
+            }
+        }
+        if (counts != mDuplicateVideoCounts) {
+            mDuplicateVideoCounts = counts
+            mAdapter.notifyItemRangeChanged(0, mAdapter.itemCount, PAYLOAD_REFRESH_DUPLICATE_VIDEOS)
+        }
+    }
+
+    private fun videoSizeTextOf(video: Video): String {
+        val size = FileUtils2.formatFileSize(video.size.toDouble())
+        val copyCount = mDuplicateVideoCounts[video.path] ?: return size
+        return getString(R.string.videoSizeWithCopyCount, size, copyCount)
+    }
+
+    private fun videoCountTextOf(videodir: VideoDirectory): String {
+        val videos = videodir.videos
+        val videoCount = getString(R.string.aTotalOfSeveralVideos, videos.size)
+        val duplicateCount = videos.count { mDuplicateVideoCounts.containsKey(it.path) }
+        return if (duplicateCount == 0) {
+            videoCount
+        } else {
+            getString(R.string.videoCountWithDuplicateCount, videoCount, duplicateCount)
+        }
+    }
+
     private fun autoLoadVideos() {
         mInteractionCallback.isRefreshLayoutRefreshing = true
         queryAllVideos()
@@ -426,6 +483,33 @@ class LocalVideoListFragment : SwipeBackFragment(),
         mItemOptionsWindow?.dismiss()
 
         model.startLoader()
+        startVideoFileCrawlerIfEnabled()
+    }
+
+    /**
+     * Crawls the storage for the videos MediaStore has not indexed, if the user enabled it,
+     * and reloads the list if any is found.
+     */
+    private fun startVideoFileCrawlerIfEnabled() {
+        val prefs = AppPrefs.getSingleton(contextRequired)
+        if (!prefs.isVideoCrawlerEnabled || mVideoFileCrawler?.isRunning == true) return
+
+        val crawler = VideoFileCrawler(
+                contextRequired,
+                prefs.videoCrawlerRoots.map { File(it) },
+                object : VideoFileCrawler.Listener {
+                    override fun onCrawlProgress(stats: VideoFileCrawler.Stats) {}
+
+                    override fun onCrawlFinished(stats: VideoFileCrawler.Stats, cancelled: Boolean) {
+                        mVideoFileCrawler = null
+                        // 新找到的视频已插入媒体库，重新加载列表即可，无需再次爬取
+                        if (!cancelled && stats.videosFound > 0 && !isAsyncDeletingItems) {
+                            model.startLoader()
+                        }
+                    }
+                })
+        mVideoFileCrawler = crawler
+        crawler.start()
     }
 
     private inner class VideoObserver(handler: Handler) : ContentObserver(handler) {
@@ -508,9 +592,15 @@ class LocalVideoListFragment : SwipeBackFragment(),
                 }
                 if (payload and PAYLOAD_REFRESH_VIDEODIR_SIZE_AND_VIDEO_COUNT != 0) {
                     val vh = holder as VideoDirViewHolder
-                    val videos = (item as VideoDirectory).videos
                     vh.videodirSizeText.text = FileUtils2.formatFileSize(item.size.toDouble())
-                    vh.videoCountText.text = getString(R.string.aTotalOfSeveralVideos, videos.size)
+                    vh.videoCountText.text = videoCountTextOf(item as VideoDirectory)
+                }
+                if (payload and PAYLOAD_REFRESH_DUPLICATE_VIDEOS != 0) {
+                    when (holder) {
+                        is VideoViewHolder -> holder.videoSizeText.text = videoSizeTextOf(item as Video)
+                        is VideoDirViewHolder ->
+                            holder.videoCountText.text = videoCountTextOf(item as VideoDirectory)
+                    }
                 }
             }
         }
@@ -537,7 +627,7 @@ class LocalVideoListFragment : SwipeBackFragment(),
                     val video = item as Video
 
                     vh.videoNameText.text = item.name
-                    vh.videoSizeText.text = FileUtils2.formatFileSize(item.size.toDouble())
+                    vh.videoSizeText.text = videoSizeTextOf(video)
                     vh.videoProgressAndDurationText.text =
                             VideoUtils2.concatVideoProgressAndDuration(video.progress, video.duration)
                 }
@@ -549,7 +639,7 @@ class LocalVideoListFragment : SwipeBackFragment(),
                             this@LocalVideoListFragment, vh.videodirImage, videos[0])
                     vh.videodirNameText.text = item.name
                     vh.videodirSizeText.text = FileUtils2.formatFileSize(item.size.toDouble())
-                    vh.videoCountText.text = getString(R.string.aTotalOfSeveralVideos, videos.size)
+                    vh.videoCountText.text = videoCountTextOf(item)
                 }
             }
         }
@@ -675,7 +765,7 @@ class LocalVideoListFragment : SwipeBackFragment(),
                 item.isTopped = topped
                 VideoListItemDao.getSingleton(v.context).setVideoListItemTopped(item, topped)
 
-                val newPosition = mVideoListItems.reordered().indexOf(item)
+                val newPosition = mVideoListItems.reorderedIndexOf(item)
                 if (newPosition == position) {
                     mAdapter.notifyItemChanged(position, PAYLOAD_CHANGE_ITEM_LPS_AND_BG)
                 } else {
@@ -795,7 +885,7 @@ class LocalVideoListFragment : SwipeBackFragment(),
                     } else {
                         val position = mVideoListItems.indexOf(item)
                         if (position != -1) {
-                            val newPosition = mVideoListItems.reordered().indexOf(item)
+                            val newPosition = mVideoListItems.reorderedIndexOf(item)
                             if (newPosition == position) {
                                 mAdapter.notifyItemChanged(position, PAYLOAD_REFRESH_ITEM_NAME)
                             } else {
@@ -1276,6 +1366,8 @@ class LocalVideoListFragment : SwipeBackFragment(),
                 PAYLOAD_REFRESH_VIDEO_PROGRESS_DURATION shl 1
         const val PAYLOAD_REFRESH_VIDEODIR_SIZE_AND_VIDEO_COUNT =
                 PAYLOAD_REFRESH_VIDEO_PROGRESS_DURATION shl 2
+        const val PAYLOAD_REFRESH_DUPLICATE_VIDEOS =
+                PAYLOAD_REFRESH_VIDEO_PROGRESS_DURATION shl 3
 
         const val VIEW_TYPE_VIDEODIR = 1
         const val VIEW_TYPE_VIDEO = 2
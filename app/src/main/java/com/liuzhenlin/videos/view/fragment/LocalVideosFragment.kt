@@ -14,6 +14,7 @@ import androidx.fragment.app.Fragment
 import com.liuzhenlin.slidingdrawerlayout.SlidingDrawerLayout
 import com.liuzhenlin.swipeback.SwipeBackLayout
 import com.liuzhenlin.videos.*
+import com.liuzhenlin.videos.utils.GestureFrameMonitor
 import com.liuzhenlin.videos.view.swiperefresh.SwipeRefreshLayout
 
 /**
@@ -121,6 +122,7 @@ class LocalVideosFragment : Fragment(), ILocalVideosFragment, FragmentPartLifecy
     override fun onFragmentViewCreated(childFragment: Fragment) {
         if (childFragment === mLocalFoldedVideosFragment) {
             childFragment.swipeBackLayout.addSwipeListener(this)
+            GestureFrameMonitor.getSingleton().monitor(childFragment.swipeBackLayout)
         }
     }
 
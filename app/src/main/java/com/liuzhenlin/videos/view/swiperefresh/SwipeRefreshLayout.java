@@ -51,6 +51,8 @@ import androidx.core.view.ViewCompat;
 import androidx.core.widget.ListViewCompat;
 import androidx.swiperefreshlayout.widget.CircularProgressDrawable;
 
+import com.liuzhenlin.videos.utils.GestureFrameMonitor;
+
 /**
  * The SwipeRefreshLayout should be used whenever the user can refresh the
  * contents of a view via a vertical swipe gesture. The activity that
@@ -216,6 +218,7 @@ public class SwipeRefreshLayout extends ViewGroup
     };
 
     void reset() {
+        reportGestureState(GestureFrameMonitor.STATE_IDLE);
         mCircleView.clearAnimation();
         mProgress.stop();
         mCircleView.setVisibility(View.GONE);
@@ -455,7 +458,17 @@ public class SwipeRefreshLayout extends ViewGroup
     }
 
     private void createProgressView() {
-        mCircleView = new CircleImageView(getContext());
+        mCircleView = new CircleImageView(getContext()) {
+            @Override
+            public void onAnimationEnd() {
+                super.onAnimationEnd();
+                // 松手后圆圈的一系列动画均已结束（未开始新的动画）
+                final Animation animation = getAnimation();
+                if (animation == null || animation.hasEnded()) {
+                    reportGestureState(GestureFrameMonitor.STATE_IDLE);
+                }
+            }
+        };
         mProgress = new CircularProgressDrawable(getContext());
         mProgress.setStyle(CircularProgressDrawable.DEFAULT);
         mCircleView.setImageDrawable(mProgress);
@@ -1131,7 +1144,13 @@ public class SwipeRefreshLayout extends ViewGroup
         return animation != null && animation.hasStarted() && !animation.hasEnded();
     }
 
+    void reportGestureState(@GestureFrameMonitor.GestureState int state) {
+        GestureFrameMonitor.getSingleton().reportGestureState(
+                this, GestureFrameMonitor.WIDGET_SWIPE_REFRESH, state);
+    }
+
     private void moveSpinner(float overscrollTop) {
+        reportGestureState(GestureFrameMonitor.STATE_DRAGGING);
         mProgress.setArrowEnabled(true);
         float originalDragPercent = overscrollTop / mTotalDragDistance;
 
@@ -1184,6 +1203,7 @@ public class SwipeRefreshLayout extends ViewGroup
     }
 
     private void finishSpinner(float overscrollTop) {
+        reportGestureState(GestureFrameMonitor.STATE_SETTLING);
         if (overscrollTop > mTotalDragDistance) {
             setRefreshing(true, true /* notify */);
         } else {
@@ -1293,6 +1313,7 @@ public class SwipeRefreshLayout extends ViewGroup
                 return false;
             }
             case MotionEvent.ACTION_CANCEL:
+                reportGestureState(GestureFrameMonitor.STATE_IDLE);
                 return false;
         }
 
@@ -0,0 +1,135 @@
+/*
+ * Created on 2026-10-20 12:41:09 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.videos;
+
+import com.liuzhenlin.videos.bean.Video;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link VideoListSorter} with the per-comparison, case-insensitive name comparison and
+ * the {@code LinkedList} based topping the video list was sorted with before, on 20k videos.
+ *
+ * @author 刘振林
+ */
+public class VideoListSorterBenchmark {
+
+    private static final int ITEM_COUNT = 20000;
+    private static final int ROUNDS = 5;
+
+    private static final String[] NAME_PARTS = {
+            "Holiday", "holiday", "Été", "ete", "视频", "录像", "Clip", "clip", "VID_", "Movie",
+    };
+
+    private static final Comparator<Video> LEGACY_COMPARATOR = (item, item2) -> {
+        final int result = item.getName().compareToIgnoreCase(item2.getName());
+        return result == 0 ? item.getPath().compareToIgnoreCase(item2.getPath()) : result;
+    };
+
+    private static List<Video> createVideos() {
+        Random random = new Random(20261020);
+        List<Video> videos = new ArrayList<>(ITEM_COUNT);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            final String name = NAME_PARTS[random.nextInt(NAME_PARTS.length)]
+                    + random.nextInt(100000)
+                    + NAME_PARTS[random.nextInt(NAME_PARTS.length)];
+            videos.add(new Video(i, name, "/sdcard/DCIM/" + i + "/" + name + ".mp4",
+                    random.nextInt(1 << 30), random.nextInt(100) == 0,
+                    0, random.nextInt(3600000), 1920, 1080));
+        }
+        return videos;
+    }
+
+    private static List<Video> legacyReordered(List<Video> videos) {
+        List<Video> items = new ArrayList<>(videos);
+        Collections.sort(items, LEGACY_COMPARATOR);
+        List<Video> toppedItems = null;
+        for (Video item : items) {
+            if (item.isTopped()) {
+                if (toppedItems == null) toppedItems = new LinkedList<>();
+                toppedItems.add(item);
+            }
+        }
+        if (toppedItems != null) {
+            items.removeAll(toppedItems);
+            items.addAll(0, toppedItems);
+        }
+        return items;
+    }
+
+    @Test
+    public void benchmarkReorder() {
+        final List<Video> videos = createVideos();
+        final VideoListSorter sorter = new VideoListSorter(VideoListSortOrder.NAME, Locale.US);
+
+        long legacyNs = Long.MAX_VALUE;
+        long sorterNs = Long.MAX_VALUE;
+        List<Video> sorted = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            legacyReordered(videos);
+            legacyNs = Math.min(legacyNs, System.nanoTime() - start);
+
+            sorted = new ArrayList<>(videos);
+            start = System.nanoTime();
+            sorter.reorder(sorted);
+            sorterNs = Math.min(sorterNs, System.nanoTime() - start);
+        }
+        System.out.println("Reorder " + ITEM_COUNT + " videos: legacy " + legacyNs / 1000000
+                + " ms, collation-key sorter " + sorterNs / 1000000 + " ms");
+
+        assertEquals(ITEM_COUNT, sorted.size());
+        boolean toppedSection = true;
+        for (Video video : sorted) {
+            if (!video.isTopped()) {
+                toppedSection = false;
+            }
+            assertTrue("Topped item after an untopped one", !video.isTopped() || toppedSection);
+        }
+    }
+
+    @Test
+    public void benchmarkSingleItemChange() {
+        final VideoListSorter sorter = new VideoListSorter(VideoListSortOrder.SIZE, Locale.US);
+        final List<Video> videos = createVideos();
+        sorter.reorder(videos);
+
+        final Random random = new Random(1);
+        long fullNs = 0;
+        long incrementalNs = 0;
+        for (int round = 0; round < ROUNDS * 20; round++) {
+            final Video video = videos.get(random.nextInt(ITEM_COUNT));
+            video.setTopped(!video.isTopped());
+
+            long start = System.nanoTime();
+            final List<Video> reordered = new ArrayList<>(videos);
+            sorter.reorder(reordered);
+            final int expectedIndex = reordered.indexOf(video);
+            fullNs += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final int index = sorter.indexInOrder(videos, video);
+            incrementalNs += System.nanoTime() - start;
+
+            assertEquals(expectedIndex, index);
+            videos.add(index, videos.remove(videos.indexOf(video)));
+        }
+        System.out.println("Reposition a changed video among " + ITEM_COUNT + ": full re-sort "
+                + fullNs / (ROUNDS * 20) / 1000 + " us, incremental "
+                + incrementalNs / (ROUNDS * 20) / 1000 + " us");
+    }
+}
@@ -22,6 +22,8 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.decoder.SimpleDecoder;
+import com.google.android.exoplayer2.ext.common.DecodeFpsMeter;
+import com.google.android.exoplayer2.ext.common.DecoderBufferBudget;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
 import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
@@ -38,6 +40,8 @@ import java.nio.ByteBuffer;
   // LINT.ThenChange(../../../../../../../jni/gav1_jni.cc)
 
   private final long gav1DecoderContext;
+  @Nullable private final DecodeFpsMeter decodeFpsMeter;
+  @Nullable private final DecoderBufferBudget.Allocation bufferAllocation;
 
   @C.VideoOutputMode private volatile int outputMode;
 
@@ -50,10 +54,18 @@ import java.nio.ByteBuffer;
    * @param threads Number of threads libgav1 will use to decode. If {@link
    *     Libgav1VideoRenderer#THREAD_COUNT_AUTODETECT} is passed, then this class will auto detect
    *     the number of threads to be used.
+   * @param decodeFpsMeter The meter to measure the decode rate with, or null.
+   * @param bufferAllocation The allocation from {@link DecoderBufferBudget} the buffer counts and
+   *     sizes come from, which is released with the decoder, or null.
    * @throws Gav1DecoderException Thrown if an exception occurs when initializing the decoder.
    */
   public Gav1Decoder(
-      int numInputBuffers, int numOutputBuffers, int initialInputBufferSize, int threads)
+      int numInputBuffers,
+      int numOutputBuffers,
+      int initialInputBufferSize,
+      int threads,
+      @Nullable DecodeFpsMeter decodeFpsMeter,
+      @Nullable DecoderBufferBudget.Allocation bufferAllocation)
       throws Gav1DecoderException {
     super(
         new VideoDecoderInputBuffer[numInputBuffers],
@@ -71,6 +83,8 @@ import java.nio.ByteBuffer;
       }
     }
 
+    this.decodeFpsMeter = decodeFpsMeter;
+    this.bufferAllocation = bufferAllocation;
     gav1DecoderContext = gav1Init(threads);
     if (gav1DecoderContext == GAV1_ERROR || gav1CheckError(gav1DecoderContext) == GAV1_ERROR) {
       throw new Gav1DecoderException(
@@ -98,9 +112,27 @@ import java.nio.ByteBuffer;
   @Nullable
   protected Gav1DecoderException decode(
       VideoDecoderInputBuffer inputBuffer, VideoDecoderOutputBuffer outputBuffer, boolean reset) {
+    // gav1Decode() only enqueues the data; the frame is decoded by the time gav1GetFrame()
+    // returns it, so the meter times both calls.
+    if (decodeFpsMeter != null) {
+      decodeFpsMeter.onDecodeStarted();
+    }
+    try {
+      return decodeAndGetFrame(inputBuffer, outputBuffer);
+    } finally {
+      if (decodeFpsMeter != null) {
+        decodeFpsMeter.onDecodeEnded();
+      }
+    }
+  }
+
+  @Nullable
+  private Gav1DecoderException decodeAndGetFrame(
+      VideoDecoderInputBuffer inputBuffer, VideoDecoderOutputBuffer outputBuffer) {
     ByteBuffer inputData = Util.castNonNull(inputBuffer.data);
     int inputSize = inputData.limit();
-    if (gav1Decode(gav1DecoderContext, inputData, inputSize) == GAV1_ERROR) {
+    int decodeResult = gav1Decode(gav1DecoderContext, inputData, inputSize);
+    if (decodeResult == GAV1_ERROR) {
       return new Gav1DecoderException(
           "gav1Decode error: " + gav1GetErrorMessage(gav1DecoderContext));
     }
@@ -134,6 +166,10 @@ import java.nio.ByteBuffer;
   @Override
   public void release() {
     super.release();
+    if (decodeFpsMeter != null) {
+      decodeFpsMeter.flush();
+    }
+    DecoderBufferBudget.getInstance().release(bufferAllocation);
     gav1Close(gav1DecoderContext);
   }
 
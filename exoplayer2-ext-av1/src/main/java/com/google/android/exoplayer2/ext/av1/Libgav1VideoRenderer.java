@@ -19,13 +19,19 @@ import android.os.Handler;
 import android.view.Surface;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.decoder.Decoder;
 import com.google.android.exoplayer2.drm.ExoMediaCrypto;
+import com.google.android.exoplayer2.ext.common.DecodeFpsMeter;
+import com.google.android.exoplayer2.ext.common.DecodeThreadingPolicy;
+import com.google.android.exoplayer2.ext.common.DecoderBufferBudget;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.video.DecoderVideoRenderer;
+import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
 import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
 import com.google.android.exoplayer2.video.VideoRendererEventListener;
 
@@ -46,15 +52,18 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
   private static final int DEFAULT_INPUT_BUFFER_SIZE =
       Util.ceilDivide(1280, 64) * Util.ceilDivide(720, 64) * (64 * 64 * 3 / 2) / 2;
 
-  /** The number of input buffers. */
+  /**
+   * The maximum number of input buffers. The number a decoder is created with is decided by
+   * {@link DecoderBufferBudget} from the stream resolution and the memory left.
+   */
   private final int numInputBuffers;
   /**
-   * The number of output buffers. The renderer may limit the minimum possible value due to
+   * The maximum number of output buffers. The renderer may limit the minimum possible value due to
    * requiring multiple output buffers to be dequeued at a time for it to make progress.
    */
   private final int numOutputBuffers;
 
-  private final int threads;
+  @Nullable private DecodeThreadingPolicy threadingPolicy;
 
   @Nullable private Gav1Decoder decoder;
 
@@ -79,7 +88,7 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
         eventHandler,
         eventListener,
         maxDroppedFramesToNotify,
-        THREAD_COUNT_AUTODETECT,
+        /* threadingPolicy= */ null,
         DEFAULT_NUM_OF_INPUT_BUFFERS,
         DEFAULT_NUM_OF_OUTPUT_BUFFERS);
   }
@@ -94,11 +103,11 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
    * @param eventListener A listener of events. May be null if delivery of events is not required.
    * @param maxDroppedFramesToNotify The maximum number of frames that can be dropped between
    *     invocations of {@link VideoRendererEventListener#onDroppedFrames(int, long)}.
-   * @param threads Number of threads libgav1 will use to decode. If {@link
+   * @param threads Number of threads libgav1 will use to decode, for every stream. If {@link
    *     #THREAD_COUNT_AUTODETECT} is passed, then the number of threads to use is autodetected
    *     based on CPU capabilities.
-   * @param numInputBuffers Number of input buffers.
-   * @param numOutputBuffers Number of output buffers.
+   * @param numInputBuffers Maximum number of input buffers.
+   * @param numOutputBuffers Maximum number of output buffers.
    */
   public Libgav1VideoRenderer(
       long allowedJoiningTimeMs,
@@ -108,12 +117,70 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
       int threads,
       int numInputBuffers,
       int numOutputBuffers) {
+    this(
+        allowedJoiningTimeMs,
+        eventHandler,
+        eventListener,
+        maxDroppedFramesToNotify,
+        DecodeThreadingPolicy.fixed(threads, /* rowMultiThreading= */ false),
+        numInputBuffers,
+        numOutputBuffers);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param allowedJoiningTimeMs The maximum duration in milliseconds for which this video renderer
+   *     can attempt to seamlessly join an ongoing playback.
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param maxDroppedFramesToNotify The maximum number of frames that can be dropped between
+   *     invocations of {@link VideoRendererEventListener#onDroppedFrames(int, long)}.
+   * @param threadingPolicy The policy deciding the threads libgav1 will use to decode each stream,
+   *     or null to use {@link DecodeThreadingPolicy#getDefault()}. A policy may decide on {@link
+   *     #THREAD_COUNT_AUTODETECT} to leave the choice to the libgav1 heuristic.
+   * @param numInputBuffers Maximum number of input buffers.
+   * @param numOutputBuffers Maximum number of output buffers.
+   */
+  public Libgav1VideoRenderer(
+      long allowedJoiningTimeMs,
+      @Nullable Handler eventHandler,
+      @Nullable VideoRendererEventListener eventListener,
+      int maxDroppedFramesToNotify,
+      @Nullable DecodeThreadingPolicy threadingPolicy,
+      int numInputBuffers,
+      int numOutputBuffers) {
     super(allowedJoiningTimeMs, eventHandler, eventListener, maxDroppedFramesToNotify);
-    this.threads = threads;
+    this.threadingPolicy = threadingPolicy;
     this.numInputBuffers = numInputBuffers;
     this.numOutputBuffers = numOutputBuffers;
   }
 
+  /**
+   * Creates a decoder for the given format that is not attached to any renderer and outputs
+   * frames in {@link C#VIDEO_OUTPUT_MODE_YUV}, e.g., to measure the throughput of libgav1 against
+   * that of the platform decoders. The caller must release the decoder.
+   *
+   * @throws Gav1DecoderException If the decoder could not be created.
+   */
+  public static Decoder<VideoDecoderInputBuffer, VideoDecoderOutputBuffer, Gav1DecoderException>
+      createStandaloneDecoder(Format format) throws Gav1DecoderException {
+    DecodeThreadingPolicy.Decision decision = DecodeThreadingPolicy.getDefault().select(format);
+    Gav1Decoder decoder =
+        new Gav1Decoder(
+            DEFAULT_NUM_OF_INPUT_BUFFERS,
+            DEFAULT_NUM_OF_OUTPUT_BUFFERS,
+            format.maxInputSize != Format.NO_VALUE
+                ? format.maxInputSize
+                : DEFAULT_INPUT_BUFFER_SIZE,
+            decision.threads,
+            /* decodeFpsMeter= */ null,
+            /* bufferAllocation= */ null);
+    decoder.setOutputMode(C.VIDEO_OUTPUT_MODE_YUV);
+    return decoder;
+  }
+
   @Override
   public String getName() {
     return TAG;
@@ -136,15 +203,44 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
   protected Gav1Decoder createDecoder(Format format, @Nullable ExoMediaCrypto mediaCrypto)
       throws Gav1DecoderException {
     TraceUtil.beginSection("createGav1Decoder");
-    int initialInputBufferSize =
-        format.maxInputSize != Format.NO_VALUE ? format.maxInputSize : DEFAULT_INPUT_BUFFER_SIZE;
-    Gav1Decoder decoder =
-        new Gav1Decoder(numInputBuffers, numOutputBuffers, initialInputBufferSize, threads);
+    DecoderBufferBudget.Allocation bufferAllocation =
+        DecoderBufferBudget.getInstance()
+            .allocate(format, numInputBuffers, numOutputBuffers, DEFAULT_INPUT_BUFFER_SIZE);
+    DecodeThreadingPolicy policy =
+        threadingPolicy != null ? threadingPolicy : DecodeThreadingPolicy.getDefault();
+    DecodeThreadingPolicy.Decision decision = policy.select(format);
+    Gav1Decoder decoder;
+    try {
+      decoder =
+          new Gav1Decoder(
+              bufferAllocation.numInputBuffers,
+              bufferAllocation.numOutputBuffers,
+              bufferAllocation.inputBufferSize,
+              decision.threads,
+              new DecodeFpsMeter(
+                  (decodeFps, frameCount) ->
+                      policy.onDecodeFpsMeasured(format, decision, decodeFps, frameCount)),
+              bufferAllocation);
+    } catch (Gav1DecoderException e) {
+      DecoderBufferBudget.getInstance().release(bufferAllocation);
+      throw e;
+    }
     this.decoder = decoder;
     TraceUtil.endSection();
     return decoder;
   }
 
+  @Override
+  public void handleMessage(int messageType, @Nullable Object message)
+      throws ExoPlaybackException {
+    if (messageType == DecodeThreadingPolicy.MSG_SET_DECODE_THREADING_POLICY) {
+      // Takes effect when the next decoder is created.
+      threadingPolicy = (DecodeThreadingPolicy) message;
+    } else {
+      super.handleMessage(messageType, message);
+    }
+  }
+
   @Override
   protected void renderOutputBufferToSurface(VideoDecoderOutputBuffer outputBuffer, Surface surface)
       throws Gav1DecoderException {
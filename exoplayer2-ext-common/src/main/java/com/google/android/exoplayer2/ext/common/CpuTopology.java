@@ -0,0 +1,128 @@
+/*
+ * Created on 2026-10-19 9:08:37 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+package com.google.android.exoplayer2.ext.common;
+
+import androidx.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * The core layout of the device CPU, read once from sysfs. Cores are told apart by their maximum
+ * frequencies: on big.LITTLE (and DynamIQ) SoCs, the cores of the slowest cluster are the
+ * efficiency cores and all the others are performance cores.
+ *
+ * @author 刘振林
+ */
+public final class CpuTopology {
+
+  private static final String CPU_DIR = "/sys/devices/system/cpu/";
+
+  @Nullable private static CpuTopology instance;
+
+  private final int coreCount;
+  private final int performanceCoreCount;
+
+  /** Returns the topology of the device CPU. */
+  public static synchronized CpuTopology get() {
+    if (instance == null) {
+      instance = read();
+    }
+    return instance;
+  }
+
+  private CpuTopology(int coreCount, int performanceCoreCount) {
+    this.coreCount = coreCount;
+    this.performanceCoreCount = performanceCoreCount;
+  }
+
+  /** Returns the number of cores present, whether or not they are currently online. */
+  public int getCoreCount() {
+    return coreCount;
+  }
+
+  /**
+   * Returns the number of the cores not in the slowest cluster, or {@link #getCoreCount()} if all
+   * the cores run at the same maximum frequency or the frequencies are unknown.
+   */
+  public int getPerformanceCoreCount() {
+    return performanceCoreCount;
+  }
+
+  /** Returns whether the CPU has cores of different maximum frequencies. */
+  public boolean isHeterogeneous() {
+    return performanceCoreCount < coreCount;
+  }
+
+  @Override
+  public String toString() {
+    return "CpuTopology{cores=" + coreCount + ", performanceCores=" + performanceCoreCount + "}";
+  }
+
+  private static CpuTopology read() {
+    int coreCount = Runtime.getRuntime().availableProcessors();
+    // 下线的核心不计入 availableProcessors()，以 present 列表为准
+    String present = readLine(CPU_DIR + "present");
+    if (present != null) {
+      coreCount = Math.max(coreCount, parseCpuListSize(present));
+    }
+
+    long[] maxFreqs = new long[coreCount];
+    long minMaxFreq = Long.MAX_VALUE;
+    for (int i = 0; i < coreCount; i++) {
+      String freq = readLine(CPU_DIR + "cpu" + i + "/cpufreq/cpuinfo_max_freq");
+      if (freq == null) {
+        return new CpuTopology(coreCount, coreCount);
+      }
+      try {
+        maxFreqs[i] = Long.parseLong(freq);
+      } catch (NumberFormatException e) {
+        return new CpuTopology(coreCount, coreCount);
+      }
+      minMaxFreq = Math.min(minMaxFreq, maxFreqs[i]);
+    }
+    int performanceCoreCount = 0;
+    for (long maxFreq : maxFreqs) {
+      if (maxFreq > minMaxFreq) {
+        performanceCoreCount++;
+      }
+    }
+    if (performanceCoreCount == 0) {
+      performanceCoreCount = coreCount;
+    }
+    return new CpuTopology(coreCount, performanceCoreCount);
+  }
+
+  /** Returns the number of cpus in a list like "0-3,6,8-9". */
+  private static int parseCpuListSize(String cpuList) {
+    int size = 0;
+    try {
+      for (String range : cpuList.split(",")) {
+        int dash = range.indexOf('-');
+        if (dash < 0) {
+          size++;
+        } else {
+          size +=
+              Integer.parseInt(range.substring(dash + 1).trim())
+                  - Integer.parseInt(range.substring(0, dash).trim())
+                  + 1;
+        }
+      }
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+    return size;
+  }
+
+  @Nullable
+  private static String readLine(String path) {
+    try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+      String line = reader.readLine();
+      return line != null ? line.trim() : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
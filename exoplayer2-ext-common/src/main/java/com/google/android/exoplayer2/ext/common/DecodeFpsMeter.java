@@ -0,0 +1,73 @@
+/*
+ * Created on 2026-10-19 9:21:50 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+package com.google.android.exoplayer2.ext.common;
+
+/**
+ * Measures the rate at which a software decoder can decode frames, i.e., the number of frames
+ * decoded per second of time spent in the decode calls, which is what the decoder could sustain
+ * if it were never waiting for input or output buffers.
+ *
+ * <p>The methods must be called on the decoder thread, where the listener is also called, except
+ * {@link #flush()}, which may be called on another thread after the decoder thread has exited.
+ *
+ * @author 刘振林
+ */
+public final class DecodeFpsMeter {
+
+  /** Listener for the measured decode rates. */
+  public interface Listener {
+
+    /**
+     * Called with the decode rate achieved over the last {@code frameCount} frames.
+     *
+     * @param decodeFps The number of frames decoded per second spent decoding.
+     * @param frameCount The number of frames the rate was measured over.
+     */
+    void onDecodeFpsMeasured(float decodeFps, int frameCount);
+  }
+
+  /** The number of frames over which each reported rate is measured. */
+  public static final int REPORT_INTERVAL_FRAMES = 120;
+
+  private final Listener listener;
+
+  private long decodeStartTimeNs;
+  private long decodeTimeNs;
+  private int frameCount;
+
+  public DecodeFpsMeter(Listener listener) {
+    this.listener = listener;
+  }
+
+  /** Called right before a frame is passed to the decoder. */
+  public void onDecodeStarted() {
+    decodeStartTimeNs = System.nanoTime();
+  }
+
+  /** Called right after the decoder returns the frame. */
+  public void onDecodeEnded() {
+    decodeTimeNs += System.nanoTime() - decodeStartTimeNs;
+    if (++frameCount >= REPORT_INTERVAL_FRAMES) {
+      report();
+    }
+  }
+
+  /**
+   * Reports the frames decoded since the last report, if any, e.g., when the decoder is released.
+   */
+  public void flush() {
+    if (frameCount > 0) {
+      report();
+    }
+  }
+
+  private void report() {
+    if (decodeTimeNs > 0) {
+      listener.onDecodeFpsMeasured(frameCount * 1e9f / decodeTimeNs, frameCount);
+    }
+    decodeTimeNs = 0;
+    frameCount = 0;
+  }
+}
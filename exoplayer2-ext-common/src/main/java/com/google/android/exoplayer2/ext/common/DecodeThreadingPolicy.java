@@ -0,0 +1,193 @@
+/*
+ * Created on 2026-10-19 9:14:26 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+package com.google.android.exoplayer2.ext.common;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+/**
+ * Decides how many threads a software video decoder (libvpx or libgav1) decodes a stream with,
+ * and whether libvpx should also split the work by superblock rows, from the resolution and
+ * frame rate of the stream and the {@link CpuTopology} of the device.
+ *
+ * <p>The thread count grows with the pixel rate of the stream, preferring the performance cores
+ * and spilling onto the efficiency cores only when the former are not enough, so that 4K video
+ * uses the whole CPU while 480p does not wake up threads it has no work for. Without row based
+ * multi-threading libvpx can use no more threads than the stream has tile columns (at least 256
+ * pixels wide each), so it is enabled when more threads than that are chosen.
+ *
+ * <p>A renderer uses the policy it was constructed with, or the one sent to it in a {@link
+ * #MSG_SET_DECODE_THREADING_POLICY} message, or otherwise the {@link #getDefault() default}
+ * policy. The decode rates measured by the decoders are reported back to the policy through
+ * {@link #onDecodeFpsMeasured(Format, Decision, float, int)}, which ignores them unless
+ * overridden; {@link #logging()} returns a policy that logs them.
+ *
+ * @author 刘振林
+ */
+public class DecodeThreadingPolicy {
+
+  private static final String TAG = "DecodeThreadingPolicy";
+
+  /**
+   * The type of a message that can be passed to a software video renderer via {@code
+   * ExoPlayer.createMessage(Target)}. The message payload should be the {@link
+   * DecodeThreadingPolicy} for the decoders the renderer creates from then on, or null to use the
+   * default policy.
+   */
+  public static final int MSG_SET_DECODE_THREADING_POLICY = Renderer.MSG_CUSTOM_BASE;
+
+  /** The number of pixels per second one core is expected to decode in real time: 720p30. */
+  private static final long PIXEL_RATE_PER_THREAD = 1280L * 720 * 30;
+
+  private static final int DEFAULT_WIDTH = 1920;
+  private static final int DEFAULT_HEIGHT = 1080;
+  private static final float DEFAULT_FRAME_RATE = 30f;
+
+  /** The minimum width of a VP9 tile column. */
+  private static final int VP9_MIN_TILE_WIDTH = 256;
+  private static final int VP9_MAX_TILE_COLUMNS = 64;
+
+  private static volatile DecodeThreadingPolicy defaultPolicy = new DecodeThreadingPolicy();
+
+  /** How a decoder should be threaded. */
+  public static final class Decision {
+
+    /** The number of threads to decode with. */
+    public final int threads;
+    /** Whether libvpx should use row based multi-threading. Ignored by libgav1. */
+    public final boolean rowMultiThreading;
+
+    public Decision(int threads, boolean rowMultiThreading) {
+      this.threads = threads;
+      this.rowMultiThreading = rowMultiThreading;
+    }
+
+    @Override
+    public String toString() {
+      return "Decision{threads=" + threads + ", rowMultiThreading=" + rowMultiThreading + "}";
+    }
+  }
+
+  /** Returns the policy used by the renderers that are not given one. */
+  public static DecodeThreadingPolicy getDefault() {
+    return defaultPolicy;
+  }
+
+  /**
+   * Sets the policy used by the renderers that are not given one, including those created by
+   * {@code DefaultRenderersFactory}. Takes effect when the next decoder is created.
+   */
+  public static void setDefault(@Nullable DecodeThreadingPolicy policy) {
+    defaultPolicy = policy != null ? policy : new DecodeThreadingPolicy();
+  }
+
+  /**
+   * Returns a policy that always decodes with the given number of threads, regardless of the
+   * stream.
+   */
+  public static DecodeThreadingPolicy fixed(int threads, boolean rowMultiThreading) {
+    Decision decision = new Decision(threads, rowMultiThreading);
+    return new DecodeThreadingPolicy() {
+      @Override
+      public Decision select(Format format) {
+        return decision;
+      }
+    };
+  }
+
+  /**
+   * Decides how to thread the decoder for the given format. Called on the playback thread each
+   * time a decoder is created.
+   */
+  public Decision select(Format format) {
+    int width = format.width != Format.NO_VALUE ? format.width : DEFAULT_WIDTH;
+    int height = format.height != Format.NO_VALUE ? format.height : DEFAULT_HEIGHT;
+    float frameRate = format.frameRate != Format.NO_VALUE ? format.frameRate : DEFAULT_FRAME_RATE;
+    double pixelRate = (double) width * height * frameRate;
+
+    CpuTopology cpu = CpuTopology.get();
+    int threads = (int) Math.ceil(pixelRate / PIXEL_RATE_PER_THREAD);
+    if (threads > cpu.getPerformanceCoreCount()) {
+      // 大核不够时才用上小核
+      threads = Math.min(threads, cpu.getCoreCount());
+    }
+    threads = Math.max(threads, 1);
+
+    boolean rowMultiThreading = false;
+    if (MimeTypes.VIDEO_VP9.equals(format.sampleMimeType)) {
+      rowMultiThreading = threads > getMaxVp9TileColumns(width);
+    }
+    return new Decision(threads, rowMultiThreading);
+  }
+
+  /**
+   * Returns the most tile columns a VP9 stream of the given width can have, which is the number
+   * of threads libvpx can keep busy without row based multi-threading.
+   */
+  private static int getMaxVp9TileColumns(int width) {
+    int tileColumns = 1;
+    while (tileColumns * 2 <= width / VP9_MIN_TILE_WIDTH && tileColumns < VP9_MAX_TILE_COLUMNS) {
+      tileColumns *= 2;
+    }
+    return tileColumns;
+  }
+
+  /**
+   * Returns a policy that threads the decoders as the default policy does and logs each decode
+   * rate measured, as a warning if the decoder can not keep up with the frame rate of the stream.
+   */
+  public static DecodeThreadingPolicy logging() {
+    return new DecodeThreadingPolicy() {
+      @Override
+      public void onDecodeFpsMeasured(
+          Format format, Decision decision, float decodeFps, int frameCount) {
+        logDecodeFps(format, decision, decodeFps, frameCount);
+      }
+    };
+  }
+
+  /**
+   * Called on the decoder thread (or the playback thread as the decoder is released) with the
+   * decode rate a decoder threaded as {@code decision} achieved for the given format. Does nothing
+   * by default; override it, or use {@link #logging()}, to collect or log the rates.
+   *
+   * @param format The format the decoder was created for.
+   * @param decision The decision the decoder was created with.
+   * @param decodeFps The number of frames decoded per second spent decoding.
+   * @param frameCount The number of frames the rate was measured over.
+   */
+  public void onDecodeFpsMeasured(
+      Format format, Decision decision, float decodeFps, int frameCount) {}
+
+  /**
+   * Logs a decode rate passed to {@link #onDecodeFpsMeasured(Format, Decision, float, int)}, as a
+   * warning if the decoder can not keep up with the frame rate of the stream.
+   */
+  public static void logDecodeFps(
+      Format format, Decision decision, float decodeFps, int frameCount) {
+    String message =
+        format.sampleMimeType
+            + " "
+            + format.width
+            + "x"
+            + format.height
+            + "@"
+            + format.frameRate
+            + ": "
+            + decodeFps
+            + " fps over "
+            + frameCount
+            + " frames with "
+            + decision;
+    if (format.frameRate != Format.NO_VALUE && decodeFps < format.frameRate) {
+      Log.w(TAG, "Decoder falling behind, " + message);
+    } else {
+      Log.d(TAG, message);
+    }
+  }
+}
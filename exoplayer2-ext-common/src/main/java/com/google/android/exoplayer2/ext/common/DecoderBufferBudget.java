@@ -0,0 +1,192 @@
+/*
+ * Created on 2026-10-19 9:52:08 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+package com.google.android.exoplayer2.ext.common;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * A process-wide memory budget for the input and output buffers of the software video decoders
+ * (libvpx and libgav1).
+ *
+ * <p>Instead of a fixed number of fixed size buffers, each decoder is given buffers sized after
+ * the resolution of its stream: low resolution streams, which decode in a fraction of a frame
+ * interval, get the minimum number of buffers and smaller input buffers, while high resolution
+ * ones get up to the number the renderer asks for, as far as the memory left within the cap
+ * allows. The memory is estimated from the buffer sizes, counting raw 4:2:0 frames for the
+ * output buffers, and is given back when the decoder is released.
+ *
+ * @author 刘振林
+ */
+public final class DecoderBufferBudget {
+
+  private static final String TAG = "DecoderBufferBudget";
+
+  /** The fewest input and output buffers a decoder can make progress with. */
+  public static final int MIN_BUFFER_COUNT = 2;
+
+  /** The smallest initial size of an input buffer. Input buffers grow as needed anyway. */
+  private static final int MIN_INPUT_BUFFER_SIZE = 64 * 1024;
+
+  /** Streams up to this many pixels per frame (480p) get the minimum number of buffers. */
+  private static final int LOW_RESOLUTION_PIXELS = 854 * 480;
+
+  private static final int DEFAULT_WIDTH = 1920;
+  private static final int DEFAULT_HEIGHT = 1080;
+
+  private static final long MIN_MEMORY_CAP_BYTES = 16 * 1024 * 1024;
+  private static final long MAX_DEFAULT_MEMORY_CAP_BYTES = 128 * 1024 * 1024;
+
+  private static final DecoderBufferBudget INSTANCE = new DecoderBufferBudget();
+
+  private long memoryCapBytes;
+  private long usedBytes;
+  private int allocationCount;
+
+  /** The buffers granted to a decoder. */
+  public static final class Allocation {
+
+    public final int numInputBuffers;
+    public final int numOutputBuffers;
+    /** The initial size of each input buffer, in bytes. */
+    public final int inputBufferSize;
+
+    /* package */ final long bufferBytes;
+    /* package */ long extraBytes;
+    /* package */ boolean released;
+
+    /* package */ Allocation(int numInputBuffers, int numOutputBuffers, int inputBufferSize,
+        long bufferBytes) {
+      this.numInputBuffers = numInputBuffers;
+      this.numOutputBuffers = numOutputBuffers;
+      this.inputBufferSize = inputBufferSize;
+      this.bufferBytes = bufferBytes;
+    }
+
+    @Override
+    public String toString() {
+      return "Allocation{numInputBuffers="
+          + numInputBuffers
+          + ", numOutputBuffers="
+          + numOutputBuffers
+          + ", inputBufferSize="
+          + inputBufferSize
+          + "}";
+    }
+  }
+
+  public static DecoderBufferBudget getInstance() {
+    return INSTANCE;
+  }
+
+  private DecoderBufferBudget() {
+    // 默认取堆上限的四分之一，限制在 16 MB 到 128 MB 之间
+    memoryCapBytes =
+        Util.constrainValue(
+            Runtime.getRuntime().maxMemory() / 4,
+            MIN_MEMORY_CAP_BYTES,
+            MAX_DEFAULT_MEMORY_CAP_BYTES);
+  }
+
+  /** Returns the most memory all the decoders together are given for their buffers. */
+  public synchronized long getMemoryCapBytes() {
+    return memoryCapBytes;
+  }
+
+  /**
+   * Sets the most memory all the decoders together are given for their buffers. Takes effect
+   * when the next decoder is created.
+   */
+  public synchronized void setMemoryCapBytes(long memoryCapBytes) {
+    this.memoryCapBytes = Math.max(memoryCapBytes, MIN_MEMORY_CAP_BYTES);
+  }
+
+  /** Returns the estimated memory currently used by the buffers of all the live decoders. */
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /** Returns the number of live decoders holding buffers from the budget. */
+  public synchronized int getDecoderCount() {
+    return allocationCount;
+  }
+
+  /**
+   * Grants buffers to a decoder to be created for the given format. The allocation must be
+   * {@link #release(Allocation) released} with the decoder.
+   *
+   * @param format The format of the stream.
+   * @param maxInputBuffers The number of input buffers the renderer asks for at most.
+   * @param maxOutputBuffers The number of output buffers the renderer asks for at most.
+   * @param defaultInputBufferSize The largest initial size of an input buffer, used when the
+   *     format does not specify {@link Format#maxInputSize}.
+   */
+  public synchronized Allocation allocate(
+      Format format, int maxInputBuffers, int maxOutputBuffers, int defaultInputBufferSize) {
+    int width = format.width != Format.NO_VALUE ? format.width : DEFAULT_WIDTH;
+    int height = format.height != Format.NO_VALUE ? format.height : DEFAULT_HEIGHT;
+    long frameBytes = (long) width * height * 3 / 2;
+
+    int inputBufferSize;
+    if (format.maxInputSize != Format.NO_VALUE) {
+      inputBufferSize = format.maxInputSize;
+    } else {
+      // Assume frames compressed by a factor of at least two.
+      inputBufferSize =
+          (int)
+              Util.constrainValue(
+                  frameBytes / 2,
+                  Math.min(MIN_INPUT_BUFFER_SIZE, defaultInputBufferSize),
+                  defaultInputBufferSize);
+    }
+
+    int numInputBuffers = Math.max(maxInputBuffers, MIN_BUFFER_COUNT);
+    int numOutputBuffers = Math.max(maxOutputBuffers, MIN_BUFFER_COUNT);
+    if ((long) width * height <= LOW_RESOLUTION_PIXELS) {
+      numInputBuffers = MIN_BUFFER_COUNT;
+      numOutputBuffers = MIN_BUFFER_COUNT;
+    }
+
+    // 超出预算时先减少占用最大的输出缓冲，再减少输入缓冲，但不少于能推进解码的最小数量
+    long available = memoryCapBytes - usedBytes;
+    while (numInputBuffers * (long) inputBufferSize + numOutputBuffers * frameBytes > available) {
+      if (numOutputBuffers > MIN_BUFFER_COUNT) {
+        numOutputBuffers--;
+      } else if (numInputBuffers > MIN_BUFFER_COUNT) {
+        numInputBuffers--;
+      } else {
+        Log.w(TAG, "Memory cap exceeded by a decoder for " + width + "x" + height);
+        break;
+      }
+    }
+
+    long bufferBytes = numInputBuffers * (long) inputBufferSize + numOutputBuffers * frameBytes;
+    usedBytes += bufferBytes;
+    allocationCount++;
+    return new Allocation(numInputBuffers, numOutputBuffers, inputBufferSize, bufferBytes);
+  }
+
+  /**
+   * Updates the memory a decoder uses apart from its input and output buffers, e.g., for the
+   * supplemental data of its frames.
+   */
+  public synchronized void setExtraBytes(Allocation allocation, long extraBytes) {
+    if (!allocation.released) {
+      usedBytes += extraBytes - allocation.extraBytes;
+      allocation.extraBytes = extraBytes;
+    }
+  }
+
+  /** Gives back the memory of the given allocation. Does nothing if it was already released. */
+  public synchronized void release(@Nullable Allocation allocation) {
+    if (allocation != null && !allocation.released) {
+      allocation.released = true;
+      usedBytes -= allocation.bufferBytes + allocation.extraBytes;
+      allocationCount--;
+    }
+  }
+}
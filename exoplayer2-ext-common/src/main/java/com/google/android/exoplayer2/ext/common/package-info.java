@@ -0,0 +1,8 @@
+/*
+ * Created on 2026-10-19 9:05:12 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+@NonNullApi
+package com.google.android.exoplayer2.ext.common;
+
+import com.google.android.exoplayer2.util.NonNullApi;
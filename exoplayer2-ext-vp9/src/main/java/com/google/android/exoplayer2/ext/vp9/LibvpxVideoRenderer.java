@@ -15,18 +15,22 @@
  */
 package com.google.android.exoplayer2.ext.vp9;
 
-import static java.lang.Runtime.getRuntime;
-
 import android.os.Handler;
 import android.view.Surface;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.decoder.Decoder;
 import com.google.android.exoplayer2.drm.ExoMediaCrypto;
+import com.google.android.exoplayer2.ext.common.DecodeFpsMeter;
+import com.google.android.exoplayer2.ext.common.DecodeThreadingPolicy;
+import com.google.android.exoplayer2.ext.common.DecoderBufferBudget;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.video.DecoderVideoRenderer;
+import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
 import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
 import com.google.android.exoplayer2.video.VideoRendererEventListener;
 
@@ -35,10 +39,13 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
 
   private static final String TAG = "LibvpxVideoRenderer";
 
-  /** The number of input buffers. */
+  /**
+   * The maximum number of input buffers. The number a decoder is created with is decided by
+   * {@link DecoderBufferBudget} from the stream resolution and the memory left.
+   */
   private final int numInputBuffers;
   /**
-   * The number of output buffers. The renderer may limit the minimum possible value due to
+   * The maximum number of output buffers. The renderer may limit the minimum possible value due to
    * requiring multiple output buffers to be dequeued at a time for it to make progress.
    */
   private final int numOutputBuffers;
@@ -48,7 +55,7 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
    */
   private static final int DEFAULT_INPUT_BUFFER_SIZE = 768 * 1024;
 
-  private final int threads;
+  @Nullable private DecodeThreadingPolicy threadingPolicy;
 
   @Nullable private VpxDecoder decoder;
 
@@ -83,7 +90,7 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
         eventHandler,
         eventListener,
         maxDroppedFramesToNotify,
-        getRuntime().availableProcessors(),
+        /* threadingPolicy= */ null,
         /* numInputBuffers= */ 4,
         /* numOutputBuffers= */ 4);
   }
@@ -98,9 +105,9 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
    * @param eventListener A listener of events. May be null if delivery of events is not required.
    * @param maxDroppedFramesToNotify The maximum number of frames that can be dropped between
    *     invocations of {@link VideoRendererEventListener#onDroppedFrames(int, long)}.
-   * @param threads Number of threads libvpx will use to decode.
-   * @param numInputBuffers Number of input buffers.
-   * @param numOutputBuffers Number of output buffers.
+   * @param threads Number of threads libvpx will use to decode, for every stream.
+   * @param numInputBuffers Maximum number of input buffers.
+   * @param numOutputBuffers Maximum number of output buffers.
    */
   public LibvpxVideoRenderer(
       long allowedJoiningTimeMs,
@@ -110,12 +117,71 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
       int threads,
       int numInputBuffers,
       int numOutputBuffers) {
+    this(
+        allowedJoiningTimeMs,
+        eventHandler,
+        eventListener,
+        maxDroppedFramesToNotify,
+        DecodeThreadingPolicy.fixed(threads, /* rowMultiThreading= */ false),
+        numInputBuffers,
+        numOutputBuffers);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param allowedJoiningTimeMs The maximum duration in milliseconds for which this video renderer
+   *     can attempt to seamlessly join an ongoing playback.
+   * @param eventHandler A handler to use when delivering events to {@code eventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   * @param maxDroppedFramesToNotify The maximum number of frames that can be dropped between
+   *     invocations of {@link VideoRendererEventListener#onDroppedFrames(int, long)}.
+   * @param threadingPolicy The policy deciding the threads libvpx will use to decode each stream,
+   *     or null to use {@link DecodeThreadingPolicy#getDefault()}.
+   * @param numInputBuffers Maximum number of input buffers.
+   * @param numOutputBuffers Maximum number of output buffers.
+   */
+  public LibvpxVideoRenderer(
+      long allowedJoiningTimeMs,
+      @Nullable Handler eventHandler,
+      @Nullable VideoRendererEventListener eventListener,
+      int maxDroppedFramesToNotify,
+      @Nullable DecodeThreadingPolicy threadingPolicy,
+      int numInputBuffers,
+      int numOutputBuffers) {
     super(allowedJoiningTimeMs, eventHandler, eventListener, maxDroppedFramesToNotify);
-    this.threads = threads;
+    this.threadingPolicy = threadingPolicy;
     this.numInputBuffers = numInputBuffers;
     this.numOutputBuffers = numOutputBuffers;
   }
 
+  /**
+   * Creates a decoder for the given format that is not attached to any renderer and outputs
+   * frames in {@link C#VIDEO_OUTPUT_MODE_YUV}, e.g., to measure the throughput of libvpx against
+   * that of the platform decoders. The caller must release the decoder.
+   *
+   * @throws VpxDecoderException If the decoder could not be created.
+   */
+  public static Decoder<VideoDecoderInputBuffer, VideoDecoderOutputBuffer, VpxDecoderException>
+      createStandaloneDecoder(Format format) throws VpxDecoderException {
+    DecodeThreadingPolicy.Decision decision = DecodeThreadingPolicy.getDefault().select(format);
+    VpxDecoder decoder =
+        new VpxDecoder(
+            /* numInputBuffers= */ 4,
+            /* numOutputBuffers= */ 4,
+            format.maxInputSize != Format.NO_VALUE
+                ? format.maxInputSize
+                : DEFAULT_INPUT_BUFFER_SIZE,
+            /* exoMediaCrypto= */ null,
+            decision.threads,
+            decision.rowMultiThreading,
+            /* decodeFpsMeter= */ null,
+            /* bufferAllocation= */ null);
+    decoder.setOutputMode(C.VIDEO_OUTPUT_MODE_YUV);
+    return decoder;
+  }
+
   @Override
   public String getName() {
     return TAG;
@@ -140,16 +206,46 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
   protected VpxDecoder createDecoder(Format format, @Nullable ExoMediaCrypto mediaCrypto)
       throws VpxDecoderException {
     TraceUtil.beginSection("createVpxDecoder");
-    int initialInputBufferSize =
-        format.maxInputSize != Format.NO_VALUE ? format.maxInputSize : DEFAULT_INPUT_BUFFER_SIZE;
-    VpxDecoder decoder =
-        new VpxDecoder(
-            numInputBuffers, numOutputBuffers, initialInputBufferSize, mediaCrypto, threads);
+    DecoderBufferBudget.Allocation bufferAllocation =
+        DecoderBufferBudget.getInstance()
+            .allocate(format, numInputBuffers, numOutputBuffers, DEFAULT_INPUT_BUFFER_SIZE);
+    DecodeThreadingPolicy policy =
+        threadingPolicy != null ? threadingPolicy : DecodeThreadingPolicy.getDefault();
+    DecodeThreadingPolicy.Decision decision = policy.select(format);
+    VpxDecoder decoder;
+    try {
+      decoder =
+          new VpxDecoder(
+              bufferAllocation.numInputBuffers,
+              bufferAllocation.numOutputBuffers,
+              bufferAllocation.inputBufferSize,
+              mediaCrypto,
+              decision.threads,
+              decision.rowMultiThreading,
+              new DecodeFpsMeter(
+                  (decodeFps, frameCount) ->
+                      policy.onDecodeFpsMeasured(format, decision, decodeFps, frameCount)),
+              bufferAllocation);
+    } catch (VpxDecoderException e) {
+      DecoderBufferBudget.getInstance().release(bufferAllocation);
+      throw e;
+    }
     this.decoder = decoder;
     TraceUtil.endSection();
     return decoder;
   }
 
+  @Override
+  public void handleMessage(int messageType, @Nullable Object message)
+      throws ExoPlaybackException {
+    if (messageType == DecodeThreadingPolicy.MSG_SET_DECODE_THREADING_POLICY) {
+      // Takes effect when the next decoder is created.
+      threadingPolicy = (DecodeThreadingPolicy) message;
+    } else {
+      super.handleMessage(messageType, message);
+    }
+  }
+
   @Override
   protected void renderOutputBufferToSurface(VideoDecoderOutputBuffer outputBuffer, Surface surface)
       throws VpxDecoderException {
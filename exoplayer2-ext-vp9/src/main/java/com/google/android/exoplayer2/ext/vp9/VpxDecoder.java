@@ -23,6 +23,8 @@ import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.decoder.SimpleDecoder;
 import com.google.android.exoplayer2.drm.DecryptionException;
 import com.google.android.exoplayer2.drm.ExoMediaCrypto;
+import com.google.android.exoplayer2.ext.common.DecodeFpsMeter;
+import com.google.android.exoplayer2.ext.common.DecoderBufferBudget;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
@@ -39,8 +41,13 @@ import java.nio.ByteBuffer;
   private static final int DECODE_ERROR = -1;
   private static final int DRM_ERROR = -2;
 
+  /** The smallest capacity of the buffer holding the supplemental data of the last frame. */
+  private static final int MIN_SUPPLEMENTAL_DATA_CAPACITY = 256;
+
   @Nullable private final ExoMediaCrypto exoMediaCrypto;
   private final long vpxDecContext;
+  @Nullable private final DecodeFpsMeter decodeFpsMeter;
+  @Nullable private final DecoderBufferBudget.Allocation bufferAllocation;
 
   @Nullable private ByteBuffer lastSupplementalData;
 
@@ -55,6 +62,11 @@ import java.nio.ByteBuffer;
    * @param exoMediaCrypto The {@link ExoMediaCrypto} object required for decoding encrypted
    *     content. Maybe null and can be ignored if decoder does not handle encrypted content.
    * @param threads Number of threads libvpx will use to decode.
+   * @param enableRowMultiThreadMode Whether libvpx should also split the decoding of each tile by
+   *     superblock rows across the threads.
+   * @param decodeFpsMeter The meter to measure the decode rate with, or null.
+   * @param bufferAllocation The allocation from {@link DecoderBufferBudget} the buffer counts and
+   *     sizes come from, which is released with the decoder, or null.
    * @throws VpxDecoderException Thrown if an exception occurs when initializing the decoder.
    */
   public VpxDecoder(
@@ -62,7 +74,10 @@ import java.nio.ByteBuffer;
       int numOutputBuffers,
       int initialInputBufferSize,
       @Nullable ExoMediaCrypto exoMediaCrypto,
-      int threads)
+      int threads,
+      boolean enableRowMultiThreadMode,
+      @Nullable DecodeFpsMeter decodeFpsMeter,
+      @Nullable DecoderBufferBudget.Allocation bufferAllocation)
       throws VpxDecoderException {
     super(
         new VideoDecoderInputBuffer[numInputBuffers],
@@ -74,8 +89,9 @@ import java.nio.ByteBuffer;
     if (exoMediaCrypto != null && !VpxLibrary.vpxIsSecureDecodeSupported()) {
       throw new VpxDecoderException("Vpx decoder does not support secure decode.");
     }
-    vpxDecContext =
-        vpxInit(/* disableLoopFilter= */ false, /* enableRowMultiThreadMode= */ false, threads);
+    this.decodeFpsMeter = decodeFpsMeter;
+    this.bufferAllocation = bufferAllocation;
+    vpxDecContext = vpxInit(/* disableLoopFilter= */ false, enableRowMultiThreadMode, threads);
     if (vpxDecContext == 0) {
       throw new VpxDecoderException("Failed to initialize decoder");
     }
@@ -124,6 +140,9 @@ import java.nio.ByteBuffer;
     ByteBuffer inputData = Util.castNonNull(inputBuffer.data);
     int inputSize = inputData.limit();
     CryptoInfo cryptoInfo = inputBuffer.cryptoInfo;
+    if (decodeFpsMeter != null) {
+      decodeFpsMeter.onDecodeStarted();
+    }
     final long result =
         inputBuffer.isEncrypted()
             ? vpxSecureDecode(
@@ -138,6 +157,9 @@ import java.nio.ByteBuffer;
                 cryptoInfo.numBytesOfClearData,
                 cryptoInfo.numBytesOfEncryptedData)
             : vpxDecode(vpxDecContext, inputData, inputSize);
+    if (decodeFpsMeter != null) {
+      decodeFpsMeter.onDecodeEnded();
+    }
     if (result != NO_ERROR) {
       if (result == DRM_ERROR) {
         String message = "Drm error: " + vpxGetErrorMessage(vpxDecContext);
@@ -154,7 +176,13 @@ import java.nio.ByteBuffer;
       int size = supplementalData.remaining();
       if (size > 0) {
         if (lastSupplementalData == null || lastSupplementalData.capacity() < size) {
-          lastSupplementalData = ByteBuffer.allocate(size);
+          // Grow to the next power of two so that the buffer is reused for the sizes around it.
+          int capacity =
+              Integer.highestOneBit(Math.max(size, MIN_SUPPLEMENTAL_DATA_CAPACITY) - 1) << 1;
+          lastSupplementalData = ByteBuffer.allocate(capacity);
+          if (bufferAllocation != null) {
+            DecoderBufferBudget.getInstance().setExtraBytes(bufferAllocation, capacity);
+          }
         } else {
           lastSupplementalData.clear();
         }
@@ -179,6 +207,10 @@ import java.nio.ByteBuffer;
   @Override
   public void release() {
     super.release();
+    if (decodeFpsMeter != null) {
+      decodeFpsMeter.flush();
+    }
+    DecoderBufferBudget.getInstance().release(bufferAllocation);
     lastSupplementalData = null;
     vpxClose(vpxDecContext);
   }
@@ -5,11 +5,14 @@
 
 package com.liuzhenlin.galleryviewer;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.PropertyValuesHolder;
 import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.PointF;
 import android.graphics.RectF;
@@ -183,6 +186,12 @@ public class GestureImageView extends AppCompatImageView {
      */
     /*synthetic*/ PointF mImageScalingPivot;
 
+    /** Loads the picture set through {@link #setImageFile(String)} in the subsampling tiled mode */
+    /*synthetic*/ ImageTileLoader mTileLoader;
+
+    /** Set while the base image of {@link #mTileLoader} is being set as the drawable */
+    private boolean mSettingTiledImageBase;
+
     public GestureImageView(Context context) {
         this(context, null);
     }
@@ -288,6 +297,29 @@ public class GestureImageView extends AppCompatImageView {
         final int imgWidth = d.getIntrinsicWidth();
         final int imgHeight = d.getIntrinsicHeight();
 
+        resolveImageScales(width, height, imgWidth, imgHeight);
+
+        // We need to ensure below will work normally if an other image has been set for this view,
+        // so just reset the current matrix to its initial state.
+        mImageMatrix.reset();
+        if (mFitWidthImageScale == mFitCenterImageScale) {
+            // Translates the image to the center of the current view
+            mImageMatrix.postTranslate((width - imgWidth) / 2f, (height - imgHeight) / 2f);
+            // Proportionally scales the image to make its width equal its available width
+            // or/and height equal its available height.
+            mImageMatrix.postScale(mFitWidthImageScale, mFitWidthImageScale, width / 2f, height / 2f);
+        } else /*if (fitWidthScale > fitCenterScale)*/ {
+            // Scales the image to fit exactly the width of the view with the top edge showed to the user
+            mImageMatrix.postScale(mFitWidthImageScale, mFitWidthImageScale, 0, 0);
+        }
+        setImageMatrix(mImageMatrix);
+    }
+
+    /**
+     * Computes the characteristic scales of an image of the given size in a view of the given
+     * available size.
+     */
+    private void resolveImageScales(int width, int height, int imgWidth, int imgHeight) {
         mFitWidthImageScale = (float) width / imgWidth;
         mFitCenterImageScale = Math.min(mFitWidthImageScale, (float) height / imgHeight);
         mImageMinScale = mFitCenterImageScale * 1f / 5f;
@@ -302,23 +334,132 @@ public class GestureImageView extends AppCompatImageView {
                 mImageMaxScale = mDoubleTapMagnifiedImageScale * 3f;
             }
         }
+    }
 
-        // We need to ensure below will work normally if an other image has been set for this view,
-        // so just reset the current matrix to its initial state.
-        mImageMatrix.reset();
-        if (mFitWidthImageScale == mFitCenterImageScale) {
-            // Translates the image to the center of the current view
-            mImageMatrix.postTranslate((width - imgWidth) / 2f, (height - imgHeight) / 2f);
-            // Proportionally scales the image to make its width equal its available width
-            // or/and height equal its available height.
-            mImageMatrix.postScale(mFitWidthImageScale, mFitWidthImageScale, width / 2f, height / 2f);
-        } else /*if (fitWidthScale > fitCenterScale)*/ {
-            // Scales the image to fit exactly the width of the view with the top edge showed to the user
-            mImageMatrix.postScale(mFitWidthImageScale, mFitWidthImageScale, 0, 0);
+    /**
+     * Sets the picture at the given path as the content of this view, in the subsampling tiled
+     * mode, which is meant for pictures too large to be decoded or displayed in full resolution.
+     * <p>
+     * The picture is first shown as a base image subsampled to about the screen size, decoded
+     * in the background. As the user zooms in beyond its resolution, only the visible tiles of
+     * the picture are decoded, at the sample size matching the current scale, and drawn over it.
+     * Any drawable currently set, e.g., a thumbnail, is kept as a placeholder until the base
+     * image is ready.
+     * <p>
+     * Setting a drawable after the base image has been shown leaves this mode.
+     *
+     * @param path the path of the picture file, or {@code null} to leave this mode
+     */
+    public void setImageFile(@Nullable String path) {
+        if (mTileLoader != null) {
+            if (mTileLoader.getPath().equals(path)) {
+                return;
+            }
+            mTileLoader.release();
+            mTileLoader = null;
+        }
+        if (path != null) {
+            mTileLoader = new ImageTileLoader(this, path);
+            mTileLoader.start();
         }
+    }
+
+    /**
+     * @return the path of the picture shown in the subsampling tiled mode, or {@code null}
+     *         if not in this mode
+     * @see #setImageFile(String)
+     */
+    @Nullable
+    public String getImageFile() {
+        return mTileLoader == null ? null : mTileLoader.getPath();
+    }
+
+    /*package*/ void onTiledImageBaseLoaded(ImageTileLoader loader, Drawable base) {
+        if (loader != mTileLoader) return;
+
+        final Drawable placeholder = getDrawable();
+        mSettingTiledImageBase = true;
+        try {
+            setImageDrawable(base);
+        } finally {
+            mSettingTiledImageBase = false;
+        }
+        if (base != placeholder && getWidth() > 0 && getHeight() > 0) {
+            onImageReplaced(placeholder, base);
+        }
+        loader.updateTiles(isImageAnimating());
+    }
+
+    @Override
+    public void setImageDrawable(@Nullable Drawable drawable) {
+        super.setImageDrawable(drawable);
+        // 只有通过setImageFile()进入分块模式后才需处理，其他调用者的行为保持不变
+        if (!mSettingTiledImageBase && mTileLoader != null && mTileLoader.isBaseImageLoaded()) {
+            mTileLoader.release();
+            mTileLoader = null;
+        }
+    }
+
+    /**
+     * Keeps the image showing in the same place when the placeholder set before
+     * {@link #setImageFile(String)} is replaced with the base image of the picture, which is
+     * another version of it in a different resolution, or initializes the base image otherwise.
+     */
+    private void onImageReplaced(@Nullable Drawable oldDrawable, @NonNull Drawable newDrawable) {
+        final int imgWidth = newDrawable.getIntrinsicWidth();
+        final int imgHeight = newDrawable.getIntrinsicHeight();
+        if (oldDrawable == null || (mPrivateFlags & PFLAG_IMAGE_GESTURES_ENABLED) == 0
+                || imgWidth <= 0 || imgHeight <= 0) {
+            reinitializeImage();
+            return;
+        }
+        final int oldImgWidth = oldDrawable.getIntrinsicWidth();
+        final int oldImgHeight = oldDrawable.getIntrinsicHeight();
+        if (oldImgWidth <= 0 || oldImgHeight <= 0 || Math.abs(
+                (float) imgWidth / imgHeight - (float) oldImgWidth / oldImgHeight) > 0.01f) {
+            reinitializeImage();
+            return;
+        }
+        if (oldImgWidth == imgWidth && oldImgHeight == imgHeight) {
+            return;
+        }
+
+        cancelImageTransformations();
+        ensureImageMatrix();
+        resolveImageScales(
+                getWidth() - getPaddingLeft() - getPaddingRight(),
+                getHeight() - getPaddingTop() - getPaddingBottom(),
+                imgWidth, imgHeight);
+        mImageMatrix.preScale((float) oldImgWidth / imgWidth, (float) oldImgHeight / imgHeight);
         setImageMatrix(mImageMatrix);
     }
 
+    @Override
+    public void setImageMatrix(Matrix matrix) {
+        super.setImageMatrix(matrix);
+        if (mTileLoader != null) {
+            mTileLoader.updateTiles(isImageAnimating());
+            // The drawable may not have changed, but the visible tiles have
+            invalidate();
+        }
+    }
+
+    /**
+     * @return true if the image is being scaled or translated by an animation or a scale gesture
+     */
+    /*synthetic*/ boolean isImageAnimating() {
+        return mImageTransformer != null && mImageTransformer.isRunning()
+                || mScaleGestureDetector != null && mScaleGestureDetector.isInProgress();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mTileLoader != null) {
+            mTileLoader.drawTiles(canvas);
+        }
+    }
+
     /**
      * Resets the image's scale and translation to the initial values that controlled how
      * the image showed to the user.
@@ -345,10 +486,21 @@ public class GestureImageView extends AppCompatImageView {
         }
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mTileLoader != null) {
+            mTileLoader.updateTiles(false);
+        }
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         cancelImageTransformations();
+        if (mTileLoader != null) {
+            mTileLoader.trimTiles();
+        }
     }
 
     @SuppressLint("ClickableViewAccessibility")
@@ -714,6 +866,10 @@ public class GestureImageView extends AppCompatImageView {
 
         @Override
         public void onScaleEnd(ScaleGestureDetector detector) {
+            // The detector still reports being in progress here
+            if (mTileLoader != null) {
+                mTileLoader.updateTiles(mImageTransformer != null && mImageTransformer.isRunning());
+            }
         }
     }
 
@@ -870,6 +1026,15 @@ public class GestureImageView extends AppCompatImageView {
                 PropertyValuesHolder.ofObject(PROPERTY_IMAGE_TRANSLATIONS,
                         new PointFEvaluator(), mFromTranslations, mToTranslations));
         mImageTransformer.setInterpolator(sDecelerateInterpolator);
+        mImageTransformer.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                // Tiles are not requested during the animation, so request them for where it ends
+                if (mTileLoader != null) {
+                    mTileLoader.updateTiles(false);
+                }
+            }
+        });
         mImageTransformer.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
             @Override
             public void onAnimationUpdate(ValueAnimator animation) {
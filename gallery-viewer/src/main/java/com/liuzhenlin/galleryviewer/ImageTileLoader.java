@@ -0,0 +1,556 @@
+/*
+ * Created on 2026-10-19 5:02:37 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.galleryviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a large picture for {@link GestureImageView} in the subsampling tiled mode.
+ * <p>
+ * A base image, subsampled to about the screen size, is decoded first and is always drawn,
+ * through a drawable reporting the full size of the picture, so that all the image matrix
+ * math of the view keeps working with the real picture dimensions. Once the picture is zoomed
+ * in beyond the resolution of the base image, only the tiles intersecting the visible area are
+ * decoded by a {@link BitmapRegionDecoder}, on background threads, at the sample size matching
+ * the current scale of the image, and are drawn over the base image.
+ * <p>
+ * Decoded tiles are kept in an LRU cache shared by all the loaders in the process, so that
+ * several viewers showing large pictures do not take more memory than one. While the image is
+ * being animated or scaled, no new tiles are requested, and the cached ones of this loader that
+ * have gone off the screen are evicted.
+ *
+ * @author 刘振林
+ */
+/*package*/ final class ImageTileLoader {
+    private static final String TAG = "ImageTileLoader";
+
+    /** The width and height of a decoded tile, in pixels */
+    private static final int TILE_SIZE = 512;
+
+    private static ExecutorService sExecutor;
+
+    private static LruCache<Long, Bitmap> sTileCache;
+    private static int sLastLoaderId;
+
+    /** Identifies the tiles of this loader in the shared cache */
+    private final long mTileKeyPrefix;
+
+    /*synthetic*/ final GestureImageView mView;
+    /*synthetic*/ final String mPath;
+    /*synthetic*/ final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Guards the use and the recycling of {@link #mDecoder} */
+    /*synthetic*/ final Object mDecoderLock = new Object();
+    /*synthetic*/ BitmapRegionDecoder mDecoder;
+    /*synthetic*/ volatile boolean mReleased;
+
+    // 原图（按存储方向）的尺寸及其EXIF旋转角度
+    /*synthetic*/ int mSourceWidth;
+    /*synthetic*/ int mSourceHeight;
+    /*synthetic*/ int mRotation;
+    /** Maps the coordinates of the stored picture to those of the upright one */
+    /*synthetic*/ final Matrix mOrientationMatrix = new Matrix();
+
+    /*synthetic*/ int mBaseSampleSize;
+    private boolean mBaseImageLoaded;
+
+    private final LruCache<Long, Bitmap> mTileCache;
+    /*synthetic*/ final Set<Long> mPendingTiles = new HashSet<>();
+    /**
+     * Tiles needed for the current viewport, also read from the decoding threads. It is never
+     * modified once published, but replaced as a whole, so that the decoding threads will not see
+     * it half updated and drop the tiles still wanted.
+     */
+    /*synthetic*/ volatile Set<Long> mWantedTiles = Collections.emptySet();
+
+    /** The sample size of the tiles to draw, or 0 if the base image is detailed enough */
+    private int mTileSampleSize;
+    private int mFirstTileColumn, mLastTileColumn;
+    private int mFirstTileRow, mLastTileRow;
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    // Avoid allocations...
+    private final Matrix mTmpMatrix = new Matrix();
+    private final Matrix mTmpInverseMatrix = new Matrix();
+    private final RectF mTmpRectF = new RectF();
+    private final Rect mTmpRect = new Rect();
+    private final float[] mTmpMatrixValues = new float[9];
+
+    /*package*/ ImageTileLoader(@NonNull GestureImageView view, @NonNull String path) {
+        mView = view;
+        mPath = path;
+        mTileCache = getTileCache();
+        synchronized (ImageTileLoader.class) {
+            // 16位的编号足以区分同时存在的加载器；被释放的加载器的分块已从缓存中移除
+            sLastLoaderId = (sLastLoaderId + 1) & 0xFFFF;
+            mTileKeyPrefix = (long) sLastLoaderId << 48;
+        }
+    }
+
+    private static synchronized LruCache<Long, Bitmap> getTileCache() {
+        if (sTileCache == null) {
+            final int maxMemory = (int) Math.min(Runtime.getRuntime().maxMemory(), Integer.MAX_VALUE);
+            sTileCache = new LruCache<Long, Bitmap>(maxMemory / 8) {
+                @Override
+                protected int sizeOf(@NonNull Long key, @NonNull Bitmap value) {
+                    return value.getRowBytes() * value.getHeight();
+                }
+                // Evicted tiles are not recycled, as they may still be referenced by the display
+                // list recorded for the last frame. They are left to the GC instead.
+            };
+        }
+        return sTileCache;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+                final AtomicInteger mCount = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(@NonNull Runnable r) {
+                    Thread thread = new Thread(r, TAG + " #" + mCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    /*package*/ String getPath() {
+        return mPath;
+    }
+
+    /*package*/ boolean isBaseImageLoaded() {
+        return mBaseImageLoaded;
+    }
+
+    /**
+     * Starts decoding the base image in the background, which will be delivered to
+     * {@link GestureImageView#onTiledImageBaseLoaded(ImageTileLoader, Drawable)}.
+     */
+    /*package*/ void start() {
+        DisplayMetrics dm = mView.getResources().getDisplayMetrics();
+        final int screenSize = Math.max(dm.widthPixels, dm.heightPixels);
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final Drawable base = loadBaseImage(screenSize);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mReleased && base != null) {
+                            onBaseImageLoaded(base);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /*synthetic*/ Drawable loadBaseImage(int screenSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(mPath, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        mSourceWidth = options.outWidth;
+        mSourceHeight = options.outHeight;
+        mRotation = readRotation(mPath);
+        switch (mRotation) {
+            case 90:
+                mOrientationMatrix.setRotate(90);
+                mOrientationMatrix.postTranslate(mSourceHeight, 0);
+                break;
+            case 180:
+                mOrientationMatrix.setRotate(180);
+                mOrientationMatrix.postTranslate(mSourceWidth, mSourceHeight);
+                break;
+            case 270:
+                mOrientationMatrix.setRotate(270);
+                mOrientationMatrix.postTranslate(0, mSourceWidth);
+                break;
+        }
+
+        // Let the longer side of the base image be no shorter than that of the screen
+        final int sourceSize = Math.max(mSourceWidth, mSourceHeight);
+        int sampleSize = 1;
+        while (sourceSize / (sampleSize * 2) >= screenSize) {
+            sampleSize *= 2;
+        }
+        mBaseSampleSize = sampleSize;
+
+        // Only large pictures need to be decoded in tiles
+        if (sampleSize > 1) {
+            try {
+                BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(mPath, false);
+                synchronized (mDecoderLock) {
+                    if (mReleased) {
+                        decoder.recycle();
+                    } else {
+                        mDecoder = decoder;
+                    }
+                }
+            } catch (IOException e) {
+                // Unsupported format: show the base image only
+                Log.w(TAG, "Failed to create a region decoder for " + mPath, e);
+            }
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = null;
+        try {
+            bitmap = BitmapFactory.decodeFile(mPath, options);
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "Out of memory while decoding the base image of " + mPath, e);
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        return new BaseImageDrawable(bitmap, mSourceWidth, mSourceHeight, mRotation, mOrientationMatrix);
+    }
+
+    private static int readRotation(String path) {
+        try {
+            ExifInterface exif = new ExifInterface(path);
+            switch (exif.getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /*synthetic*/ void onBaseImageLoaded(Drawable base) {
+        mBaseImageLoaded = true;
+        mView.onTiledImageBaseLoaded(this, base);
+    }
+
+    /**
+     * Recomputes the tiles needed for the current image matrix of the view.
+     *
+     * @param animating true if the image is being animated or scaled, in which case no new tiles
+     *                  are requested and the off-screen ones are evicted from the cache.
+     */
+    /*package*/ void updateTiles(boolean animating) {
+        if (!mBaseImageLoaded || mDecoder == null) {
+            return;
+        }
+
+        final Matrix imageMatrix = mView.getImageMatrix();
+        imageMatrix.getValues(mTmpMatrixValues);
+        final float scale = Math.abs(mTmpMatrixValues[Matrix.MSCALE_X]);
+        int sampleSize = 1;
+        if (scale > 0f) {
+            while (sampleSize * 2 <= 1f / scale) {
+                sampleSize *= 2;
+            }
+        }
+
+        if (scale <= 0f || sampleSize >= mBaseSampleSize) {
+            mWantedTiles = Collections.emptySet();
+            // 基础图片的分辨率已足够
+            mTileSampleSize = 0;
+            if (animating) {
+                evictUnwantedTiles();
+            }
+            return;
+        }
+
+        // Maps the content area of the view back to the coordinates of the stored picture
+        mTmpMatrix.set(imageMatrix);
+        mTmpMatrix.preConcat(mOrientationMatrix);
+        if (!mTmpMatrix.invert(mTmpInverseMatrix)) {
+            return;
+        }
+        mTmpRectF.set(0, 0,
+                mView.getWidth() - mView.getPaddingLeft() - mView.getPaddingRight(),
+                mView.getHeight() - mView.getPaddingTop() - mView.getPaddingBottom());
+        mTmpInverseMatrix.mapRect(mTmpRectF);
+        if (!mTmpRectF.intersect(0, 0, mSourceWidth, mSourceHeight)) {
+            mWantedTiles = Collections.emptySet();
+            mTileSampleSize = 0;
+            return;
+        }
+
+        final int tileSourceSize = TILE_SIZE * sampleSize;
+        mTileSampleSize = sampleSize;
+        mFirstTileColumn = (int) (mTmpRectF.left / tileSourceSize);
+        mLastTileColumn = (int) Math.ceil(mTmpRectF.right / tileSourceSize) - 1;
+        mFirstTileRow = (int) (mTmpRectF.top / tileSourceSize);
+        mLastTileRow = (int) Math.ceil(mTmpRectF.bottom / tileSourceSize) - 1;
+        final Set<Long> wantedTiles = new HashSet<>();
+        for (int row = mFirstTileRow; row <= mLastTileRow; row++) {
+            for (int column = mFirstTileColumn; column <= mLastTileColumn; column++) {
+                wantedTiles.add(tileKey(sampleSize, row, column));
+            }
+        }
+        mWantedTiles = wantedTiles;
+        if (!animating) {
+            for (Long key : wantedTiles) {
+                if (mTileCache.get(key) == null && mPendingTiles.add(key)) {
+                    getExecutor().execute(new TileTask(key));
+                }
+            }
+        }
+        if (animating) {
+            evictUnwantedTiles();
+        }
+    }
+
+    private void evictUnwantedTiles() {
+        final Set<Long> wantedTiles = mWantedTiles;
+        for (Long key : mTileCache.snapshot().keySet()) {
+            if (isOwnTile(key) && !wantedTiles.contains(key)) {
+                mTileCache.remove(key);
+            }
+        }
+    }
+
+    private boolean isOwnTile(long key) {
+        return (key & TILE_KEY_PREFIX_MASK) == mTileKeyPrefix;
+    }
+
+    /**
+     * Draws the cached tiles visible in the view over its base image.
+     */
+    /*package*/ void drawTiles(@NonNull Canvas canvas) {
+        final int sampleSize = mTileSampleSize;
+        if (sampleSize == 0) {
+            return;
+        }
+
+        final int tileSourceSize = TILE_SIZE * sampleSize;
+        final int saveCount = canvas.save();
+        canvas.translate(mView.getPaddingLeft(), mView.getPaddingTop());
+        canvas.concat(mView.getImageMatrix());
+        canvas.concat(mOrientationMatrix);
+        for (int row = mFirstTileRow; row <= mLastTileRow; row++) {
+            for (int column = mFirstTileColumn; column <= mLastTileColumn; column++) {
+                Bitmap tile = mTileCache.get(tileKey(sampleSize, row, column));
+                if (tile != null) {
+                    setTileSourceRect(mTmpRect, tileSourceSize, row, column);
+                    canvas.drawBitmap(tile, null, mTmpRect, mPaint);
+                }
+            }
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    /*synthetic*/ void setTileSourceRect(Rect out, int tileSourceSize, int row, int column) {
+        out.set(column * tileSourceSize, row * tileSourceSize,
+                Math.min((column + 1) * tileSourceSize, mSourceWidth),
+                Math.min((row + 1) * tileSourceSize, mSourceHeight));
+    }
+
+    /**
+     * Drops all the decoded tiles, e.g., when the view is detached from its window.
+     * They will be decoded again on demand.
+     */
+    /*package*/ void trimTiles() {
+        mWantedTiles = Collections.emptySet();
+        evictUnwantedTiles();
+        mTileSampleSize = 0;
+    }
+
+    /**
+     * Stops loading and releases the region decoder. This loader can not be used any more.
+     */
+    /*package*/ void release() {
+        mReleased = true;
+        mMainHandler.removeCallbacksAndMessages(null);
+        trimTiles();
+        mPendingTiles.clear();
+        // Recycle the decoder in the background since it may be decoding a tile now
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mDecoderLock) {
+                    if (mDecoder != null) {
+                        mDecoder.recycle();
+                        mDecoder = null;
+                    }
+                }
+            }
+        });
+    }
+
+    /*synthetic*/ void onTileLoaded(long key, Bitmap tile, boolean skipped) {
+        mPendingTiles.remove(key);
+        if (mReleased) return;
+
+        if (tile != null) {
+            mTileCache.put(key, tile);
+            if (mWantedTiles.contains(key)) {
+                mView.invalidate();
+            }
+        } else if (skipped && mWantedTiles.contains(key) && mTileCache.get(key) == null) {
+            // Wanted again after the task found it unwanted and skipped it, while the pending
+            // key kept the viewport update from requesting it anew.
+            mPendingTiles.add(key);
+            getExecutor().execute(new TileTask(key));
+        }
+    }
+
+    // Layout of a tile key: loader id (16 bits) | log2 of sample size (6) | row (21) | column (21)
+    private static final long TILE_KEY_PREFIX_MASK = 0xFFFFL << 48;
+    private static final int TILE_KEY_SAMPLE_SHIFT = 42;
+    private static final int TILE_KEY_ROW_SHIFT = 21;
+    private static final long TILE_KEY_INDEX_MASK = (1L << 21) - 1;
+
+    private long tileKey(int sampleSize, int row, int column) {
+        return mTileKeyPrefix
+                | ((long) Integer.numberOfTrailingZeros(sampleSize) << TILE_KEY_SAMPLE_SHIFT)
+                | ((long) row << TILE_KEY_ROW_SHIFT)
+                | column;
+    }
+
+    private final class TileTask implements Runnable {
+        final long mKey;
+        final int mSampleSize;
+        final int mRow;
+        final int mColumn;
+
+        TileTask(long key) {
+            mKey = key;
+            mSampleSize = 1 << (int) ((key >>> TILE_KEY_SAMPLE_SHIFT) & 0x3F);
+            mRow = (int) ((key >>> TILE_KEY_ROW_SHIFT) & TILE_KEY_INDEX_MASK);
+            mColumn = (int) (key & TILE_KEY_INDEX_MASK);
+        }
+
+        @Override
+        public void run() {
+            Bitmap tile = null;
+            // The viewport may have moved away while this task was queued
+            final boolean skipped = mReleased || !mWantedTiles.contains(mKey);
+            if (!skipped) {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                Rect region = new Rect();
+                setTileSourceRect(region, TILE_SIZE * mSampleSize, mRow, mColumn);
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = mSampleSize;
+                synchronized (mDecoderLock) {
+                    if (mDecoder != null) {
+                        try {
+                            tile = mDecoder.decodeRegion(region, options);
+                        } catch (RuntimeException | OutOfMemoryError e) {
+                            Log.e(TAG, "Failed to decode tile " + region + " of " + mPath, e);
+                        }
+                    }
+                }
+            }
+
+            final Bitmap result = tile;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onTileLoaded(mKey, result, skipped);
+                }
+            });
+        }
+    }
+
+    /**
+     * Draws the subsampled base image stretched over the full size of the upright picture.
+     */
+    private static final class BaseImageDrawable extends Drawable {
+        final Bitmap mBitmap;
+        final int mIntrinsicWidth;
+        final int mIntrinsicHeight;
+        final Matrix mDrawMatrix = new Matrix();
+        final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        BaseImageDrawable(Bitmap bitmap, int sourceWidth, int sourceHeight, int rotation,
+                          Matrix orientationMatrix) {
+            mBitmap = bitmap;
+            final boolean swapSides = rotation == 90 || rotation == 270;
+            mIntrinsicWidth = swapSides ? sourceHeight : sourceWidth;
+            mIntrinsicHeight = swapSides ? sourceWidth : sourceHeight;
+            mDrawMatrix.set(orientationMatrix);
+            mDrawMatrix.preScale((float) sourceWidth / bitmap.getWidth(),
+                    (float) sourceHeight / bitmap.getHeight());
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return mIntrinsicWidth;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return mIntrinsicHeight;
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas) {
+            final Rect bounds = getBounds();
+            final int saveCount = canvas.save();
+            canvas.translate(bounds.left, bounds.top);
+            canvas.scale((float) bounds.width() / mIntrinsicWidth,
+                    (float) bounds.height() / mIntrinsicHeight);
+            canvas.drawBitmap(mBitmap, mDrawMatrix, mPaint);
+            canvas.restoreToCount(saveCount);
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            mPaint.setAlpha(alpha);
+            invalidateSelf();
+        }
+
+        @Override
+        public void setColorFilter(@Nullable ColorFilter colorFilter) {
+            mPaint.setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+
+        @Override
+        public int getOpacity() {
+            return mBitmap.hasAlpha() ? PixelFormat.TRANSLUCENT : PixelFormat.OPAQUE;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import android.content.pm.ApplicationInfo;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Parcel;
@@ -227,6 +228,15 @@ public class SlidingDrawerLayout extends ViewGroup {
 //     */
 //    private static final int FLAG_CLOSE_OPEN_DRAWER_ON_BACK_PRESSED_ENABLED = 1 << 23;
 
+    /**
+     * When set, the children have been laid out at their start positions and may have been
+     * translated horizontally by us, i.e., in the {@link #DRAG_MODE_TRANSLATION} mode.
+     */
+    private static final int FLAG_CHILDREN_TRANSLATED = 1 << 24;
+
+    /** When set, the content view has been put onto a hardware layer for a drag by us. */
+    private static final int FLAG_CONTENT_LAYER_TYPE_CHANGED = 1 << 25;
+
     /**
      * @see #getContentSensitiveEdgeSize()
      * @see #setContentSensitiveEdgeSize(int)
@@ -330,6 +340,39 @@ public class SlidingDrawerLayout extends ViewGroup {
     @ColorInt
     public static final int DEFAULT_FADE_COLOR = 0x7F000000;
 
+    /**
+     * Drag mode in which the drawer and the content view are moved by offsetting their left and
+     * right positions, with the display area of the drawer clipped and the content fade color
+     * filled in on each frame. This is the default mode.
+     */
+    public static final int DRAG_MODE_OFFSET = 0;
+
+    /**
+     * Drag mode in which the drawer and the content view are moved through their translationX
+     * while they both sit on hardware layers, and the content fade is drawn as one single overlay
+     * of which only the bounds and alpha change. Neither of the two views is relaid out or has
+     * its display list re-recorded during a drag.
+     */
+    public static final int DRAG_MODE_TRANSLATION = 1;
+
+    @IntDef({DRAG_MODE_OFFSET, DRAG_MODE_TRANSLATION})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface DragMode {
+    }
+
+    /**
+     * @see #getDragMode()
+     * @see #setDragMode(int)
+     */
+    @DragMode
+    private int mDragMode = DRAG_MODE_OFFSET;
+
+    /** The content fade overlay used in the {@link #DRAG_MODE_TRANSLATION} mode */
+    private ColorDrawable mContentFadeDrawable;
+
+    /** Caches the layer type of the content view before it was put onto a hardware layer. */
+    private int mContentLayerType = LAYER_TYPE_NONE;
+
     @IntDef({Gravity.LEFT, Gravity.RIGHT, Gravity.START, Gravity.END})
     @Retention(RetentionPolicy.SOURCE)
     /*package*/ @interface EdgeGravity {
@@ -524,6 +567,8 @@ public class SlidingDrawerLayout extends ViewGroup {
         setContentFadeColor(ta.getColor(R.styleable
                 .SlidingDrawerLayout_contentFadeColor, DEFAULT_FADE_COLOR));
         setDuration(ta.getInteger(R.styleable.SlidingDrawerLayout_duration, DEFAULT_DURATION));
+        //noinspection WrongConstant
+        setDragMode(ta.getInt(R.styleable.SlidingDrawerLayout_dragMode, DRAG_MODE_OFFSET));
 //        setCloseOpenDrawerOnBackPressedEnabled(ta.getBoolean(R.styleable
 //                .SlidingDrawerLayout_closeOpenDrawerOnBackPressedEnabled, true));
         ta.recycle();
@@ -1057,6 +1102,9 @@ public class SlidingDrawerLayout extends ViewGroup {
     public void setContentFadeColor(@ColorInt int color) {
         if (mContentFadeColor != color) {
             mContentFadeColor = color;
+            if (mContentFadeDrawable != null) {
+                mContentFadeDrawable.setColor(color);
+            }
             if (mScrollPercent > 0 &&
                     (mFlags & (FLAG_ANIMATING_DRAWER_OPENING | FLAG_ANIMATING_DRAWER_CLOSURE)) == 0) {
                 invalidate();
@@ -1064,6 +1112,56 @@ public class SlidingDrawerLayout extends ViewGroup {
         }
     }
 
+    /**
+     * @return the way the drawer and the content view are moved and drawn while scrolling,
+     *         either {@link #DRAG_MODE_OFFSET} or {@link #DRAG_MODE_TRANSLATION}
+     */
+    @DragMode
+    public int getDragMode() {
+        return mDragMode;
+    }
+
+    /**
+     * Sets the way the drawer and the content view are moved and drawn while scrolling.
+     * This is mostly useful for comparing the rendering costs of the two modes on a device.
+     *
+     * @param mode either {@link #DRAG_MODE_OFFSET} or {@link #DRAG_MODE_TRANSLATION}
+     */
+    public void setDragMode(@DragMode int mode) {
+        if (mode != DRAG_MODE_OFFSET && mode != DRAG_MODE_TRANSLATION) {
+            throw new IllegalArgumentException("Unknown drag mode: " + mode);
+        }
+        if (mDragMode != mode) {
+            mDragMode = mode;
+            // The children are relocated in the next layout pass. Until then, they keep being
+            // moved the way they were laid out for.
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the current left position of the given child relative to this view, taking its
+     *         horizontal translation in the {@link #DRAG_MODE_TRANSLATION} mode into account
+     */
+    private int leftOf(View child) {
+        if ((mFlags & FLAG_CHILDREN_TRANSLATED) != 0) {
+            return child.getLeft() + (int) child.getTranslationX();
+        }
+        return child.getLeft();
+    }
+
+    /**
+     * @return the current right position of the given child relative to this view, taking its
+     *         horizontal translation in the {@link #DRAG_MODE_TRANSLATION} mode into account
+     */
+    private int rightOf(View child) {
+        if ((mFlags & FLAG_CHILDREN_TRANSLATED) != 0) {
+            return child.getRight() + (int) child.getTranslationX();
+        }
+        return child.getRight();
+    }
+
     private boolean resolveDrawerWidthPercentagesIfDirectionResolved(boolean preventLayout) {
         final boolean directionResolved = Utils.isLayoutDirectionResolved(this);
         if (directionResolved) {
@@ -1520,6 +1618,9 @@ public class SlidingDrawerLayout extends ViewGroup {
 
         final int layoutDirection = ViewCompat.getLayoutDirection(this);
 
+        final boolean translateChildren = mDragMode == DRAG_MODE_TRANSLATION;
+        final boolean childrenTranslated = (mFlags & FLAG_CHILDREN_TRANSLATED) != 0;
+
         for (int i = 0, childCount = getChildCount(); i < childCount; i++) {
             View child = getChildAt(i);
             if (!isChildInLayout(child)) {
@@ -1605,7 +1706,22 @@ public class SlidingDrawerLayout extends ViewGroup {
                     break;
             }
 
-            child.layout(childLeft, childTop, childLeft + childWidth, childTop + childHeight);
+            if (translateChildren) {
+                // 始终布局在初始位置，当前的偏移量由translationX体现
+                child.layout(lp.startLeft, childTop, lp.startLeft + childWidth, childTop + childHeight);
+                child.setTranslationX(childLeft - lp.startLeft);
+            } else {
+                child.layout(childLeft, childTop, childLeft + childWidth, childTop + childHeight);
+                if (childrenTranslated) {
+                    child.setTranslationX(0);
+                }
+            }
+        }
+
+        if (translateChildren) {
+            mFlags |= FLAG_CHILDREN_TRANSLATED;
+        } else {
+            mFlags &= ~FLAG_CHILDREN_TRANSLATED;
         }
     }
 
@@ -1619,20 +1735,25 @@ public class SlidingDrawerLayout extends ViewGroup {
         final boolean issued;
 
         if (child == mShownDrawer) {
+            // The content view may be translucent or not drawn over the drawer, so the drawer
+            // is clipped to the area not covered by it in both drag modes
             final int save = canvas.save();
 
             if (child == mLeftDrawer) {
-                canvas.clipRect(child.getLeft(), child.getTop(),
-                        mContentView.getLeft(), child.getBottom());
+                canvas.clipRect(leftOf(child), child.getTop(),
+                        leftOf(mContentView), child.getBottom());
             } else {
-                canvas.clipRect(mContentView.getRight(), child.getTop(),
-                        child.getRight(), child.getBottom());
+                canvas.clipRect(rightOf(mContentView), child.getTop(),
+                        rightOf(child), child.getBottom());
             }
 
             issued = super.drawChild(canvas, child, drawingTime);
 
             canvas.restoreToCount(save);
 
+        } else if (mDragMode == DRAG_MODE_TRANSLATION) {
+            issued = drawContentTranslated(canvas, child, drawingTime);
+
         } else {
             issued = super.drawChild(canvas, child, drawingTime);
 
@@ -1643,12 +1764,12 @@ public class SlidingDrawerLayout extends ViewGroup {
                 final int color = alpha << 24 | (mContentFadeColor & 0x00FFFFFF);
 
                 if (mShownDrawer == mLeftDrawer) {
-                    canvas.clipRect(mContentView.getLeft(), child.getTop(),
+                    canvas.clipRect(leftOf(mContentView), child.getTop(),
                             getRight() - getPaddingRight(), child.getBottom());
                     // mShownDrawer == mRightDrawer
                 } else {
                     canvas.clipRect(getPaddingLeft(), child.getTop(),
-                            mContentView.getRight(), child.getBottom());
+                            rightOf(mContentView), child.getBottom());
                 }
                 canvas.drawColor(color);
             }
@@ -1657,6 +1778,30 @@ public class SlidingDrawerLayout extends ViewGroup {
         return issued;
     }
 
+    private boolean drawContentTranslated(Canvas canvas, View child, long drawingTime) {
+        final boolean issued = super.drawChild(canvas, child, drawingTime);
+
+        if (mScrollPercent > 0) {
+            if (mContentFadeDrawable == null) {
+                mContentFadeDrawable = new ColorDrawable(mContentFadeColor);
+            }
+            // Only the bounds and alpha of the overlay change from frame to frame. It covers
+            // the same padded area as the fading of the offset mode does.
+            if (mShownDrawer == mLeftDrawer) {
+                mContentFadeDrawable.setBounds(leftOf(child), child.getTop(),
+                        getWidth() - getPaddingRight(), child.getBottom());
+                // mShownDrawer == mRightDrawer
+            } else {
+                mContentFadeDrawable.setBounds(getPaddingLeft(), child.getTop(),
+                        rightOf(child), child.getBottom());
+            }
+            mContentFadeDrawable.setAlpha((int) (255 * mScrollPercent + 0.5f));
+            mContentFadeDrawable.draw(canvas);
+        }
+
+        return issued;
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
@@ -1760,10 +1905,10 @@ public class SlidingDrawerLayout extends ViewGroup {
                     final float x = ev.getX();
 
                     if (mShownDrawer == mLeftDrawer) {
-                        return x > mContentView.getLeft() && x <= getWidth() - getPaddingRight();
+                        return x > leftOf(mContentView) && x <= getWidth() - getPaddingRight();
                     }
                     // mShownDrawer == mRightDrawer
-                    return x < mContentView.getRight() && x >= getPaddingLeft();
+                    return x < rightOf(mContentView) && x >= getPaddingLeft();
                 }
 
                 return false;
@@ -1783,7 +1928,7 @@ public class SlidingDrawerLayout extends ViewGroup {
 
                 if (mScrollPercent > 0) {
                     if (mShownDrawer == mLeftDrawer) {
-                        if (mDownX > mContentView.getLeft()) {
+                        if (mDownX > leftOf(mContentView)) {
                             if (mDownX <= getWidth() - getPaddingRight()) {
                                 mFlags |= FLAG_FINGER_DOWNS_ON_CONTENT_WHEN_DRAWER_IS_OPEN;
                             }
@@ -1791,7 +1936,7 @@ public class SlidingDrawerLayout extends ViewGroup {
                             break;
                         }
                     } else if (/* mShownDrawer == mRightDrawer && */
-                            mDownX < mContentView.getRight()) {
+                            mDownX < rightOf(mContentView)) {
                         if (mDownX >= getPaddingLeft()) {
                             mFlags |= FLAG_FINGER_DOWNS_ON_CONTENT_WHEN_DRAWER_IS_OPEN;
                         }
@@ -1944,7 +2089,7 @@ public class SlidingDrawerLayout extends ViewGroup {
                 if (mDownX >= left && mDownX <= left + mContentSensitiveEdgeSize) {
                     handle = dx > mTouchSlop && dx > absDy;
                 }
-            } else if (mScrollPercent == 1 && mDownX <= mContentView.getLeft()) {
+            } else if (mScrollPercent == 1 && mDownX <= leftOf(mContentView)) {
                 handle = dx < -mTouchSlop && dx < -absDy;
             } else {
                 handle = true;
@@ -1965,7 +2110,7 @@ public class SlidingDrawerLayout extends ViewGroup {
                 if (mDownX >= right - mContentSensitiveEdgeSize && mDownX <= right) {
                     handle = dx < -mTouchSlop && dx < -absDy;
                 }
-            } else if (mScrollPercent == 1 && mDownX >= mRightDrawer.getLeft()) {
+            } else if (mScrollPercent == 1 && mDownX >= leftOf(mRightDrawer)) {
                 handle = dx > mTouchSlop && dx > absDy;
             } else {
                 handle = true;
@@ -2204,7 +2349,7 @@ public class SlidingDrawerLayout extends ViewGroup {
                     mFlags &= ~FLAG_ANIMATING_DRAWER_CLOSURE;
                 }
             } else {
-                openOrCloseDrawerImmediately(drawer, lp.finalLeft - drawer.getLeft());
+                openOrCloseDrawerImmediately(drawer, lp.finalLeft - leftOf(drawer));
             }
         }
     }
@@ -2225,7 +2370,7 @@ public class SlidingDrawerLayout extends ViewGroup {
                     mFlags &= ~FLAG_ANIMATING_DRAWER_OPENING;
                 }
             } else {
-                openOrCloseDrawerImmediately(mShownDrawer, lp.startLeft - mShownDrawer.getLeft());
+                openOrCloseDrawerImmediately(mShownDrawer, lp.startLeft - leftOf(mShownDrawer));
             }
         }
     }
@@ -2251,7 +2396,7 @@ public class SlidingDrawerLayout extends ViewGroup {
      * @return <code>true</code> if the scroll is actually started
      */
     private boolean smoothScrollDrawerTo(View drawer, int x) {
-        final int left = drawer.getLeft();
+        final int left = leftOf(drawer);
         if (left == x) {
             return false;
         }
@@ -2276,7 +2421,7 @@ public class SlidingDrawerLayout extends ViewGroup {
      * @param x      the position on the X axis for the drawer to scroll to
      */
     /*synthetic*/ void scrollDrawerTo(View drawer, int x) {
-        scrollDrawerBy(drawer, x - drawer.getLeft());
+        scrollDrawerBy(drawer, x - leftOf(drawer));
     }
 
     /**
@@ -2308,24 +2453,31 @@ public class SlidingDrawerLayout extends ViewGroup {
 
         LayoutParams lp = (LayoutParams) drawer.getLayoutParams();
 
-        drawer.offsetLeftAndRight(dx);
-        mContentView.offsetLeftAndRight(contentDx);
+        if ((mFlags & FLAG_CHILDREN_TRANSLATED) != 0) {
+            // Only the properties of the render nodes of the two views change
+            drawer.setTranslationX(drawer.getTranslationX() + dx);
+            mContentView.setTranslationX(mContentView.getTranslationX() + contentDx);
+        } else {
+            drawer.offsetLeftAndRight(dx);
+            mContentView.offsetLeftAndRight(contentDx);
+        }
         dispatchDrawerScrollPercentChangeIfNeeded(
-                (float) (drawer.getLeft() - lp.startLeft) / (float) (lp.finalLeft - lp.startLeft));
+                (float) (leftOf(drawer) - lp.startLeft) / (float) (lp.finalLeft - lp.startLeft));
         invalidate();
     }
 
     private int clampDx(View child, int dx) {
         LayoutParams lp = (LayoutParams) child.getLayoutParams();
 
-        int left = child.getLeft();
+        final int oldLeft = leftOf(child);
+        final int left;
         if (mShownDrawer == mLeftDrawer) {
-            left = Math.max(lp.startLeft, Math.min(left + dx, lp.finalLeft));
+            left = Math.max(lp.startLeft, Math.min(oldLeft + dx, lp.finalLeft));
         } else {
-            left = Math.max(lp.finalLeft, Math.min(left + dx, lp.startLeft));
+            left = Math.max(lp.finalLeft, Math.min(oldLeft + dx, lp.startLeft));
         }
 
-        return left - child.getLeft();
+        return left - oldLeft;
     }
 
     // --------------- LayoutParams ------------------------
@@ -2493,11 +2645,29 @@ public class SlidingDrawerLayout extends ViewGroup {
                             && ViewCompat.isAttachedToWindow(shownDrawer)) {
                         shownDrawer.buildLayer();
                     }
+                    // The content view is merely translated during the scroll as well, so
+                    // it can be composited from a layer without being redrawn.
+                    if ((mFlags & FLAG_CHILDREN_TRANSLATED) != 0 && mContentView != null) {
+                        mFlags |= FLAG_CONTENT_LAYER_TYPE_CHANGED;
+                        mContentLayerType = mContentView.getLayerType();
+                        mContentView.setLayerType(LAYER_TYPE_HARDWARE, null);
+                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1
+                                && ViewCompat.isAttachedToWindow(mContentView)) {
+                            mContentView.buildLayer();
+                        }
+                    }
                 }
                 break;
 
             case SCROLL_STATE_IDLE:
                 shownDrawer.setLayerType(mShownDrawerLayerType, null);
+                if ((mFlags & FLAG_CONTENT_LAYER_TYPE_CHANGED) != 0) {
+                    mFlags &= ~FLAG_CONTENT_LAYER_TYPE_CHANGED;
+                    if (mContentView != null) {
+                        mContentView.setLayerType(mContentLayerType, null);
+                    }
+                    mContentLayerType = LAYER_TYPE_NONE;
+                }
 
                 if (mScrollPercent == 1) {
                     if ((mFlags & FLAG_DRAWER_HAS_BEEN_OPENED) == 0) {
@@ -24,11 +24,16 @@ import android.view.animation.Interpolator;
 import android.view.animation.OvershootInterpolator;
 import android.widget.FrameLayout;
 
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.collection.SimpleArrayMap;
 import androidx.core.view.ViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -49,6 +54,32 @@ public class SlidingItemMenuRecyclerView extends RecyclerView {
     /** True, if an item view is being dragged by the user. */
     private boolean mIsItemBeingDragged;
 
+    /** No item view is currently being dragged or scrolled by its animator. */
+    public static final int ITEM_SCROLL_STATE_IDLE = 0;
+
+    /** An item view is currently being dragged by the user. */
+    public static final int ITEM_SCROLL_STATE_DRAGGING = 1;
+
+    /** At least one item view is currently being scrolled by its animator. */
+    public static final int ITEM_SCROLL_STATE_SETTLING = 2;
+
+    @IntDef({
+            ITEM_SCROLL_STATE_IDLE,
+            ITEM_SCROLL_STATE_DRAGGING,
+            ITEM_SCROLL_STATE_SETTLING
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface ItemScrollState {
+    }
+
+    @ItemScrollState
+    private int mItemScrollState = ITEM_SCROLL_STATE_IDLE;
+
+    /** The number of item views that are being scrolled by their animators */
+    /*synthetic*/ int mRunningItemAnimatorCount;
+
+    private List<OnItemScrollStateChangeListener> mOnItemScrollStateChangeListeners;
+
     /**
      * Whether or not some item view is fully open when this view receives the
      * {@link MotionEvent#ACTION_DOWN} event.
@@ -169,6 +200,46 @@ public class SlidingItemMenuRecyclerView extends RecyclerView {
         mItemScrollDuration = duration;
     }
 
+    /**
+     * @return the current scroll state of the item views, one of
+     *         {@link #ITEM_SCROLL_STATE_IDLE},
+     *         {@link #ITEM_SCROLL_STATE_DRAGGING},
+     *         {@link #ITEM_SCROLL_STATE_SETTLING}
+     */
+    @ItemScrollState
+    public int getItemScrollState() {
+        return mItemScrollState;
+    }
+
+    public void addOnItemScrollStateChangeListener(@NonNull OnItemScrollStateChangeListener listener) {
+        if (mOnItemScrollStateChangeListeners == null) {
+            mOnItemScrollStateChangeListeners = new ArrayList<>(1);
+        }
+        if (!mOnItemScrollStateChangeListeners.contains(listener)) {
+            mOnItemScrollStateChangeListeners.add(listener);
+        }
+    }
+
+    public void removeOnItemScrollStateChangeListener(@NonNull OnItemScrollStateChangeListener listener) {
+        if (mOnItemScrollStateChangeListeners != null) {
+            mOnItemScrollStateChangeListeners.remove(listener);
+        }
+    }
+
+    /*synthetic*/ void updateItemScrollState() {
+        final int state = mIsItemBeingDragged ? ITEM_SCROLL_STATE_DRAGGING
+                : mRunningItemAnimatorCount > 0 ? ITEM_SCROLL_STATE_SETTLING
+                : ITEM_SCROLL_STATE_IDLE;
+        if (mItemScrollState == state) return;
+        mItemScrollState = state;
+
+        if (mOnItemScrollStateChangeListeners != null) {
+            for (int i = mOnItemScrollStateChangeListeners.size() - 1; i >= 0; i--) {
+                mOnItemScrollStateChangeListeners.get(i).onItemScrollStateChange(this, state);
+            }
+        }
+    }
+
     public SlidingItemMenuRecyclerView(Context context) {
         this(context, null);
     }
@@ -492,6 +563,7 @@ public class SlidingItemMenuRecyclerView extends RecyclerView {
             }
             if (mIsItemBeingDragged) {
                 requestParentDisallowInterceptTouchEvent();
+                updateItemScrollState();
                 return true;
             }
         }
@@ -547,6 +619,7 @@ public class SlidingItemMenuRecyclerView extends RecyclerView {
         if (mVelocityTracker != null) {
             mVelocityTracker.clear();
         }
+        updateItemScrollState();
     }
 
     private void cancelParentTouch(MotionEvent e) {
@@ -762,6 +835,9 @@ public class SlidingItemMenuRecyclerView extends RecyclerView {
                 @SuppressLint("ObsoleteSdkInt")
                 @Override
                 public void onAnimationStart(Animator animation) {
+                    parent.mRunningItemAnimatorCount++;
+                    parent.updateItemScrollState();
+
                     ensureChildrenLayerTypes();
                     for (int i = childrenLayerTypes.size() - 1; i >= 0; i--) {
                         final View child = childrenLayerTypes.keyAt(i);
@@ -779,6 +855,9 @@ public class SlidingItemMenuRecyclerView extends RecyclerView {
                         childrenLayerTypes.keyAt(i).setLayerType(
                                 childrenLayerTypes.valueAt(i), null);
                     }
+
+                    parent.mRunningItemAnimatorCount--;
+                    parent.updateItemScrollState();
                 }
             };
             addListener(listener);
@@ -802,6 +881,21 @@ public class SlidingItemMenuRecyclerView extends RecyclerView {
         }
     }
 
+    /**
+     * Classes that wish to be notified when the item views start or stop being dragged or
+     * scrolled should implement this interface.
+     */
+    public interface OnItemScrollStateChangeListener {
+        /**
+         * Callback to be called when the scroll state of the item views changes.
+         *
+         * @param parent the current view
+         * @param state  the new scroll state of the item views
+         */
+        void onItemScrollStateChange(@NonNull SlidingItemMenuRecyclerView parent,
+                                     @ItemScrollState int state);
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
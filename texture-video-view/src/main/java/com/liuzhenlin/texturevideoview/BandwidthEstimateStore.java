@@ -0,0 +1,188 @@
+/*
+ * Created on 2026-10-19 6:12:37 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.util.Util;
+import com.liuzhenlin.texturevideoview.utils.Singleton;
+
+import java.util.Map;
+
+/**
+ * Persists the throughput measured by the bandwidth meters of {@link ExoVideoPlayer}s per
+ * network type, so that the meter of the next playback can start from the estimate last measured
+ * on the current kind of network instead of the generic country-based default, and adaptive
+ * streams can start with a rendition that fits the network from the very first segment.
+ *
+ * @author 刘振林
+ */
+@MainThread
+/*package*/ final class BandwidthEstimateStore {
+
+    private static final String TAG = "BandwidthEstimateStore";
+
+    private static final String PREFS_NAME = "ExoBandwidthEstimates";
+    private static final String KEY_PREFIX_NETWORK_TYPE = "networkType_";
+
+    /**
+     * Weight of a newly measured estimate against the stored one, so that a single session on
+     * an unusually fast or slow network does not override the history completely.
+     */
+    private static final float NEW_ESTIMATE_WEIGHT = 0.5f;
+
+    /*
+     * DefaultBandwidthMeter keeps reporting its initial estimate until this much time or data
+     * has been sampled; an estimate taken before that is nothing but what we seeded.
+     */
+    private static final long MIN_SAMPLED_ELAPSED_MS = 2000;
+    private static final long MIN_SAMPLED_BYTES = 512 * 1024;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+
+    private static final Singleton<Context, BandwidthEstimateStore> sBandwidthEstimateStoreSingleton =
+            new Singleton<Context, BandwidthEstimateStore>() {
+                @NonNull
+                @Override
+                protected BandwidthEstimateStore onCreate(Context... ctxs) {
+                    return new BandwidthEstimateStore(ctxs[0]);
+                }
+            };
+
+    public static BandwidthEstimateStore getSingleton(@NonNull Context context) {
+        return sBandwidthEstimateStoreSingleton.get(context);
+    }
+
+    private BandwidthEstimateStore(Context context) {
+        mContext = context.getApplicationContext();
+        mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the stored bitrate estimate in bits per second for the given network type,
+     *         or 0 if nothing has been measured on it yet
+     */
+    public long getEstimate(@C.NetworkType int networkType) {
+        return mPrefs.getLong(KEY_PREFIX_NETWORK_TYPE + networkType, 0);
+    }
+
+    /*package*/ void putEstimate(@C.NetworkType int networkType, long bitrateEstimate) {
+        if (bitrateEstimate <= 0
+                || networkType == C.NETWORK_TYPE_UNKNOWN || networkType == C.NETWORK_TYPE_OFFLINE) {
+            return;
+        }
+        final long storedEstimate = getEstimate(networkType);
+        final long estimate = storedEstimate == 0
+                ? bitrateEstimate
+                : (long) (storedEstimate + (bitrateEstimate - storedEstimate) * NEW_ESTIMATE_WEIGHT);
+        mPrefs.edit().putLong(KEY_PREFIX_NETWORK_TYPE + networkType, estimate).apply();
+        if (InternalConsts.DEBUG) {
+            Log.d(TAG, "Stored bitrate estimate " + estimate + " bps for network type " + networkType
+                    + " (measured " + bitrateEstimate + ", previous " + storedEstimate + ")");
+        }
+    }
+
+    /**
+     * Creates a new bandwidth meter whose initial estimates are seeded with the stored ones,
+     * the results of which will be recorded back here once the returned session is
+     * {@link Session#close() closed}.
+     */
+    @NonNull
+    public Session openSession() {
+        DefaultBandwidthMeter.Builder builder = new DefaultBandwidthMeter.Builder(mContext);
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            final String key = entry.getKey();
+            final Object value = entry.getValue();
+            if (key.startsWith(KEY_PREFIX_NETWORK_TYPE) && value instanceof Long) {
+                try {
+                    final int networkType =
+                            Integer.parseInt(key.substring(KEY_PREFIX_NETWORK_TYPE.length()));
+                    builder.setInitialBitrateEstimate(networkType, (Long) value);
+                } catch (NumberFormatException e) {
+                    // Ignored
+                }
+            }
+        }
+        return new Session(builder.build());
+    }
+
+    /**
+     * Tracks the bandwidth samples of a single player and records the last estimate measured on
+     * each network type into the store.
+     */
+    public final class Session implements BandwidthMeter.EventListener {
+
+        private final DefaultBandwidthMeter mBandwidthMeter;
+
+        private final long mInitialBitrateEstimate;
+
+        @C.NetworkType private int mNetworkType;
+        private long mSampledElapsedMs;
+        private long mSampledBytes;
+        private long mBitrateEstimate;
+
+        Session(DefaultBandwidthMeter bandwidthMeter) {
+            mBandwidthMeter = bandwidthMeter;
+            mInitialBitrateEstimate = bandwidthMeter.getBitrateEstimate();
+            mNetworkType = Util.getNetworkType(mContext);
+            bandwidthMeter.addEventListener(InternalConsts.getMainThreadHandler(), this);
+        }
+
+        @NonNull
+        public DefaultBandwidthMeter getBandwidthMeter() {
+            return mBandwidthMeter;
+        }
+
+        /**
+         * @return the estimate the meter started from, in bits per second
+         */
+        public long getInitialBitrateEstimate() {
+            return mInitialBitrateEstimate;
+        }
+
+        @Override
+        public void onBandwidthSample(int elapsedMs, long bytesTransferred, long bitrateEstimate) {
+            @C.NetworkType final int networkType = Util.getNetworkType(mContext);
+            if (networkType != mNetworkType) {
+                // 网络类型已改变，测速器会重置为新网络的初始估计值，先记录旧网络的结果
+                commit();
+                mNetworkType = networkType;
+            }
+            mSampledElapsedMs += elapsedMs;
+            mSampledBytes += bytesTransferred;
+            mBitrateEstimate = bitrateEstimate;
+        }
+
+        /**
+         * Records what the meter has measured so far on the current network type.
+         */
+        public void commit() {
+            if (mSampledElapsedMs >= MIN_SAMPLED_ELAPSED_MS || mSampledBytes >= MIN_SAMPLED_BYTES) {
+                putEstimate(mNetworkType, mBitrateEstimate);
+            }
+            mSampledElapsedMs = 0;
+            mSampledBytes = 0;
+            mBitrateEstimate = 0;
+        }
+
+        /**
+         * Stops tracking the meter and records what it has measured.
+         */
+        public void close() {
+            mBandwidthMeter.removeEventListener(this);
+            commit();
+        }
+    }
+}
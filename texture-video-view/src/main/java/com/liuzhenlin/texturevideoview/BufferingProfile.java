@@ -0,0 +1,170 @@
+/*
+ * Created on 2026-10-19 6:40:05 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.liuzhenlin.texturevideoview.utils.URLUtils;
+
+/**
+ * Describes how much media a player should buffer ahead of (and behind) the playback position
+ * before and during playback.
+ * <p>
+ * Local media can be read far faster than it is played, so keeping a long buffer for it only
+ * costs memory. Network media on demand wants to start quickly and then buffer generously to ride
+ * out throughput drops, while live streams should stay close to the live edge and need not keep
+ * anything that has been played. The predefined profiles cover these cases, and
+ * {@link #forUri(Uri, boolean)} picks one of them according to the source type of a video
+ * and whether it is live.
+ *
+ * @author 刘振林
+ */
+public final class BufferingProfile {
+
+    /** Indicates the default byte target of the player should be used. */
+    public static final int TARGET_BUFFER_BYTES_UNSET = -1;
+
+    /**
+     * For network media on demand: starts playback as soon as a second has been buffered and
+     * then buffers up to 50 seconds ahead, keeping 10 seconds behind for quick backward seeks.
+     */
+    public static final BufferingProfile FAST_START = new BufferingProfile("fast-start",
+            15_000, 50_000, 1_000, 2_500, 10_000, TARGET_BUFFER_BYTES_UNSET);
+
+    /**
+     * For local media: buffers only a few seconds ahead in a small byte budget and nothing behind,
+     * as the data can always be read again in no time.
+     */
+    public static final BufferingProfile LOW_MEMORY = new BufferingProfile("low-memory",
+            5_000, 15_000, 500, 1_000, 0, 8 * 1024 * 1024);
+
+    /**
+     * For live streams: waits for a little more data before starting or resuming playback
+     * to avoid rebuffering right away, but does not buffer too far ahead so that the playback
+     * stays close to the live edge, and keeps nothing behind.
+     */
+    public static final BufferingProfile LIVE = new BufferingProfile("live",
+            8_000, 20_000, 2_000, 4_000, 0, TARGET_BUFFER_BYTES_UNSET);
+
+    @NonNull public final String name;
+    /** The minimum duration of media the player will attempt to keep buffered at all times. */
+    public final int minBufferMs;
+    /** The maximum duration of media the player will attempt to buffer. */
+    public final int maxBufferMs;
+    /** The duration of media that must be buffered for playback to start or resume after a seek. */
+    public final int bufferForPlaybackMs;
+    /** The duration of media that must be buffered for playback to resume after a rebuffer. */
+    public final int bufferForPlaybackAfterRebufferMs;
+    /** The duration of media already played to keep buffered behind the playback position. */
+    public final int backBufferMs;
+    /** The maximum bytes of media to buffer, or {@link #TARGET_BUFFER_BYTES_UNSET}. */
+    public final int targetBufferBytes;
+
+    public BufferingProfile(@NonNull String name,
+                            int minBufferMs, int maxBufferMs,
+                            int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs,
+                            int backBufferMs, int targetBufferBytes) {
+        if (bufferForPlaybackMs < 0 || bufferForPlaybackAfterRebufferMs < 0 || backBufferMs < 0) {
+            throw new IllegalArgumentException("Buffer durations must not be negative");
+        }
+        if (bufferForPlaybackMs > minBufferMs || bufferForPlaybackAfterRebufferMs > minBufferMs) {
+            throw new IllegalArgumentException(
+                    "Buffer durations for playback must not be greater than minBufferMs");
+        }
+        if (minBufferMs > maxBufferMs) {
+            throw new IllegalArgumentException("minBufferMs must not be greater than maxBufferMs");
+        }
+        if (targetBufferBytes <= 0 && targetBufferBytes != TARGET_BUFFER_BYTES_UNSET) {
+            throw new IllegalArgumentException("Invalid targetBufferBytes: " + targetBufferBytes);
+        }
+        this.name = name;
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.backBufferMs = backBufferMs;
+        this.targetBufferBytes = targetBufferBytes;
+    }
+
+    /**
+     * Picks a predefined profile according to the source type of the given video, before it is
+     * known whether the video is a live stream. Same as {@code forUri(uri, false)}.
+     *
+     * @see #forUri(Uri, boolean)
+     */
+    @NonNull
+    public static BufferingProfile forUri(@Nullable Uri uri) {
+        return forUri(uri, false);
+    }
+
+    /**
+     * Picks a predefined profile according to the source type of the given video:
+     * {@link #LOW_MEMORY} for local media, {@link #LIVE} for live streams, i.e., those over
+     * streaming protocols (RTMP and RTSP) or found to be live by the player, and
+     * {@link #FAST_START} for any other network media, including the adaptive streams (HLS, DASH
+     * and SmoothStreaming) until their playlists or manifests tell they are live.
+     *
+     * @param live true if the player has found the video to be a live stream
+     */
+    @NonNull
+    public static BufferingProfile forUri(@Nullable Uri uri, boolean live) {
+        if (uri == null) {
+            return FAST_START;
+        }
+        final String url = uri.toString();
+        if (!URLUtils.isNetworkUrl(url)) {
+            return LOW_MEMORY;
+        }
+        if (live || URLUtils.isRtmpUrl(url) || URLUtils.isRtspUrl(url)) {
+            return LIVE;
+        }
+        return FAST_START;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        BufferingProfile that = (BufferingProfile) o;
+        return minBufferMs == that.minBufferMs
+                && maxBufferMs == that.maxBufferMs
+                && bufferForPlaybackMs == that.bufferForPlaybackMs
+                && bufferForPlaybackAfterRebufferMs == that.bufferForPlaybackAfterRebufferMs
+                && backBufferMs == that.backBufferMs
+                && targetBufferBytes == that.targetBufferBytes
+                && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name.hashCode();
+        result = 31 * result + minBufferMs;
+        result = 31 * result + maxBufferMs;
+        result = 31 * result + bufferForPlaybackMs;
+        result = 31 * result + bufferForPlaybackAfterRebufferMs;
+        result = 31 * result + backBufferMs;
+        result = 31 * result + targetBufferBytes;
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BufferingProfile{" +
+                "name='" + name + '\'' +
+                ", minBufferMs=" + minBufferMs +
+                ", maxBufferMs=" + maxBufferMs +
+                ", bufferForPlaybackMs=" + bufferForPlaybackMs +
+                ", bufferForPlaybackAfterRebufferMs=" + bufferForPlaybackAfterRebufferMs +
+                ", backBufferMs=" + backBufferMs +
+                ", targetBufferBytes=" + targetBufferBytes +
+                '}';
+    }
+}
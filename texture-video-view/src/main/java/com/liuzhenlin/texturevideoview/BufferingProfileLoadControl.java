@@ -0,0 +1,188 @@
+/*
+ * Created on 2026-10-19 6:58:42 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+/**
+ * A {@link LoadControl} that buffers media as the {@link BufferingProfile} it is given says.
+ * <p>
+ * Since the load control of an ExoPlayer can not be replaced once the player is built, this one
+ * delegates to a {@link DefaultLoadControl} created for the current profile, which is switched
+ * to a new one for the profile last set each time the player is prepared, or at once on
+ * the playback thread by {@link #switchProfile(BufferingProfile)}. All the delegates share
+ * the same allocator, so no buffered media is lost on switching, and through which the amount
+ * of media buffered in bytes can be inspected.
+ *
+ * @author 刘振林
+ */
+/*package*/ final class BufferingProfileLoadControl implements LoadControl {
+
+    private final DefaultAllocator mAllocator =
+            new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+
+    // 由播放线程读取，在主线程设置，下次准备播放时生效
+    private volatile BufferingProfile mPendingProfile;
+    private volatile BufferingProfile mProfile;
+    // 在主线程设置，由播放线程在下次询问是否继续加载时切换
+    private volatile boolean mProfileSwitchPending;
+    private DefaultLoadControl mDelegate;
+
+    // 以下仅由播放线程访问，用于在切换后让新的代理重新计算目标缓冲大小
+    private boolean mPrepared;
+    private Renderer[] mRenderers;
+    private TrackGroupArray mTrackGroups;
+    private TrackSelectionArray mTrackSelections;
+
+    public BufferingProfileLoadControl(@NonNull BufferingProfile profile) {
+        mPendingProfile = profile;
+        mProfile = profile;
+        mDelegate = createDelegate(profile);
+    }
+
+    private DefaultLoadControl createDelegate(BufferingProfile profile) {
+        final boolean hasByteTarget =
+                profile.targetBufferBytes != BufferingProfile.TARGET_BUFFER_BYTES_UNSET;
+        return new DefaultLoadControl.Builder()
+                .setAllocator(mAllocator)
+                .setBufferDurationsMs(
+                        profile.minBufferMs,
+                        profile.maxBufferMs,
+                        profile.bufferForPlaybackMs,
+                        profile.bufferForPlaybackAfterRebufferMs)
+                .setTargetBufferBytes(hasByteTarget ? profile.targetBufferBytes : C.LENGTH_UNSET)
+                // Let the byte budget take effect if one is specified
+                .setPrioritizeTimeOverSizeThresholds(!hasByteTarget)
+                .setBackBuffer(profile.backBufferMs, true)
+                .build();
+    }
+
+    /**
+     * Sets the profile to use from the next time the player is prepared.
+     */
+    public void setProfile(@NonNull BufferingProfile profile) {
+        mPendingProfile = profile;
+    }
+
+    /**
+     * Sets the profile to use and switches to it while the media is being played, without waiting
+     * for the player to be prepared again.
+     */
+    public void switchProfile(@NonNull BufferingProfile profile) {
+        mPendingProfile = profile;
+        mProfileSwitchPending = true;
+    }
+
+    private void applySwitchedProfileIfPending() {
+        if (mProfileSwitchPending) {
+            mProfileSwitchPending = false;
+            final BufferingProfile profile = mPendingProfile;
+            if (!profile.equals(mProfile)) {
+                mProfile = profile;
+                mDelegate = createDelegate(profile);
+                if (mPrepared) {
+                    mDelegate.onPrepared();
+                    if (mRenderers != null) {
+                        mDelegate.onTracksSelected(mRenderers, mTrackGroups, mTrackSelections);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the profile currently in use
+     */
+    @NonNull
+    public BufferingProfile getProfile() {
+        return mProfile;
+    }
+
+    /**
+     * @return the total bytes of media currently buffered, including the back buffer
+     */
+    public long getBufferedBytes() {
+        return mAllocator.getTotalBytesAllocated();
+    }
+
+    @Override
+    public void onPrepared() {
+        mProfileSwitchPending = false;
+        mPrepared = true;
+        final BufferingProfile profile = mPendingProfile;
+        if (!profile.equals(mProfile)) {
+            mProfile = profile;
+            mDelegate = createDelegate(profile);
+        }
+        mDelegate.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                 TrackSelectionArray trackSelections) {
+        mRenderers = renderers;
+        mTrackGroups = trackGroups;
+        mTrackSelections = trackSelections;
+        mDelegate.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        clearTrackState();
+        mDelegate.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        clearTrackState();
+        mDelegate.onReleased();
+    }
+
+    private void clearTrackState() {
+        mPrepared = false;
+        mRenderers = null;
+        mTrackGroups = null;
+        mTrackSelections = null;
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return mAllocator;
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return mDelegate.getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return mDelegate.retainBackBufferFromKeyframe();
+    }
+
+    @Override
+    public boolean shouldContinueLoading(
+            long playbackPositionUs, long bufferedDurationUs, float playbackSpeed) {
+        applySwitchedProfileIfPending();
+        return mDelegate.shouldContinueLoading(playbackPositionUs, bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(
+            long bufferedDurationUs, float playbackSpeed, boolean rebuffering) {
+        applySwitchedProfileIfPending();
+        return mDelegate.shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering);
+    }
+}
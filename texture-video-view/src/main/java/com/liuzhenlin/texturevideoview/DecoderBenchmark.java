@@ -0,0 +1,128 @@
+/*
+ * Created on 2026-10-19 10:24:37 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.util.Clock;
+
+import java.util.List;
+
+/**
+ * Measures the decode throughput of a platform and an extension decoder on the same short sample
+ * of a stream and tells which one should be preferred for it.
+ * <p>
+ * The decoders are abstracted as {@link Candidate}s and time is read from the given {@link Clock},
+ * so the measurement does not depend on any real codec and can be driven by fakes.
+ *
+ * @author 刘振林
+ */
+/*package*/ final class DecoderBenchmark {
+
+    /**
+     * How much faster the extension decoder must be for it to be preferred, as software decoding
+     * generally costs more power than the platform decoders, which are often hardware backed.
+     */
+    public static final float EXTENSION_PREFERENCE_MARGIN = 1.1f;
+
+    /** An encoded sample of the stream. */
+    public static final class Sample {
+        @NonNull public final byte[] data;
+        public final long timeUs;
+        public final boolean keyFrame;
+
+        public Sample(@NonNull byte[] data, long timeUs, boolean keyFrame) {
+            this.data = data;
+            this.timeUs = timeUs;
+            this.keyFrame = keyFrame;
+        }
+    }
+
+    /** A decoder to be measured. */
+    public interface Candidate {
+
+        /** Creates the underlying decoder. Not included in the measured time. */
+        void prepare() throws Exception;
+
+        /**
+         * Decodes the given samples in order, returning only after all the frames they produce
+         * have been output.
+         *
+         * @return the number of frames output
+         */
+        int decode(@NonNull List<Sample> samples) throws Exception;
+
+        /** Releases the underlying decoder. Called whether or not the measurement succeeded. */
+        void release();
+    }
+
+    /** The throughput of both decoders, in frames per second, or 0 for those that failed. */
+    public static final class Result {
+        public final float platformFps;
+        public final float extensionFps;
+
+        public Result(float platformFps, float extensionFps) {
+            this.platformFps = platformFps;
+            this.extensionFps = extensionFps;
+        }
+
+        public boolean isExtensionPreferred() {
+            return extensionFps > 0 && extensionFps > platformFps * EXTENSION_PREFERENCE_MARGIN;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "platformFps=" + platformFps +
+                    ", extensionFps=" + extensionFps +
+                    ", extensionPreferred=" + isExtensionPreferred() +
+                    '}';
+        }
+    }
+
+    private final Clock mClock;
+
+    public DecoderBenchmark(@NonNull Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Measures the two decoders one after the other on the given samples.
+     *
+     * @param platform  the platform decoder, or null if the platform has none for the stream
+     * @param extension the extension decoder, or null if not available
+     */
+    @NonNull
+    public Result run(@NonNull List<Sample> samples,
+                      @Nullable Candidate platform, @Nullable Candidate extension) {
+        return new Result(measure(platform, samples), measure(extension, samples));
+    }
+
+    /**
+     * @return the number of frames the candidate decoded per second, or 0 if it failed
+     */
+    /*package*/ float measure(@Nullable Candidate candidate, @NonNull List<Sample> samples) {
+        if (candidate == null || samples.isEmpty()) {
+            return 0;
+        }
+        try {
+            candidate.prepare();
+            final long startTimeMs = mClock.elapsedRealtime();
+            final int frameCount = candidate.decode(samples);
+            final long elapsedMs = Math.max(mClock.elapsedRealtime() - startTimeMs, 1);
+            return frameCount * 1000f / elapsedMs;
+        } catch (Exception e) {
+            if (InternalConsts.DEBUG) {
+                e.printStackTrace();
+            }
+            return 0;
+        } finally {
+            candidate.release();
+        }
+    }
+}
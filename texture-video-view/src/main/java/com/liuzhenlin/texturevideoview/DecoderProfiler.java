@@ -0,0 +1,398 @@
+/*
+ * Created on 2026-10-19 10:41:15 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.decoder.Decoder;
+import com.google.android.exoplayer2.decoder.DecoderException;
+import com.google.android.exoplayer2.ext.av1.Gav1Library;
+import com.google.android.exoplayer2.ext.av1.Libgav1VideoRenderer;
+import com.google.android.exoplayer2.ext.vp9.LibvpxVideoRenderer;
+import com.google.android.exoplayer2.ext.vp9.VpxLibrary;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.video.VideoDecoderInputBuffer;
+import com.google.android.exoplayer2.video.VideoDecoderOutputBuffer;
+import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor;
+import com.liuzhenlin.texturevideoview.utils.Singleton;
+import com.liuzhenlin.texturevideoview.utils.URLUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Decides per codec and resolution class whether the extension (libvpx or libgav1) or the
+ * platform MediaCodec decoder should decode a video stream for {@link ExoVideoPlayer}, from the
+ * throughput the two achieved on a short sample of the first local video of that class played.
+ * <p>
+ * The results are persisted and discarded when the system is updated, as that may bring
+ * different platform decoders. Until a class has been measured, the platform decoder is preferred,
+ * as it is by {@code DefaultRenderersFactory.EXTENSION_RENDERER_MODE_ON}.
+ *
+ * @author 刘振林
+ */
+public final class DecoderProfiler {
+
+    private static final String TAG = "DecoderProfiler";
+
+    private static final String PREFS_NAME = "DecoderBenchmarks";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_SUFFIX_PLATFORM_FPS = "_platformFps";
+    private static final String KEY_SUFFIX_EXTENSION_FPS = "_extensionFps";
+
+    /** The number of samples from the start of a video to measure the decoders on. */
+    private static final int BENCHMARK_SAMPLE_COUNT = 60;
+    private static final int MAX_SAMPLE_SIZE = 4 * 1024 * 1024;
+
+    private static final long DECODE_TIMEOUT_MS = 20_000;
+    private static final long CODEC_TIMEOUT_US = 10_000;
+
+    private static final int[] RESOLUTION_CLASSES = {480, 720, 1080, 1440, 2160};
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+
+    // 仅在主线程访问
+    private final Set<String> mProfilingKeys = new HashSet<>(1);
+
+    private static final Singleton<Context, DecoderProfiler> sDecoderProfilerSingleton =
+            new Singleton<Context, DecoderProfiler>() {
+                @NonNull
+                @Override
+                protected DecoderProfiler onCreate(Context... ctxs) {
+                    return new DecoderProfiler(ctxs[0]);
+                }
+            };
+
+    public static DecoderProfiler getSingleton(@NonNull Context context) {
+        return sDecoderProfilerSingleton.get(context);
+    }
+
+    private DecoderProfiler(Context context) {
+        mContext = context.getApplicationContext();
+        mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!Build.FINGERPRINT.equals(mPrefs.getString(KEY_FINGERPRINT, null))) {
+            mPrefs.edit().clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+        }
+    }
+
+    /**
+     * @return the key of the codec and resolution class of the given format, or null if there is
+     *         no extension decoder for its codec
+     */
+    @Nullable
+    private static String getProfileKey(@NonNull Format format) {
+        final String mimeType = format.sampleMimeType;
+        if (!MimeTypes.VIDEO_VP9.equals(mimeType) && !MimeTypes.VIDEO_AV1.equals(mimeType)) {
+            return null;
+        }
+        // 以短边划分分辨率档次，横竖屏视频归入同一档
+        int shortSide = Math.min(format.width, format.height);
+        if (shortSide <= 0) {
+            shortSide = Math.max(format.width, format.height);
+        }
+        int resolutionClass = Integer.MAX_VALUE;
+        for (int rc : RESOLUTION_CLASSES) {
+            if (shortSide <= rc) {
+                resolutionClass = rc;
+                break;
+            }
+        }
+        return mimeType + "@" + (resolutionClass == Integer.MAX_VALUE ? "max" : resolutionClass);
+    }
+
+    private static boolean isExtensionAvailable(@NonNull String mimeType) {
+        switch (mimeType) {
+            case MimeTypes.VIDEO_VP9:
+                return VpxLibrary.isAvailable();
+            case MimeTypes.VIDEO_AV1:
+                return Gav1Library.isAvailable();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns whether the extension decoder was measured to be faster than the platform one
+     * for the codec and resolution class of the given format. May be called on any thread.
+     */
+    public boolean isExtensionPreferred(@NonNull Format format) {
+        final String key = getProfileKey(format);
+        return key != null && mPrefs.getBoolean(key, false);
+    }
+
+    /**
+     * Measures the decoders for the codec and resolution class of the given format on a sample
+     * of the given video in the background, unless they have been measured already or the video
+     * is not a local one. The result takes effect from the next time the renderers select their
+     * tracks, e.g., the next video played.
+     */
+    @MainThread
+    public void profileIfNeeded(@Nullable Uri uri, @NonNull Format format) {
+        final String key = getProfileKey(format);
+        if (key == null || uri == null
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP
+                || mPrefs.contains(key) || mProfilingKeys.contains(key)
+                || URLUtils.isNetworkUrl(uri.toString())
+                || !isExtensionAvailable(format.sampleMimeType)) {
+            return;
+        }
+        mProfilingKeys.add(key);
+        ParallelThreadExecutor.getSingleton().execute(() -> {
+            final DecoderBenchmark.Result result = profile(uri, format);
+            InternalConsts.getMainThreadHandler().post(() -> {
+                mProfilingKeys.remove(key);
+                if (result != null) {
+                    mPrefs.edit()
+                            .putBoolean(key, result.isExtensionPreferred())
+                            .putFloat(key + KEY_SUFFIX_PLATFORM_FPS, result.platformFps)
+                            .putFloat(key + KEY_SUFFIX_EXTENSION_FPS, result.extensionFps)
+                            .apply();
+                    if (InternalConsts.DEBUG) {
+                        Log.d(TAG, key + ": " + result);
+                    }
+                }
+            });
+        });
+    }
+
+    /** Discards all the results, so that every class is measured again on its next use. */
+    @MainThread
+    public void clearResults() {
+        mPrefs.edit().clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+    }
+
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    @Nullable
+    private DecoderBenchmark.Result profile(Uri uri, Format format) {
+        final String mimeType = format.sampleMimeType;
+        if (mimeType == null) {
+            return null;
+        }
+        final List<DecoderBenchmark.Sample> samples = new ArrayList<>(BENCHMARK_SAMPLE_COUNT);
+        MediaFormat mediaFormat = null;
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(mContext, uri, null);
+            for (int i = 0, trackCount = extractor.getTrackCount(); i < trackCount; i++) {
+                MediaFormat trackFormat = extractor.getTrackFormat(i);
+                if (mimeType.equals(trackFormat.getString(MediaFormat.KEY_MIME))) {
+                    extractor.selectTrack(i);
+                    mediaFormat = trackFormat;
+                    break;
+                }
+            }
+            if (mediaFormat == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(
+                    format.maxInputSize > 0 ? format.maxInputSize : MAX_SAMPLE_SIZE);
+            while (samples.size() < BENCHMARK_SAMPLE_COUNT) {
+                buffer.clear();
+                final int size = extractor.readSampleData(buffer, 0);
+                if (size < 0) {
+                    break;
+                }
+                byte[] data = new byte[size];
+                buffer.position(0);
+                buffer.get(data, 0, size);
+                samples.add(new DecoderBenchmark.Sample(data, extractor.getSampleTime(),
+                        (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0));
+                extractor.advance();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (InternalConsts.DEBUG) {
+                Log.w(TAG, "Failed to read samples from " + uri, e);
+            }
+            return null;
+        } finally {
+            extractor.release();
+        }
+        if (samples.isEmpty()) {
+            return null;
+        }
+
+        final DecoderBenchmark.Candidate extension;
+        switch (mimeType) {
+            case MimeTypes.VIDEO_VP9:
+                extension = new ExtensionCandidate(format, LibvpxVideoRenderer::createStandaloneDecoder);
+                break;
+            case MimeTypes.VIDEO_AV1:
+                extension = new ExtensionCandidate(format, Libgav1VideoRenderer::createStandaloneDecoder);
+                break;
+            default:
+                return null;
+        }
+        return new DecoderBenchmark(Clock.DEFAULT)
+                .run(samples, new MediaCodecCandidate(mediaFormat), extension);
+    }
+
+    /** Decodes the samples with the default platform decoder into byte buffers. */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static final class MediaCodecCandidate implements DecoderBenchmark.Candidate {
+        final MediaFormat mediaFormat;
+        MediaCodec codec;
+
+        MediaCodecCandidate(MediaFormat mediaFormat) {
+            this.mediaFormat = mediaFormat;
+        }
+
+        @Override
+        public void prepare() throws Exception {
+            //noinspection ConstantConditions
+            codec = MediaCodec.createDecoderByType(mediaFormat.getString(MediaFormat.KEY_MIME));
+            codec.configure(mediaFormat, null, null, 0);
+            codec.start();
+        }
+
+        @Override
+        public int decode(@NonNull List<DecoderBenchmark.Sample> samples) throws Exception {
+            final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            final long deadline = System.currentTimeMillis() + DECODE_TIMEOUT_MS;
+            int queuedCount = 0;
+            boolean inputEnded = false;
+            int frameCount = 0;
+            while (System.currentTimeMillis() < deadline) {
+                if (!inputEnded) {
+                    final int index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (index >= 0) {
+                        if (queuedCount < samples.size()) {
+                            DecoderBenchmark.Sample sample = samples.get(queuedCount++);
+                            ByteBuffer buffer = codec.getInputBuffer(index);
+                            //noinspection ConstantConditions
+                            buffer.clear();
+                            buffer.put(sample.data);
+                            codec.queueInputBuffer(index, 0, sample.data.length, sample.timeUs,
+                                    sample.keyFrame ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+                        } else {
+                            codec.queueInputBuffer(
+                                    index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputEnded = true;
+                        }
+                    }
+                }
+                final int index = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                if (index >= 0) {
+                    if (info.size > 0) {
+                        frameCount++;
+                    }
+                    codec.releaseOutputBuffer(index, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        return frameCount;
+                    }
+                }
+            }
+            throw new TimeoutException("MediaCodec decoding timed out");
+        }
+
+        @Override
+        public void release() {
+            if (codec != null) {
+                codec.release();
+                codec = null;
+            }
+        }
+    }
+
+    private interface ExtensionDecoderFactory {
+        Decoder<VideoDecoderInputBuffer, VideoDecoderOutputBuffer, ? extends DecoderException>
+        createDecoder(Format format) throws DecoderException;
+    }
+
+    /** Decodes the samples with an extension decoder into YUV buffers. */
+    private static final class ExtensionCandidate implements DecoderBenchmark.Candidate {
+        final Format format;
+        final ExtensionDecoderFactory decoderFactory;
+        Decoder<VideoDecoderInputBuffer, VideoDecoderOutputBuffer, ? extends DecoderException> decoder;
+
+        ExtensionCandidate(Format format, ExtensionDecoderFactory decoderFactory) {
+            this.format = format;
+            this.decoderFactory = decoderFactory;
+        }
+
+        @Override
+        public void prepare() throws Exception {
+            decoder = decoderFactory.createDecoder(format);
+        }
+
+        @Override
+        public int decode(@NonNull List<DecoderBenchmark.Sample> samples) throws Exception {
+            final long deadline = System.currentTimeMillis() + DECODE_TIMEOUT_MS;
+            int queuedCount = 0;
+            boolean inputEnded = false;
+            int frameCount = 0;
+            while (System.currentTimeMillis() < deadline) {
+                boolean progressed = false;
+                if (!inputEnded) {
+                    VideoDecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+                    if (inputBuffer != null) {
+                        if (queuedCount < samples.size()) {
+                            DecoderBenchmark.Sample sample = samples.get(queuedCount++);
+                            inputBuffer.ensureSpaceForWrite(sample.data.length);
+                            //noinspection ConstantConditions
+                            inputBuffer.data.put(sample.data);
+                            inputBuffer.timeUs = sample.timeUs;
+                            if (sample.keyFrame) {
+                                inputBuffer.setFlags(C.BUFFER_FLAG_KEY_FRAME);
+                            }
+                            inputBuffer.flip();
+                        } else {
+                            inputBuffer.setFlags(C.BUFFER_FLAG_END_OF_STREAM);
+                            inputEnded = true;
+                        }
+                        decoder.queueInputBuffer(inputBuffer);
+                        progressed = true;
+                    }
+                }
+                VideoDecoderOutputBuffer outputBuffer = decoder.dequeueOutputBuffer();
+                if (outputBuffer != null) {
+                    final boolean ended = outputBuffer.isEndOfStream();
+                    if (!ended && !outputBuffer.isDecodeOnly()) {
+                        frameCount++;
+                    }
+                    outputBuffer.release();
+                    if (ended) {
+                        return frameCount;
+                    }
+                    progressed = true;
+                }
+                if (!progressed) {
+                    // 解码在解码器自己的线程中进行，稍候再取
+                    Thread.sleep(1);
+                }
+            }
+            throw new TimeoutException("Extension decoding timed out");
+        }
+
+        @Override
+        public void release() {
+            if (decoder != null) {
+                decoder.release();
+                decoder = null;
+            }
+        }
+    }
+}
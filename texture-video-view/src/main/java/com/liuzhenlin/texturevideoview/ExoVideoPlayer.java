@@ -12,6 +12,7 @@ import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Messenger;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 import android.widget.Toast;
@@ -24,16 +25,18 @@ import androidx.collection.SimpleArrayMap;
 
 import com.bumptech.glide.util.Synthetic;
 import com.google.android.exoplayer2.C;
-import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Player;
-import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.PlayerMessage;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.MediaSourceFactory;
+import com.google.android.exoplayer2.source.MediaLoadData;
 import com.google.android.exoplayer2.source.MergingMediaSource;
 import com.google.android.exoplayer2.source.ProgressiveMediaSource;
 import com.google.android.exoplayer2.source.SingleSampleMediaSource;
@@ -42,6 +45,7 @@ import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.source.dash.DashMediaSource;
 import com.google.android.exoplayer2.source.hls.HlsMediaSource;
 import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
+import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
@@ -61,6 +65,8 @@ import com.liuzhenlin.texturevideoview.receiver.MediaButtonEventReceiver;
 import com.liuzhenlin.texturevideoview.utils.Utils;
 import com.liuzhenlin.texturevideoview.utils.VideoUtils;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -77,16 +83,59 @@ public class ExoVideoPlayer extends VideoPlayer {
 
     private static final int $FLAG_PLAY_WHEN_PREPARED = 1 << 31;
 
+    /**
+     * If true, ExoPlayer is moving the media to some specified time position, for which
+     * the buffering is not counted as a rebuffer.
+     */
+    private static final int $FLAG_SEEKING = 1 << 30;
+
     private String mUserAgent;
 
     @Synthetic SimpleExoPlayer mExoPlayer;
     private DefaultTrackSelector mTrackSelector;
+
+    // 播放器是否取自播放器池，以及打开视频的时间，用于比较有无复用播放器时的首帧耗时
+    @Synthetic boolean mInnerPlayerFromPool;
+    @Synthetic long mOpenStartTimeMs;
     private MediaSourceFactory mMediaSourceFactory;
     private MediaSourceFactory mTmpMediaSourceFactory;
     private SimpleArrayMap<Uri, String[]/*{mimeType, language}*/> mSubtitles;
     private static SingleSampleMediaSource.Factory sSubtitleSourceFactory;
+
+    /**
+     * How often the cues of the selected {@link IndexedSubtitleTrack} are updated while
+     * the video is playing, and while it is not.
+     */
+    private static final int INDEXED_SUBTITLE_UPDATE_INTERVAL_MS = 100;
+    private static final int INDEXED_SUBTITLE_IDLE_UPDATE_INTERVAL_MS = 500;
+
+    // 大字幕文件不经由 ExoPlayer 加载，而是建立索引后只解析播放位置附近的字幕，
+    // 其轨道排在 ExoPlayer 的所有轨道之后
+    @Synthetic List<IndexedSubtitleTrack> mIndexedSubtitles;
+    @Synthetic int mSelectedIndexedSubtitle = INVALID_TRACK_INDEX;
+    private List<Cue> mShownIndexedSubtitleCues;
+    private IndexedSubtitleTrack.Listener mIndexedSubtitleListener;
+    private final Runnable mIndexedSubtitleUpdater = this::updateIndexedSubtitleCues;
     private static DataSource.Factory sDefaultDataSourceFactory;
 
+    private BandwidthEstimateStore.Session mBandwidthEstimateSession;
+
+    /**
+     * How long before the end of the current video the next one in the playlist will be queued,
+     * so that it can be buffered in time for a gapless transition.
+     */
+    private static final int PREBUFFER_NEXT_VIDEO_MS = 10000;
+
+    // 无缝播放列表：当前视频及排队的下一视频所在的拼接媒体源
+    private ConcatenatingMediaSource mPlaylistSource;
+    private PlayerMessage mQueueNextVideoMessage;
+    @Synthetic Uri mQueuedNextVideoUri;
+
+    private BufferingProfileLoadControl mLoadControl;
+
+    // 起播时的视频格式；起播耗时由 PlaybackStats 统计
+    @Synthetic Format mStartupVideoFormat;
+
     private final AudioManager.OnAudioFocusChangeListener mOnAudioFocusChangeListener
             = new AudioManager.OnAudioFocusChangeListener() {
         @Override
@@ -223,6 +272,74 @@ public class ExoVideoPlayer extends VideoPlayer {
         return mUserAgent;
     }
 
+    /**
+     * @return the time in milliseconds it took the current video from being opened or prepared
+     *         again to rendering its first frame, or {@link #TIME_UNSET} if no frame has been
+     *         rendered yet. Same as {@link PlaybackStats#getTimeToFirstFrameMs()} of
+     *         {@link #getPlaybackStats()}.
+     */
+    public long getTimeToFirstFrame() {
+        final PlaybackStats stats = getPlaybackStats();
+        if (stats == null || stats.getTimeToFirstFrameMs() == PlaybackStats.VALUE_UNSET) {
+            return TIME_UNSET;
+        }
+        return stats.getTimeToFirstFrameMs();
+    }
+
+    /**
+     * @return the format of the video track at the time the first frame of the current video
+     *         was rendered, e.g., the startup rendition of an adaptive stream, or {@code null}
+     *         if no frame has been rendered yet.
+     */
+    @Nullable
+    public Format getStartupVideoFormat() {
+        return mStartupVideoFormat;
+    }
+
+    /**
+     * @return the bitrate estimate in bits per second the bandwidth meter of the current playback
+     *         started from, seeded with the one measured on the current network type last time,
+     *         or 0 if the video is not opened.
+     */
+    public long getInitialBitrateEstimate() {
+        return mBandwidthEstimateSession == null
+                ? 0 : mBandwidthEstimateSession.getInitialBitrateEstimate();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A profile chosen for an adaptive stream is switched to the live one as soon as
+     * the timeline of the stream shows it is live, without preparing the video again.
+     */
+    @Override
+    protected void onBufferingProfileChanged(@NonNull BufferingProfile profile) {
+        if (mLoadControl != null) {
+            mLoadControl.switchProfile(profile);
+        }
+    }
+
+    @Override
+    public long getBufferedDuration() {
+        if (mExoPlayer != null) {
+            return mExoPlayer.getTotalBufferedDuration();
+        }
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This includes what is kept behind the playback position.
+     */
+    @Override
+    public long getBufferedBytes() {
+        if (mLoadControl != null) {
+            return mLoadControl.getBufferedBytes();
+        }
+        return 0;
+    }
+
     @Override
     public final void setVideoResourceId(int resId) {
         setVideoPath(resId == 0 ? null : "rawresource:///" + resId);
@@ -233,6 +350,13 @@ public class ExoVideoPlayer extends VideoPlayer {
         if (mSubtitles != null) {
             mSubtitles.clear();
         }
+        if (mIndexedSubtitles != null) {
+            deselectIndexedSubtitle();
+            for (IndexedSubtitleTrack track : mIndexedSubtitles) {
+                track.release();
+            }
+            mIndexedSubtitles.clear();
+        }
         super.onVideoUriChanged(uri);
     }
 
@@ -253,12 +377,17 @@ public class ExoVideoPlayer extends VideoPlayer {
         if (mExoPlayer == null && mVideoUri != null
                 && !(mVideoView != null && surface == null)
                 && (mInternalFlags & $FLAG_VIDEO_PAUSED_BY_USER) == 0) {
-            RenderersFactory renderersFactory = new DefaultRenderersFactory(mContext)
-                    .setExtensionRendererMode(DefaultRenderersFactory.EXTENSION_RENDERER_MODE_ON);
-            mTrackSelector = new DefaultTrackSelector(mContext);
-            mExoPlayer = new SimpleExoPlayer.Builder(mContext, renderersFactory)
-                    .setTrackSelector(mTrackSelector)
-                    .build();
+            mOpenStartTimeMs = SystemClock.elapsedRealtime();
+            VideoPlayerPool.ExoPlayerEntry entry =
+                    VideoPlayerPool.getSingleton(mContext).acquireExoPlayer();
+            mInnerPlayerFromPool = entry != null;
+            if (entry == null) {
+                entry = VideoPlayerPool.ExoPlayerEntry.build(mContext, getBufferingProfile());
+            }
+            mExoPlayer = entry.player;
+            mTrackSelector = entry.trackSelector;
+            mLoadControl = entry.loadControl;
+            mBandwidthEstimateSession = entry.bandwidthEstimateSession;
             mExoPlayer.setVideoSurface(surface);
             mExoPlayer.setAudioAttributes(sDefaultAudioAttrs);
             setPlaybackSpeed(mUserPlaybackSpeed);
@@ -269,6 +398,14 @@ public class ExoVideoPlayer extends VideoPlayer {
                 @Override
                 public void onPlaybackStateChanged(int state) {
                     onVideoBufferingStateChanged(state == Player.STATE_BUFFERING);
+                    if (state == Player.STATE_BUFFERING) {
+                        if ((mInternalFlags & $FLAG_SEEKING) == 0) {
+                            reportRebufferingStarted();
+                        }
+                    } else {
+                        mInternalFlags &= ~$FLAG_SEEKING;
+                        reportRebufferingEnded();
+                    }
 
                     switch (state) {
                         case Player.STATE_READY:
@@ -289,6 +426,10 @@ public class ExoVideoPlayer extends VideoPlayer {
 
                 @Override
                 public void onTimelineChanged(Timeline timeline, int reason) {
+                    if (mPlaylistSource != null) {
+                        scheduleNextVideoQueueing(timeline);
+                    }
+
                     // Duration had been changed when new Uri was set and before the player was reset.
                     if (reason == Player.TIMELINE_CHANGE_REASON_PLAYLIST_CHANGED) return;
 
@@ -297,12 +438,30 @@ public class ExoVideoPlayer extends VideoPlayer {
                     }
                     final long duration = mExoPlayer.getDuration();
                     onVideoDurationChanged(duration == C.TIME_UNSET ? TIME_UNSET : (int) duration);
+
+                    // Whether an adaptive stream is live or on demand is only known from its
+                    // playlist or manifest, by now. Not checking if the window is dynamic,
+                    // as the placeholder timeline used before preparation always is.
+                    if (!timeline.isEmpty()) {
+                        onVideoLiveStateDetermined(mExoPlayer.isCurrentWindowLive());
+                    }
+                }
+
+                @SuppressWarnings("deprecation")
+                @Override
+                public void onSeekProcessed() {
+                    // Called after the playback state change caused by the seek, if any
+                    mInternalFlags &= ~$FLAG_SEEKING;
                 }
 
                 @Override
                 public void onPositionDiscontinuity(int reason) {
                     if (reason == Player.DISCONTINUITY_REASON_PERIOD_TRANSITION) {
-                        onVideoRepeat();
+                        if (mQueuedNextVideoUri != null && mExoPlayer.getCurrentWindowIndex() > 0) {
+                            onAdvancedToQueuedVideo();
+                        } else {
+                            onVideoRepeat();
+                        }
                     }
                 }
 
@@ -336,12 +495,68 @@ public class ExoVideoPlayer extends VideoPlayer {
                             width, height, unappliedRotationDegrees, pixelWidthHeightRatio);
                     ExoVideoPlayer.this.onVideoSizeChanged(videoSize[0], videoSize[1]);
                 }
+
+                @Override
+                public void onRenderedFirstFrame() {
+                    if (reportFirstFrameRendered()) {
+                        final long timeToFirstFrameMs = getTimeToFirstFrame();
+                        mStartupVideoFormat = mExoPlayer.getVideoFormat();
+                        if (InternalConsts.DEBUG) {
+                            Log.d(TAG, "Rendered first frame " + timeToFirstFrameMs + " ms after"
+                                    + " startup, in " + mStartupVideoFormat
+                                    + ", initial bitrate estimate "
+                                    + mBandwidthEstimateSession.getInitialBitrateEstimate() + " bps");
+                        }
+                        if (mOpenStartTimeMs != 0) {
+                            VideoPlayerPool.getSingleton(mContext).recordTimeToFirstFrame(
+                                    mInnerPlayerFromPool, timeToFirstFrameMs);
+                            mOpenStartTimeMs = 0;
+                        }
+                    }
+                    final Format videoFormat = mExoPlayer.getVideoFormat();
+                    if (videoFormat != null) {
+                        reportVideoBitrateChanged(videoFormat.bitrate);
+                        DecoderProfiler.getSingleton(mContext).profileIfNeeded(mVideoUri, videoFormat);
+                    }
+                }
             });
             mExoPlayer.addTextOutput(cues -> {
-                if (mVideoView != null) {
+                if (mVideoView != null && mSelectedIndexedSubtitle == INVALID_TRACK_INDEX) {
                     mVideoView.showSubtitles(cues);
                 }
             });
+            mExoPlayer.addAnalyticsListener(new AnalyticsListener() {
+                @Override
+                public void onDroppedVideoFrames(
+                        @NonNull EventTime eventTime, int droppedFrames, long elapsedMs) {
+                    reportDroppedVideoFrames(droppedFrames);
+                }
+
+                @SuppressWarnings("deprecation")
+                @Override
+                public void onDecoderInitialized(
+                        @NonNull EventTime eventTime, int trackType,
+                        @NonNull String decoderName, long initializationDurationMs) {
+                    switch (trackType) {
+                        case C.TRACK_TYPE_VIDEO:
+                            reportDecoderInitialized(TrackInfo.TRACK_TYPE_VIDEO, decoderName);
+                            break;
+                        case C.TRACK_TYPE_AUDIO:
+                            reportDecoderInitialized(TrackInfo.TRACK_TYPE_AUDIO, decoderName);
+                            break;
+                    }
+                }
+
+                @Override
+                public void onDownstreamFormatChanged(
+                        @NonNull EventTime eventTime, @NonNull MediaLoadData mediaLoadData) {
+                    // Rendition switches of adaptive streams
+                    if (mediaLoadData.trackType == C.TRACK_TYPE_VIDEO
+                            && mediaLoadData.trackFormat != null) {
+                        reportVideoBitrateChanged(mediaLoadData.trackFormat.bitrate);
+                    }
+                }
+            });
             startVideo(true);
 
             MediaButtonEventReceiver.setMediaButtonEventHandler(
@@ -369,6 +584,13 @@ public class ExoVideoPlayer extends VideoPlayer {
             }
 
             setPlaybackState(PLAYBACK_STATE_PREPARING);
+            // 打开视频后的首次起播从打开时算起，计入创建播放器的耗时
+            startPlaybackStatsSession(
+                    mOpenStartTimeMs != 0 ? mOpenStartTimeMs : SystemClock.elapsedRealtime());
+            mStartupVideoFormat = null;
+
+            mLoadControl.setProfile(getBufferingProfile());
+            clearQueuedNextVideo();
 
             MediaSource mediaSource = obtainMediaSourceFactory(mVideoUri).createMediaSource(mVideoUri);
             if (mSubtitles != null && !mSubtitles.isEmpty()) {
@@ -383,15 +605,88 @@ public class ExoVideoPlayer extends VideoPlayer {
                             Format.createTextSampleFormat(null, subtitleData[0], 0, subtitleData[1]),
                             C.TIME_UNSET);
                 }
-                mExoPlayer.prepare(new MergingMediaSource(mediaSources));
-            } else {
-                mExoPlayer.prepare(mediaSource);
+                mediaSource = new MergingMediaSource(mediaSources);
+            }
+            if (mPlaylistCallback != null) {
+                // Decoders are kept across the items of a playlist as long as they can be reused
+                mPlaylistSource = new ConcatenatingMediaSource(mediaSource);
+                mediaSource = mPlaylistSource;
             }
+            mExoPlayer.prepare(mediaSource);
+            updateIndexedSubtitleCues();
         } else {
             setPlaybackState(PLAYBACK_STATE_IDLE);
         }
     }
 
+    @SuppressWarnings("deprecation")
+    @Synthetic void scheduleNextVideoQueueing(Timeline timeline) {
+        // Only one video is in the playlist, whose duration is known
+        if (mQueueNextVideoMessage != null || mQueuedNextVideoUri != null
+                || timeline.getWindowCount() != 1) {
+            return;
+        }
+        final long duration = mExoPlayer.getDuration();
+        if (duration == C.TIME_UNSET) {
+            return;
+        }
+
+        final long queueingPosition = Math.max(0, duration - PREBUFFER_NEXT_VIDEO_MS);
+        if (mExoPlayer.getCurrentPosition() >= queueingPosition) {
+            queueNextVideo();
+        } else {
+            mQueueNextVideoMessage = mExoPlayer
+                    .createMessage((messageType, payload) -> {
+                        mQueueNextVideoMessage = null;
+                        queueNextVideo();
+                    })
+                    .setPosition(0, queueingPosition)
+                    .setHandler(InternalConsts.getMainThreadHandler())
+                    .send();
+        }
+    }
+
+    @Synthetic void queueNextVideo() {
+        if (mPlaylistSource == null) return;
+
+        final Uri uri = getNextVideoUriForGaplessPlayback();
+        if (uri != null) {
+            mQueuedNextVideoUri = uri;
+            mPlaylistSource.addMediaSource(obtainMediaSourceFactory(uri).createMediaSource(uri));
+        }
+    }
+
+    @Synthetic void onAdvancedToQueuedVideo() {
+        final Uri uri = mQueuedNextVideoUri;
+        mQueuedNextVideoUri = null;
+        // Drops the finished video, which makes the current one the only item again,
+        // and the queueing of its next will be scheduled when the timeline is updated.
+        mPlaylistSource.removeMediaSource(0);
+
+        // Track overrides made for the previous video do not apply to this one
+        resetTracks(true);
+        mStartupVideoFormat = null;
+        onGaplesslyAdvancedToNextVideo(uri);
+        if (mExoPlayer != null) {
+            startPlaybackStatsSession();
+            // No startup is needed for the video played without a gap
+            reportFirstFrameRendered();
+        }
+        if (mExoPlayer != null) {
+            final long duration = mExoPlayer.getDuration();
+            onVideoDurationChanged(duration == C.TIME_UNSET ? TIME_UNSET : (int) duration);
+        }
+    }
+
+    private void clearQueuedNextVideo() {
+        if (mQueueNextVideoMessage != null) {
+            mQueueNextVideoMessage.cancel();
+            mQueueNextVideoMessage = null;
+        }
+        mQueuedNextVideoUri = null;
+        mPlaylistSource = null;
+    }
+
     /*package*/ MediaSourceFactory obtainMediaSourceFactory(Uri uri) {
         if (mMediaSourceFactory != null) return mMediaSourceFactory;
 
@@ -464,6 +759,8 @@ public class ExoVideoPlayer extends VideoPlayer {
     }
 
     private void resetExoPlayer() {
+        endPlaybackStatsSession();
+        mInternalFlags &= ~$FLAG_SEEKING;
         if (getPlaybackState() != PLAYBACK_STATE_IDLE) {
             resetTracks(true);
             mExoPlayer.stop(true);
@@ -507,6 +804,7 @@ public class ExoVideoPlayer extends VideoPlayer {
                 // Retries the failed playback after error occurred
                 mInternalFlags |= $FLAG_PLAY_WHEN_PREPARED;
                 setPlaybackState(PLAYBACK_STATE_PREPARING);
+                startPlaybackStatsSession();
                 //noinspection deprecation
                 mExoPlayer.retry();
                 break;
@@ -600,9 +898,19 @@ public class ExoVideoPlayer extends VideoPlayer {
                 }
                 mExoPlayer.stop(false);
             }
+            endPlaybackStatsSession();
+            mInternalFlags &= ~$FLAG_SEEKING;
+            InternalConsts.getMainThreadHandler().removeCallbacks(mIndexedSubtitleUpdater);
+            showIndexedSubtitleCues(null);
             mExoPlayer.release();
             mExoPlayer = null;
             mTrackSelector = null;
+            clearQueuedNextVideo();
+            mLoadControl = null;
+            mBandwidthEstimateSession.close();
+            mBandwidthEstimateSession = null;
+            VideoPlayerPool.getSingleton(mContext).onExoPlayerReleased();
+            mOpenStartTimeMs = 0;
             mTmpMediaSourceFactory = null;
             // Resets the cached playback speed to prepare for the next resume of the video player
             mPlaybackSpeed = DEFAULT_PLAYBACK_SPEED;
@@ -639,7 +947,9 @@ public class ExoVideoPlayer extends VideoPlayer {
      * Similar to {@link #seekTo(int, boolean)}, but without check to the playing state.
      */
     private void seekToInternal(int positionMs) {
+        mInternalFlags |= $FLAG_SEEKING;
         mExoPlayer.seekTo(clampedPositionMs(positionMs));
+        updateIndexedSubtitleCues();
     }
 
     @Override
@@ -703,6 +1013,11 @@ public class ExoVideoPlayer extends VideoPlayer {
         MappingTrackSelector.MappedTrackInfo mappedTrackInfo = getCurrentMappedTrackInfo();
         if (mappedTrackInfo == null) return false;
 
+        if (trackType == TrackInfo.TRACK_TYPE_SUBTITLE
+                && mIndexedSubtitles != null && !mIndexedSubtitles.isEmpty()) {
+            return true;
+        }
+
         final int rendererType = Utils.getTrackTypeForExoPlayer(trackType);
         if (rendererType == C.TRACK_TYPE_UNKNOWN) return false;
 
@@ -773,6 +1088,11 @@ public class ExoVideoPlayer extends VideoPlayer {
                 }
             }
         }
+        if (mIndexedSubtitles != null) {
+            for (IndexedSubtitleTrack track : mIndexedSubtitles) {
+                trackInfos.add(new SubtitleTrackInfo(track.getLanguage()));
+            }
+        }
         //noinspection ToArrayCallWithZeroLengthArrayArgument
         return trackInfos.toArray(new TrackInfo[trackInfos.size()]);
     }
@@ -782,6 +1102,21 @@ public class ExoVideoPlayer extends VideoPlayer {
         MappingTrackSelector.MappedTrackInfo mappedTrackInfo = getCurrentMappedTrackInfo();
         if (mappedTrackInfo == null) return;
 
+        final int indexedSubtitleIndex = index - getTrackCount(mappedTrackInfo);
+        if (indexedSubtitleIndex >= 0) {
+            if (mIndexedSubtitles != null && indexedSubtitleIndex < mIndexedSubtitles.size()) {
+                // Only one subtitle track is shown at a time
+                resetTrack(C.TRACK_TYPE_TEXT, false);
+                mSelectedIndexedSubtitle = indexedSubtitleIndex;
+                mShownIndexedSubtitleCues = null;
+                if (mVideoView != null) {
+                    mVideoView.showSubtitles(null);
+                }
+                updateIndexedSubtitleCues();
+            }
+            return;
+        }
+
         int rendererIndex = -1;
         int groupIndex = -1;
         int trackIndex = -1;
@@ -805,7 +1140,11 @@ public class ExoVideoPlayer extends VideoPlayer {
         }
 
         if (globalTrackIndex == index) {
-            resetTrack(mappedTrackInfo.getRendererType(rendererIndex), true);
+            final int rendererType = mappedTrackInfo.getRendererType(rendererIndex);
+            if (rendererType == C.TRACK_TYPE_TEXT) {
+                deselectIndexedSubtitle();
+            }
+            resetTrack(rendererType, true);
             mTrackSelector.setParameters(
                     mTrackSelector.buildUponParameters() // ParamsBuilder
                             .setSelectionOverride(
@@ -820,6 +1159,14 @@ public class ExoVideoPlayer extends VideoPlayer {
         MappingTrackSelector.MappedTrackInfo mappedTrackInfo = getCurrentMappedTrackInfo();
         if (mappedTrackInfo == null) return;
 
+        final int indexedSubtitleIndex = index - getTrackCount(mappedTrackInfo);
+        if (indexedSubtitleIndex >= 0) {
+            if (indexedSubtitleIndex == mSelectedIndexedSubtitle) {
+                deselectIndexedSubtitle();
+            }
+            return;
+        }
+
         int rendererIndex = -1;
         @SuppressWarnings("UnusedAssignment") int groupIndex = -1;
         @SuppressWarnings("UnusedAssignment") int trackIndex = -1;
@@ -878,6 +1225,11 @@ public class ExoVideoPlayer extends VideoPlayer {
         MappingTrackSelector.MappedTrackInfo mappedTrackInfo = getCurrentMappedTrackInfo();
         if (mappedTrackInfo == null) return INVALID_TRACK_INDEX;
 
+        if (trackType == TrackInfo.TRACK_TYPE_SUBTITLE
+                && mSelectedIndexedSubtitle != INVALID_TRACK_INDEX) {
+            return getTrackCount(mappedTrackInfo) + mSelectedIndexedSubtitle;
+        }
+
         final int rendererType = Utils.getTrackTypeForExoPlayer(trackType);
         if (rendererType == C.TRACK_TYPE_UNKNOWN) return INVALID_TRACK_INDEX;
 
@@ -952,6 +1304,22 @@ public class ExoVideoPlayer extends VideoPlayer {
         return globalTrackIndex;
     }
 
+    /**
+     * @return the number of the tracks of ExoPlayer, which come before the indexed subtitle ones
+     */
+    private static int getTrackCount(MappingTrackSelector.MappedTrackInfo mappedTrackInfo) {
+        int trackCount = 0;
+        for (int ri = 0, rendererCount = mappedTrackInfo.getRendererCount(); ri < rendererCount; ri++) {
+            if (isSupportedTrackType(mappedTrackInfo.getRendererType(ri))) {
+                TrackGroupArray tgs = mappedTrackInfo.getTrackGroups(ri);
+                for (int gi = 0; gi < tgs.length; gi++) {
+                    trackCount += tgs.get(gi).length;
+                }
+            }
+        }
+        return trackCount;
+    }
+
     private static boolean isSupportedTrackType(int trackType) {
         switch (trackType) {
             case C.TRACK_TYPE_VIDEO:
@@ -965,6 +1333,51 @@ public class ExoVideoPlayer extends VideoPlayer {
 
     @Override
     public void addSubtitleSource(@NonNull Uri uri, @NonNull String mimeType, @Nullable String language) {
+        // Large local SubRip and SSA/ASS files are indexed and parsed piecemeal in the background
+        // rather than loaded as a whole by ExoPlayer, for which the video needs no restart.
+        if (IndexedSubtitleTrack.isIndexable(uri, mimeType)) {
+            if (mIndexedSubtitles == null) {
+                mIndexedSubtitles = new ArrayList<>(1);
+            }
+            for (IndexedSubtitleTrack track : mIndexedSubtitles) {
+                if (track.getUri().equals(uri)) return;
+            }
+            if (mIndexedSubtitleListener == null) {
+                mIndexedSubtitleListener = new IndexedSubtitleTrack.Listener() {
+                    @Override
+                    public void onSubtitleTrackChanged(@NonNull IndexedSubtitleTrack track) {
+                        if (mSelectedIndexedSubtitle != INVALID_TRACK_INDEX
+                                && mIndexedSubtitles.get(mSelectedIndexedSubtitle) == track) {
+                            updateIndexedSubtitleCues();
+                        }
+                    }
+
+                    @Override
+                    public void onSubtitleIndexFailed(
+                            @NonNull IndexedSubtitleTrack track, @NonNull IOException e) {
+                        // Falls back to loading the file through ExoPlayer
+                        final int index = mIndexedSubtitles.indexOf(track);
+                        if (index == mSelectedIndexedSubtitle) {
+                            deselectIndexedSubtitle();
+                        } else if (index < mSelectedIndexedSubtitle) {
+                            mSelectedIndexedSubtitle--;
+                        }
+                        mIndexedSubtitles.remove(index);
+                        track.release();
+                        addSubtitleSourceToExoPlayer(
+                                track.getUri(), track.getMimeType(), track.getLanguage());
+                    }
+                };
+            }
+            mIndexedSubtitles.add(new IndexedSubtitleTrack(
+                    mContext, uri, mimeType, language, mIndexedSubtitleListener));
+            return;
+        }
+        addSubtitleSourceToExoPlayer(uri, mimeType, language);
+    }
+
+    @Synthetic void addSubtitleSourceToExoPlayer(
+            @NonNull Uri uri, @NonNull String mimeType, @Nullable String language) {
         if (mSubtitles == null) {
             mSubtitles = new SimpleArrayMap<>(1);
         }
@@ -979,6 +1392,39 @@ public class ExoVideoPlayer extends VideoPlayer {
         }
     }
 
+    @Synthetic void deselectIndexedSubtitle() {
+        if (mSelectedIndexedSubtitle != INVALID_TRACK_INDEX) {
+            mSelectedIndexedSubtitle = INVALID_TRACK_INDEX;
+            InternalConsts.getMainThreadHandler().removeCallbacks(mIndexedSubtitleUpdater);
+            showIndexedSubtitleCues(null);
+        }
+    }
+
+    /**
+     * Shows the cues of the selected indexed subtitle track at the current playback position,
+     * and schedules the next update.
+     */
+    @Synthetic void updateIndexedSubtitleCues() {
+        InternalConsts.getMainThreadHandler().removeCallbacks(mIndexedSubtitleUpdater);
+        if (mExoPlayer == null || mSelectedIndexedSubtitle == INVALID_TRACK_INDEX) return;
+
+        IndexedSubtitleTrack track = mIndexedSubtitles.get(mSelectedIndexedSubtitle);
+        showIndexedSubtitleCues(track.getCues(mExoPlayer.getCurrentPosition()));
+        InternalConsts.getMainThreadHandler().postDelayed(mIndexedSubtitleUpdater,
+                mExoPlayer.isPlaying()
+                        ? INDEXED_SUBTITLE_UPDATE_INTERVAL_MS
+                        : INDEXED_SUBTITLE_IDLE_UPDATE_INTERVAL_MS);
+    }
+
+    private void showIndexedSubtitleCues(@Nullable List<Cue> cues) {
+        // 字幕未变化时不重复刷新
+        if (Util.areEqual(cues, mShownIndexedSubtitleCues)) return;
+        mShownIndexedSubtitleCues = cues;
+        if (mVideoView != null) {
+            mVideoView.showSubtitles(cues);
+        }
+    }
+
     @Override
     protected boolean onPlaybackCompleted() {
         final boolean closed = super.onPlaybackCompleted();
@@ -11,6 +11,7 @@ import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Messenger;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 import android.widget.Toast;
@@ -39,6 +40,7 @@ import java.util.List;
 import tv.danmaku.ijk.media.player.IMediaPlayer;
 import tv.danmaku.ijk.media.player.IjkMediaMeta;
 import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+import tv.danmaku.ijk.media.player.MediaInfo;
 import tv.danmaku.ijk.media.player.misc.ITrackInfo;
 import tv.danmaku.ijk.media.player.misc.IjkMediaFormat;
 import tv.danmaku.ijk.media.player.misc.IjkTrackInfo;
@@ -74,6 +76,9 @@ public class IjkVideoPlayer extends VideoPlayer {
     @Synthetic IjkMediaPlayer mIjkPlayer;
     private Surface mSurface;
 
+    // 打开视频的时间，打开后首次起播的统计从此时算起
+    private long mOpenStartTimeMs;
+
     /** Rotation degrees of the played video source */
     private int mVideoRotation;
 
@@ -152,6 +157,22 @@ public class IjkVideoPlayer extends VideoPlayer {
         super(context);
     }
 
+    @Override
+    public long getBufferedDuration() {
+        if (mIjkPlayer != null) {
+            return Math.max(mIjkPlayer.getVideoCachedDuration(), mIjkPlayer.getAudioCachedDuration());
+        }
+        return 0;
+    }
+
+    @Override
+    public long getBufferedBytes() {
+        if (mIjkPlayer != null) {
+            return mIjkPlayer.getVideoCachedBytes() + mIjkPlayer.getAudioCachedBytes();
+        }
+        return 0;
+    }
+
     @Override
     public void setVideoResourceId(@RawRes int resId) {
         Log.e(TAG,
@@ -184,6 +205,7 @@ public class IjkVideoPlayer extends VideoPlayer {
                 && !(mVideoView != null && surface == null)
                 && (mInternalFlags & $FLAG_VIDEO_PAUSED_BY_USER) == 0) {
             mSurface = surface;
+            mOpenStartTimeMs = SystemClock.elapsedRealtime();
             mIjkPlayer = new IjkMediaPlayer();
             resetIjkPlayerParams();
             mIjkPlayer.setOnPreparedListener(mp -> {
@@ -194,6 +216,7 @@ public class IjkVideoPlayer extends VideoPlayer {
                 }
                 onVideoBufferingStateChanged(false);
                 restoreTrackSelections();
+                reportMediaInfo();
                 setPlaybackState(PLAYBACK_STATE_PREPARED);
                 play(false);
             });
@@ -214,6 +237,7 @@ public class IjkVideoPlayer extends VideoPlayer {
                         mInternalFlags |= $FLAG_BUFFERING;
                         if ((mInternalFlags & $FLAG_SEEKING) == 0) {
                             onVideoBufferingStateChanged(true);
+                            reportRebufferingStarted();
                         }
                         break;
                     case IMediaPlayer.MEDIA_INFO_BUFFERING_END:
@@ -221,6 +245,10 @@ public class IjkVideoPlayer extends VideoPlayer {
                         if ((mInternalFlags & $FLAG_SEEKING) == 0) {
                             onVideoBufferingStateChanged(false);
                         }
+                        reportRebufferingEnded();
+                        break;
+                    case IMediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                        reportFirstFrameRendered();
                         break;
                     case IMediaPlayer.MEDIA_INFO_VIDEO_ROTATION_CHANGED:
                         mVideoRotation = extra;
@@ -330,6 +358,7 @@ public class IjkVideoPlayer extends VideoPlayer {
         }
         if (mVideoUri != null) {
             try {
+                applyBufferingProfile();
                 mIjkPlayer.setDataSource(mContext, mVideoUri);
 //                final String url = mVideoUri.toString();
 //                if (URLUtils.isNetworkUrl(url)) {
@@ -339,6 +368,10 @@ public class IjkVideoPlayer extends VideoPlayer {
 //                }
                 onVideoBufferingStateChanged(true);
                 setPlaybackState(PLAYBACK_STATE_PREPARING);
+                // 打开视频后的首次起播从打开时算起，计入创建播放器的耗时
+                startPlaybackStatsSession(
+                        mOpenStartTimeMs != 0 ? mOpenStartTimeMs : SystemClock.elapsedRealtime());
+                mOpenStartTimeMs = 0;
                 mIjkPlayer.prepareAsync();
             } catch (IOException e) {
                 e.printStackTrace();
@@ -350,7 +383,59 @@ public class IjkVideoPlayer extends VideoPlayer {
         }
     }
 
+    /**
+     * Reports the decoders and the bitrate of the prepared media to the playback statistics.
+     * ijkplayer does not count the video frames it drops, so they are left unmeasured.
+     */
+    private void reportMediaInfo() {
+        MediaInfo mediaInfo = mIjkPlayer.getMediaInfo();
+        if (mediaInfo != null) {
+            // 实现名形如 "OMX.qcom.video.decoder.avc"（硬解）或 "h264"（软解）
+            String videoDecoder = mediaInfo.mVideoDecoderImpl != null
+                    ? mediaInfo.mVideoDecoderImpl : mediaInfo.mVideoDecoder;
+            if (videoDecoder != null) {
+                reportDecoderInitialized(TrackInfo.TRACK_TYPE_VIDEO, videoDecoder);
+            }
+            String audioDecoder = mediaInfo.mAudioDecoderImpl != null
+                    ? mediaInfo.mAudioDecoderImpl : mediaInfo.mAudioDecoder;
+            if (audioDecoder != null) {
+                reportDecoderInitialized(TrackInfo.TRACK_TYPE_AUDIO, audioDecoder);
+            }
+        }
+        final long bitrate = mIjkPlayer.getBitRate();
+        if (bitrate > 0) {
+            reportVideoBitrateChanged((int) Math.min(bitrate, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Applies the buffering profile as IjkPlayer options, which can only be set before
+     * the video is prepared. IjkPlayer does not keep a back buffer, so
+     * {@link BufferingProfile#backBufferMs} is ignored.
+     */
+    private void applyBufferingProfile() {
+        IjkMediaPlayer ijkPlayer = mIjkPlayer;
+        BufferingProfile profile = getBufferingProfile();
+        // 起播与卡顿后恢复播放所需的缓冲时长，以及缓冲逐步增长的上限
+        ijkPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER,
+                "first-high-water-mark-ms", profile.bufferForPlaybackMs);
+        ijkPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER,
+                "next-high-water-mark-ms", profile.bufferForPlaybackAfterRebufferMs);
+        ijkPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER,
+                "last-high-water-mark-ms", profile.minBufferMs);
+        if (profile.targetBufferBytes != BufferingProfile.TARGET_BUFFER_BYTES_UNSET) {
+            ijkPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER,
+                    "max-buffer-size", profile.targetBufferBytes);
+        }
+        if (profile.equals(BufferingProfile.LIVE)) {
+            // Drops the packets buffered beyond the maximum duration to stay close to the live edge
+            ijkPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER,
+                    "max_cached_duration", profile.maxBufferMs);
+        }
+    }
+
     private void stopVideo() {
+        endPlaybackStatsSession();
         if (getPlaybackState() != PLAYBACK_STATE_IDLE) {
             mIjkPlayer.setSurface(null);
             mIjkPlayer.stop();
@@ -526,6 +611,7 @@ public class IjkVideoPlayer extends VideoPlayer {
                             | (fromUser ? $FLAG_VIDEO_PAUSED_BY_USER : 0);
                 }
             }
+            endPlaybackStatsSession();
             releaseIjkPlayer();
             // Not clear the $FLAG_VIDEO_DURATION_DETERMINED flag
             mInternalFlags &= ~($FLAG_VIDEO_VOLUME_TURNED_DOWN_AUTOMATICALLY
@@ -558,6 +644,7 @@ public class IjkVideoPlayer extends VideoPlayer {
         }
         mIjkPlayer.release();
         mIjkPlayer = null;
+        mOpenStartTimeMs = 0;
     }
 
     private void abandonAudioFocus() {
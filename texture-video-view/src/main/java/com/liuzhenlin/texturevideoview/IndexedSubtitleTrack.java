@@ -0,0 +1,334 @@
+/*
+ * Created on 2026-10-19 11:57:40 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import android.content.Context;
+import android.net.Uri;
+import android.text.Html;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An external subtitle track loaded from a large local SubRip or SSA/ASS file without reading it
+ * as a whole: a {@link SubtitleIndex} of the file is built (or loaded from the disk cache) in the
+ * background, and only the text of the cues within a window around the playback position is read
+ * and parsed, again in the background, as the position moves.
+ * <p>
+ * The cues parsed are plain text, with the basic html tags of SubRip kept and the override
+ * blocks of SSA/ASS dropped, so that they can be shown by {@link SubtitleView} at its default
+ * position.
+ *
+ * @author 刘振林
+ */
+@MainThread
+/*package*/ final class IndexedSubtitleTrack {
+
+    private static final String TAG = "IndexedSubtitleTrack";
+
+    /**
+     * Local subtitle files at least this large are loaded through an index, while smaller ones
+     * are left to the text renderer of ExoPlayer, which also takes the cue positions and styles
+     * into account.
+     */
+    public static final long MIN_FILE_SIZE = 512 * 1024;
+
+    private static final String CACHE_DIR_NAME = "subtitle_indexes";
+
+    /** How far behind and ahead of the playback position the cues are parsed. */
+    private static final int WINDOW_BEHIND_MS = 10000;
+    private static final int WINDOW_AHEAD_MS = 60000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public interface Listener {
+        /** Called when the index or more cues have been loaded, and the cues shown may change. */
+        void onSubtitleTrackChanged(@NonNull IndexedSubtitleTrack track);
+
+        /** Called when the file could not be indexed, in which case the track has no cues. */
+        void onSubtitleIndexFailed(@NonNull IndexedSubtitleTrack track, @NonNull IOException e);
+    }
+
+    private final Uri mUri;
+    private final String mMimeType;
+    private final String mLanguage;
+    private final File mFile;
+    private final File mCacheFile;
+    private final Listener mListener;
+
+    private SubtitleIndex mIndex;
+    // 仅保留播放位置附近窗口内已解析的字幕
+    private SparseArray<Cue> mCues = new SparseArray<>();
+    // 窗口内读取失败的字幕，在加载下一个窗口前不再重试
+    private SparseBooleanArray mFailedCues = new SparseBooleanArray();
+    private long mWindowStartMs;
+    private long mWindowEndMs = -1;
+    private boolean mLoadingWindow;
+    private boolean mReleased;
+
+    /**
+     * @return whether the subtitle source should be loaded as an {@link IndexedSubtitleTrack}
+     */
+    public static boolean isIndexable(@NonNull Uri uri, @NonNull String mimeType) {
+        if (!MimeTypes.APPLICATION_SUBRIP.equals(mimeType) && !MimeTypes.TEXT_SSA.equals(mimeType)) {
+            return false;
+        }
+        final File file = getLocalFile(uri);
+        return file != null && file.length() >= MIN_FILE_SIZE;
+    }
+
+    @Nullable
+    private static File getLocalFile(Uri uri) {
+        final String scheme = uri.getScheme();
+        final String path = uri.getPath();
+        if ((scheme == null || "file".equals(scheme)) && path != null) {
+            return new File(path);
+        }
+        return null;
+    }
+
+    public IndexedSubtitleTrack(@NonNull Context context, @NonNull Uri uri,
+                                @NonNull String mimeType, @Nullable String language,
+                                @NonNull Listener listener) {
+        mUri = uri;
+        mMimeType = mimeType;
+        mLanguage = language;
+        //noinspection ConstantConditions
+        mFile = getLocalFile(uri);
+        mCacheFile = new File(new File(context.getCacheDir(), CACHE_DIR_NAME),
+                Integer.toHexString(mFile.getAbsolutePath().hashCode()) + ".idx");
+        mListener = listener;
+        loadIndex();
+    }
+
+    @NonNull
+    public Uri getUri() {
+        return mUri;
+    }
+
+    @NonNull
+    public String getMimeType() {
+        return mMimeType;
+    }
+
+    @Nullable
+    public String getLanguage() {
+        return mLanguage;
+    }
+
+    private void loadIndex() {
+        final int format = MimeTypes.TEXT_SSA.equals(mMimeType)
+                ? SubtitleIndex.FORMAT_SSA : SubtitleIndex.FORMAT_SUBRIP;
+        ParallelThreadExecutor.getSingleton().execute(() -> {
+            SubtitleIndex index = SubtitleIndex.load(mCacheFile, mFile);
+            if (index == null || index.format != format) {
+                try {
+                    final long startTimeMs = System.currentTimeMillis();
+                    index = SubtitleIndex.build(mFile, format);
+                    if (InternalConsts.DEBUG) {
+                        Log.d(TAG, "Indexed " + index.size() + " cues of " + mFile + " in "
+                                + (System.currentTimeMillis() - startTimeMs) + " ms");
+                    }
+                    index.save(mCacheFile, mFile);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to index subtitle file " + mFile, e);
+                    InternalConsts.getMainThreadHandler().post(() -> {
+                        if (!mReleased) {
+                            mListener.onSubtitleIndexFailed(this, e);
+                        }
+                    });
+                    return;
+                }
+            }
+
+            final SubtitleIndex result = index;
+            InternalConsts.getMainThreadHandler().post(() -> {
+                if (!mReleased) {
+                    mIndex = result;
+                    mListener.onSubtitleTrackChanged(this);
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns the cues showing at the given position, loading the window around it first
+     * if it has not been loaded. {@link Listener#onSubtitleTrackChanged(IndexedSubtitleTrack)}
+     * will be called once it is.
+     *
+     * @return the cues showing at the position, in the order they start, or null if none is
+     *         (known to be) showing
+     */
+    @Nullable
+    public List<Cue> getCues(long positionMs) {
+        final SubtitleIndex index = mIndex;
+        if (index == null) return null;
+
+        List<Cue> cues = null;
+        boolean cueMissing = false;
+        for (int i = index.lastIndexStartingAtOrBefore(positionMs);
+             i >= 0 && index.maxEndTimeMsUpTo(i) > positionMs;
+             i--) {
+            if (index.endTimesMs[i] > positionMs) {
+                final Cue cue = mCues.get(i);
+                if (cue == null) {
+                    // Those failed to be read are not missing, or the window would be reloaded
+                    // over and over again on every update
+                    if (!mFailedCues.get(i)) {
+                        cueMissing = true;
+                    }
+                } else {
+                    if (cues == null) {
+                        cues = new ArrayList<>(2);
+                    }
+                    cues.add(0, cue);
+                }
+            }
+        }
+        // 播放位置离开窗口，或已接近窗口末尾时，预先加载下一个窗口
+        if (cueMissing
+                || positionMs < mWindowStartMs || positionMs + WINDOW_AHEAD_MS / 2 > mWindowEndMs) {
+            loadWindow(positionMs);
+        }
+        return cues;
+    }
+
+    private void loadWindow(long positionMs) {
+        if (mLoadingWindow) return;
+        mLoadingWindow = true;
+
+        final SubtitleIndex index = mIndex;
+        final SparseArray<Cue> parsedCues = mCues.clone();
+        final long windowStartMs = Math.max(0, positionMs - WINDOW_BEHIND_MS);
+        final long windowEndMs = positionMs + WINDOW_AHEAD_MS;
+        ParallelThreadExecutor.getSingleton().execute(() -> {
+            SparseArray<Cue> cues = new SparseArray<>();
+            SparseBooleanArray failedCues = new SparseBooleanArray();
+            RandomAccessFile file = null;
+            try {
+                file = new RandomAccessFile(mFile, "r");
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to open subtitle file " + mFile, e);
+            }
+            // Cues started before the window but still showing in it
+            final int last = index.lastIndexStartingAtOrBefore(windowStartMs);
+            for (int i = last; i >= 0 && index.maxEndTimeMsUpTo(i) > windowStartMs; i--) {
+                if (index.endTimesMs[i] > windowStartMs) {
+                    loadCue(file, index, i, parsedCues, cues, failedCues);
+                }
+            }
+            for (int i = last + 1, size = index.size();
+                 i < size && index.startTimesMs[i] <= windowEndMs;
+                 i++) {
+                loadCue(file, index, i, parsedCues, cues, failedCues);
+            }
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    //
+                }
+            }
+            if (failedCues.size() > 0) {
+                Log.w(TAG, "Failed to read " + failedCues.size()
+                        + " cues of subtitle file " + mFile);
+            }
+
+            final int lastIndex = index.size() - 1;
+            final boolean lastCueLoaded =
+                    lastIndex < 0 || cues.get(lastIndex) != null || failedCues.get(lastIndex);
+            InternalConsts.getMainThreadHandler().post(() -> {
+                mLoadingWindow = false;
+                if (mReleased) return;
+
+                // Even if some failed to be read, the window is considered loaded, so as not to
+                // keep retrying it on every update. They are retried with the next window.
+                mCues = cues;
+                mFailedCues = failedCues;
+                mWindowStartMs = windowStartMs;
+                mWindowEndMs = lastCueLoaded ? Long.MAX_VALUE : windowEndMs;
+                mListener.onSubtitleTrackChanged(this);
+            });
+        });
+    }
+
+    /**
+     * Puts the cue at the given index into {@code cues}, reusing the one parsed before if any,
+     * or marks it in {@code failedCues} if it can not be read.
+     */
+    @WorkerThread
+    private static void loadCue(@Nullable RandomAccessFile file, SubtitleIndex index, int i,
+                                SparseArray<Cue> parsedCues,
+                                SparseArray<Cue> cues, SparseBooleanArray failedCues) {
+        Cue cue = parsedCues.get(i);
+        if (cue == null && file != null) {
+            try {
+                byte[] data = new byte[index.lengths[i]];
+                file.seek(index.offsets[i]);
+                file.readFully(data);
+                cue = new Cue(parseCueText(index, new String(data, UTF_8)));
+            } catch (IOException e) {
+                if (InternalConsts.DEBUG) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        if (cue != null) {
+            cues.put(i, cue);
+        } else {
+            failedCues.put(i, true);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @WorkerThread
+    private static CharSequence parseCueText(SubtitleIndex index, String text) {
+        if (index.format == SubtitleIndex.FORMAT_SSA) {
+            final String[] values =
+                    text.substring(text.indexOf(':') + 1).split(",", index.ssaFieldCount);
+            if (values.length <= index.ssaTextField) {
+                return "";
+            }
+            return values[index.ssaTextField]
+                    .replaceAll("\\{[^}]*\\}", "")
+                    .replace("\\N", "\n")
+                    .replace("\\n", "\n")
+                    .replace("\\h", " ")
+                    .trim();
+        } else {
+            // Alignment tags such as {\an8} are dropped; html tags such as <i> are rendered
+            return Html.fromHtml(text.trim()
+                    .replaceAll("\\{\\\\[^}]*\\}", "")
+                    .replaceAll("\r?\n", "<br>"));
+        }
+    }
+
+    /**
+     * Stops loading and drops all the cues parsed. The track is not to be used any more.
+     */
+    public void release() {
+        mReleased = true;
+        mIndex = null;
+        mCues.clear();
+        mFailedCues.clear();
+    }
+}
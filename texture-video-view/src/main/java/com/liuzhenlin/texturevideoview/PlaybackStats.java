@@ -0,0 +1,336 @@
+/*
+ * Created on 2026-10-19 8:21:54 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.liuzhenlin.texturevideoview.bean.TrackInfo;
+
+/**
+ * Quality-of-experience statistics of a single playback session, which starts each time
+ * a {@link VideoPlayer} prepares a video and ends when the video is stopped, changed or closed.
+ * The first session of a video opened is dated back to when it was opened, so that the time
+ * to create the inner player counts towards the time to first frame.
+ * <p>
+ * This is the only place the time to first frame is measured; other figures of it, such as
+ * those of {@link VideoPlayerPool}, are read from here.
+ * <p>
+ * Every VideoPlayer implementation collects the same metrics in the same way, so that
+ * the backends can be compared on the same content. Metrics a backend can not measure remain
+ * {@link #VALUE_UNSET}, or {@code null} for the decoder names.
+ *
+ * @author 刘振林
+ */
+public final class PlaybackStats {
+
+    /** Indicates a metric that has not been measured or can not be measured by the backend. */
+    public static final int VALUE_UNSET = -1;
+
+    /**
+     * Listener for the events of playback sessions as they happen.
+     * All methods are called on the main thread.
+     */
+    public interface Listener {
+
+        /** Called when a new playback session starts. */
+        default void onSessionStarted(@NonNull PlaybackStats stats) {
+        }
+
+        /** Called when the first video frame of the session is rendered. */
+        default void onFirstFrameRendered(@NonNull PlaybackStats stats) {
+        }
+
+        /** Called when the playback stalls for lack of buffered media, apart from seeking. */
+        default void onRebufferingStarted(@NonNull PlaybackStats stats) {
+        }
+
+        /** Called when the playback resumes after the stall lasting for the given duration. */
+        default void onRebufferingEnded(@NonNull PlaybackStats stats, long durationMs) {
+        }
+
+        /** Called when the given number of video frames have been dropped since last reported. */
+        default void onDroppedVideoFrames(@NonNull PlaybackStats stats, int count) {
+        }
+
+        /**
+         * Called when a decoder is initialized for the given track type, one of the
+         * {@code TrackInfo.TRACK_TYPE_*} constants.
+         */
+        default void onDecoderInitialized(
+                @NonNull PlaybackStats stats, @TrackInfo.TrackType int trackType,
+                @NonNull String decoderName) {
+        }
+
+        /** Called when the bitrate of the video being played changes, e.g., on a rendition switch. */
+        default void onVideoBitrateChanged(@NonNull PlaybackStats stats, int bitrate) {
+        }
+
+        /** Called with the final statistics when the session ends. */
+        default void onSessionEnded(@NonNull PlaybackStats stats) {
+        }
+    }
+
+    @NonNull private final String mPlayerName;
+    @Nullable private final Uri mVideoUri;
+
+    private final long mStartTimeMs;
+    private long mEndTimeMs = VALUE_UNSET;
+
+    private long mTimeToFirstFrameMs = VALUE_UNSET;
+
+    private long mPlayStartTimeMs = VALUE_UNSET;
+    private long mPlayTimeMs;
+
+    private long mRebufferStartTimeMs = VALUE_UNSET;
+    private int mRebufferCount;
+    private long mRebufferTimeMs;
+
+    private int mDroppedFrames = VALUE_UNSET;
+
+    private String mVideoDecoderName;
+    private String mAudioDecoderName;
+
+    private int mVideoBitrate = VALUE_UNSET;
+    private int mVideoBitrateChangeCount;
+    private long mVideoBitrateStartTimeMs;
+    // 各码率按播放时长加权累计，用于计算平均码率
+    private double mWeightedVideoBitrateSum;
+    private long mVideoBitrateWeightMs;
+
+    /**
+     * @param startTimeMs the {@link SystemClock#elapsedRealtime()} at which the session starts
+     */
+    /*package*/ PlaybackStats(@NonNull String playerName, @Nullable Uri videoUri,
+                              long startTimeMs) {
+        mPlayerName = playerName;
+        mVideoUri = videoUri;
+        mStartTimeMs = startTimeMs;
+    }
+
+    /** @return the simple class name of the player the session was played by */
+    @NonNull
+    public String getPlayerName() {
+        return mPlayerName;
+    }
+
+    @Nullable
+    public Uri getVideoUri() {
+        return mVideoUri;
+    }
+
+    public boolean isEnded() {
+        return mEndTimeMs != VALUE_UNSET;
+    }
+
+    /** @return the time in milliseconds elapsed from the start to the end (or now) of the session */
+    public long getSessionDurationMs() {
+        return (isEnded() ? mEndTimeMs : SystemClock.elapsedRealtime()) - mStartTimeMs;
+    }
+
+    /**
+     * @return the time in milliseconds from the start of the session to the rendering of
+     *         the first video frame, or {@link #VALUE_UNSET} if not rendered yet
+     */
+    public long getTimeToFirstFrameMs() {
+        return mTimeToFirstFrameMs;
+    }
+
+    /** @return the total time in milliseconds the video was playing, not including rebuffering */
+    public long getPlayTimeMs() {
+        long playTime = mPlayTimeMs;
+        if (mPlayStartTimeMs != VALUE_UNSET && mRebufferStartTimeMs == VALUE_UNSET) {
+            playTime += SystemClock.elapsedRealtime() - mPlayStartTimeMs;
+        }
+        return playTime;
+    }
+
+    public int getRebufferCount() {
+        return mRebufferCount;
+    }
+
+    public long getRebufferTimeMs() {
+        long rebufferTime = mRebufferTimeMs;
+        if (mRebufferStartTimeMs != VALUE_UNSET) {
+            rebufferTime += SystemClock.elapsedRealtime() - mRebufferStartTimeMs;
+        }
+        return rebufferTime;
+    }
+
+    /**
+     * @return the ratio of the time spent rebuffering to the time the video was playing or
+     *         rebuffering, from 0 to 1
+     */
+    public float getRebufferRatio() {
+        final long rebufferTime = getRebufferTimeMs();
+        final long total = rebufferTime + getPlayTimeMs();
+        return total == 0 ? 0 : (float) rebufferTime / total;
+    }
+
+    /** @return the number of dropped video frames, or {@link #VALUE_UNSET} if not measurable */
+    public int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    @Nullable
+    public String getVideoDecoderName() {
+        return mVideoDecoderName;
+    }
+
+    @Nullable
+    public String getAudioDecoderName() {
+        return mAudioDecoderName;
+    }
+
+    /** @return the current bitrate of the video, or {@link #VALUE_UNSET} if unknown */
+    public int getVideoBitrate() {
+        return mVideoBitrate;
+    }
+
+    /** @return how many times the video bitrate changed after it was first known */
+    public int getVideoBitrateChangeCount() {
+        return mVideoBitrateChangeCount;
+    }
+
+    /**
+     * @return the average bitrate of the video weighted by the time each bitrate was played for,
+     *         or {@link #VALUE_UNSET} if unknown
+     */
+    public int getMeanVideoBitrate() {
+        double sum = mWeightedVideoBitrateSum;
+        long weight = mVideoBitrateWeightMs;
+        if (mVideoBitrate != VALUE_UNSET) {
+            final long ms = getPlayTimeMs() - mVideoBitrateStartTimeMs;
+            sum += (double) mVideoBitrate * ms;
+            weight += ms;
+        }
+        if (weight > 0) {
+            return (int) (sum / weight + 0.5);
+        }
+        return mVideoBitrate;
+    }
+
+    /*package*/ boolean onFirstFrameRendered() {
+        if (mTimeToFirstFrameMs == VALUE_UNSET) {
+            mTimeToFirstFrameMs = SystemClock.elapsedRealtime() - mStartTimeMs;
+            return true;
+        }
+        return false;
+    }
+
+    /*package*/ boolean isFirstFrameRendered() {
+        return mTimeToFirstFrameMs != VALUE_UNSET;
+    }
+
+    /*package*/ void onPlayingChanged(boolean playing) {
+        if (playing) {
+            if (mPlayStartTimeMs == VALUE_UNSET) {
+                mPlayStartTimeMs = SystemClock.elapsedRealtime();
+            }
+        } else if (mPlayStartTimeMs != VALUE_UNSET) {
+            if (mRebufferStartTimeMs == VALUE_UNSET) {
+                mPlayTimeMs += SystemClock.elapsedRealtime() - mPlayStartTimeMs;
+            }
+            mPlayStartTimeMs = VALUE_UNSET;
+        }
+    }
+
+    /*package*/ boolean onRebufferingStarted() {
+        if (mRebufferStartTimeMs != VALUE_UNSET) {
+            return false;
+        }
+        final long now = SystemClock.elapsedRealtime();
+        if (mPlayStartTimeMs != VALUE_UNSET) {
+            mPlayTimeMs += now - mPlayStartTimeMs;
+        }
+        mRebufferStartTimeMs = now;
+        mRebufferCount++;
+        return true;
+    }
+
+    /**
+     * @return the duration of the rebuffering, or {@link #VALUE_UNSET} if not rebuffering
+     */
+    /*package*/ long onRebufferingEnded() {
+        if (mRebufferStartTimeMs == VALUE_UNSET) {
+            return VALUE_UNSET;
+        }
+        final long now = SystemClock.elapsedRealtime();
+        final long duration = now - mRebufferStartTimeMs;
+        mRebufferTimeMs += duration;
+        mRebufferStartTimeMs = VALUE_UNSET;
+        if (mPlayStartTimeMs != VALUE_UNSET) {
+            // Playing time resumes from now on
+            mPlayStartTimeMs = now;
+        }
+        return duration;
+    }
+
+    /*package*/ void onDroppedVideoFrames(int count) {
+        mDroppedFrames = (mDroppedFrames == VALUE_UNSET ? 0 : mDroppedFrames) + count;
+    }
+
+    /*package*/ void setDroppedFrames(int droppedFrames) {
+        mDroppedFrames = droppedFrames;
+    }
+
+    /*package*/ void onDecoderInitialized(@TrackInfo.TrackType int trackType, String decoderName) {
+        switch (trackType) {
+            case TrackInfo.TRACK_TYPE_VIDEO:
+                mVideoDecoderName = decoderName;
+                break;
+            case TrackInfo.TRACK_TYPE_AUDIO:
+                mAudioDecoderName = decoderName;
+                break;
+        }
+    }
+
+    /*package*/ boolean onVideoBitrateChanged(int bitrate) {
+        if (bitrate == mVideoBitrate || bitrate <= 0) {
+            return false;
+        }
+        final long playTime = getPlayTimeMs();
+        if (mVideoBitrate != VALUE_UNSET) {
+            final long ms = playTime - mVideoBitrateStartTimeMs;
+            mWeightedVideoBitrateSum += (double) mVideoBitrate * ms;
+            mVideoBitrateWeightMs += ms;
+            mVideoBitrateChangeCount++;
+        }
+        mVideoBitrate = bitrate;
+        mVideoBitrateStartTimeMs = playTime;
+        return true;
+    }
+
+    /*package*/ void onEnded() {
+        onRebufferingEnded();
+        onPlayingChanged(false);
+        mEndTimeMs = SystemClock.elapsedRealtime();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PlaybackStats{" +
+                "player=" + mPlayerName +
+                ", videoUri=" + mVideoUri +
+                ", sessionDurationMs=" + getSessionDurationMs() +
+                ", timeToFirstFrameMs=" + mTimeToFirstFrameMs +
+                ", playTimeMs=" + getPlayTimeMs() +
+                ", rebufferCount=" + mRebufferCount +
+                ", rebufferTimeMs=" + getRebufferTimeMs() +
+                ", rebufferRatio=" + getRebufferRatio() +
+                ", droppedFrames=" + mDroppedFrames +
+                ", videoDecoder=" + mVideoDecoderName +
+                ", audioDecoder=" + mAudioDecoderName +
+                ", meanVideoBitrate=" + getMeanVideoBitrate() +
+                ", videoBitrateChangeCount=" + mVideoBitrateChangeCount +
+                ", ended=" + isEnded() +
+                '}';
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Created on 2026-10-19 11:02:46 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import android.content.Context;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.video.MediaCodecVideoRenderer;
+import com.google.android.exoplayer2.video.VideoRendererEventListener;
+
+import java.util.ArrayList;
+
+/**
+ * A {@link DefaultRenderersFactory} that orders the extension video renderers before or after
+ * the MediaCodec one per codec and resolution class, as {@link DecoderProfiler} measured to be
+ * faster.
+ * <p>
+ * The renderers are built in the order of {@link #EXTENSION_RENDERER_MODE_ON}, MediaCodec first,
+ * and a track goes to the first renderer with the highest support for its format. For a class
+ * the extension decoder is preferred for, the MediaCodec renderer reports formats it handles as
+ * exceeding its capabilities instead, which puts the extension renderer ahead while keeping
+ * MediaCodec as the fallback for the formats the extension can not handle.
+ *
+ * @author 刘振林
+ */
+/*package*/ final class ProfiledRenderersFactory extends DefaultRenderersFactory {
+
+    private final DecoderProfiler mDecoderProfiler;
+
+    public ProfiledRenderersFactory(@NonNull Context context) {
+        super(context);
+        mDecoderProfiler = DecoderProfiler.getSingleton(context);
+        setExtensionRendererMode(EXTENSION_RENDERER_MODE_ON);
+    }
+
+    @Override
+    protected void buildVideoRenderers(
+            Context context,
+            @ExtensionRendererMode int extensionRendererMode,
+            MediaCodecSelector mediaCodecSelector,
+            boolean enableDecoderFallback,
+            Handler eventHandler,
+            VideoRendererEventListener eventListener,
+            long allowedVideoJoiningTimeMs,
+            ArrayList<Renderer> out) {
+        out.add(new ProfiledMediaCodecVideoRenderer(
+                context,
+                mediaCodecSelector,
+                allowedVideoJoiningTimeMs,
+                enableDecoderFallback,
+                eventHandler,
+                eventListener,
+                MAX_DROPPED_VIDEO_FRAME_COUNT_TO_NOTIFY,
+                mDecoderProfiler));
+
+        // Adds the extension renderers as the default implementation does, after ours
+        ArrayList<Renderer> renderers = new ArrayList<>();
+        super.buildVideoRenderers(context, extensionRendererMode, mediaCodecSelector,
+                enableDecoderFallback, eventHandler, eventListener, allowedVideoJoiningTimeMs,
+                renderers);
+        for (Renderer renderer : renderers) {
+            if (!(renderer instanceof MediaCodecVideoRenderer)) {
+                out.add(renderer);
+            }
+        }
+    }
+
+    private static final class ProfiledMediaCodecVideoRenderer extends MediaCodecVideoRenderer {
+        final DecoderProfiler decoderProfiler;
+
+        ProfiledMediaCodecVideoRenderer(
+                Context context,
+                MediaCodecSelector mediaCodecSelector,
+                long allowedJoiningTimeMs,
+                boolean enableDecoderFallback,
+                @Nullable Handler eventHandler,
+                @Nullable VideoRendererEventListener eventListener,
+                int maxDroppedFramesToNotify,
+                DecoderProfiler decoderProfiler) {
+            super(context, mediaCodecSelector, allowedJoiningTimeMs, enableDecoderFallback,
+                    eventHandler, eventListener, maxDroppedFramesToNotify);
+            this.decoderProfiler = decoderProfiler;
+        }
+
+        @Capabilities
+        @Override
+        protected int supportsFormat(MediaCodecSelector mediaCodecSelector, Format format)
+                throws MediaCodecUtil.DecoderQueryException {
+            final int capabilities = super.supportsFormat(mediaCodecSelector, format);
+            if (RendererCapabilities.getFormatSupport(capabilities) == FORMAT_HANDLED
+                    && decoderProfiler.isExtensionPreferred(format)) {
+                return RendererCapabilities.create(
+                        FORMAT_EXCEEDS_CAPABILITIES,
+                        RendererCapabilities.getAdaptiveSupport(capabilities),
+                        RendererCapabilities.getTunnelingSupport(capabilities));
+            }
+            return capabilities;
+        }
+    }
+}
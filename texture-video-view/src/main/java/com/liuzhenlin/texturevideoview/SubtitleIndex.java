@@ -0,0 +1,455 @@
+/*
+ * Created on 2026-10-19 11:48:15 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compact time index of the cues of a SubRip or SSA/ASS subtitle file: the start and end time
+ * of each cue and where its text lies in the file, sorted by the start times, without any of the
+ * text itself, which is to be read and parsed only for the cues around the playback position.
+ * <p>
+ * An index takes 16 bytes per cue in memory, and is persisted to a cache file together with the
+ * path, size and modification time of the subtitle file, so that it is built once per file
+ * rather than every time the file is opened.
+ *
+ * @author 刘振林
+ */
+/*package*/ final class SubtitleIndex {
+
+    public static final int FORMAT_SUBRIP = 0;
+    public static final int FORMAT_SSA = 1;
+
+    private static final int CACHE_FILE_MAGIC = 0x53494458; // "SIDX"
+    private static final int CACHE_FILE_VERSION = 1;
+
+    private static final Pattern SUBRIP_TIMING = Pattern.compile(
+            "\\s*(\\d+):(\\d+):(\\d+)[,.](\\d+)\\s*-->\\s*(\\d+):(\\d+):(\\d+)[,.](\\d+)");
+    private static final Pattern SSA_TIME = Pattern.compile(
+            "\\s*(?:(\\d+):)?(\\d+):(\\d+)[:.](\\d+)\\s*");
+
+    private static final String SSA_SECTION_EVENTS = "[events]";
+    private static final String SSA_FORMAT_PREFIX = "Format:";
+    private static final String SSA_DIALOGUE_PREFIX = "Dialogue:";
+
+    public final int format;
+    /**
+     * For SSA/ASS, the number of comma separated fields of a Dialogue line and the position of
+     * the Text field among them. Both are 0 for SubRip.
+     */
+    public final int ssaFieldCount;
+    public final int ssaTextField;
+
+    public final int[] startTimesMs;
+    public final int[] endTimesMs;
+    /**
+     * Where the text of each cue starts in the file and its length in bytes. For SubRip, these
+     * cover the text lines of the cue; for SSA/ASS, the whole Dialogue line.
+     */
+    public final int[] offsets;
+    public final int[] lengths;
+
+    /** The latest end time among the cues up to and including each one. */
+    private final int[] mMaxEndTimesMs;
+
+    private SubtitleIndex(int format, int ssaFieldCount, int ssaTextField,
+                          int[] startTimesMs, int[] endTimesMs, int[] offsets, int[] lengths) {
+        this.format = format;
+        this.ssaFieldCount = ssaFieldCount;
+        this.ssaTextField = ssaTextField;
+        this.startTimesMs = startTimesMs;
+        this.endTimesMs = endTimesMs;
+        this.offsets = offsets;
+        this.lengths = lengths;
+
+        mMaxEndTimesMs = new int[endTimesMs.length];
+        int maxEndTimeMs = 0;
+        for (int i = 0; i < endTimesMs.length; i++) {
+            maxEndTimeMs = Math.max(maxEndTimeMs, endTimesMs[i]);
+            mMaxEndTimesMs[i] = maxEndTimeMs;
+        }
+    }
+
+    public int size() {
+        return startTimesMs.length;
+    }
+
+    /**
+     * @return the index of the last cue starting at or before the given time, or -1 if none
+     */
+    public int lastIndexStartingAtOrBefore(long timeMs) {
+        int low = 0;
+        int high = startTimesMs.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (startTimesMs[mid] <= timeMs) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * @return the latest end time among the cues up to and including the given one, beyond
+     *         which no cue before it is showing
+     */
+    public int maxEndTimeMsUpTo(int index) {
+        return mMaxEndTimesMs[index];
+    }
+
+    /**
+     * Builds the index of the given file by scanning it line by line for the cue timings.
+     */
+    @WorkerThread
+    @NonNull
+    public static SubtitleIndex build(@NonNull File file, int format) throws IOException {
+        LineReader reader = new LineReader(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (reader.startsWithUtf16ByteOrderMark()) {
+                throw new IOException("UTF-16 subtitle files are not supported: " + file);
+            }
+            return format == FORMAT_SSA ? buildSsa(reader) : buildSubrip(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static SubtitleIndex buildSubrip(LineReader reader) throws IOException {
+        CueListBuilder cues = new CueListBuilder();
+        boolean inText = false;
+        long textStart = 0;
+        long textEnd = 0;
+        int startTimeMs = 0;
+        int endTimeMs = 0;
+        while (reader.readLine()) {
+            final String line = reader.lineAsLatin1();
+            Matcher matcher;
+            if (line.contains("-->") && (matcher = SUBRIP_TIMING.matcher(line)).lookingAt()) {
+                if (textEnd > textStart) {
+                    cues.add(startTimeMs, endTimeMs, textStart, textEnd - textStart);
+                }
+                startTimeMs = parseTimeMs(matcher, 1);
+                endTimeMs = parseTimeMs(matcher, 5);
+                textStart = textEnd = reader.getOffset();
+                inText = true;
+            } else if (inText) {
+                // 字幕文本到空行为止，空行后的序号行不计入
+                if (line.trim().isEmpty()) {
+                    inText = false;
+                } else {
+                    textEnd = reader.getOffset();
+                }
+            }
+        }
+        if (textEnd > textStart) {
+            cues.add(startTimeMs, endTimeMs, textStart, textEnd - textStart);
+        }
+        return cues.build(FORMAT_SUBRIP, 0, 0);
+    }
+
+    private static SubtitleIndex buildSsa(LineReader reader) throws IOException {
+        CueListBuilder cues = new CueListBuilder();
+        boolean inEvents = false;
+        int fieldCount = 0;
+        int startField = -1;
+        int endField = -1;
+        int textField = -1;
+        while (reader.readLine()) {
+            final String line = reader.lineAsLatin1();
+            if (line.startsWith("[")) {
+                inEvents = SSA_SECTION_EVENTS.equalsIgnoreCase(line.trim());
+            } else if (inEvents) {
+                if (line.startsWith(SSA_FORMAT_PREFIX)) {
+                    String[] fields = line.substring(SSA_FORMAT_PREFIX.length()).split(",");
+                    fieldCount = fields.length;
+                    startField = endField = textField = -1;
+                    for (int i = 0; i < fieldCount; i++) {
+                        switch (fields[i].trim().toLowerCase(Locale.US)) {
+                            case "start":
+                                startField = i;
+                                break;
+                            case "end":
+                                endField = i;
+                                break;
+                            case "text":
+                                textField = i;
+                                break;
+                        }
+                    }
+                } else if (line.startsWith(SSA_DIALOGUE_PREFIX)
+                        && startField != -1 && endField != -1 && textField != -1) {
+                    String[] values =
+                            line.substring(SSA_DIALOGUE_PREFIX.length()).split(",", fieldCount);
+                    if (values.length != fieldCount) continue;
+
+                    Matcher start = SSA_TIME.matcher(values[startField]);
+                    Matcher end = SSA_TIME.matcher(values[endField]);
+                    if (start.matches() && end.matches()) {
+                        cues.add(parseTimeMs(start, 1), parseTimeMs(end, 1),
+                                reader.getLineOffset(), line.length());
+                    }
+                }
+            }
+        }
+        return cues.build(FORMAT_SSA, fieldCount, textField);
+    }
+
+    /**
+     * Parses the time made up of the hours, minutes, seconds and fraction groups of the matcher
+     * starting at the given group. The hours group may be absent.
+     */
+    private static int parseTimeMs(Matcher matcher, int firstGroup) {
+        final String hours = matcher.group(firstGroup);
+        final String fraction = matcher.group(firstGroup + 3);
+        int fractionMs = Integer.parseInt(fraction.length() > 3 ? fraction.substring(0, 3) : fraction);
+        for (int i = fraction.length(); i < 3; i++) {
+            fractionMs *= 10;
+        }
+        return (hours == null ? 0 : Integer.parseInt(hours)) * 3600000
+                + Integer.parseInt(matcher.group(firstGroup + 1)) * 60000
+                + Integer.parseInt(matcher.group(firstGroup + 2)) * 1000
+                + fractionMs;
+    }
+
+    /**
+     * Loads the index cached for the given subtitle file.
+     *
+     * @return the cached index, or null if there is none or the file has changed since it was
+     *         cached
+     */
+    @WorkerThread
+    @Nullable
+    public static SubtitleIndex load(@NonNull File cacheFile, @NonNull File subtitleFile) {
+        if (!cacheFile.exists()) return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != CACHE_FILE_MAGIC
+                    || in.readInt() != CACHE_FILE_VERSION
+                    || !in.readUTF().equals(subtitleFile.getAbsolutePath())
+                    || in.readLong() != subtitleFile.length()
+                    || in.readLong() != subtitleFile.lastModified()) {
+                return null;
+            }
+            final int format = in.readInt();
+            final int ssaFieldCount = in.readInt();
+            final int ssaTextField = in.readInt();
+            final int size = in.readInt();
+            int[] startTimesMs = new int[size];
+            int[] endTimesMs = new int[size];
+            int[] offsets = new int[size];
+            int[] lengths = new int[size];
+            for (int i = 0; i < size; i++) {
+                startTimesMs[i] = in.readInt();
+                endTimesMs[i] = in.readInt();
+                offsets[i] = in.readInt();
+                lengths[i] = in.readInt();
+            }
+            return new SubtitleIndex(format, ssaFieldCount, ssaTextField,
+                    startTimesMs, endTimesMs, offsets, lengths);
+        } catch (IOException | RuntimeException e) {
+            if (InternalConsts.DEBUG) {
+                e.printStackTrace();
+            }
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //
+                }
+            }
+        }
+    }
+
+    /**
+     * Caches this index for the given subtitle file, replacing any index cached before.
+     */
+    @WorkerThread
+    public void save(@NonNull File cacheFile, @NonNull File subtitleFile) {
+        File dir = cacheFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) return;
+
+        // 先写入临时文件再重命名，避免留下写了一半的缓存
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(CACHE_FILE_MAGIC);
+            out.writeInt(CACHE_FILE_VERSION);
+            out.writeUTF(subtitleFile.getAbsolutePath());
+            out.writeLong(subtitleFile.length());
+            out.writeLong(subtitleFile.lastModified());
+            out.writeInt(format);
+            out.writeInt(ssaFieldCount);
+            out.writeInt(ssaTextField);
+            out.writeInt(size());
+            for (int i = 0; i < size(); i++) {
+                out.writeInt(startTimesMs[i]);
+                out.writeInt(endTimesMs[i]);
+                out.writeInt(offsets[i]);
+                out.writeInt(lengths[i]);
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(cacheFile)) {
+                //noinspection ResultOfMethodCallIgnored
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            if (InternalConsts.DEBUG) {
+                e.printStackTrace();
+            }
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    //
+                }
+            }
+        }
+    }
+
+    /** Collects the cues found in a file and sorts them by their start times. */
+    private static final class CueListBuilder {
+        int size;
+        int[] startTimesMs = new int[256];
+        int[] endTimesMs = new int[256];
+        int[] offsets = new int[256];
+        int[] lengths = new int[256];
+
+        void add(int startTimeMs, int endTimeMs, long offset, long length) throws IOException {
+            if (offset + length > Integer.MAX_VALUE) {
+                throw new IOException("Subtitle file too large");
+            }
+            if (size == startTimesMs.length) {
+                final int capacity = size * 2;
+                startTimesMs = Arrays.copyOf(startTimesMs, capacity);
+                endTimesMs = Arrays.copyOf(endTimesMs, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            startTimesMs[size] = startTimeMs;
+            endTimesMs[size] = endTimeMs;
+            offsets[size] = (int) offset;
+            lengths[size] = (int) length;
+            size++;
+        }
+
+        SubtitleIndex build(int format, int ssaFieldCount, int ssaTextField) {
+            // Cues are not necessarily in chronological order in the file, SSA/ASS ones especially.
+            // Sort the positions by start time, packed with the start time in the high 32 bits.
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = (long) startTimesMs[i] << 32 | i;
+            }
+            Arrays.sort(keys);
+
+            int[] sortedStartTimesMs = new int[size];
+            int[] sortedEndTimesMs = new int[size];
+            int[] sortedOffsets = new int[size];
+            int[] sortedLengths = new int[size];
+            for (int i = 0; i < size; i++) {
+                final int j = (int) keys[i];
+                sortedStartTimesMs[i] = startTimesMs[j];
+                sortedEndTimesMs[i] = endTimesMs[j];
+                sortedOffsets[i] = offsets[j];
+                sortedLengths[i] = lengths[j];
+            }
+            return new SubtitleIndex(format, ssaFieldCount, ssaTextField,
+                    sortedStartTimesMs, sortedEndTimesMs, sortedOffsets, sortedLengths);
+        }
+    }
+
+    /**
+     * Reads a file line by line as raw bytes, keeping track of the byte offset of each line.
+     * Cue timings and SSA/ASS field separators are ASCII, so they can be recognized without
+     * decoding the text in between.
+     */
+    private static final class LineReader {
+        final InputStream in;
+        byte[] line = new byte[256];
+        int lineLength;
+        long lineOffset;
+        long offset;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        boolean startsWithUtf16ByteOrderMark() throws IOException {
+            in.mark(2);
+            final int b0 = in.read();
+            final int b1 = in.read();
+            in.reset();
+            return b0 == 0xFE && b1 == 0xFF || b0 == 0xFF && b1 == 0xFE;
+        }
+
+        boolean readLine() throws IOException {
+            lineOffset = offset;
+            lineLength = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b == '\n') break;
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, lineLength * 2);
+                }
+                line[lineLength++] = (byte) b;
+            }
+            if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                lineLength--;
+            }
+            return offset > lineOffset;
+        }
+
+        /** Decodes the current line one char per byte, as is enough for its ASCII parts. */
+        String lineAsLatin1() {
+            char[] chars = new char[lineLength];
+            for (int i = 0; i < lineLength; i++) {
+                chars[i] = (char) (line[i] & 0xFF);
+            }
+            return new String(chars);
+        }
+
+        /** @return the offset of the current line */
+        long getLineOffset() {
+            return lineOffset;
+        }
+
+        /** @return the offset of the next line */
+        long getOffset() {
+            return offset;
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
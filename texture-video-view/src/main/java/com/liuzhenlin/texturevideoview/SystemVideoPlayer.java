@@ -15,6 +15,7 @@ import android.media.PlaybackParams;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Messenger;
+import android.os.PersistableBundle;
 import android.util.Log;
 import android.view.Surface;
 import android.widget.Toast;
@@ -180,6 +181,10 @@ public class SystemVideoPlayer extends VideoPlayer {
                 }
                 onVideoBufferingStateChanged(false);
                 restoreTrackSelections();
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                    // 低版本没有首帧渲染的通知，以准备完成的时刻近似
+                    reportFirstFrameRendered();
+                }
                 setPlaybackState(PLAYBACK_STATE_PREPARED);
                 play(false);
             });
@@ -197,6 +202,7 @@ public class SystemVideoPlayer extends VideoPlayer {
                         mInternalFlags |= $FLAG_BUFFERING;
                         if ((mInternalFlags & $FLAG_SEEKING) == 0) {
                             onVideoBufferingStateChanged(true);
+                            reportRebufferingStarted();
                         }
                         break;
                     case MediaPlayer.MEDIA_INFO_BUFFERING_END:
@@ -204,6 +210,11 @@ public class SystemVideoPlayer extends VideoPlayer {
                         if ((mInternalFlags & $FLAG_SEEKING) == 0) {
                             onVideoBufferingStateChanged(false);
                         }
+                        reportRebufferingEnded();
+                        break;
+                    //noinspection InlinedApi
+                    case MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                        reportFirstFrameRendered();
                         break;
                 }
                 return false;
@@ -287,6 +298,7 @@ public class SystemVideoPlayer extends VideoPlayer {
 //                }
                 onVideoBufferingStateChanged(true);
                 setPlaybackState(PLAYBACK_STATE_PREPARING);
+                startPlaybackStatsSession();
                 mMediaPlayer.prepareAsync();
 //                mMediaPlayer.setLooping(isSingleVideoLoopPlayback());
             } catch (IOException e) {
@@ -299,7 +311,25 @@ public class SystemVideoPlayer extends VideoPlayer {
         }
     }
 
+    /**
+     * MediaPlayer reports dropped frames only through its metrics (API 26+), which are read
+     * once here before the player is stopped or released. On earlier platform versions
+     * the dropped frames remain unmeasured.
+     */
+    @Override
+    protected void onPlaybackStatsSessionEnding(@NonNull PlaybackStats stats) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && mMediaPlayer != null && getPlaybackState() != PLAYBACK_STATE_IDLE) {
+            PersistableBundle metrics = mMediaPlayer.getMetrics();
+            if (metrics != null
+                    && metrics.containsKey(MediaPlayer.MetricsConstants.FRAMES_DROPPED)) {
+                stats.setDroppedFrames(metrics.getInt(MediaPlayer.MetricsConstants.FRAMES_DROPPED));
+            }
+        }
+    }
+
     private void stopVideo() {
+        endPlaybackStatsSession();
         if (getPlaybackState() != PLAYBACK_STATE_IDLE) {
             mMediaPlayer.stop();
             mMediaPlayer.reset();
@@ -477,6 +507,7 @@ public class SystemVideoPlayer extends VideoPlayer {
                 }
                 mMediaPlayer.stop();
             }
+            endPlaybackStatsSession();
             mMediaPlayer.release();
             mMediaPlayer = null;
             // Not clear the $FLAG_VIDEO_DURATION_DETERMINED flag
@@ -101,6 +101,7 @@ import com.liuzhenlin.texturevideoview.drawable.CircularProgressDrawable;
 import com.liuzhenlin.texturevideoview.service.BackgroundPlaybackControllerService;
 import com.liuzhenlin.texturevideoview.utils.BitmapUtils;
 import com.liuzhenlin.texturevideoview.utils.FileUtils;
+import com.liuzhenlin.texturevideoview.utils.KeyframeIndex;
 import com.liuzhenlin.texturevideoview.utils.ParallelThreadExecutor;
 import com.liuzhenlin.texturevideoview.utils.ScreenUtils;
 import com.liuzhenlin.texturevideoview.utils.TimeUtil;
@@ -110,12 +111,14 @@ import com.liuzhenlin.texturevideoview.utils.Utils;
 import com.liuzhenlin.texturevideoview.utils.VideoUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -477,6 +480,7 @@ public class TextureVideoView extends AbsTextureVideoView implements ViewHostEve
 
     private View mClipView;
     @Synthetic AsyncTask<Void, Bitmap, Void> mLoadClipThumbsTask;
+    @Synthetic AsyncTask<Void, Void, KeyframeIndex> mLoadKeyframeIndexTask;
 
     private ListPopupWindow mSpinnerListPopup;
     @Synthetic PopupWindow mSpinnerPopup;
@@ -2269,6 +2273,8 @@ public class TextureVideoView extends AbsTextureVideoView implements ViewHostEve
         }
 
         final int[] interval = new int[2];
+        // 视频的关键帧索引，在后台加载完成前为空，此时按原方式在剪辑时查找关键帧
+        final KeyframeIndex[] keyframeIndex = {null};
 
         final ViewGroup view;
         mClipView = view = (ViewGroup) LayoutInflater.from(mContext)
@@ -2334,7 +2340,15 @@ public class TextureVideoView extends AbsTextureVideoView implements ViewHostEve
                 //noinspection ConstantConditions,StatementWithEmptyBody
                 if (cutoutShortVideo) {
                     try {
-                        destFile = VideoUtils.clip(srcPath, destPath, interval[0], interval[1]);
+                        final KeyframeIndex index = keyframeIndex[0];
+                        if (index != null) {
+                            // The interval has been resolved by the index, which keeps the same
+                            // when resolved again, as its start and end are on key frames.
+                            destFile = VideoUtils.clip(srcPath, destPath,
+                                    index.resolve(interval[0], interval[1]));
+                        } else {
+                            destFile = VideoUtils.clip(srcPath, destPath, interval[0], interval[1]);
+                        }
                     } catch (Throwable t) {
                         t.printStackTrace();
                     }
@@ -2395,6 +2409,7 @@ public class TextureVideoView extends AbsTextureVideoView implements ViewHostEve
         vcv.addOnSelectionChangeListener(new VideoClipView.OnSelectionChangeListener() {
             final String seconds = mResources.getString(R.string.seconds);
             final ForegroundColorSpan colorAccentSpan = new ForegroundColorSpan(mColorAccent);
+            final int[] snappedInterval = new int[2];
 
             @Override
             public void onStartTrackingTouch() {
@@ -2408,11 +2423,24 @@ public class TextureVideoView extends AbsTextureVideoView implements ViewHostEve
 
             @Override
             public void onSelectionIntervalChange(int start, int end, boolean fromUser) {
-                interval[0] = rangeOffset + start;
-                interval[1] = rangeOffset + end;
+                // Takes the interval that would actually be cut out, as the video can only be
+                // clipped at its key frames without being re-encoded.
+                vcv.getSnappedSelectionInterval(snappedInterval);
+                final KeyframeIndex index = keyframeIndex[0];
+                if (index != null) {
+                    // resolve() 会保留落在关键帧上的端点，因此这里得到的就是导出时所用的区间，
+                    // 包括吸附失败时由其向外扩展到关键帧的情况
+                    final KeyframeIndex.Cut cut = index.resolve(
+                            rangeOffset + snappedInterval[0], rangeOffset + snappedInterval[1]);
+                    interval[0] = (int) cut.startMs;
+                    interval[1] = (int) cut.endMs;
+                } else {
+                    interval[0] = rangeOffset + snappedInterval[0];
+                    interval[1] = rangeOffset + snappedInterval[1];
+                }
 
                 final int total = (int) (vcv.getMaximumClipDuration() / 1000f + 0.5f);
-                final int selected = (int) ((end - start) / 1000f + 0.5f);
+                final int selected = (int) ((interval[1] - interval[0]) / 1000f + 0.5f);
                 final String s = mResources.getString(
                         R.string.canTakeUpToXSecondsXSecondsSelected, total, selected);
                 final SpannableString ss = new SpannableString(s);
@@ -2525,6 +2553,47 @@ public class TextureVideoView extends AbsTextureVideoView implements ViewHostEve
                 }
             }.executeOnExecutor(ParallelThreadExecutor.getSingleton());
         });
+        if (!URLUtils.isNetworkUrl(videoUri.toString())) {
+            mLoadKeyframeIndexTask = new AsyncTask<Void, Void, KeyframeIndex>() {
+                @Override
+                public KeyframeIndex doInBackground(Void... voids) {
+                    final String path = FileUtils.UriResolver.getPath(mContext, videoUri);
+                    if (path == null) return null;
+                    try {
+                        return KeyframeIndex.obtain(mContext, new File(path));
+                    } catch (IOException e) {
+                        // Not an MP4 file, which is not supported for clipping anyway
+                        Log.w(TAG, "Failed to index the key frames of the video being clipped", e);
+                        return null;
+                    }
+                }
+
+                @Override
+                public void onPostExecute(KeyframeIndex index) {
+                    mLoadKeyframeIndexTask = null;
+                    keyframeIndex[0] = index;
+                    if (index == null) return;
+
+                    final long[] keyframeTimesUs = index.getKeyframeTimesUs();
+                    if (keyframeTimesUs == null) return; // Every frame is a key frame
+                    // Maps the key frames within the selectable time interval to cut points in it,
+                    // along with the end of the video, at which a clip can also end.
+                    final int[] cutPoints = new int[keyframeTimesUs.length + 1];
+                    int cutPointCount = 0;
+                    for (long timeUs : keyframeTimesUs) {
+                        final int position = (int) ((timeUs + 500) / 1000) - rangeOffset;
+                        if (position > range) break;
+                        if (position >= 0) {
+                            cutPoints[cutPointCount++] = position;
+                        }
+                    }
+                    if (rangeOffset + range >= duration) {
+                        cutPoints[cutPointCount++] = range;
+                    }
+                    vcv.setCutPoints(Arrays.copyOf(cutPoints, cutPointCount));
+                }
+            }.executeOnExecutor(ParallelThreadExecutor.getSingleton());
+        }
         holder.addCallback(new SurfaceHolder.Callback() {
             @Override
             public void surfaceCreated(SurfaceHolder holder) {
@@ -2587,6 +2656,10 @@ public class TextureVideoView extends AbsTextureVideoView implements ViewHostEve
                 mLoadClipThumbsTask.cancel(false);
                 mLoadClipThumbsTask = null;
             }
+            if (mLoadKeyframeIndexTask != null) {
+                mLoadKeyframeIndexTask.cancel(false);
+                mLoadKeyframeIndexTask = null;
+            }
 
             if (mVideoPlayer != null) {
                 mVideoPlayer.play(fromUser);
@@ -36,7 +36,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.util.Synthetic;
 import com.google.android.exoplayer2.util.Util;
-import com.liuzhenlin.texturevideoview.utils.BitmapUtils;
+import com.liuzhenlin.texturevideoview.utils.DominantColorExtractor;
 import com.liuzhenlin.texturevideoview.utils.Utils;
 
 import java.util.ArrayList;
@@ -103,6 +103,15 @@ public class VideoClipView extends FrameLayout {
     private final int[] mTmpSelectionInterval = sNoSelectionInterval.clone();
     @Synthetic static final int[] sNoSelectionInterval = {0, 0};
 
+    /**
+     * Positions in millisecond within the selectable time interval, in ascending order, at which
+     * the video can be cut without being re-encoded, or null if it can be cut anywhere.
+     *
+     * @see #setCutPoints(int[])
+     */
+    private int[] mCutPoints;
+    private final int[] mTmpSnappedSelectionInterval = new int[2];
+
     private boolean mFirstLayout = true;
     private boolean mInLayout;
 
@@ -285,9 +294,11 @@ public class VideoClipView extends FrameLayout {
         mDrawableWidth = mClipBackwards.getIntrinsicWidth();
         mThumbDisplayHeight = mClipBackwards.getIntrinsicHeight();
 
-        mFrameBarColor = BitmapUtils.getDominantColorOrThrow(BitmapUtils.drawableToBitmap(mClipBackwards));
-        //noinspection ConstantConditions
-        mFrameBarDarkColor = BitmapUtils.getDominantColorOrThrow(BitmapUtils.drawableToBitmap(mClipBackwardsDark));
+        // 颜色按资源id缓存，仅在首次创建时采样一次图片
+        mFrameBarColor = DominantColorExtractor.getDominantColorOrThrow(
+                context, R.drawable.ic_clip_backwards);
+        mFrameBarDarkColor = DominantColorExtractor.getDominantColorOrThrow(
+                context, R.drawable.ic_clip_backwards_dark);
 
         mFrameBarPaint = new Paint();
         mFrameBarPaint.setStyle(Paint.Style.FILL);
@@ -487,6 +498,7 @@ public class VideoClipView extends FrameLayout {
         if ((mTouchFlags & TFLAG_FRAME_BEING_DRAGGED) == 0) {
             drawProgressCursor(canvas);
         }
+        drawSnappedSelectionInterval(canvas);
     }
 
     private void drawFrame(Canvas canvas) {
@@ -538,6 +550,35 @@ public class VideoClipView extends FrameLayout {
                 rightDrawableLeft, childBottom, mFrameBarPaint);
     }
 
+    /**
+     * Marks the positions the selection interval would actually be cut at, if they are not the
+     * ones the selection frame is at, so that the user can see the real clip while dragging.
+     */
+    private void drawSnappedSelectionInterval(Canvas canvas) {
+        if (mCutPoints == null) return;
+
+        final int[] interval = mTmpSelectionInterval;
+        final int[] snappedInterval = mTmpSnappedSelectionInterval;
+        getSnappedSelectionInterval(snappedInterval);
+        getSelectionInterval(interval);
+        final float top = getPaddingTop() + mFrameBarHeight;
+        final float bottom = getHeight() - getPaddingBottom() - mFrameBarHeight;
+        mProgressPaint.setStrokeWidth(mProgressStrokeWidth);
+        for (int i = 0; i < 2; i++) {
+            if (snappedInterval[i] != interval[i]) {
+                final float x = selectionToX(snappedInterval[i]);
+                canvas.drawLine(x, top, x, bottom, mProgressPaint);
+            }
+        }
+    }
+
+    private float selectionToX(int selection) {
+        final float percent =
+                (float) selection / (mMaximumClipDuration + mMinimumUnselectedClipDuration);
+        return mDrawableWidth + mThumbGalleryWidth *
+                (Utils.isLayoutRtl(this) ? 1.0f - percent : percent);
+    }
+
     private void drawProgressCursor(Canvas canvas) {
         final int height = getHeight();
 
@@ -671,6 +712,10 @@ public class VideoClipView extends FrameLayout {
      * @param end   end value in millisecond of the interval
      */
     public void setSelectionInterval(int start, int end) {
+        setSelectionInterval(start, end, false);
+    }
+
+    private void setSelectionInterval(int start, int end, boolean fromUser) {
         final int interval = end - start;
         final int duration = mMaximumClipDuration + mMinimumUnselectedClipDuration;
 
@@ -706,12 +751,113 @@ public class VideoClipView extends FrameLayout {
         }
         if (!Utils.areEqualIgnorePrecisionError(mFrameLeftOffset, frameLeftOffset)
                 || !Utils.areEqualIgnorePrecisionError(mFrameRightOffset, frameRightOffset)) {
+            notifyListenersOfSelectionIntervalChange(fromUser);
+            resetProgressPercent(fromUser);
+            invalidate();
+        }
+    }
+
+    /**
+     * Sets the positions within the selectable time interval at which the video can be cut
+     * without being re-encoded, usually those of its key frames. The start and end of the
+     * selection interval will be snapped to them when the user releases the selection frame.
+     *
+     * @param cutPoints millisecond positions within the selectable time interval, or null to
+     *                  allow the selection interval to start and end anywhere
+     */
+    public void setCutPoints(@Nullable int[] cutPoints) {
+        if (cutPoints != null) {
+            cutPoints = cutPoints.clone();
+            Arrays.sort(cutPoints);
+        }
+        if (!Arrays.equals(mCutPoints, cutPoints)) {
+            mCutPoints = cutPoints;
+            // The interval that would actually be cut out may have changed
             notifyListenersOfSelectionIntervalChange(false);
-            resetProgressPercent(false);
             invalidate();
         }
     }
 
+    /**
+     * Gets the time interval in millisecond that would actually be cut out for the selected
+     * video clip, whose start and end are both on cut points: the nearest ones to the selection
+     * interval that keep it within the clip duration limits, or, if there are no such ones, the
+     * last one at or before its start and the first one at or after its end, as the video would
+     * be cut at anyway. The selection interval itself is returned only if there are not enough
+     * cut points to snap both its ends to.
+     *
+     * @see #setCutPoints(int[])
+     * @see #getSelectionInterval(int[])
+     */
+    public void getSnappedSelectionInterval(int[] outInterval) {
+        getSelectionInterval(outInterval);
+        final int[] cutPoints = mCutPoints;
+        if (cutPoints == null || cutPoints.length < 2) return;
+
+        final int start = outInterval[0];
+        final int end = outInterval[1];
+        final int floorStart = floorCutPoint(cutPoints, start);
+        final int ceilEnd = ceilCutPoint(cutPoints, end);
+        // 起止位置各取两侧最近的切点，选出满足时长限制且偏移最小的组合
+        final int[] starts = {floorStart, ceilCutPoint(cutPoints, start)};
+        final int[] ends = {ceilEnd, floorCutPoint(cutPoints, end)};
+        int bestDistance = Integer.MAX_VALUE;
+        for (int s : starts) {
+            if (s < 0) continue;
+            for (int e : ends) {
+                if (e < 0 || e - s < mMinimumClipDuration || e - s > mMaximumClipDuration) {
+                    continue;
+                }
+                final int distance = Math.abs(s - start) + Math.abs(e - end);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    outInterval[0] = s;
+                    outInterval[1] = e;
+                }
+            }
+        }
+        if (bestDistance == Integer.MAX_VALUE) {
+            // No snapped interval keeps to the duration limits, so takes the one covering the
+            // selection, falling back to the outermost cut points on the side(s) without any.
+            outInterval[0] = floorStart >= 0 ? floorStart : cutPoints[0];
+            outInterval[1] = ceilEnd >= 0 ? ceilEnd : cutPoints[cutPoints.length - 1];
+            if (outInterval[0] >= outInterval[1]) {
+                outInterval[0] = cutPoints[0];
+                outInterval[1] = cutPoints[cutPoints.length - 1];
+            }
+        }
+    }
+
+    /** @return the last cut point at or before the given position, or -1 if there is none */
+    private static int floorCutPoint(int[] cutPoints, int position) {
+        int i = Arrays.binarySearch(cutPoints, position);
+        if (i < 0) i = -i - 2;
+        return i >= 0 ? cutPoints[i] : -1;
+    }
+
+    /** @return the first cut point at or after the given position, or -1 if there is none */
+    private static int ceilCutPoint(int[] cutPoints, int position) {
+        int i = Arrays.binarySearch(cutPoints, position);
+        if (i < 0) i = -i - 1;
+        return i < cutPoints.length ? cutPoints[i] : -1;
+    }
+
+    private void snapSelectionIntervalToCutPoints() {
+        if (mCutPoints == null) return;
+
+        final int[] interval = mTmpSnappedSelectionInterval;
+        getSnappedSelectionInterval(interval);
+        final int[] oldInterval = mTmpSelectionInterval;
+        getSelectionInterval(oldInterval);
+        final int length = interval[1] - interval[0];
+        // Leaves the selection frame where it is if the interval to be cut out is beyond the
+        // duration limits, for which the marks of the snapped interval will stay visible.
+        if (!Arrays.equals(interval, oldInterval)
+                && length >= mMinimumClipDuration && length <= mMaximumClipDuration) {
+            setSelectionInterval(interval[0], interval[1], true);
+        }
+    }
+
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
         switch (ev.getActionMasked()) {
@@ -738,6 +884,9 @@ public class VideoClipView extends FrameLayout {
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
                 if ((mTouchFlags & TOUCH_MASK) != 0) {
+                    if ((mTouchFlags & TFLAG_FRAME_BEING_DRAGGED) != 0) {
+                        snapSelectionIntervalToCutPoints();
+                    }
                     notifyListenersWhenSelectionDragStops();
                 }
                 resetTouch();
@@ -852,6 +1001,9 @@ public class VideoClipView extends FrameLayout {
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
                 if ((mTouchFlags & TOUCH_MASK) != 0) {
+                    if ((mTouchFlags & TFLAG_FRAME_BEING_DRAGGED) != 0) {
+                        snapSelectionIntervalToCutPoints();
+                    }
                     notifyListenersWhenSelectionDragStops();
                 }
                 resetTouch();
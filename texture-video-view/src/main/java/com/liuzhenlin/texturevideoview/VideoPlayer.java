@@ -12,6 +12,7 @@ import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.view.Surface;
 import android.widget.Toast;
 
@@ -82,10 +83,25 @@ public abstract class VideoPlayer implements IVideoPlayer {
     @Nullable
     /*package*/ OnSkipPrevNextListener mOnSkipPrevNextListener;
 
+    /**
+     * Callback supplying the videos following the played one in the playlist, for the player
+     * to play them gaplessly, if supported.
+     */
+    @Nullable
+    /*package*/ PlaylistCallback mPlaylistCallback;
+
     /** The set of listeners for all the events related to video we publish. */
     @Nullable
     /*package*/ List<VideoListener> mVideoListeners;
 
+    /** Listeners monitoring the quality-of-experience events of the playback sessions. */
+    @Nullable
+    private List<PlaybackStats.Listener> mPlaybackStatsListeners;
+
+    /** Statistics of the current or the last playback session. */
+    @Nullable
+    private PlaybackStats mPlaybackStats;
+
     /** Listeners monitoring all state changes to the player or the playback of the video. */
     @Nullable
     /*package*/ List<OnPlaybackStateChangeListener> mOnPlaybackStateChangeListeners;
@@ -97,6 +113,16 @@ public abstract class VideoPlayer implements IVideoPlayer {
     /** The Uri for the video to play, set in {@link #setVideoUri(Uri)}. */
     protected Uri mVideoUri;
 
+    /**
+     * Whether the current video has been found to be a live stream, which is not known until
+     * the player has parsed its media.
+     */
+    private boolean mVideoLive;
+
+    /** @see #setBufferingProfile(BufferingProfile) */
+    @Nullable
+    private BufferingProfile mBufferingProfile;
+
     protected int mVideoWidth;
     protected int mVideoHeight;
 
@@ -368,11 +394,76 @@ public abstract class VideoPlayer implements IVideoPlayer {
 
     protected void onVideoUriChanged(@Nullable Uri uri) {
         mVideoUri = uri;
+        mVideoLive = false;
         if (mVideoView != null) {
             mVideoView.onVideoUriChanged(uri);
         }
     }
 
+    /**
+     * Sets the profile of how much media to buffer, which will take effect the next time
+     * a video is prepared. If {@code null} (the default), a profile is chosen for each video
+     * according to its source type and whether it is live, by
+     * {@link BufferingProfile#forUri(Uri, boolean)}.
+     * <p>
+     * Players whose underlying engines can not control the buffering ignore this, and they may
+     * also ignore parts of the profile, as documented by them.
+     */
+    public void setBufferingProfile(@Nullable BufferingProfile profile) {
+        mBufferingProfile = profile;
+    }
+
+    /**
+     * @return the buffering profile set by {@link #setBufferingProfile(BufferingProfile)} or,
+     *         if there is not one, the profile chosen for the current video
+     */
+    @NonNull
+    public BufferingProfile getBufferingProfile() {
+        if (mBufferingProfile != null) {
+            return mBufferingProfile;
+        }
+        return BufferingProfile.forUri(mVideoUri, mVideoLive);
+    }
+
+    /**
+     * Called by subclasses once the player finds out whether the current video is a live stream,
+     * e.g., from the timeline of the media. If that changes the buffering profile chosen for
+     * the video, {@link #onBufferingProfileChanged(BufferingProfile)} will be called.
+     */
+    protected final void onVideoLiveStateDetermined(boolean live) {
+        if (mVideoLive != live) {
+            final BufferingProfile oldProfile = getBufferingProfile();
+            mVideoLive = live;
+            final BufferingProfile profile = getBufferingProfile();
+            if (!profile.equals(oldProfile)) {
+                onBufferingProfileChanged(profile);
+            }
+        }
+    }
+
+    /**
+     * Called when the buffering profile chosen for the current video changes while it is being
+     * played, for the subclasses that can apply a new profile without preparing the video again.
+     */
+    protected void onBufferingProfileChanged(@NonNull BufferingProfile profile) {
+    }
+
+    /**
+     * @return the duration in milliseconds of the media currently buffered ahead of the playback
+     *         position, or 0 if the video is not opened or the player can not tell it.
+     */
+    public long getBufferedDuration() {
+        return 0;
+    }
+
+    /**
+     * @return the bytes of the media currently buffered, or 0 if the video is not opened
+     *         or the player can not tell it.
+     */
+    public long getBufferedBytes() {
+        return 0;
+    }
+
     /**
      * Similar to {@link #restartVideo()}, but preserving the track selections all depends.
      */
@@ -640,6 +731,9 @@ public abstract class VideoPlayer implements IVideoPlayer {
 
     protected void onVideoStarted() {
         setPlaybackState(PLAYBACK_STATE_PLAYING);
+        if (mPlaybackStats != null && !mPlaybackStats.isEnded()) {
+            mPlaybackStats.onPlayingChanged(true);
+        }
 
         if (mVideoView != null) {
             mVideoView.onVideoStarted();
@@ -670,6 +764,9 @@ public abstract class VideoPlayer implements IVideoPlayer {
         } else {
             currentState = oldState;
         }
+        if (mPlaybackStats != null && !mPlaybackStats.isEnded()) {
+            mPlaybackStats.onPlayingChanged(false);
+        }
 
         if (mVideoView != null) {
             mVideoView.onVideoStopped();
@@ -742,6 +839,182 @@ public abstract class VideoPlayer implements IVideoPlayer {
         }
     }
 
+    private boolean hasPlaybackStatsListener() {
+        return mPlaybackStatsListeners != null && !mPlaybackStatsListeners.isEmpty();
+    }
+
+    public void addPlaybackStatsListener(@Nullable PlaybackStats.Listener listener) {
+        if (listener != null) {
+            if (mPlaybackStatsListeners == null) {
+                mPlaybackStatsListeners = new ArrayList<>(1);
+            }
+            if (!mPlaybackStatsListeners.contains(listener)) {
+                mPlaybackStatsListeners.add(listener);
+            }
+        }
+    }
+
+    public void removePlaybackStatsListener(@Nullable PlaybackStats.Listener listener) {
+        if (listener != null && hasPlaybackStatsListener()) {
+            //noinspection ConstantConditions
+            mPlaybackStatsListeners.remove(listener);
+        }
+    }
+
+    /**
+     * @return the statistics of the current playback session, or of the last one if the video
+     *         is not being played, or {@code null} if no video has been prepared yet
+     */
+    @Nullable
+    public PlaybackStats getPlaybackStats() {
+        return mPlaybackStats;
+    }
+
+    /**
+     * Starts a new playback session for the current video, ending the previous one if any.
+     * Should be called each time the inner player starts preparing a video.
+     */
+    protected final void startPlaybackStatsSession() {
+        startPlaybackStatsSession(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Same as {@link #startPlaybackStatsSession()}, but dates the session back to the given
+     * {@link SystemClock#elapsedRealtime()}, e.g., when the video was opened and the inner player
+     * was yet to be created.
+     */
+    protected final void startPlaybackStatsSession(long startTimeMs) {
+        endPlaybackStatsSession();
+        PlaybackStats stats =
+                new PlaybackStats(getClass().getSimpleName(), mVideoUri, startTimeMs);
+        mPlaybackStats = stats;
+        if (isPlaying()) {
+            stats.onPlayingChanged(true);
+        }
+        if (hasPlaybackStatsListener()) {
+            for (@SuppressWarnings("ConstantConditions")
+                 int i = mPlaybackStatsListeners.size() - 1; i >= 0; i--) {
+                mPlaybackStatsListeners.get(i).onSessionStarted(stats);
+            }
+        }
+    }
+
+    /**
+     * Ends the current playback session, if any. Should be called when the inner player stops
+     * playing the video it prepared, is reset or is released.
+     */
+    protected final void endPlaybackStatsSession() {
+        PlaybackStats stats = mPlaybackStats;
+        if (stats != null && !stats.isEnded()) {
+            onPlaybackStatsSessionEnding(stats);
+            stats.onEnded();
+            if (hasPlaybackStatsListener()) {
+                for (@SuppressWarnings("ConstantConditions")
+                     int i = mPlaybackStatsListeners.size() - 1; i >= 0; i--) {
+                    mPlaybackStatsListeners.get(i).onSessionEnded(stats);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called right before the given playback session ends, for subclasses to collect the metrics
+     * only available in a summary from the inner player.
+     */
+    protected void onPlaybackStatsSessionEnding(@NonNull PlaybackStats stats) {
+    }
+
+    @Nullable
+    private PlaybackStats getActivePlaybackStats() {
+        PlaybackStats stats = mPlaybackStats;
+        return stats == null || stats.isEnded() ? null : stats;
+    }
+
+    /**
+     * Reports that a video frame was rendered.
+     *
+     * @return true if it was the first frame of the current session, whose time to first frame
+     *         can then be read from {@link #getPlaybackStats()}
+     */
+    protected final boolean reportFirstFrameRendered() {
+        PlaybackStats stats = getActivePlaybackStats();
+        if (stats == null || !stats.onFirstFrameRendered()) {
+            return false;
+        }
+        if (hasPlaybackStatsListener()) {
+            for (@SuppressWarnings("ConstantConditions")
+                 int i = mPlaybackStatsListeners.size() - 1; i >= 0; i--) {
+                mPlaybackStatsListeners.get(i).onFirstFrameRendered(stats);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reports that the playback stalled for lack of buffered media. Buffering before the first
+     * frame is rendered is part of the startup and thus not counted.
+     */
+    protected final void reportRebufferingStarted() {
+        PlaybackStats stats = getActivePlaybackStats();
+        if (stats != null && stats.isFirstFrameRendered()
+                && stats.onRebufferingStarted() && hasPlaybackStatsListener()) {
+            for (@SuppressWarnings("ConstantConditions")
+                 int i = mPlaybackStatsListeners.size() - 1; i >= 0; i--) {
+                mPlaybackStatsListeners.get(i).onRebufferingStarted(stats);
+            }
+        }
+    }
+
+    protected final void reportRebufferingEnded() {
+        PlaybackStats stats = getActivePlaybackStats();
+        if (stats == null) return;
+
+        final long duration = stats.onRebufferingEnded();
+        if (duration != PlaybackStats.VALUE_UNSET && hasPlaybackStatsListener()) {
+            for (@SuppressWarnings("ConstantConditions")
+                 int i = mPlaybackStatsListeners.size() - 1; i >= 0; i--) {
+                mPlaybackStatsListeners.get(i).onRebufferingEnded(stats, duration);
+            }
+        }
+    }
+
+    protected final void reportDroppedVideoFrames(int count) {
+        PlaybackStats stats = getActivePlaybackStats();
+        if (stats != null && count > 0) {
+            stats.onDroppedVideoFrames(count);
+            if (hasPlaybackStatsListener()) {
+                for (@SuppressWarnings("ConstantConditions")
+                     int i = mPlaybackStatsListeners.size() - 1; i >= 0; i--) {
+                    mPlaybackStatsListeners.get(i).onDroppedVideoFrames(stats, count);
+                }
+            }
+        }
+    }
+
+    protected final void reportDecoderInitialized(
+            @TrackInfo.TrackType int trackType, @Nullable String decoderName) {
+        PlaybackStats stats = getActivePlaybackStats();
+        if (stats != null && decoderName != null && !decoderName.isEmpty()) {
+            stats.onDecoderInitialized(trackType, decoderName);
+            if (hasPlaybackStatsListener()) {
+                for (@SuppressWarnings("ConstantConditions")
+                     int i = mPlaybackStatsListeners.size() - 1; i >= 0; i--) {
+                    mPlaybackStatsListeners.get(i).onDecoderInitialized(stats, trackType, decoderName);
+                }
+            }
+        }
+    }
+
+    protected final void reportVideoBitrateChanged(int bitrate) {
+        PlaybackStats stats = getActivePlaybackStats();
+        if (stats != null && stats.onVideoBitrateChanged(bitrate) && hasPlaybackStatsListener()) {
+            for (@SuppressWarnings("ConstantConditions")
+                 int i = mPlaybackStatsListeners.size() - 1; i >= 0; i--) {
+                mPlaybackStatsListeners.get(i).onVideoBitrateChanged(stats, bitrate);
+            }
+        }
+    }
+
     protected boolean skipToPreviousIfPossible() {
         if (mVideoView != null && !mVideoView.canSkipToPrevious()) {
             return false;
@@ -780,6 +1053,72 @@ public abstract class VideoPlayer implements IVideoPlayer {
         void onSkipToNext();
     }
 
+    /**
+     * Sets the callback through which the player can know in advance which video is to be played
+     * after the current one ends, so as to queue and pre-buffer it during the last seconds of
+     * the current one and advance to it without a gap. Players that do not support gapless
+     * playback ignore it and keep asking the {@link OnSkipPrevNextListener} to skip to the next
+     * video when the current one completes.
+     */
+    public void setPlaylistCallback(@Nullable PlaylistCallback callback) {
+        mPlaylistCallback = callback;
+    }
+
+    /**
+     * @return the Uri of the video to be played gaplessly after the current one, or {@code null}
+     *         if there is not one or the playback should stop or loop at the end of the current one.
+     */
+    @Nullable
+    protected Uri getNextVideoUriForGaplessPlayback() {
+        if (mPlaylistCallback == null || isSingleVideoLoopPlayback()) {
+            return null;
+        }
+        if (mVideoView != null
+                && (!mVideoView.canSkipToNext() || mVideoView.willTurnOffWhenThisEpisodeEnds())) {
+            return null;
+        }
+        return mPlaylistCallback.getNextVideoUri();
+    }
+
+    /**
+     * Called when the playback has advanced to the video queued for gapless playback without
+     * the player being prepared again.
+     */
+    protected void onGaplesslyAdvancedToNextVideo(@NonNull Uri uri) {
+        onVideoUriChanged(uri);
+        setTrackSelections(TRACK_SELECTION_UNSPECIFIED, TRACK_SELECTION_UNSPECIFIED,
+                TRACK_SELECTION_UNSPECIFIED);
+        mSeekOnPlay = TIME_UNSET;
+
+        if (mPlaylistCallback != null) {
+            mPlaylistCallback.onAdvancedToNextVideo(uri);
+        }
+
+        if (mVideoView != null && mVideoView.willTurnOffWhenThisEpisodeEnds()) {
+            // Turning off after the previous episode was requested after the current one had been
+            // queued, so close the video as if the previous one had just completed.
+            setPlaybackState(PLAYBACK_STATE_COMPLETED);
+            mVideoView.onVideoTurnedOffWhenTheEpisodeEnds();
+            closeVideoInternal(true);
+        }
+    }
+
+    public interface PlaylistCallback {
+        /**
+         * @return the Uri of the video to be played after the current one in the playlist,
+         *         or {@code null} if it should not be played gaplessly, e.g., for its playback
+         *         needs to start from a saved position
+         */
+        @Nullable
+        Uri getNextVideoUri();
+
+        /**
+         * Called when the playback has advanced to the video returned from {@link #getNextVideoUri()}
+         * without a gap. The video Uri of the player has already been updated to it.
+         */
+        void onAdvancedToNextVideo(@NonNull Uri uri);
+    }
+
     protected static class MsgHandler extends Handler {
         protected final WeakReference<VideoPlayer> videoPlayerRef;
 
@@ -0,0 +1,241 @@
+/*
+ * Created on 2026-10-19 7:46:18 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.liuzhenlin.texturevideoview.utils.Singleton;
+
+/**
+ * A process-wide pool keeping at most one idle ExoPlayer, which the next {@link ExoVideoPlayer}
+ * to open a video takes instead of building a new player, saving the initialization of the player
+ * and its components from the time to first frame.
+ * <p>
+ * The player of a closed video is never reused, as its renderers, track selector and bandwidth
+ * meter, which can not be replaced once the player is built, carry decisions made for that video,
+ * such as the decoder order and threading. Instead, once a video is closed, a fresh player is
+ * built ahead of the next open when the main thread is idle. An IjkPlayer is not pooled, as
+ * resetting it recreates its native player anyway.
+ * <p>
+ * The pooled player is released as soon as the system asks the app to trim its memory while it
+ * is running low on memory, or when the app has been in the background long enough to be
+ * a candidate to be killed.
+ * <p>
+ * To measure the effect, the time from opening each video to rendering its first frame is
+ * collected separately for the opens served by a pooled player and those that were not.
+ *
+ * @author 刘振林
+ */
+@MainThread
+public final class VideoPlayerPool implements ComponentCallbacks2 {
+
+    private static final String TAG = "VideoPlayerPool";
+
+    private final Context mContext;
+
+    private boolean mEnabled = true;
+
+    private ExoPlayerEntry mIdleExoPlayer;
+    private MessageQueue.IdleHandler mExoPlayerBuilder;
+
+    private long mWarmTimeToFirstFrameSumMs;
+    private int mWarmTimeToFirstFrameCount;
+    private long mColdTimeToFirstFrameSumMs;
+    private int mColdTimeToFirstFrameCount;
+
+    /**
+     * An ExoPlayer together with the components it was built with.
+     */
+    /*package*/ static final class ExoPlayerEntry {
+        final SimpleExoPlayer player;
+        final DefaultTrackSelector trackSelector;
+        final BufferingProfileLoadControl loadControl;
+        final BandwidthEstimateStore.Session bandwidthEstimateSession;
+
+        ExoPlayerEntry(SimpleExoPlayer player,
+                       DefaultTrackSelector trackSelector,
+                       BufferingProfileLoadControl loadControl,
+                       BandwidthEstimateStore.Session bandwidthEstimateSession) {
+            this.player = player;
+            this.trackSelector = trackSelector;
+            this.loadControl = loadControl;
+            this.bandwidthEstimateSession = bandwidthEstimateSession;
+        }
+
+        /**
+         * Builds a new ExoPlayer with the components for a single video, whose load control starts
+         * with the given buffering profile.
+         */
+        static ExoPlayerEntry build(Context context, BufferingProfile bufferingProfile) {
+            // Orders the extension decoders before or after MediaCodec per codec and
+            // resolution class, as they were measured to perform on this device
+            RenderersFactory renderersFactory = new ProfiledRenderersFactory(context);
+            DefaultTrackSelector trackSelector = new DefaultTrackSelector(context);
+            // Seeds the bandwidth meter with what was measured on the current network last time
+            BandwidthEstimateStore.Session bandwidthEstimateSession =
+                    BandwidthEstimateStore.getSingleton(context).openSession();
+            BufferingProfileLoadControl loadControl =
+                    new BufferingProfileLoadControl(bufferingProfile);
+            SimpleExoPlayer player = new SimpleExoPlayer.Builder(context, renderersFactory)
+                    .setTrackSelector(trackSelector)
+                    .setBandwidthMeter(bandwidthEstimateSession.getBandwidthMeter())
+                    .setLoadControl(loadControl)
+                    .build();
+            return new ExoPlayerEntry(player, trackSelector, loadControl, bandwidthEstimateSession);
+        }
+
+        void release() {
+            player.release();
+            bandwidthEstimateSession.close();
+        }
+    }
+
+    private static final Singleton<Context, VideoPlayerPool> sVideoPlayerPoolSingleton =
+            new Singleton<Context, VideoPlayerPool>() {
+                @NonNull
+                @Override
+                protected VideoPlayerPool onCreate(Context... ctxs) {
+                    return new VideoPlayerPool(ctxs[0]);
+                }
+            };
+
+    public static VideoPlayerPool getSingleton(@NonNull Context context) {
+        return sVideoPlayerPoolSingleton.get(context);
+    }
+
+    private VideoPlayerPool(Context context) {
+        mContext = context.getApplicationContext();
+        mContext.registerComponentCallbacks(this);
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Sets whether a player should be built ahead for the next video to open after a video
+     * is closed. Disabling the pool releases the player it holds.
+     */
+    public void setEnabled(boolean enabled) {
+        if (mEnabled != enabled) {
+            mEnabled = enabled;
+            if (!enabled) {
+                trim();
+            }
+        }
+    }
+
+    @Nullable
+    /*package*/ ExoPlayerEntry acquireExoPlayer() {
+        final ExoPlayerEntry entry = mIdleExoPlayer;
+        mIdleExoPlayer = null;
+        return entry;
+    }
+
+    /**
+     * Called when an ExoPlayer has been released along with the video it played, to have a new
+     * one built for the next video to open once the main thread is idle.
+     */
+    /*package*/ void onExoPlayerReleased() {
+        if (!mEnabled || mIdleExoPlayer != null || mExoPlayerBuilder != null) {
+            return;
+        }
+        mExoPlayerBuilder = () -> {
+            mExoPlayerBuilder = null;
+            if (mEnabled && mIdleExoPlayer == null) {
+                // 加载控制在准备播放时才会切换到视频所用的缓冲配置
+                mIdleExoPlayer = ExoPlayerEntry.build(mContext, BufferingProfile.FAST_START);
+            }
+            return false;
+        };
+        Looper.myQueue().addIdleHandler(mExoPlayerBuilder);
+    }
+
+    /**
+     * Releases the idle player in the pool, and cancels building one.
+     */
+    public void trim() {
+        if (mExoPlayerBuilder != null) {
+            Looper.myQueue().removeIdleHandler(mExoPlayerBuilder);
+            mExoPlayerBuilder = null;
+        }
+        if (mIdleExoPlayer != null) {
+            mIdleExoPlayer.release();
+            mIdleExoPlayer = null;
+        }
+    }
+
+    /**
+     * @param warm               whether the video was opened with a pooled player
+     * @param timeToFirstFrameMs the time to first frame of the video, as measured by
+     *                           {@link PlaybackStats#getTimeToFirstFrameMs()}
+     */
+    /*package*/ void recordTimeToFirstFrame(boolean warm, long timeToFirstFrameMs) {
+        if (warm) {
+            mWarmTimeToFirstFrameSumMs += timeToFirstFrameMs;
+            mWarmTimeToFirstFrameCount++;
+        } else {
+            mColdTimeToFirstFrameSumMs += timeToFirstFrameMs;
+            mColdTimeToFirstFrameCount++;
+        }
+        if (InternalConsts.DEBUG) {
+            Log.d(TAG, "Time to first frame: " + timeToFirstFrameMs + " ms"
+                    + (warm ? " with" : " without") + " a pooled player"
+                    + ", average " + getAverageTimeToFirstFrame(true) + " ms warm"
+                    + " / " + getAverageTimeToFirstFrame(false) + " ms cold");
+        }
+    }
+
+    /**
+     * @param warm whether to return the average for the videos opened with a pooled player
+     *             or for those opened with a newly created one
+     * @return the average time in milliseconds from opening a video to rendering its first frame,
+     *         or {@link IVideoPlayer#TIME_UNSET} if no such video has been played yet
+     */
+    public long getAverageTimeToFirstFrame(boolean warm) {
+        final long sum = warm ? mWarmTimeToFirstFrameSumMs : mColdTimeToFirstFrameSumMs;
+        final int count = warm ? mWarmTimeToFirstFrameCount : mColdTimeToFirstFrameCount;
+        return count == 0 ? IVideoPlayer.TIME_UNSET : sum / count;
+    }
+
+    public void clearTimeToFirstFrameStats() {
+        mWarmTimeToFirstFrameSumMs = 0;
+        mWarmTimeToFirstFrameCount = 0;
+        mColdTimeToFirstFrameSumMs = 0;
+        mColdTimeToFirstFrameCount = 0;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // 前台运行时内存不足，或在后台且可能被系统回收时，释放空闲的播放器；
+        // 仅是界面隐藏时保留，以便返回时快速起播
+        if (level >= TRIM_MEMORY_MODERATE
+                || level >= TRIM_MEMORY_RUNNING_LOW && level < TRIM_MEMORY_UI_HIDDEN) {
+            trim();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
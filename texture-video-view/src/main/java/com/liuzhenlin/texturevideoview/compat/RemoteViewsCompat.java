@@ -59,16 +59,27 @@ public class RemoteViewsCompat {
                             .setTintList(tintList)
                             .toIcon(ctx));
         } else {
-            // Creates a bitmap from a tinted retrieved drawable instead,
-            // for compatibility of vector drawable resource that can not be directly created
-            // via BitmapFactory.decodeResource(Resources, int)
-            @SuppressWarnings("ConstantConditions")
-            Drawable drawable = DrawableCompat.wrap(AppCompatResources.getDrawable(ctx, resId));
-            if (tintList != null) {
-                DrawableCompat.setTintList(drawable.mutate(), tintList);
-            }
-            Bitmap bitmap = BitmapUtils.drawableToBitmap(drawable);
-            remoteViews.setImageViewBitmap(viewId, bitmap);
+            remoteViews.setImageViewBitmap(viewId, createTintedBitmap(ctx, resId, tintList));
         }
     }
+
+    /**
+     * Creates a bitmap from a tinted retrieved drawable, for compatibility of vector drawable
+     * resource that can not be directly created via BitmapFactory.decodeResource(Resources, int).
+     * This is what {@link #setImageViewResourceWithTintList} sets into the RemoteViews
+     * on platform versions below {@link Build.VERSION_CODES#M}, and can be cached by callers
+     * that update their RemoteViews frequently.
+     */
+    @NonNull
+    public static Bitmap createTintedBitmap(
+            @NonNull Context ctx,
+            @DrawableRes int resId,
+            @Nullable ColorStateList tintList) {
+        @SuppressWarnings("ConstantConditions")
+        Drawable drawable = DrawableCompat.wrap(AppCompatResources.getDrawable(ctx, resId));
+        if (tintList != null) {
+            DrawableCompat.setTintList(drawable.mutate(), tintList);
+        }
+        return BitmapUtils.drawableToBitmap(drawable);
+    }
 }
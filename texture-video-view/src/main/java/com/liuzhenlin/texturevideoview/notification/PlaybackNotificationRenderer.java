@@ -0,0 +1,271 @@
+/*
+ * Created on 2026-10-19 4:26:51 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview.notification;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.IdRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.liuzhenlin.texturevideoview.R;
+import com.liuzhenlin.texturevideoview.compat.RemoteViewsCompat;
+
+/**
+ * Renders the custom view of the background playback controller notification, remembering what
+ * it rendered last time so that a new view is created, and the notification needs to be posted
+ * again, only when something visible has actually changed.
+ * <p>
+ * Since every notification update replaces the whole content view in system_server, the view
+ * created here always describes the complete state. What is cached across updates are the parts
+ * that are expensive to produce or marshal: the pending intents of the action buttons, and the
+ * tinted icon bitmaps used below {@link Build.VERSION_CODES#M}, per icon tint.
+ *
+ * @author 刘振林
+ */
+@MainThread
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class PlaybackNotificationRenderer {
+
+    private static final String TAG = "PlaybackNotification";
+
+    /**
+     * Changes of the countdown chronometer base smaller than this are not worth an update,
+     * as the chronometer only shows whole seconds.
+     */
+    private static final long COUNTDOWN_BASE_TOLERANCE_MS = 500;
+    private static final long NO_COUNTDOWN = Long.MIN_VALUE;
+
+    private final Context mContext;
+    private final String mPkgName;
+    private final String mPlay;
+    private final String mPause;
+
+    private final PendingIntent mPlayIntent;
+    private final PendingIntent mPauseIntent;
+    private final PendingIntent mSkipToPreviousIntent;
+    private final PendingIntent mSkipToNextIntent;
+    private final PendingIntent mCloseIntent;
+
+    @ColorInt private int mIconTint;
+    // 仅用于API 23以下：当前着色下的图标位图
+    private final SparseArray<Bitmap> mTintedIconBitmaps = new SparseArray<>();
+
+    // 上次渲染的状态
+    private boolean mRendered;
+    private String mTitle;
+    private Bitmap mArtwork;
+    private boolean mPlaying;
+    private boolean mCanSkipToPrevious;
+    private boolean mCanSkipToNext;
+    private long mCountdownBase = NO_COUNTDOWN;
+
+    private boolean mMarshalledBytesCountingEnabled;
+    private int mLastMarshalledBytes;
+    private long mTotalMarshalledBytes;
+    private int mPostedUpdateCount;
+    private int mSkippedUpdateCount;
+
+    public PlaybackNotificationRenderer(
+            @NonNull Context context,
+            @ColorInt int iconTint,
+            @NonNull PendingIntent playIntent,
+            @NonNull PendingIntent pauseIntent,
+            @NonNull PendingIntent skipToPreviousIntent,
+            @NonNull PendingIntent skipToNextIntent,
+            @NonNull PendingIntent closeIntent) {
+        mContext = context;
+        mPkgName = context.getPackageName();
+        mPlay = context.getString(R.string.play);
+        mPause = context.getString(R.string.pause);
+        mIconTint = iconTint;
+        mPlayIntent = playIntent;
+        mPauseIntent = pauseIntent;
+        mSkipToPreviousIntent = skipToPreviousIntent;
+        mSkipToNextIntent = skipToNextIntent;
+        mCloseIntent = closeIntent;
+    }
+
+    public void setIconTint(@ColorInt int tint) {
+        if (mIconTint != tint) {
+            mIconTint = tint;
+            mTintedIconBitmaps.clear();
+            mRendered = false;
+        }
+    }
+
+    /**
+     * Forces the next {@link #render} call to create a new view even if nothing has changed,
+     * e.g., for the notification is to be posted anew.
+     */
+    public void invalidate() {
+        mRendered = false;
+    }
+
+    /**
+     * @return a new notification view describing the given state, or {@code null} if it would
+     *         look the same as the one rendered last time and thus need not be posted.
+     */
+    @Nullable
+    public RemoteViews render(@Nullable String title, @NonNull Bitmap artwork,
+                              boolean playing, boolean canSkipToPrevious, boolean canSkipToNext,
+                              long progress, long duration) {
+        long countdownBase = NO_COUNTDOWN;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            final long remaining = duration - progress;
+            if (remaining > 0) {
+                countdownBase = SystemClock.elapsedRealtime() + remaining;
+            }
+        }
+
+        if (mRendered
+                && TextUtils.equals(title, mTitle)
+                && artwork == mArtwork
+                && playing == mPlaying
+                && canSkipToPrevious == mCanSkipToPrevious
+                && canSkipToNext == mCanSkipToNext
+                && !hasCountdownChanged(countdownBase)) {
+            mSkippedUpdateCount++;
+            return null;
+        }
+
+        mRendered = true;
+        mTitle = title;
+        mArtwork = artwork;
+        mPlaying = playing;
+        mCanSkipToPrevious = canSkipToPrevious;
+        mCanSkipToNext = canSkipToNext;
+        mCountdownBase = countdownBase;
+
+        RemoteViews nv = new RemoteViews(mPkgName, R.layout.notification_background_playback_controller);
+
+        nv.setImageViewBitmap(R.id.image_videoThumb, artwork);
+
+        nv.setTextViewText(R.id.text_mediaTitle, title);
+
+        setTintedIcon(nv, R.id.btn_toggle,
+                playing ? R.drawable.ic_pause_white_24dp : R.drawable.ic_play_white_24dp);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+            nv.setContentDescription(R.id.btn_toggle, playing ? mPause : mPlay);
+        }
+        nv.setOnClickPendingIntent(R.id.btn_toggle, playing ? mPauseIntent : mPlayIntent);
+
+        nv.setViewVisibility(R.id.btn_skipPrevious, canSkipToPrevious ? View.VISIBLE : View.GONE);
+        if (canSkipToPrevious) {
+            setTintedIcon(nv, R.id.btn_skipPrevious, R.drawable.ic_skip_previous_white_24dp);
+            nv.setOnClickPendingIntent(R.id.btn_skipPrevious, mSkipToPreviousIntent);
+        }
+
+        nv.setViewVisibility(R.id.btn_skipNext, canSkipToNext ? View.VISIBLE : View.GONE);
+        if (canSkipToNext) {
+            setTintedIcon(nv, R.id.btn_skipNext, R.drawable.ic_skip_next_white_24dp);
+            nv.setOnClickPendingIntent(R.id.btn_skipNext, mSkipToNextIntent);
+        }
+
+        setTintedIcon(nv, R.id.btn_close, R.drawable.ic_close_white_20dp);
+        nv.setOnClickPendingIntent(R.id.btn_close, mCloseIntent);
+
+        // Chronometer
+        if (countdownBase != NO_COUNTDOWN) {
+            nv.setLong(R.id.countdownChronometer, "setBase", countdownBase);
+            nv.setBoolean(R.id.countdownChronometer, "setStarted", playing);
+        }
+
+        return nv;
+    }
+
+    private boolean hasCountdownChanged(long countdownBase) {
+        if (countdownBase == NO_COUNTDOWN || mCountdownBase == NO_COUNTDOWN) {
+            return countdownBase != mCountdownBase;
+        }
+        return Math.abs(countdownBase - mCountdownBase) >= COUNTDOWN_BASE_TOLERANCE_MS;
+    }
+
+    private void setTintedIcon(RemoteViews nv, @IdRes int viewId, @DrawableRes int resId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            // Only a reference to the resource and the tint is marshalled
+            RemoteViewsCompat.setImageViewResourceWithTint(mContext, nv, viewId, resId, mIconTint);
+        } else {
+            Bitmap bitmap = mTintedIconBitmaps.get(resId);
+            if (bitmap == null) {
+                bitmap = RemoteViewsCompat.createTintedBitmap(
+                        mContext, resId, ColorStateList.valueOf(mIconTint));
+                mTintedIconBitmaps.put(resId, bitmap);
+            }
+            nv.setImageViewBitmap(viewId, bitmap);
+        }
+    }
+
+    /**
+     * Sets whether to measure how many bytes each posted notification takes when marshalled
+     * to system_server. This marshals every notification one more time, so it is meant for
+     * verification only.
+     */
+    public void setMarshalledBytesCountingEnabled(boolean enabled) {
+        mMarshalledBytesCountingEnabled = enabled;
+    }
+
+    /**
+     * Must be called each time a notification containing the last rendered view is posted.
+     */
+    public void onNotificationPosted(@NonNull Notification notification) {
+        mPostedUpdateCount++;
+        if (mMarshalledBytesCountingEnabled) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                notification.writeToParcel(parcel, 0);
+                mLastMarshalledBytes = parcel.dataSize();
+            } finally {
+                parcel.recycle();
+            }
+            mTotalMarshalledBytes += mLastMarshalledBytes;
+            Log.d(TAG, "Posted update #" + mPostedUpdateCount
+                    + ": " + mLastMarshalledBytes + " bytes marshalled"
+                    + ", " + mTotalMarshalledBytes + " bytes in total"
+                    + ", " + mSkippedUpdateCount + " updates skipped");
+        }
+    }
+
+    /**
+     * @return the size in bytes of the last posted notification when marshalled, or 0 if
+     *         {@link #setMarshalledBytesCountingEnabled counting} is disabled
+     */
+    public int getLastMarshalledBytes() {
+        return mLastMarshalledBytes;
+    }
+
+    public long getTotalMarshalledBytes() {
+        return mTotalMarshalledBytes;
+    }
+
+    public int getPostedUpdateCount() {
+        return mPostedUpdateCount;
+    }
+
+    /**
+     * @return the number of {@link #render} calls that did not produce a new view
+     *         because nothing visible had changed
+     */
+    public int getSkippedUpdateCount() {
+        return mSkippedUpdateCount;
+    }
+}
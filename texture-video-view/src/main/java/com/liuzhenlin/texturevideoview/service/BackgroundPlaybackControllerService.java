@@ -6,6 +6,7 @@
 package com.liuzhenlin.texturevideoview.service;
 
 import android.app.Activity;
+import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
@@ -13,19 +14,17 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Binder;
-import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
 import android.os.Messenger;
 import android.os.RemoteException;
-import android.os.SystemClock;
-import android.view.View;
 import android.widget.RemoteViews;
 
 import androidx.annotation.NonNull;
@@ -42,8 +41,8 @@ import com.bumptech.glide.request.transition.Transition;
 import com.bumptech.glide.util.Synthetic;
 import com.liuzhenlin.texturevideoview.InternalConsts;
 import com.liuzhenlin.texturevideoview.R;
-import com.liuzhenlin.texturevideoview.compat.RemoteViewsCompat;
 import com.liuzhenlin.texturevideoview.notification.NotificationChannelManager;
+import com.liuzhenlin.texturevideoview.notification.PlaybackNotificationRenderer;
 import com.liuzhenlin.texturevideoview.notification.style.DecoratedMediaCustomViewStyle;
 import com.liuzhenlin.texturevideoview.utils.BitmapUtils;
 import com.liuzhenlin.texturevideoview.utils.ThemeUtils;
@@ -54,9 +53,6 @@ import com.liuzhenlin.texturevideoview.utils.ThemeUtils;
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 public class BackgroundPlaybackControllerService extends Service {
 
-    private String mPlay;
-    private String mPause;
-    private String mPkgName;
     @Synthetic Bitmap mDefThumb;
     private int mThumbMaxWidth;
     private int mThumbMaxHeight;
@@ -75,6 +71,7 @@ public class BackgroundPlaybackControllerService extends Service {
 
     @Synthetic NotificationManager mNotificationManager;
     @Synthetic NotificationCompat.Builder mNotificationBuilder;
+    @Synthetic PlaybackNotificationRenderer mNotificationRenderer;
     private static final int ID_NOTIFICATION = 20191203;
 
     private static final String EXTRA_CONTROLLER_ACTION = "extra_controllerAction";
@@ -118,9 +115,10 @@ public class BackgroundPlaybackControllerService extends Service {
     private final Runnable mPostNotificationRunnable = new Runnable() {
         @Override
         public void run() {
-            if (mIsForeground) {
-                resetNotificationView();
-                mNotificationManager.notify(ID_NOTIFICATION, mNotificationBuilder.build());
+            if (mIsForeground && updateNotificationView()) {
+                Notification notification = mNotificationBuilder.build();
+                mNotificationManager.notify(ID_NOTIFICATION, notification);
+                mNotificationRenderer.onNotificationPosted(notification);
             }
         }
     };
@@ -129,14 +127,9 @@ public class BackgroundPlaybackControllerService extends Service {
     protected void attachBaseContext(Context base) {
         super.attachBaseContext(base);
         Resources res = getResources();
-        mPlay = res.getString(R.string.play);
-        mPause = res.getString(R.string.pause);
-        mPkgName = getPackageName();
-        //noinspection ConstantConditions
-        mDefThumb = BitmapUtils.drawableToBitmap(
-                ContextCompat.getDrawable(this, R.drawable.ic_default_thumb));
         mThumbMaxWidth = res.getDimensionPixelSize(R.dimen.notification_thumb_max_width);
         mThumbMaxHeight = res.getDimensionPixelSize(R.dimen.notification_thumb_max_height);
+        mDefThumb = createDefaultThumb();
         mNotificationActionIconTint = getNotificationActionIconTint();
     }
 
@@ -153,6 +146,38 @@ public class BackgroundPlaybackControllerService extends Service {
                 .setPriority(NotificationCompat.PRIORITY_DEFAULT)
                 .setCategory(NotificationCompat.CATEGORY_TRANSPORT)
                 .setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
+        mNotificationRenderer = new PlaybackNotificationRenderer(this,
+                mNotificationActionIconTint,
+                createNotificationActionIntent(CONTROLLER_ACTION_PLAY, REQUEST_PLAY),
+                createNotificationActionIntent(CONTROLLER_ACTION_PAUSE, REQUEST_PAUSE),
+                createNotificationActionIntent(
+                        CONTROLLER_ACTION_SKIP_TO_PREVIOUS, REQUEST_SKIP_TO_PREVIOUS),
+                createNotificationActionIntent(CONTROLLER_ACTION_SKIP_TO_NEXT, REQUEST_SKIP_TO_NEXT),
+                createNotificationActionIntent(CONTROLLER_ACTION_CLOSE, REQUEST_CLOSE));
+        mNotificationRenderer.setMarshalledBytesCountingEnabled(
+                (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
+    }
+
+    /**
+     * Scales the default thumb down to the size of the notification thumb once, rather than
+     * marshalling it at its full resolution with every notification update.
+     */
+    private Bitmap createDefaultThumb() {
+        //noinspection ConstantConditions
+        Bitmap thumb = BitmapUtils.drawableToBitmap(
+                ContextCompat.getDrawable(this, R.drawable.ic_default_thumb));
+        final int width = thumb.getWidth();
+        final int height = thumb.getHeight();
+        final float scale = Math.min(
+                (float) mThumbMaxWidth / width, (float) mThumbMaxHeight / height);
+        if (scale < 1f) {
+            // The input may be shared with the drawable, so do not recycle it
+            thumb = BitmapUtils.createScaledBitmap(thumb,
+                    Math.max(1, Math.round(width * scale)),
+                    Math.max(1, Math.round(height * scale)),
+                    false);
+        }
+        return thumb;
     }
 
     @Nullable
@@ -179,7 +204,8 @@ public class BackgroundPlaybackControllerService extends Service {
             mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this, 0, it, 0));
         }
         loadMediaThumb(mediaUri);
-        resetNotificationView();
+        mNotificationRenderer.invalidate();
+        updateNotificationView();
         startForeground(ID_NOTIFICATION, mNotificationBuilder.build());
         mIsForeground = true;
 
@@ -223,69 +249,25 @@ public class BackgroundPlaybackControllerService extends Service {
         }
     }
 
-    @Synthetic void resetNotificationView() {
-        RemoteViews nv = createNotificationView();
-        mNotificationBuilder.setCustomContentView(nv);
-        mNotificationBuilder.setCustomBigContentView(nv);
-    }
-
-    private RemoteViews createNotificationView() {
-        final boolean playing = mIsPlaying && !mIsBuffering;
-        final int tint = mNotificationActionIconTint;
-
-        RemoteViews nv = new RemoteViews(
-                mPkgName, R.layout.notification_background_playback_controller);
-
-        nv.setImageViewBitmap(R.id.image_videoThumb, mVideoThumb == null ? mDefThumb : mVideoThumb);
-
-        nv.setTextViewText(R.id.text_mediaTitle, mMediaTitle);
-
-        RemoteViewsCompat.setImageViewResourceWithTint(this, nv,
-                R.id.btn_toggle,
-                playing ? R.drawable.ic_pause_white_24dp : R.drawable.ic_play_white_24dp,
-                tint);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
-            nv.setContentDescription(R.id.btn_toggle, playing ? mPause : mPlay);
-        }
-        nv.setOnClickPendingIntent(R.id.btn_toggle,
-                createNotificationActionIntent(
-                        playing ? CONTROLLER_ACTION_PAUSE : CONTROLLER_ACTION_PLAY,
-                        playing ? REQUEST_PAUSE : REQUEST_PLAY));
-
-        nv.setViewVisibility(R.id.btn_skipPrevious, mCanSkipToPrevious ? View.VISIBLE : View.GONE);
-        if (mCanSkipToPrevious) {
-            RemoteViewsCompat.setImageViewResourceWithTint(this, nv,
-                    R.id.btn_skipPrevious, R.drawable.ic_skip_previous_white_24dp, tint);
-            nv.setOnClickPendingIntent(R.id.btn_skipPrevious,
-                    createNotificationActionIntent(
-                            CONTROLLER_ACTION_SKIP_TO_PREVIOUS, REQUEST_SKIP_TO_PREVIOUS));
-        }
-
-        nv.setViewVisibility(R.id.btn_skipNext, mCanSkipToNext ? View.VISIBLE : View.GONE);
-        if (mCanSkipToNext) {
-            RemoteViewsCompat.setImageViewResourceWithTint(this, nv,
-                    R.id.btn_skipNext, R.drawable.ic_skip_next_white_24dp, tint);
-            nv.setOnClickPendingIntent(R.id.btn_skipNext,
-                    createNotificationActionIntent(
-                            CONTROLLER_ACTION_SKIP_TO_NEXT, REQUEST_SKIP_TO_NEXT));
-        }
-
-        RemoteViewsCompat.setImageViewResourceWithTint(this, nv,
-                R.id.btn_close, R.drawable.ic_close_white_20dp, tint);
-        nv.setOnClickPendingIntent(R.id.btn_close,
-                createNotificationActionIntent(CONTROLLER_ACTION_CLOSE, REQUEST_CLOSE));
-
-        // Chronometer
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            final long remaining = mMediaDuration - mMediaProgress;
-            if (remaining > 0) {
-                nv.setLong(R.id.countdownChronometer,
-                        "setBase", SystemClock.elapsedRealtime() + remaining);
-                nv.setBoolean(R.id.countdownChronometer, "setStarted", playing);
-            }
+    /**
+     * @return true if the notification view has changed and the notification should be posted
+     */
+    @Synthetic boolean updateNotificationView() {
+        RemoteViews nv = mNotificationRenderer.render(
+                mMediaTitle,
+                mVideoThumb == null ? mDefThumb : mVideoThumb,
+                mIsPlaying && !mIsBuffering,
+                mCanSkipToPrevious,
+                mCanSkipToNext,
+                mMediaProgress,
+                mMediaDuration);
+        if (nv == null) {
+            return false;
         }
-
-        return nv;
+        // Both the collapsed and the expanded notification fall back to the content view,
+        // so do not set it as the big content view as well, or it would be marshalled twice.
+        mNotificationBuilder.setCustomContentView(nv);
+        return true;
     }
 
     /**
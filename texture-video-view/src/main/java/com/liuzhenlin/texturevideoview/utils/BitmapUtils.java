@@ -20,7 +20,6 @@ import android.graphics.drawable.Drawable;
 
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
-import androidx.palette.graphics.Palette;
 
 /**
  * @author 刘振林
@@ -105,58 +104,19 @@ public class BitmapUtils {
         return bitmap;
     }
 
+    /**
+     * @see DominantColorExtractor#getDominantColorOrThrow(Bitmap)
+     */
     @ColorInt
     public static int getDominantColorOrThrow(@NonNull Bitmap bitmap) {
-        Palette.Swatch swatch = new Palette.Builder(bitmap)
-                .maximumColorCount(24)
-                .clearFilters()
-                .addFilter(DEFAULT_FILTER)
-                .generate()
-                .getDominantSwatch();
-        if (swatch != null) {
-            return swatch.getRgb();
-        }
-        throw new IllegalArgumentException("No dominant color found in the given bitmap.");
+        return DominantColorExtractor.getDominantColorOrThrow(bitmap);
     }
 
+    /**
+     * @see DominantColorExtractor#getDominantColor(Bitmap, int)
+     */
     @ColorInt
     public static int getDominantColor(@NonNull Bitmap bitmap, @ColorInt int defaultColor) {
-        return new Palette.Builder(bitmap)
-                .maximumColorCount(24)
-                .clearFilters()
-                .addFilter(DEFAULT_FILTER)
-                .generate()
-                .getDominantColor(defaultColor);
+        return DominantColorExtractor.getDominantColor(bitmap, defaultColor);
     }
-
-    private static final Palette.Filter DEFAULT_FILTER = new Palette.Filter() {
-//        private static final float BLACK_MAX_LIGHTNESS = 0.05f;
-//        private static final float WHITE_MIN_LIGHTNESS = 0.95f;
-
-        @Override
-        public boolean isAllowed(int rgb, @NonNull float[] hsl) {
-            return /*!isWhite(hsl) && !isBlack(hsl) &&*/ !isNearRedILine(hsl);
-        }
-
-//        /**
-//         * @return true if the color represents a color which is close to black.
-//         */
-//        private boolean isBlack(float[] hslColor) {
-//            return hslColor[2] <= BLACK_MAX_LIGHTNESS;
-//        }
-//
-//        /**
-//         * @return true if the color represents a color which is close to white.
-//         */
-//        private boolean isWhite(float[] hslColor) {
-//            return hslColor[2] >= WHITE_MIN_LIGHTNESS;
-//        }
-
-        /**
-         * @return true if the color lies close to the red side of the I line.
-         */
-        private boolean isNearRedILine(float[] hslColor) {
-            return hslColor[0] >= 10f && hslColor[0] <= 37f && hslColor[1] <= 0.82f;
-        }
-    };
 }
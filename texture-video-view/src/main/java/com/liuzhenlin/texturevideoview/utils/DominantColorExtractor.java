@@ -0,0 +1,254 @@
+/*
+ * Created on 2026-10-19 3:48:06 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.SparseIntArray;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.core.graphics.ColorUtils;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A lightweight replacement for running {@link androidx.palette.graphics.Palette} just to find
+ * the dominant color of an image.
+ * <p>
+ * Rather than scaling the whole image down and clustering its colors, only the pixels on a
+ * small fixed {@link #GRID_SIZE} x {@link #GRID_SIZE} grid are sampled, each of which is put into
+ * a histogram of colors quantized to 4 bits per channel. The dominant color is the average color
+ * of the most populated bucket. Pixels that are mostly transparent or lie close to the red side
+ * of the I line (i.e., skin tones) are not counted. All the buffers are preallocated and shared,
+ * so no extraction allocates any memory.
+ * <p>
+ * Results are memoized by drawable resource id, and by bitmap together with its
+ * {@link Bitmap#getGenerationId() generation id}, so that a bitmap is sampled again only after
+ * its pixels have been changed. Note that the memoization by resource id assumes that all
+ * alternatives of a drawable resource (e.g., its RTL or density variants) share the same colors.
+ *
+ * @author 刘振林
+ */
+public final class DominantColorExtractor {
+    private DominantColorExtractor() {
+    }
+
+    /** The number of pixels sampled along either side of an image */
+    public static final int GRID_SIZE = 24;
+
+    private static final int QUANTIZE_WORD_WIDTH = 4;
+    private static final int QUANTIZE_WORD_MASK = (1 << QUANTIZE_WORD_WIDTH) - 1;
+    private static final int HISTOGRAM_SIZE = 1 << (QUANTIZE_WORD_WIDTH * 3);
+
+    private static final int MIN_ALPHA = 0x80;
+
+    /** Indicates that no dominant color was found. Valid results are always opaque. */
+    private static final int NO_COLOR = Color.TRANSPARENT;
+
+    private static final Object sLock = new Object();
+
+    // All of the following are guarded by sLock
+    private static final int[] sCounts = new int[HISTOGRAM_SIZE];
+    private static final int[] sRedSums = new int[HISTOGRAM_SIZE];
+    private static final int[] sGreenSums = new int[HISTOGRAM_SIZE];
+    private static final int[] sBlueSums = new int[HISTOGRAM_SIZE];
+    private static final float[] sHsl = new float[3];
+    private static final Rect sTmpBounds = new Rect();
+    private static Bitmap sRasterBitmap;
+    private static Canvas sRasterCanvas;
+
+    private static final SparseIntArray sResourceColors = new SparseIntArray();
+    // 值的高32位为位图的generation id，低32位为对应的主色
+    private static final Map<Bitmap, Long> sBitmapColors = new WeakHashMap<>();
+
+    @ColorInt
+    public static int getDominantColor(@NonNull Bitmap bitmap, @ColorInt int defaultColor) {
+        final int color = extract(bitmap);
+        return color == NO_COLOR ? defaultColor : color;
+    }
+
+    /**
+     * @throws IllegalArgumentException if no dominant color is found in the given bitmap
+     */
+    @ColorInt
+    public static int getDominantColorOrThrow(@NonNull Bitmap bitmap) {
+        final int color = extract(bitmap);
+        if (color == NO_COLOR) {
+            throw new IllegalArgumentException("No dominant color found in the given bitmap.");
+        }
+        return color;
+    }
+
+    @ColorInt
+    public static int getDominantColor(
+            @NonNull Context context, @DrawableRes int resId, @ColorInt int defaultColor) {
+        final int color = extract(context, resId);
+        return color == NO_COLOR ? defaultColor : color;
+    }
+
+    /**
+     * @throws IllegalArgumentException if no dominant color is found in the given drawable
+     */
+    @ColorInt
+    public static int getDominantColorOrThrow(@NonNull Context context, @DrawableRes int resId) {
+        final int color = extract(context, resId);
+        if (color == NO_COLOR) {
+            throw new IllegalArgumentException(
+                    "No dominant color found in drawable resource 0x" + Integer.toHexString(resId));
+        }
+        return color;
+    }
+
+    /**
+     * Drops all memoized results and the buffer used to rasterize non-bitmap drawables.
+     */
+    public static void clearCache() {
+        synchronized (sLock) {
+            sResourceColors.clear();
+            sBitmapColors.clear();
+            if (sRasterBitmap != null) {
+                sRasterBitmap.recycle();
+                sRasterBitmap = null;
+                sRasterCanvas = null;
+            }
+        }
+    }
+
+    private static int extract(Bitmap bitmap) {
+        synchronized (sLock) {
+            final int generationId = bitmap.getGenerationId();
+            final Long cached = sBitmapColors.get(bitmap);
+            if (cached != null && (int) (cached >>> 32) == generationId) {
+                return (int) (long) cached;
+            }
+
+            final int color = sample(bitmap);
+            sBitmapColors.put(bitmap, ((long) generationId << 32) | (color & 0xFFFFFFFFL));
+            return color;
+        }
+    }
+
+    private static int extract(Context context, int resId) {
+        synchronized (sLock) {
+            final int index = sResourceColors.indexOfKey(resId);
+            if (index >= 0) {
+                return sResourceColors.valueAt(index);
+            }
+
+            final int color;
+            Drawable drawable = ContextCompat.getDrawable(context, resId);
+            if (drawable == null) {
+                color = NO_COLOR;
+            } else if (drawable instanceof BitmapDrawable
+                    && ((BitmapDrawable) drawable).getBitmap() != null) {
+                // 直接采样其位图，无需光栅化
+                color = sample(((BitmapDrawable) drawable).getBitmap());
+            } else {
+                color = sample(rasterize(drawable));
+            }
+            sResourceColors.put(resId, color);
+            return color;
+        }
+    }
+
+    /**
+     * Draws the given drawable into the shared {@link #GRID_SIZE} x {@link #GRID_SIZE} bitmap,
+     * whose every pixel is then a sample.
+     */
+    private static Bitmap rasterize(Drawable drawable) {
+        if (sRasterBitmap == null) {
+            sRasterBitmap = Bitmap.createBitmap(GRID_SIZE, GRID_SIZE, Bitmap.Config.ARGB_8888);
+            sRasterCanvas = new Canvas(sRasterBitmap);
+        }
+        sRasterBitmap.eraseColor(Color.TRANSPARENT);
+
+        sTmpBounds.set(drawable.getBounds());
+        drawable.setBounds(0, 0, GRID_SIZE, GRID_SIZE);
+        drawable.draw(sRasterCanvas);
+        drawable.setBounds(sTmpBounds);
+        return sRasterBitmap;
+    }
+
+    private static int sample(Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        if (width <= 0 || height <= 0) {
+            return NO_COLOR;
+        }
+
+        final int xCount = Math.min(width, GRID_SIZE);
+        final int yCount = Math.min(height, GRID_SIZE);
+        int maxCount = 0;
+        int maxIndex = -1;
+        for (int j = 0; j < yCount; j++) {
+            // Sample the center of each grid cell
+            final int y = (int) ((j + 0.5f) * height / yCount);
+            for (int i = 0; i < xCount; i++) {
+                final int x = (int) ((i + 0.5f) * width / xCount);
+                final int pixel = bitmap.getPixel(x, y);
+                if (Color.alpha(pixel) < MIN_ALPHA) {
+                    continue;
+                }
+
+                final int r = Color.red(pixel);
+                final int g = Color.green(pixel);
+                final int b = Color.blue(pixel);
+                ColorUtils.RGBToHSL(r, g, b, sHsl);
+                if (isNearRedILine(sHsl)) {
+                    continue;
+                }
+
+                final int index = quantize(r) << (QUANTIZE_WORD_WIDTH * 2)
+                        | quantize(g) << QUANTIZE_WORD_WIDTH
+                        | quantize(b);
+                final int count = ++sCounts[index];
+                sRedSums[index] += r;
+                sGreenSums[index] += g;
+                sBlueSums[index] += b;
+                if (count > maxCount) {
+                    maxCount = count;
+                    maxIndex = index;
+                }
+            }
+        }
+
+        final int color = maxIndex < 0
+                ? NO_COLOR
+                : Color.rgb(
+                        sRedSums[maxIndex] / maxCount,
+                        sGreenSums[maxIndex] / maxCount,
+                        sBlueSums[maxIndex] / maxCount);
+
+        // Reset the histogram for the next run
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            sCounts[i] = 0;
+            sRedSums[i] = 0;
+            sGreenSums[i] = 0;
+            sBlueSums[i] = 0;
+        }
+        return color;
+    }
+
+    private static int quantize(int channel) {
+        return (channel >> (8 - QUANTIZE_WORD_WIDTH)) & QUANTIZE_WORD_MASK;
+    }
+
+    /**
+     * @return true if the color lies close to the red side of the I line.
+     */
+    private static boolean isNearRedILine(float[] hslColor) {
+        return hslColor[0] >= 10f && hslColor[0] <= 37f && hslColor[1] <= 0.82f;
+    }
+}
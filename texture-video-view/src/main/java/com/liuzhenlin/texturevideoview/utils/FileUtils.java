@@ -88,7 +88,6 @@ public class FileUtils {
     public static void recordMediaFileToDatabaseAndScan(@NonNull Context context, @NonNull Uri mediaUri,
                                                         @NonNull File file, @Nullable String mimeType) {
         context = context.getApplicationContext();
-        final String fileName = file.getName();
         final String filePath = file.getAbsolutePath();
         if (mimeType == null) {
             mimeType = getMimeTypeFromPath(filePath, null);
@@ -97,16 +96,52 @@ public class FileUtils {
             }
         }
 
+        context.getContentResolver().insert(mediaUri, buildMediaFileValues(file, mimeType));
+
+        MediaScannerConnection.scanFile(context, new String[]{filePath}, new String[]{mimeType}, null);
+    }
+
+    /**
+     * Batch version of {@link #recordMediaFileToDatabaseAndScan(Context, Uri, File, String)},
+     * which inserts all the files in one transaction and scans them with one connection.
+     *
+     * @param mimeTypes the mime types of the files, each of which is inferred from the file
+     *                  extension if null
+     */
+    public static void recordMediaFilesToDatabaseAndScan(@NonNull Context context, @NonNull Uri mediaUri,
+                                                         @NonNull File[] files, @NonNull String[] mimeTypes) {
+        context = context.getApplicationContext();
+        final int count = files.length;
+        final String[] filePaths = new String[count];
+        final String[] fileMimeTypes = new String[count];
+        final ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            filePaths[i] = files[i].getAbsolutePath();
+            String mimeType = mimeTypes[i];
+            if (mimeType == null) {
+                mimeType = getMimeTypeFromPath(filePaths[i], null);
+                if (mimeType == null) {
+                    throw new NullPointerException("Failed to infer mimeType from the file extension");
+                }
+            }
+            fileMimeTypes[i] = mimeType;
+            values[i] = buildMediaFileValues(files[i], mimeType);
+        }
+        context.getContentResolver().bulkInsert(mediaUri, values);
+
+        MediaScannerConnection.scanFile(context, filePaths, fileMimeTypes, null);
+    }
+
+    private static ContentValues buildMediaFileValues(File file, String mimeType) {
+        final String fileName = file.getName();
         ContentValues values = new ContentValues(6);
         values.put(MediaStore.MediaColumns.TITLE, getFileTitleFromFileName(fileName));
         values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
-        values.put(MediaStore.MediaColumns.DATA, filePath);
+        values.put(MediaStore.MediaColumns.DATA, file.getAbsolutePath());
         values.put(MediaStore.MediaColumns.SIZE, file.length());
         values.put(MediaStore.MediaColumns.MIME_TYPE, mimeType);
         values.put(MediaStore.MediaColumns.DATE_ADDED, (int) (System.currentTimeMillis() / 1000f + 0.5f));
-        context.getContentResolver().insert(mediaUri, values);
-
-        MediaScannerConnection.scanFile(context, new String[]{filePath}, new String[]{mimeType}, null);
+        return values;
     }
 
     @NonNull
@@ -0,0 +1,539 @@
+/*
+ * Created on 2026-10-20 4:21:53 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.googlecode.mp4parser.FileDataSourceImpl;
+import com.googlecode.mp4parser.authoring.Movie;
+import com.googlecode.mp4parser.authoring.Track;
+import com.googlecode.mp4parser.authoring.container.mp4.MovieCreator;
+import com.liuzhenlin.texturevideoview.InternalConsts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sync samples (key frames) of the video track of an MP4 file, which are the only points
+ * a clip of it can start at without being re-encoded, along with the time-to-sample tables of all
+ * its tracks, so that a clip interval can be resolved into the samples to cut each track at without
+ * parsing the file again.
+ * <p>
+ * The index is built once per file with {@link #obtain(Context, File)}, and cached on the disk
+ * for as long as the file keeps the same size and last modification time.
+ *
+ * @author 刘振林
+ */
+public final class KeyframeIndex {
+    private static final String TAG = "KeyframeIndex";
+
+    private static final String CACHE_DIR_NAME = "keyframe_indexes";
+    private static final String CACHE_FILE_SUFFIX = ".idx";
+    private static final int CACHE_FILE_MAGIC = 0x4B464958; // "KFIX"
+    private static final int CACHE_FILE_VERSION = 2;
+
+    /** The most index files kept in the cache; the least recently used ones are removed first */
+    private static final int MAX_CACHE_FILE_COUNT = 64;
+    /** How long an index file is kept in the cache since it was last used */
+    private static final long MAX_CACHE_FILE_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+
+    /** The ids of the tracks, in the order the tracks are in the file */
+    private final int[] trackIds;
+    private final long[] timescales;
+    // 每条轨道的样本时长以游程编码保存（同 stts），避免逐样本存储
+    private final int[][] runSampleCounts;
+    private final long[][] runSampleDurations;
+    /** The position of the (first) video track among the tracks, or -1 if there is none */
+    private final int videoTrack;
+    /**
+     * The indexes of the sync samples of the video track, in ascending order, or null if all
+     * its samples are, or if there is no video track
+     */
+    @Nullable
+    private final long[] keyframeSamples;
+    /** The times in microseconds of the sync samples, rounded down, for searching them by time */
+    @Nullable
+    private final long[] keyframeTimesUs;
+    private final long durationUs;
+
+    /**
+     * The samples to cut each track of a file at, for a clip of it.
+     */
+    public static final class Cut {
+        /** The ids of the tracks, in the order the tracks are in the file */
+        public final int[] trackIds;
+        /** The index of the first sample of each track to keep */
+        public final long[] startSamples;
+        /** The index of the sample after the last one of each track to keep */
+        public final long[] endSamples;
+        /** The start time of the clip, in milliseconds */
+        public final long startMs;
+        /** The end time of the clip, in milliseconds */
+        public final long endMs;
+
+        /*package*/ Cut(int[] trackIds, long[] startSamples, long[] endSamples,
+                        long startMs, long endMs) {
+            this.trackIds = trackIds;
+            this.startSamples = startSamples;
+            this.endSamples = endSamples;
+            this.startMs = startMs;
+            this.endMs = endMs;
+        }
+    }
+
+    @VisibleForTesting
+    /*package*/ KeyframeIndex(int[] trackIds, long[] timescales,
+                              int[][] runSampleCounts, long[][] runSampleDurations,
+                              int videoTrack, @Nullable long[] keyframeSamples) {
+        this.trackIds = trackIds;
+        this.timescales = timescales;
+        this.runSampleCounts = runSampleCounts;
+        this.runSampleDurations = runSampleDurations;
+        this.videoTrack = videoTrack;
+        this.keyframeSamples = keyframeSamples;
+
+        if (keyframeSamples == null) {
+            keyframeTimesUs = null;
+        } else {
+            keyframeTimesUs = new long[keyframeSamples.length];
+            for (int i = 0; i < keyframeSamples.length; i++) {
+                keyframeTimesUs[i] = sampleTicks(videoTrack, keyframeSamples[i])
+                        * 1000000L / timescales[videoTrack];
+            }
+        }
+
+        long durationUs = 0;
+        for (int i = 0; i < trackIds.length; i++) {
+            durationUs = Math.max(durationUs,
+                    sampleTicks(i, sampleCount(i)) * 1000000L / timescales[i]);
+        }
+        this.durationUs = durationUs;
+    }
+
+    /**
+     * Loads the index of the given file from the disk cache, or builds it from the file and
+     * caches it if there is none for the current version of the file.
+     *
+     * @throws IOException if the file cannot be parsed as an MP4 file
+     */
+    @WorkerThread
+    @NonNull
+    public static KeyframeIndex obtain(@NonNull Context context, @NonNull File videoFile)
+            throws IOException {
+        final File cacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        final File cacheFile = new File(cacheDir,
+                cacheFileName(videoFile.getAbsolutePath()) + CACHE_FILE_SUFFIX);
+        KeyframeIndex index = load(cacheFile, videoFile);
+        if (index == null) {
+            index = build(videoFile);
+            index.save(cacheFile, videoFile);
+            trimCache(cacheDir);
+        } else {
+            // 记录最近一次使用的时间，供清理缓存时参考
+            //noinspection ResultOfMethodCallIgnored
+            cacheFile.setLastModified(System.currentTimeMillis());
+        }
+        return index;
+    }
+
+    /**
+     * Parses the sample tables of the given MP4 file.
+     *
+     * @throws IOException if the file cannot be parsed as an MP4 file
+     */
+    @WorkerThread
+    @NonNull
+    public static KeyframeIndex build(@NonNull File videoFile) throws IOException {
+        final long startTimeMs = System.currentTimeMillis();
+        try (FileDataSourceImpl dataSource = new FileDataSourceImpl(videoFile)) {
+            final Movie movie = MovieCreator.build(dataSource);
+            final List<Track> tracks = movie.getTracks();
+            final int trackCount = tracks.size();
+            final int[] trackIds = new int[trackCount];
+            final long[] timescales = new long[trackCount];
+            final int[][] runSampleCounts = new int[trackCount][];
+            final long[][] runSampleDurations = new long[trackCount][];
+            int videoTrack = -1;
+            long[] keyframeSamples = null;
+            for (int i = 0; i < trackCount; i++) {
+                final Track track = tracks.get(i);
+                trackIds[i] = (int) track.getTrackMetaData().getTrackId();
+                timescales[i] = track.getTrackMetaData().getTimescale();
+
+                final long[] sampleDurations = track.getSampleDurations();
+                int runCount = 0;
+                for (int j = 0; j < sampleDurations.length; j++) {
+                    if (j == 0 || sampleDurations[j] != sampleDurations[j - 1]) runCount++;
+                }
+                final int[] counts = new int[runCount];
+                final long[] durations = new long[runCount];
+                for (int j = 0, run = -1; j < sampleDurations.length; j++) {
+                    if (j == 0 || sampleDurations[j] != sampleDurations[j - 1]) {
+                        run++;
+                        durations[run] = sampleDurations[j];
+                    }
+                    counts[run]++;
+                }
+                runSampleCounts[i] = counts;
+                runSampleDurations[i] = durations;
+
+                // Only the key frames of the (first) video track are cared about, as the clip
+                // is cut at them, and other tracks are cut at the samples at their times.
+                if (videoTrack == -1 && "vide".equals(track.getHandler())) {
+                    videoTrack = i;
+                    final long[] syncSamples = track.getSyncSamples();
+                    if (syncSamples != null && syncSamples.length > 0) {
+                        int count = 0;
+                        keyframeSamples = new long[syncSamples.length];
+                        for (long syncSample : syncSamples) {
+                            // Sample numbers start with 1
+                            if (syncSample >= 1 && syncSample <= sampleDurations.length) {
+                                keyframeSamples[count++] = syncSample - 1;
+                            }
+                        }
+                        keyframeSamples = count > 0 ? Arrays.copyOf(keyframeSamples, count) : null;
+                    }
+                }
+            }
+            if (InternalConsts.DEBUG) {
+                Log.d(TAG, "Indexed " + (keyframeSamples == null ? 0 : keyframeSamples.length)
+                        + " key frames of " + videoFile + " in "
+                        + (System.currentTimeMillis() - startTimeMs) + " ms");
+            }
+            return new KeyframeIndex(trackIds, timescales, runSampleCounts, runSampleDurations,
+                    videoTrack, keyframeSamples);
+        } catch (RuntimeException e) {
+            // Thrown by isoparser for malformed files
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return the duration of the longest track, in microseconds
+     */
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    /**
+     * @return the times in microseconds of the key frames, rounded down, in ascending order,
+     *         or null if every frame is a key frame, in which case a clip can start anywhere
+     */
+    @Nullable
+    public long[] getKeyframeTimesUs() {
+        return keyframeTimesUs == null ? null : keyframeTimesUs.clone();
+    }
+
+    /**
+     * Resolves the interval to clip into the samples to cut each track at. The start of the
+     * interval is moved back to the key frame at or before it, and its end forward to the key
+     * frame at or after it, or to the end of the file if there is none. The video track is cut
+     * right at the key frame samples, and any other track at its first samples starting at or
+     * after the times of them.
+     * <p>
+     * Times within a millisecond of a key frame are taken as that key frame, so that key frame
+     * times rounded to milliseconds can be passed in as they are: a start on a key frame stays
+     * there, and an end on a key frame stays there too, excluding that key frame. Thus resolving
+     * the {@link Cut#startMs start} and {@link Cut#endMs end} of a resolved cut again gives the
+     * same cut.
+     */
+    @NonNull
+    public Cut resolve(long startMs, long endMs) {
+        if (startMs >= endMs) {
+            throw new IllegalArgumentException("startMs >= endMs");
+        }
+
+        final int trackCount = trackIds.length;
+        final long[] startSamples = new long[trackCount];
+        final long[] endSamples = new long[trackCount];
+        if (trackCount == 0) {
+            return new Cut(trackIds, startSamples, endSamples, startMs, endMs);
+        }
+
+        // 以视频轨道（没有时以第一条轨道）为准确定切点，其余轨道按切点的精确时间换算
+        final int refTrack = videoTrack >= 0 ? videoTrack : 0;
+        final long refTimescale = timescales[refTrack];
+        final long refSampleCount = sampleCount(refTrack);
+        final long startUs = startMs * 1000L;
+        final long endUs = endMs * 1000L;
+        long refStartSample;
+        long refEndSample;
+        final long[] keyframes = keyframeSamples;
+        if (keyframes != null) {
+            int i = Arrays.binarySearch(keyframeTimesUs, startUs + 999);
+            if (i < 0) i = -i - 2; // The one before the insertion point
+            i = Math.max(i, 0);
+            refStartSample = keyframes[i];
+
+            int j = Arrays.binarySearch(keyframeTimesUs, endUs - 999);
+            if (j < 0) j = -j - 1; // The insertion point
+            j = Math.max(j, i + 1);
+            refEndSample = j < keyframes.length ? keyframes[j] : refSampleCount;
+        } else {
+            refStartSample = lastSampleAtOrBefore(refTrack,
+                    (startUs + 999) * refTimescale / 1000000L);
+            refEndSample = firstSampleAtOrAfter(refTrack,
+                    ceilDiv((endUs - 999) * refTimescale, 1000000L));
+            refEndSample = Math.max(refEndSample, refStartSample + 1);
+        }
+        refEndSample = Math.min(refEndSample, refSampleCount);
+        final boolean toEnd = refEndSample == refSampleCount;
+
+        final long startTicks = sampleTicks(refTrack, refStartSample);
+        final long endTicks = sampleTicks(refTrack, refEndSample);
+        for (int i = 0; i < trackCount; i++) {
+            if (i == refTrack) {
+                startSamples[i] = refStartSample;
+                endSamples[i] = refEndSample;
+            } else {
+                final long timescale = timescales[i];
+                startSamples[i] = firstSampleAtOrAfter(i,
+                        ceilDiv(startTicks * timescale, refTimescale));
+                endSamples[i] = toEnd ? sampleCount(i) : firstSampleAtOrAfter(i,
+                        ceilDiv(endTicks * timescale, refTimescale));
+            }
+        }
+        return new Cut(trackIds, startSamples, endSamples,
+                (startTicks * 1000L + refTimescale / 2) / refTimescale,
+                toEnd ? (durationUs + 500) / 1000L
+                        : (endTicks * 1000L + refTimescale / 2) / refTimescale);
+    }
+
+    /** @return the quotient of the non-negative {@code x} divided by {@code y}, rounded up */
+    private static long ceilDiv(long x, long y) {
+        return (x + y - 1) / y;
+    }
+
+    private long sampleCount(int track) {
+        long count = 0;
+        for (int runCount : runSampleCounts[track]) {
+            count += runCount;
+        }
+        return count;
+    }
+
+    /** @return the start time in track ticks of the sample of the given index of the track */
+    private long sampleTicks(int track, long sample) {
+        final int[] counts = runSampleCounts[track];
+        final long[] durations = runSampleDurations[track];
+        long time = 0;
+        for (int run = 0; run < counts.length && sample > 0; run++) {
+            final long n = Math.min(counts[run], sample);
+            time += n * durations[run];
+            sample -= n;
+        }
+        return time;
+    }
+
+    /**
+     * @return the index of the last sample of the track that starts at or before the given time
+     *         in track ticks, or 0 if there is none
+     */
+    private long lastSampleAtOrBefore(int track, long ticks) {
+        final int[] counts = runSampleCounts[track];
+        final long[] durations = runSampleDurations[track];
+        long runStartTime = 0;
+        long runStartSample = 0;
+        for (int run = 0; run < counts.length; run++) {
+            final long runEndTime = runStartTime + counts[run] * durations[run];
+            if (ticks < runEndTime || run == counts.length - 1) {
+                final long n = durations[run] == 0 ? 0 : (ticks - runStartTime) / durations[run];
+                return Math.max(0, runStartSample + Math.min(n, counts[run] - 1));
+            }
+            runStartTime = runEndTime;
+            runStartSample += counts[run];
+        }
+        return 0;
+    }
+
+    /**
+     * @return the index of the first sample of the track that starts at or after the given time
+     *         in track ticks, or the sample count of the track if there is none
+     */
+    private long firstSampleAtOrAfter(int track, long ticks) {
+        final int[] counts = runSampleCounts[track];
+        final long[] durations = runSampleDurations[track];
+        long runStartTime = 0;
+        long runStartSample = 0;
+        for (int run = 0; run < counts.length; run++) {
+            if (ticks <= runStartTime) {
+                return runStartSample;
+            }
+            if (durations[run] > 0) {
+                final long n = ceilDiv(ticks - runStartTime, durations[run]);
+                if (n < counts[run]) {
+                    return runStartSample + n;
+                }
+            }
+            runStartTime += counts[run] * durations[run];
+            runStartSample += counts[run];
+        }
+        return runStartSample;
+    }
+
+    /** Names the cache file of a video after a digest of its path, rather than its hash code. */
+    private static String cacheFileName(String path) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            //noinspection CharsetObjectCanBeUsed
+            byte[] digest = md.digest(path.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Every platform is required to support SHA-1 and UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Removes the index files not used for {@link #MAX_CACHE_FILE_AGE_MS}, and then the least
+     * recently used ones beyond {@link #MAX_CACHE_FILE_COUNT}, including those of the videos
+     * deleted or changed since they were indexed.
+     */
+    private static void trimCache(File cacheDir) {
+        final File[] files = cacheDir.listFiles();
+        if (files == null) return;
+
+        final long now = System.currentTimeMillis();
+        final List<File> cacheFiles = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (now - file.lastModified() > MAX_CACHE_FILE_AGE_MS
+                    || !file.getName().endsWith(CACHE_FILE_SUFFIX)) {
+                // Also removes the temporary files left by interrupted saves
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            } else {
+                cacheFiles.add(file);
+            }
+        }
+        if (cacheFiles.size() > MAX_CACHE_FILE_COUNT) {
+            final long[] lastModified = new long[cacheFiles.size()];
+            for (int i = 0; i < lastModified.length; i++) {
+                lastModified[i] = cacheFiles.get(i).lastModified();
+            }
+            Arrays.sort(lastModified);
+            // Keeps the most recently used ones
+            final long threshold = lastModified[lastModified.length - MAX_CACHE_FILE_COUNT];
+            for (File file : cacheFiles) {
+                if (file.lastModified() < threshold) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static KeyframeIndex load(File cacheFile, File videoFile) {
+        if (!cacheFile.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != CACHE_FILE_MAGIC
+                    || in.readInt() != CACHE_FILE_VERSION
+                    || !in.readUTF().equals(videoFile.getAbsolutePath())
+                    || in.readLong() != videoFile.length()
+                    || in.readLong() != videoFile.lastModified()) {
+                return null;
+            }
+            final int trackCount = in.readInt();
+            final int[] trackIds = new int[trackCount];
+            final long[] timescales = new long[trackCount];
+            final int[][] runSampleCounts = new int[trackCount][];
+            final long[][] runSampleDurations = new long[trackCount][];
+            for (int i = 0; i < trackCount; i++) {
+                trackIds[i] = in.readInt();
+                timescales[i] = in.readLong();
+                final int runCount = in.readInt();
+                runSampleCounts[i] = new int[runCount];
+                runSampleDurations[i] = new long[runCount];
+                for (int j = 0; j < runCount; j++) {
+                    runSampleCounts[i][j] = in.readInt();
+                    runSampleDurations[i][j] = in.readLong();
+                }
+            }
+            final int videoTrack = in.readInt();
+            final int keyframeCount = in.readInt();
+            long[] keyframeSamples = null;
+            if (keyframeCount >= 0) {
+                keyframeSamples = new long[keyframeCount];
+                for (int i = 0; i < keyframeCount; i++) {
+                    keyframeSamples[i] = in.readLong();
+                }
+            }
+            return new KeyframeIndex(trackIds, timescales, runSampleCounts, runSampleDurations,
+                    videoTrack, keyframeSamples);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to load the cached key frame index of " + videoFile, e);
+            return null;
+        }
+    }
+
+    private void save(File cacheFile, File videoFile) {
+        File dir = cacheFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) return;
+
+        // 先写入临时文件再重命名，避免留下写了一半的缓存
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(CACHE_FILE_MAGIC);
+            out.writeInt(CACHE_FILE_VERSION);
+            out.writeUTF(videoFile.getAbsolutePath());
+            out.writeLong(videoFile.length());
+            out.writeLong(videoFile.lastModified());
+            out.writeInt(trackIds.length);
+            for (int i = 0; i < trackIds.length; i++) {
+                out.writeInt(trackIds[i]);
+                out.writeLong(timescales[i]);
+                out.writeInt(runSampleCounts[i].length);
+                for (int j = 0; j < runSampleCounts[i].length; j++) {
+                    out.writeInt(runSampleCounts[i][j]);
+                    out.writeLong(runSampleDurations[i][j]);
+                }
+            }
+            out.writeInt(videoTrack);
+            if (keyframeSamples == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(keyframeSamples.length);
+                for (long sample : keyframeSamples) {
+                    out.writeLong(sample);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to cache the key frame index of " + videoFile, e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(cacheFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        }
+    }
+}
@@ -0,0 +1,578 @@
+/*
+ * Created on 2026-10-20 3:12:06 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Reads the duration, video size and rotation of an MP4 (ISO BMFF, including MOV and 3GP) or
+ * Matroska/WebM file from its headers with a few positional reads, without the native and much
+ * heavier {@link android.media.MediaMetadataRetriever}, which should still be used as a fallback
+ * for the files this cannot probe.
+ * <p>
+ * For MP4, only the box headers of the file and of the {@code moov} box are walked, and only
+ * the small {@code mvhd}, {@code tkhd}, {@code mdhd}, {@code hdlr} and {@code stsd} boxes are read,
+ * wherever the {@code moov} is. For Matroska, only the EBML element headers of the Segment are
+ * walked until the Info and Tracks elements are read, with the SeekHead followed if they come
+ * after the first Cluster. No Android API is used, so that this can be tested on a plain JVM.
+ *
+ * @author 刘振林
+ */
+public final class VideoHeaderProbe {
+    private VideoHeaderProbe() {
+    }
+
+    /** The metadata read from the headers of a video file. */
+    public static final class Result {
+        public final long durationMs;
+        /** The width of the video frames as they are coded, before any rotation is applied */
+        public final int width;
+        /** The height of the video frames as they are coded, before any rotation is applied */
+        public final int height;
+        /** The clockwise rotation in degrees to apply to the frames for display: 0, 90, 180 or 270 */
+        public final int rotation;
+
+        public Result(long durationMs, int width, int height, int rotation) {
+            this.durationMs = durationMs;
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "durationMs=" + durationMs +
+                    ", width=" + width +
+                    ", height=" + height +
+                    ", rotation=" + rotation +
+                    '}';
+        }
+    }
+
+    /** Boxes and elements larger than this are not read into memory, as a sanity check. */
+    private static final int MAX_READ_SIZE = 64 * 1024;
+
+    /**
+     * Probes the given file.
+     *
+     * @return the metadata of the file, or null if it is not an MP4 or Matroska file, or its
+     *         headers do not have the duration and the size of a video track
+     * @throws IOException if the file cannot be read
+     */
+    @Nullable
+    public static Result probe(@NonNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final long length = raf.length();
+            if (length < 8) return null;
+
+            final byte[] head = new byte[8];
+            raf.readFully(head);
+            if (readInt(head, 0) == EBML_ID_HEADER) {
+                return new MatroskaProbe(raf, length).probe();
+            }
+            if (isMp4BoxType(readInt(head, 4))) {
+                return new Mp4Probe(raf, length).probe();
+            }
+            return null;
+        }
+    }
+
+    private static boolean isMp4BoxType(int type) {
+        return type == BOX_FTYP || type == BOX_MOOV || type == BOX_MDAT
+                || type == BOX_FREE || type == BOX_SKIP || type == BOX_WIDE;
+    }
+
+    private static int fourCc(String type) {
+        return type.charAt(0) << 24 | type.charAt(1) << 16 | type.charAt(2) << 8 | type.charAt(3);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xff) << 24
+                | (data[offset + 1] & 0xff) << 16
+                | (data[offset + 2] & 0xff) << 8
+                | (data[offset + 3] & 0xff);
+    }
+
+    private static long readUnsignedInt(byte[] data, int offset) {
+        return readInt(data, offset) & 0xffffffffL;
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        return readUnsignedInt(data, offset) << 32 | readUnsignedInt(data, offset + 4);
+    }
+
+    private static int readUnsignedShort(byte[] data, int offset) {
+        return (data[offset] & 0xff) << 8 | (data[offset + 1] & 0xff);
+    }
+
+    private static byte[] readAt(RandomAccessFile raf, long position, int size) throws IOException {
+        final byte[] data = new byte[size];
+        raf.seek(position);
+        raf.readFully(data);
+        return data;
+    }
+
+    // --------------- MP4 ---------------
+
+    private static final int BOX_FTYP = fourCc("ftyp");
+    private static final int BOX_MOOV = fourCc("moov");
+    private static final int BOX_MDAT = fourCc("mdat");
+    private static final int BOX_FREE = fourCc("free");
+    private static final int BOX_SKIP = fourCc("skip");
+    private static final int BOX_WIDE = fourCc("wide");
+    private static final int BOX_MVHD = fourCc("mvhd");
+    private static final int BOX_TRAK = fourCc("trak");
+    private static final int BOX_TKHD = fourCc("tkhd");
+    private static final int BOX_MDIA = fourCc("mdia");
+    private static final int BOX_MDHD = fourCc("mdhd");
+    private static final int BOX_HDLR = fourCc("hdlr");
+    private static final int BOX_MINF = fourCc("minf");
+    private static final int BOX_STBL = fourCc("stbl");
+    private static final int BOX_STSD = fourCc("stsd");
+    private static final int HANDLER_VIDE = fourCc("vide");
+
+    private static final class Box {
+        final int type;
+        final long start;
+        final int headerSize;
+        final long size;
+
+        Box(int type, long start, int headerSize, long size) {
+            this.type = type;
+            this.start = start;
+            this.headerSize = headerSize;
+            this.size = size;
+        }
+
+        long dataStart() {
+            return start + headerSize;
+        }
+
+        long end() {
+            return start + size;
+        }
+    }
+
+    private static final class Mp4Probe {
+        final RandomAccessFile raf;
+        final long length;
+
+        Mp4Probe(RandomAccessFile raf, long length) {
+            this.raf = raf;
+            this.length = length;
+        }
+
+        /**
+         * Reads the header of the box at the given position, which must end before end.
+         *
+         * @return the box, or null if there is none or it is corrupted
+         */
+        @Nullable
+        Box readBox(long position, long end) throws IOException {
+            if (position + 8 > end) return null;
+
+            final byte[] header = readAt(raf, position, 8);
+            long size = readUnsignedInt(header, 0);
+            int headerSize = 8;
+            if (size == 1) {
+                if (position + 16 > end) return null;
+                size = readLong(readAt(raf, position + 8, 8), 0);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position; // Extends to the end of the file
+            }
+            if (size < headerSize || position + size > end) return null;
+
+            return new Box(readInt(header, 4), position, headerSize, size);
+        }
+
+        /** Reads the payload of the box, after its header. */
+        @Nullable
+        byte[] readPayload(Box box) throws IOException {
+            final long size = box.size - box.headerSize;
+            if (size > MAX_READ_SIZE) return null;
+            return readAt(raf, box.dataStart(), (int) size);
+        }
+
+        /** Finds the first child of the given type in the range of the parent box. */
+        @Nullable
+        Box findBox(long start, long end, int type) throws IOException {
+            for (Box box = readBox(start, end); box != null; box = readBox(box.end(), end)) {
+                if (box.type == type) {
+                    return box;
+                }
+            }
+            return null;
+        }
+
+        @Nullable
+        Result probe() throws IOException {
+            final Box moov = findBox(0, length, BOX_MOOV);
+            return moov == null ? null : parseMoov(moov);
+        }
+
+        @Nullable
+        Result parseMoov(Box moov) throws IOException {
+            long durationMs = -1;
+            Result videoTrack = null;
+            for (Box box = readBox(moov.dataStart(), moov.end()); box != null;
+                 box = readBox(box.end(), moov.end())) {
+                if (box.type == BOX_MVHD) {
+                    final byte[] mvhd = readPayload(box);
+                    if (mvhd != null) {
+                        durationMs = parseMediaDurationMs(mvhd);
+                    }
+                } else if (box.type == BOX_TRAK && videoTrack == null) {
+                    videoTrack = parseTrak(box);
+                }
+            }
+            if (videoTrack == null) return null;
+
+            // The movie duration may be missing, as in fragmented files
+            if (durationMs <= 0) {
+                durationMs = videoTrack.durationMs;
+            }
+            if (durationMs <= 0) return null;
+            return new Result(durationMs, videoTrack.width, videoTrack.height, videoTrack.rotation);
+        }
+
+        /**
+         * @return the video track in the trak box, with the track duration, or null if it is not
+         *         a video track
+         */
+        @Nullable
+        Result parseTrak(Box trak) throws IOException {
+            final Box mdia = findBox(trak.dataStart(), trak.end(), BOX_MDIA);
+            if (mdia == null) return null;
+            final Box hdlr = findBox(mdia.dataStart(), mdia.end(), BOX_HDLR);
+            final byte[] handler = hdlr == null ? null : readPayload(hdlr);
+            if (handler == null || handler.length < 12 || readInt(handler, 8) != HANDLER_VIDE) {
+                return null;
+            }
+
+            final Box tkhdBox = findBox(trak.dataStart(), trak.end(), BOX_TKHD);
+            final byte[] tkhd = tkhdBox == null ? null : readPayload(tkhdBox);
+            if (tkhd == null || tkhd.length == 0) return null;
+            // Version 0 and 1 tkhd boxes differ in the sizes of the times and the duration
+            final int matrixOffset = tkhd[0] == 1 ? 52 : 40;
+            if (tkhd.length < matrixOffset + 44) return null;
+
+            long durationMs = -1;
+            final Box mdhdBox = findBox(mdia.dataStart(), mdia.end(), BOX_MDHD);
+            final byte[] mdhd = mdhdBox == null ? null : readPayload(mdhdBox);
+            if (mdhd != null && mdhd.length > 0) {
+                durationMs = parseMediaDurationMs(mdhd);
+            }
+
+            // 优先使用样本描述中的编码尺寸，与 MediaMetadataRetriever 一致
+            int width = 0;
+            int height = 0;
+            final Box minf = findBox(mdia.dataStart(), mdia.end(), BOX_MINF);
+            final Box stbl = minf == null ? null : findBox(minf.dataStart(), minf.end(), BOX_STBL);
+            final Box stsdBox = stbl == null ? null : findBox(stbl.dataStart(), stbl.end(), BOX_STSD);
+            final byte[] stsd = stsdBox == null ? null : readPayload(stsdBox);
+            // A visual sample entry has its width and height at offset 32 of it
+            if (stsd != null && stsd.length >= 44) {
+                width = readUnsignedShort(stsd, 40);
+                height = readUnsignedShort(stsd, 42);
+            }
+            if (width <= 0 || height <= 0) {
+                // The presentation size, as 16.16 fixed-point numbers
+                width = readInt(tkhd, matrixOffset + 36) >>> 16;
+                height = readInt(tkhd, matrixOffset + 40) >>> 16;
+            }
+            if (width <= 0 || height <= 0) return null;
+
+            return new Result(durationMs, width, height, parseRotation(tkhd, matrixOffset));
+        }
+    }
+
+    /** Parses the duration out of the payload of an mvhd or mdhd box, which share the layout. */
+    private static long parseMediaDurationMs(byte[] box) {
+        final long timescale;
+        final long duration;
+        if (box[0] == 1) {
+            if (box.length < 32) return -1;
+            timescale = readUnsignedInt(box, 20);
+            duration = readLong(box, 24);
+        } else {
+            if (box.length < 20) return -1;
+            timescale = readUnsignedInt(box, 12);
+            duration = readUnsignedInt(box, 16);
+            if (duration == 0xffffffffL) return -1; // Unknown
+        }
+        if (timescale == 0 || duration < 0) return -1;
+        return duration * 1000 / timescale;
+    }
+
+    /** Derives the rotation from the a, b, c and d of the 16.16 fixed-point transform matrix. */
+    private static int parseRotation(byte[] tkhd, int matrixOffset) {
+        final int a = readInt(tkhd, matrixOffset);
+        final int b = readInt(tkhd, matrixOffset + 4);
+        final int c = readInt(tkhd, matrixOffset + 12);
+        final int d = readInt(tkhd, matrixOffset + 16);
+        final int one = 0x10000;
+        if (a == 0 && b == one && c == -one && d == 0) return 90;
+        if (a == -one && b == 0 && c == 0 && d == -one) return 180;
+        if (a == 0 && b == -one && c == one && d == 0) return 270;
+        return 0;
+    }
+
+    // --------------- Matroska ---------------
+
+    private static final int EBML_ID_HEADER = 0x1A45DFA3;
+    private static final int EBML_ID_SEGMENT = 0x18538067;
+    private static final int EBML_ID_SEEK_HEAD = 0x114D9B74;
+    private static final int EBML_ID_SEEK = 0x4DBB;
+    private static final int EBML_ID_SEEK_ID = 0x53AB;
+    private static final int EBML_ID_SEEK_POSITION = 0x53AC;
+    private static final int EBML_ID_INFO = 0x1549A966;
+    private static final int EBML_ID_TIMECODE_SCALE = 0x2AD7B1;
+    private static final int EBML_ID_DURATION = 0x4489;
+    private static final int EBML_ID_TRACKS = 0x1654AE6B;
+    private static final int EBML_ID_TRACK_ENTRY = 0xAE;
+    private static final int EBML_ID_TRACK_TYPE = 0x83;
+    private static final int EBML_ID_VIDEO = 0xE0;
+    private static final int EBML_ID_PIXEL_WIDTH = 0xB0;
+    private static final int EBML_ID_PIXEL_HEIGHT = 0xBA;
+    private static final int EBML_ID_CLUSTER = 0x1F43B675;
+
+    private static final int TRACK_TYPE_VIDEO = 1;
+    private static final long UNKNOWN_SIZE = -1;
+
+    private static final class MatroskaProbe {
+        final RandomAccessFile raf;
+        final long length;
+
+        // The id, data start position and data size of the last element read
+        int elementId;
+        long dataStart;
+        long dataSize;
+
+        long segmentDataStart;
+        long durationMs = -1;
+        int width;
+        int height;
+        boolean infoRead;
+        boolean tracksRead;
+
+        MatroskaProbe(RandomAccessFile raf, long length) {
+            this.raf = raf;
+            this.length = length;
+        }
+
+        /** Reads the header of the element at the given position, which must start before end. */
+        boolean readElementHeader(long position, long end) throws IOException {
+            if (position >= end) return false;
+            raf.seek(position);
+
+            final int idFirstByte = raf.read();
+            final int idLength = vintLength(idFirstByte);
+            if (idLength == 0 || idLength > 4) return false;
+            int id = idFirstByte;
+            for (int i = 1; i < idLength; i++) {
+                id = id << 8 | raf.readUnsignedByte();
+            }
+
+            final int sizeFirstByte = raf.read();
+            final int sizeLength = vintLength(sizeFirstByte);
+            if (sizeLength == 0) return false;
+            long size = sizeFirstByte & (0xff >> sizeLength);
+            boolean allOnes = size == (0xff >> sizeLength);
+            for (int i = 1; i < sizeLength; i++) {
+                final int b = raf.readUnsignedByte();
+                size = size << 8 | b;
+                allOnes &= b == 0xff;
+            }
+
+            elementId = id;
+            dataStart = position + idLength + sizeLength;
+            dataSize = allOnes ? UNKNOWN_SIZE : size;
+            return dataSize == UNKNOWN_SIZE || dataStart + dataSize <= end;
+        }
+
+        long dataEnd(long parentEnd) {
+            return dataSize == UNKNOWN_SIZE ? parentEnd : dataStart + dataSize;
+        }
+
+        @Nullable
+        byte[] readData() throws IOException {
+            if (dataSize == UNKNOWN_SIZE || dataSize > MAX_READ_SIZE) return null;
+            return readAt(raf, dataStart, (int) dataSize);
+        }
+
+        @Nullable
+        Result probe() throws IOException {
+            // Skip the EBML header, and find the Segment
+            if (!readElementHeader(0, length) || dataSize == UNKNOWN_SIZE) return null;
+            if (!readElementHeader(dataStart + dataSize, length) || elementId != EBML_ID_SEGMENT) {
+                return null;
+            }
+            segmentDataStart = dataStart;
+            final long segmentEnd = Math.min(dataEnd(length), length);
+
+            long infoPosition = -1;
+            long tracksPosition = -1;
+            for (long position = segmentDataStart;
+                 !(infoRead && tracksRead) && readElementHeader(position, segmentEnd); ) {
+                final long end = dataEnd(segmentEnd);
+                if (elementId == EBML_ID_SEEK_HEAD) {
+                    final long[] positions = parseSeekHead(end);
+                    infoPosition = positions[0];
+                    tracksPosition = positions[1];
+                } else if (elementId == EBML_ID_INFO) {
+                    parseInfo(end);
+                } else if (elementId == EBML_ID_TRACKS) {
+                    parseTracks(end);
+                } else if (elementId == EBML_ID_CLUSTER || dataSize == UNKNOWN_SIZE) {
+                    break;
+                }
+                position = end;
+            }
+
+            // The Info or Tracks after the Clusters, if any, can only be found through the SeekHead
+            if (!infoRead && infoPosition >= 0
+                    && readElementHeader(infoPosition, segmentEnd) && elementId == EBML_ID_INFO) {
+                parseInfo(dataEnd(segmentEnd));
+            }
+            if (!tracksRead && tracksPosition >= 0
+                    && readElementHeader(tracksPosition, segmentEnd) && elementId == EBML_ID_TRACKS) {
+                parseTracks(dataEnd(segmentEnd));
+            }
+
+            if (durationMs <= 0 || width <= 0 || height <= 0) return null;
+            // Matroska files are not rotated through their headers the way MP4 files are
+            return new Result(durationMs, width, height, 0);
+        }
+
+        /** @return the absolute positions of the Info and the Tracks, or -1 for unknown ones */
+        long[] parseSeekHead(long end) throws IOException {
+            final long[] positions = {-1, -1};
+            for (long position = dataStart; readElementHeader(position, end); ) {
+                final long seekEnd = dataEnd(end);
+                if (elementId == EBML_ID_SEEK) {
+                    int seekId = 0;
+                    long seekPosition = -1;
+                    for (long pos = dataStart; readElementHeader(pos, seekEnd); ) {
+                        final long childEnd = dataEnd(seekEnd);
+                        final byte[] data = readData();
+                        if (data != null) {
+                            if (elementId == EBML_ID_SEEK_ID) {
+                                seekId = (int) readUnsigned(data);
+                            } else if (elementId == EBML_ID_SEEK_POSITION) {
+                                seekPosition = segmentDataStart + readUnsigned(data);
+                            }
+                        }
+                        pos = childEnd;
+                    }
+                    if (seekId == EBML_ID_INFO) {
+                        positions[0] = seekPosition;
+                    } else if (seekId == EBML_ID_TRACKS) {
+                        positions[1] = seekPosition;
+                    }
+                }
+                position = seekEnd;
+            }
+            return positions;
+        }
+
+        void parseInfo(long end) throws IOException {
+            long timecodeScale = 1000000; // ns, by default
+            double duration = -1;
+            for (long position = dataStart; readElementHeader(position, end); ) {
+                final long childEnd = dataEnd(end);
+                if (elementId == EBML_ID_TIMECODE_SCALE || elementId == EBML_ID_DURATION) {
+                    final byte[] data = readData();
+                    if (data != null) {
+                        if (elementId == EBML_ID_TIMECODE_SCALE) {
+                            timecodeScale = readUnsigned(data);
+                        } else if (data.length == 4) {
+                            duration = Float.intBitsToFloat(readInt(data, 0));
+                        } else if (data.length == 8) {
+                            duration = Double.longBitsToDouble(readLong(data, 0));
+                        }
+                    }
+                }
+                position = childEnd;
+            }
+            if (duration > 0) {
+                durationMs = (long) (duration * timecodeScale / 1000000d);
+            }
+            infoRead = true;
+        }
+
+        void parseTracks(long end) throws IOException {
+            for (long position = dataStart; width <= 0 && readElementHeader(position, end); ) {
+                final long entryEnd = dataEnd(end);
+                if (elementId == EBML_ID_TRACK_ENTRY) {
+                    parseTrackEntry(entryEnd);
+                }
+                position = entryEnd;
+            }
+            tracksRead = true;
+        }
+
+        void parseTrackEntry(long end) throws IOException {
+            long trackType = -1;
+            int pixelWidth = 0;
+            int pixelHeight = 0;
+            for (long position = dataStart; readElementHeader(position, end); ) {
+                final long childEnd = dataEnd(end);
+                if (elementId == EBML_ID_TRACK_TYPE) {
+                    final byte[] data = readData();
+                    if (data != null) {
+                        trackType = readUnsigned(data);
+                    }
+                } else if (elementId == EBML_ID_VIDEO) {
+                    for (long pos = dataStart; readElementHeader(pos, childEnd); ) {
+                        final long videoChildEnd = dataEnd(childEnd);
+                        if (elementId == EBML_ID_PIXEL_WIDTH || elementId == EBML_ID_PIXEL_HEIGHT) {
+                            final byte[] data = readData();
+                            if (data != null) {
+                                if (elementId == EBML_ID_PIXEL_WIDTH) {
+                                    pixelWidth = (int) readUnsigned(data);
+                                } else {
+                                    pixelHeight = (int) readUnsigned(data);
+                                }
+                            }
+                        }
+                        pos = videoChildEnd;
+                    }
+                }
+                position = childEnd;
+            }
+            if (trackType == TRACK_TYPE_VIDEO) {
+                width = pixelWidth;
+                height = pixelHeight;
+            }
+        }
+    }
+
+    /** @return the length of the EBML variable-size integer starting with the byte, or 0 */
+    private static int vintLength(int firstByte) {
+        if (firstByte <= 0) return 0; // Also -1 for the end of the file
+        int length = 1;
+        for (int mask = 0x80; (firstByte & mask) == 0; mask >>= 1) {
+            length++;
+        }
+        return length;
+    }
+
+    private static long readUnsigned(byte[] data) {
+        long value = 0;
+        for (byte b : data) {
+            value = value << 8 | (b & 0xff);
+        }
+        return value;
+    }
+}
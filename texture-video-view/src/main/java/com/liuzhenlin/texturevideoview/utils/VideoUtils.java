@@ -8,6 +8,8 @@ package com.liuzhenlin.texturevideoview.utils;
 import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 //import org.mp4parser.muxer.Movie;
 //import org.mp4parser.muxer.Track;
@@ -15,18 +17,33 @@ import androidx.annotation.NonNull;
 //import org.mp4parser.muxer.container.mp4.MovieCreator;
 //import org.mp4parser.muxer.tracks.ClippedTrack;
 
+import com.bumptech.glide.util.Synthetic;
+import com.coremedia.iso.boxes.Box;
+import com.coremedia.iso.boxes.Container;
+import com.googlecode.mp4parser.DataSource;
+import com.googlecode.mp4parser.FileDataSourceImpl;
+import com.googlecode.mp4parser.authoring.Edit;
 import com.googlecode.mp4parser.authoring.Movie;
 import com.googlecode.mp4parser.authoring.Track;
+import com.googlecode.mp4parser.authoring.TrackMetaData;
 import com.googlecode.mp4parser.authoring.builder.DefaultMp4Builder;
 import com.googlecode.mp4parser.authoring.container.mp4.MovieCreator;
+import com.googlecode.mp4parser.authoring.tracks.AppendTrack;
 import com.googlecode.mp4parser.authoring.tracks.CroppedTrack;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author 刘振林
@@ -38,25 +55,19 @@ public class VideoUtils {
     @NonNull
     public static File clip(@NonNull String srcPath, @NonNull String destPath, long fromMs, long toMs)
             throws IOException, IllegalArgumentException, UnsupportedOperationException {
-        if (TextUtils.isEmpty(srcPath)) {
-            throw new IllegalArgumentException("Path of the Source file cannot be null or empty");
-        }
-        if (TextUtils.isEmpty(destPath)) {
-            throw new IllegalArgumentException("Path of the destination file cannot be null or empty");
-        }
+        checkPaths(srcPath, destPath);
         if (fromMs >= toMs) {
             throw new IllegalArgumentException("fromMs >= toMs");
         }
 
-        File srcFile = new File(srcPath);
-        if (!srcFile.exists()) {
-            throw new IllegalArgumentException("The source file does not exist");
-        }
-
         Movie movie = MovieCreator.build(srcPath);
-        List<Track> tracks = movie.getTracks();
-        // Removes all tracks from which we will create new ones
-        movie.setTracks(new LinkedList<>());
+        // Replaces all tracks with the new ones created from them
+        movie.setTracks(cropTracks(movie.getTracks(), fromMs, toMs));
+        return writeMovie(movie, destPath, null);
+    }
+
+    private static List<Track> cropTracks(List<Track> tracks, long fromMs, long toMs) {
+        List<Track> croppedTracks = new LinkedList<>();
 
         double startTime = fromMs / 1000d;
         double endTime = toMs / 1000d;
@@ -103,9 +114,289 @@ public class VideoUtils {
                 currentSample++;
             }
 
-            movie.addTrack(new CroppedTrack(track, startSample, endSample));
+            croppedTracks.add(new CroppedTrack(track, startSample, endSample));
         }
+        return croppedTracks;
+    }
+
+    /**
+     * Clips the source file at the samples resolved by a {@link KeyframeIndex} of it beforehand,
+     * without searching its sample tables for the sync samples again.
+     *
+     * @throws IllegalArgumentException if the file has changed since it was indexed, so that
+     *                                  a track has no cut point or the video track is not cut
+     *                                  at a key frame
+     */
+    @NonNull
+    public static File clip(@NonNull String srcPath, @NonNull String destPath,
+                            @NonNull KeyframeIndex.Cut cut)
+            throws IOException, IllegalArgumentException {
+        checkPaths(srcPath, destPath);
+
+        Movie movie = MovieCreator.build(srcPath);
+        movie.setTracks(cropTracks(movie.getTracks(), cut));
+        return writeMovie(movie, destPath, null);
+    }
+
+    private static List<Track> cropTracks(List<Track> tracks, KeyframeIndex.Cut cut) {
+        List<Track> croppedTracks = new LinkedList<>();
+        for (Track track : tracks) {
+            final long trackId = track.getTrackMetaData().getTrackId();
+            int i = cut.trackIds.length - 1;
+            while (i >= 0 && cut.trackIds[i] != trackId) i--;
+            if (i < 0) {
+                // The file has changed since it was indexed
+                throw new IllegalArgumentException("No cut point for track " + trackId);
+            }
+            checkStartsAtSyncSample(track, cut.startSamples[i]);
+            croppedTracks.add(new CroppedTrack(track, cut.startSamples[i], cut.endSamples[i]));
+        }
+        return croppedTracks;
+    }
+
+    /**
+     * Checks that a video track cut at the given sample starts with a key frame, rather than
+     * writing a stream that cannot be decoded until the next key frame.
+     */
+    @VisibleForTesting
+    /*package*/ static void checkStartsAtSyncSample(Track track, long startSample) {
+        if (!"vide".equals(track.getHandler())) return;
+
+        final long[] syncSamples = track.getSyncSamples();
+        if (syncSamples == null || syncSamples.length == 0) return; // Every sample is a sync one
+        // Sample numbers start with 1
+        if (Arrays.binarySearch(syncSamples, startSample + 1) < 0) {
+            throw new IllegalArgumentException("Sample " + startSample + " of track "
+                    + track.getTrackMetaData().getTrackId() + " to start at is not a key frame");
+        }
+    }
+
+    /**
+     * A time interval of a source MP4 file to be kept in the output of
+     * {@link #join(List, String, OnProgressListener)}.
+     */
+    public static final class Segment {
+        @NonNull public final String srcPath;
+        public final long fromMs;
+        public final long toMs;
+        /** The samples to cut the tracks at, resolved beforehand, or null to find them on join */
+        @Nullable public final KeyframeIndex.Cut cut;
+
+        /**
+         * Creates a segment whose start and end will be moved to the key frames at or before
+         * and at or after them respectively, as {@link #clip(String, String, long, long)} does.
+         */
+        public Segment(@NonNull String srcPath, long fromMs, long toMs) {
+            if (fromMs >= toMs) {
+                throw new IllegalArgumentException("fromMs >= toMs");
+            }
+            this.srcPath = srcPath;
+            this.fromMs = fromMs;
+            this.toMs = toMs;
+            this.cut = null;
+        }
+
+        /** Creates a segment cut at the samples resolved by a {@link KeyframeIndex} of the file */
+        public Segment(@NonNull String srcPath, @NonNull KeyframeIndex.Cut cut) {
+            this.srcPath = srcPath;
+            this.fromMs = cut.startMs;
+            this.toMs = cut.endMs;
+            this.cut = cut;
+        }
+    }
+
+    /**
+     * Listener to be notified of the progress of writing the output file.
+     */
+    public interface OnProgressListener {
+        /**
+         * Called on the writing thread, each time some more bytes have been written.
+         *
+         * @param bytesWritten the number of bytes written so far
+         * @param totalBytes   the size of the output file
+         */
+        void onProgress(long bytesWritten, long totalBytes);
+    }
+
+    /**
+     * Joins the given segments of one or more MP4 files into a new one, in the given order,
+     * without re-encoding them. Each track of the output is the segments of the corresponding
+     * tracks of the sources appended one after another, with the sample timestamps rebased onto
+     * the end of the previous segment.
+     * <p>
+     * The source files are memory mapped rather than read into memory, and the sample data is
+     * copied to the output as it is being written, so this can handle files far larger than the
+     * memory available. Interrupting the calling thread cancels the writing, in which case an
+     * {@link InterruptedIOException} is thrown and no output file is left.
+     *
+     * @throws IllegalArgumentException      if no segment is given, if any source file does not
+     *                                       exist, or if the source files are not compatible
+     *                                       with one another, i.e., they have different tracks
+     *                                       or the tracks of them are of different codecs,
+     *                                       timescales or video sizes, or if any segment
+     *                                       resolved by a {@link KeyframeIndex} does not start
+     *                                       its video track at a key frame
+     * @throws UnsupportedOperationException if any source file has more than one track with
+     *                                       sync samples, and its segments are not resolved by
+     *                                       a {@link KeyframeIndex} beforehand
+     */
+    @NonNull
+    public static File join(@NonNull List<Segment> segments, @NonNull String destPath,
+                            @Nullable OnProgressListener listener)
+            throws IOException, IllegalArgumentException, UnsupportedOperationException {
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("No segment to join");
+        }
+
+        final int segmentCount = segments.size();
+        // 同一源文件的多个片段共用一次解析的结果
+        final Map<String, List<Track>> sources = new HashMap<>();
+        final List<DataSource> dataSources = new ArrayList<>();
+        try {
+            final List<List<Track>> sourceTracks = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                final Segment segment = segments.get(i);
+                checkPaths(segment.srcPath, destPath);
+                List<Track> tracks = sources.get(segment.srcPath);
+                if (tracks == null) {
+                    final DataSource dataSource = new FileDataSourceImpl(segment.srcPath);
+                    dataSources.add(dataSource);
+                    tracks = MovieCreator.build(dataSource).getTracks();
+                    if (!sources.isEmpty()) {
+                        checkCompatible(sourceTracks.get(0), tracks, segment.srcPath);
+                    }
+                    sources.put(segment.srcPath, tracks);
+                }
+                sourceTracks.add(tracks);
+            }
+
+            final List<List<Track>> segmentTracks = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                final Segment segment = segments.get(i);
+                segmentTracks.add(segment.cut == null
+                        ? cropTracks(sourceTracks.get(i), segment.fromMs, segment.toMs)
+                        : cropTracks(sourceTracks.get(i), segment.cut));
+            }
 
+            final Movie movie = new Movie();
+            final int trackCount = sourceTracks.get(0).size();
+            for (int t = 0; t < trackCount; t++) {
+                final Track[] parts = new Track[segmentCount];
+                final Track[] partSources = new Track[segmentCount];
+                for (int i = 0; i < segmentCount; i++) {
+                    parts[i] = segmentTracks.get(i).get(t);
+                    partSources[i] = sourceTracks.get(i).get(t);
+                }
+                movie.addTrack(new AppendTrack(parts) {
+                    final List<Edit> joinedEdits = joinEdits(partSources, this);
+
+                    @Override
+                    public List<Edit> getEdits() {
+                        return joinedEdits;
+                    }
+                });
+            }
+            return writeMovie(movie, destPath, listener);
+        } finally {
+            for (DataSource dataSource : dataSources) {
+                try {
+                    dataSource.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks up front that the tracks of a source file can be appended to those of the first
+     * one, rather than letting {@link AppendTrack} fail at some track with a vague message.
+     */
+    @VisibleForTesting
+    /*package*/ static void checkCompatible(List<Track> tracks, List<Track> otherTracks,
+                                            String otherPath) {
+        if (tracks.size() != otherTracks.size()) {
+            throw new IllegalArgumentException(otherPath + " has " + otherTracks.size()
+                    + " tracks rather than " + tracks.size() + " as the first source file has");
+        }
+        for (int i = 0; i < tracks.size(); i++) {
+            final Track track = tracks.get(i);
+            final Track other = otherTracks.get(i);
+            final TrackMetaData metaData = track.getTrackMetaData();
+            final TrackMetaData otherMetaData = other.getTrackMetaData();
+            final String codec = sampleEntryType(track);
+            final String otherCodec = sampleEntryType(other);
+            if (!track.getHandler().equals(other.getHandler())
+                    || !codec.equals(otherCodec)
+                    || metaData.getTimescale() != otherMetaData.getTimescale()
+                    || metaData.getWidth() != otherMetaData.getWidth()
+                    || metaData.getHeight() != otherMetaData.getHeight()) {
+                throw new IllegalArgumentException("Track " + (i + 1) + " of " + otherPath
+                        + " (" + other.getHandler() + ", " + otherCodec
+                        + ", timescale " + otherMetaData.getTimescale()
+                        + ", " + otherMetaData.getWidth() + "x" + otherMetaData.getHeight()
+                        + ") cannot be appended to that of the first source file ("
+                        + track.getHandler() + ", " + codec
+                        + ", timescale " + metaData.getTimescale()
+                        + ", " + metaData.getWidth() + "x" + metaData.getHeight() + ")");
+            }
+        }
+    }
+
+    private static String sampleEntryType(Track track) {
+        final List<Box> sampleEntries = track.getSampleDescriptionBox().getBoxes();
+        return sampleEntries.isEmpty() ? "" : sampleEntries.get(0).getType();
+    }
+
+    /**
+     * Works out the edit list of a track joined from segments of the given source tracks.
+     * <p>
+     * Cropping and appending tracks drop their edit lists, which however usually have a single
+     * edit skipping the composition delay of the B-frames at the start of the media. As every
+     * segment starts at a key frame, after which the same delay recurs, such an edit is carried
+     * over with its duration adjusted to that of the joined track, if all the sources agree on
+     * it; otherwise the track is left without an edit list, as the clipped files always were.
+     */
+    @Synthetic static List<Edit> joinEdits(Track[] sourceTracks, Track joinedTrack) {
+        long mediaTime = -1;
+        long timescale = 0;
+        for (Track track : sourceTracks) {
+            final List<Edit> edits = track.getEdits();
+            if (edits == null || edits.size() != 1 || edits.get(0).getMediaTime() <= 0) {
+                return Collections.emptyList();
+            }
+            final Edit edit = edits.get(0);
+            if (mediaTime == -1) {
+                mediaTime = edit.getMediaTime();
+                timescale = edit.getTimeScale();
+            } else if (edit.getMediaTime() * timescale != mediaTime * edit.getTimeScale()) {
+                return Collections.emptyList();
+            }
+        }
+        final long trackTimescale = joinedTrack.getTrackMetaData().getTimescale();
+        final long delay = mediaTime * trackTimescale / timescale;
+        final long duration = joinedTrack.getDuration() - delay;
+        if (duration <= 0) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(
+                new Edit(mediaTime, timescale, 1.0, (double) duration / trackTimescale));
+    }
+
+    private static void checkPaths(String srcPath, String destPath) {
+        if (TextUtils.isEmpty(srcPath)) {
+            throw new IllegalArgumentException("Path of the Source file cannot be null or empty");
+        }
+        if (TextUtils.isEmpty(destPath)) {
+            throw new IllegalArgumentException("Path of the destination file cannot be null or empty");
+        }
+        if (!new File(srcPath).exists()) {
+            throw new IllegalArgumentException("The source file does not exist");
+        }
+    }
+
+    private static File writeMovie(Movie movie, String destPath,
+                                   @Nullable OnProgressListener listener) throws IOException {
         File destFile = new File(destPath);
         File destParentFile = destFile.getParentFile();
         if (destParentFile != null && !destParentFile.exists()) {
@@ -113,7 +404,13 @@ public class VideoUtils {
             destParentFile.mkdirs();
         }
         try (FileOutputStream fos = new FileOutputStream(destFile)) {
-            new DefaultMp4Builder().build(movie).writeContainer(fos.getChannel());
+            final Container container = new DefaultMp4Builder().build(movie);
+            long totalBytes = 0;
+            for (Box box : container.getBoxes()) {
+                totalBytes += box.getSize();
+            }
+            container.writeContainer(
+                    new ProgressTrackingChannel(fos.getChannel(), totalBytes, listener));
         } catch (Throwable t) {
             //noinspection ResultOfMethodCallIgnored
             destFile.delete();
@@ -123,6 +420,47 @@ public class VideoUtils {
         return destFile;
     }
 
+    /**
+     * Counts the bytes written through it and reports the progress, and stops the writing once
+     * the writing thread is interrupted.
+     */
+    private static final class ProgressTrackingChannel implements WritableByteChannel {
+        final WritableByteChannel channel;
+        final long totalBytes;
+        final OnProgressListener listener;
+        long bytesWritten;
+
+        ProgressTrackingChannel(WritableByteChannel channel, long totalBytes,
+                                OnProgressListener listener) {
+            this.channel = channel;
+            this.totalBytes = totalBytes;
+            this.listener = listener;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Writing of the video is interrupted");
+            }
+            final int count = channel.write(src);
+            bytesWritten += count;
+            if (listener != null) {
+                listener.onProgress(bytesWritten, totalBytes);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
     private static double correctTimeToSyncSample(Track track, double cutHere, boolean next) {
         final long[] syncSamples = track.getSyncSamples();
         final double[] timeOfSyncSamples = new double[syncSamples.length];
@@ -0,0 +1,173 @@
+/*
+ * Created on 2026-10-20 10:12:05 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.HandlerWrapper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link DecoderBenchmark} with fake decoders that take a given time per frame on
+ * a fake clock.
+ *
+ * @author 刘振林
+ */
+public class DecoderBenchmarkTest {
+
+    private static final float DELTA = 0.01f;
+
+    /** A clock whose time only moves when it is advanced. */
+    private static final class FakeClock implements Clock {
+        long timeMs = 1000;
+
+        @Override
+        public long elapsedRealtime() {
+            return timeMs;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return timeMs;
+        }
+
+        @Override
+        public void sleep(long sleepTimeMs) {
+            timeMs += sleepTimeMs;
+        }
+
+        @Override
+        public HandlerWrapper createHandler(Looper looper, @Nullable Handler.Callback callback) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /** A decoder that outputs one frame per sample, spending the given time on each. */
+    private static class FakeCandidate implements DecoderBenchmark.Candidate {
+        final FakeClock clock;
+        final long frameTimeMs;
+        boolean prepared;
+        boolean released;
+
+        FakeCandidate(FakeClock clock, long frameTimeMs) {
+            this.clock = clock;
+            this.frameTimeMs = frameTimeMs;
+        }
+
+        @Override
+        public void prepare() throws Exception {
+            // Creating the decoder is slow, but is not to be measured
+            clock.sleep(500);
+            prepared = true;
+        }
+
+        @Override
+        public int decode(@NonNull List<DecoderBenchmark.Sample> samples) throws Exception {
+            clock.sleep(frameTimeMs * samples.size());
+            return samples.size();
+        }
+
+        @Override
+        public void release() {
+            released = true;
+        }
+    }
+
+    private static List<DecoderBenchmark.Sample> samples(int count) {
+        List<DecoderBenchmark.Sample> samples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            samples.add(new DecoderBenchmark.Sample(new byte[16], i * 33333L, i == 0));
+        }
+        return samples;
+    }
+
+    @Test
+    public void measureExcludesPreparation() {
+        final FakeClock clock = new FakeClock();
+        final FakeCandidate candidate = new FakeCandidate(clock, 20);
+
+        assertEquals(50f, new DecoderBenchmark(clock).measure(candidate, samples(60)), DELTA);
+        assertTrue(candidate.prepared);
+        assertTrue(candidate.released);
+    }
+
+    @Test
+    public void measureFailedCandidate() {
+        final FakeClock clock = new FakeClock();
+        final FakeCandidate candidate = new FakeCandidate(clock, 20) {
+            @Override
+            public int decode(@NonNull List<DecoderBenchmark.Sample> samples) throws Exception {
+                throw new IOException("Decoder error");
+            }
+        };
+
+        assertEquals(0f, new DecoderBenchmark(clock).measure(candidate, samples(60)), DELTA);
+        // Released even though it failed
+        assertTrue(candidate.released);
+    }
+
+    @Test
+    public void measureNothing() {
+        final FakeClock clock = new FakeClock();
+        final FakeCandidate candidate = new FakeCandidate(clock, 20);
+        final DecoderBenchmark benchmark = new DecoderBenchmark(clock);
+
+        assertEquals(0f, benchmark.measure(null, samples(60)), DELTA);
+        assertEquals(0f, benchmark.measure(candidate, Collections.emptyList()), DELTA);
+        assertFalse(candidate.prepared);
+    }
+
+    @Test
+    public void measureInstantDecoding() {
+        final FakeClock clock = new FakeClock();
+        // Elapsed time is clamped to 1 ms rather than divided by zero
+        assertEquals(60000f,
+                new DecoderBenchmark(clock).measure(new FakeCandidate(clock, 0), samples(60)),
+                DELTA);
+    }
+
+    @Test
+    public void runPrefersExtensionOnlyBeyondMargin() {
+        final FakeClock clock = new FakeClock();
+        final DecoderBenchmark benchmark = new DecoderBenchmark(clock);
+        final List<DecoderBenchmark.Sample> samples = samples(100);
+
+        // 50 fps against 100 fps
+        DecoderBenchmark.Result result = benchmark.run(samples,
+                new FakeCandidate(clock, 20), new FakeCandidate(clock, 10));
+        assertEquals(50f, result.platformFps, DELTA);
+        assertEquals(100f, result.extensionFps, DELTA);
+        assertTrue(result.isExtensionPreferred());
+
+        // 50 fps against 52.6 fps, faster but within the margin
+        result = benchmark.run(samples, new FakeCandidate(clock, 20), new FakeCandidate(clock, 19));
+        assertFalse(result.isExtensionPreferred());
+
+        // No platform decoder for the stream
+        result = benchmark.run(samples, null, new FakeCandidate(clock, 40));
+        assertEquals(0f, result.platformFps, DELTA);
+        assertTrue(result.isExtensionPreferred());
+
+        // No extension decoder
+        result = benchmark.run(samples, new FakeCandidate(clock, 20), null);
+        assertFalse(result.isExtensionPreferred());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Created on 2026-10-20 9:36:14 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Builds, queries and caches the indexes of sample SubRip and SSA/ASS files on the JVM.
+ *
+ * @author 刘振林
+ */
+public class SubtitleIndexTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String ASS_HEADER = "[Script Info]\n"
+            + "ScriptType: v4.00+\n"
+            + "\n"
+            + "[Events]\n"
+            + "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n";
+
+    private static File writeTempFile(String text) throws IOException {
+        File file = File.createTempFile("SubtitleIndexTest", null);
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(text.getBytes(UTF_8));
+        }
+        return file;
+    }
+
+    /** Reads the bytes the index says the text of the given cue lies in. */
+    private static String readCue(File file, SubtitleIndex index, int i) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] data = new byte[index.lengths[i]];
+            in.seek(index.offsets[i]);
+            in.readFully(data);
+            return new String(data, UTF_8);
+        }
+    }
+
+    @Test
+    public void buildAssWithEventsOutOfOrder() throws IOException {
+        final File file = writeTempFile(ASS_HEADER
+                + "Dialogue: 0,0:00:05.00,0:00:07.00,Default,,0,0,0,,第二句\n"
+                + "Comment: 0,0:00:00.00,0:00:01.00,Default,,0,0,0,,not a cue\n"
+                + "Dialogue: 0,0:00:01.50,0:00:03.00,Default,,0,0,0,,{\\i1}First, with a comma\n"
+                + "Dialogue: 0,1:00:00.00,1:00:02.25,Default,,0,0,0,,Last\n");
+        final SubtitleIndex index = SubtitleIndex.build(file, SubtitleIndex.FORMAT_SSA);
+
+        assertEquals(SubtitleIndex.FORMAT_SSA, index.format);
+        assertEquals(10, index.ssaFieldCount);
+        assertEquals(9, index.ssaTextField);
+        assertArrayEquals(new int[]{1500, 5000, 3600000}, index.startTimesMs);
+        assertArrayEquals(new int[]{3000, 7000, 3602250}, index.endTimesMs);
+        assertEquals("Dialogue: 0,0:00:01.50,0:00:03.00,Default,,0,0,0,,{\\i1}First, with a comma",
+                readCue(file, index, 0));
+        assertEquals("Dialogue: 0,0:00:05.00,0:00:07.00,Default,,0,0,0,,第二句",
+                readCue(file, index, 1));
+    }
+
+    @Test
+    public void buildSubripWithCrlfLineEndings() throws IOException {
+        final File file = writeTempFile("1\r\n"
+                + "00:00:01,000 --> 00:00:02,500\r\n"
+                + "第一行\r\n"
+                + "<i>Second line</i>\r\n"
+                + "\r\n"
+                + "2\r\n"
+                + "00:00:03,000 --> 00:00:04,000\r\n"
+                + "Last\r\n");
+        final SubtitleIndex index = SubtitleIndex.build(file, SubtitleIndex.FORMAT_SUBRIP);
+
+        assertEquals(2, index.size());
+        assertArrayEquals(new int[]{1000, 3000}, index.startTimesMs);
+        assertArrayEquals(new int[]{2500, 4000}, index.endTimesMs);
+        // The text covers its lines up to the blank one, excluding the index line after it
+        assertEquals("第一行\r\n<i>Second line</i>\r\n", readCue(file, index, 0));
+        assertEquals("Last\r\n", readCue(file, index, 1));
+    }
+
+    @Test
+    public void queryOverlappingCues() throws IOException {
+        final File file = writeTempFile("1\n"
+                + "00:00:00,000 --> 00:00:10,000\n"
+                + "Long\n"
+                + "\n"
+                + "2\n"
+                + "00:00:02,000 --> 00:00:03,000\n"
+                + "Short\n"
+                + "\n"
+                + "3\n"
+                + "00:00:04,000 --> 00:00:05,000\n"
+                + "Another short\n"
+                + "\n"
+                + "4\n"
+                + "00:00:20,000 --> 00:00:21,000\n"
+                + "Later\n");
+        final SubtitleIndex index = SubtitleIndex.build(file, SubtitleIndex.FORMAT_SUBRIP);
+
+        assertEquals(-1, index.lastIndexStartingAtOrBefore(-1));
+        assertEquals(0, index.lastIndexStartingAtOrBefore(0));
+        assertEquals(2, index.lastIndexStartingAtOrBefore(4500));
+        assertEquals(2, index.lastIndexStartingAtOrBefore(19999));
+        assertEquals(3, index.lastIndexStartingAtOrBefore(20000));
+
+        // The long first cue is still showing behind the short ones
+        assertEquals(10000, index.maxEndTimeMsUpTo(0));
+        assertEquals(10000, index.maxEndTimeMsUpTo(1));
+        assertEquals(10000, index.maxEndTimeMsUpTo(2));
+        assertEquals(21000, index.maxEndTimeMsUpTo(3));
+    }
+
+    @Test
+    public void cacheIsInvalidatedOnFileChange() throws IOException {
+        final File file = writeTempFile("1\n00:00:01,000 --> 00:00:02,000\nText\n");
+        final File cacheFile = File.createTempFile("SubtitleIndexTest", ".idx");
+        cacheFile.deleteOnExit();
+        // Keep the modification time away from the current time, which is compared below
+        assertTrue(file.setLastModified(1000000000000L));
+
+        SubtitleIndex index = SubtitleIndex.build(file, SubtitleIndex.FORMAT_SUBRIP);
+        index.save(cacheFile, file);
+        SubtitleIndex cached = SubtitleIndex.load(cacheFile, file);
+        assertNotNull(cached);
+        assertArrayEquals(index.startTimesMs, cached.startTimesMs);
+        assertArrayEquals(index.endTimesMs, cached.endTimesMs);
+        assertArrayEquals(index.offsets, cached.offsets);
+        assertArrayEquals(index.lengths, cached.lengths);
+
+        // Modification time changed
+        assertTrue(file.setLastModified(1000000002000L));
+        assertNull(SubtitleIndex.load(cacheFile, file));
+
+        // Size changed
+        index.save(cacheFile, file);
+        assertNotNull(SubtitleIndex.load(cacheFile, file));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("\n2\n00:00:03,000 --> 00:00:04,000\nMore\n".getBytes(UTF_8));
+        }
+        assertTrue(file.setLastModified(1000000002000L));
+        assertNull(SubtitleIndex.load(cacheFile, file));
+    }
+}
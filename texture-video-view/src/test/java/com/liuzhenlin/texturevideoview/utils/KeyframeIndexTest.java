@@ -0,0 +1,104 @@
+/*
+ * Created on 2026-10-20 11:48:36 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Resolves clip intervals against the sample tables of sample movies whose frame times are not
+ * whole numbers of microseconds, on the JVM.
+ *
+ * @author 刘振林
+ */
+public class KeyframeIndexTest {
+
+    private static final int[] TRACK_IDS = {1, 2};
+
+    /** 600 frames of 23.976 fps video with a key frame every 250 frames, and 48 kHz audio */
+    private static KeyframeIndex ntscFilmIndex() {
+        return new KeyframeIndex(TRACK_IDS, new long[]{24000, 48000},
+                new int[][]{{600}, {1174}}, new long[][]{{1001}, {1024}},
+                0, new long[]{0, 250, 500});
+    }
+
+    @Test
+    public void keyframeTimesAreRoundedDown() {
+        assertArrayEquals(new long[]{0, 10427083, 20854166},
+                ntscFilmIndex().getKeyframeTimesUs());
+    }
+
+    @Test
+    public void resolveCutsVideoAtKeyframeSamples() {
+        final KeyframeIndex index = ntscFilmIndex();
+        final KeyframeIndex.Cut cut = index.resolve(10427, 20000);
+
+        assertArrayEquals(TRACK_IDS, cut.trackIds);
+        // Not 249 and 499, the samples the key frame times rounded down fall into
+        assertEquals(250, cut.startSamples[0]);
+        assertEquals(500, cut.endSamples[0]);
+        // The first audio samples starting at or after 500500/48000 s and 1001000/48000 s
+        assertEquals(489, cut.startSamples[1]);
+        assertEquals(978, cut.endSamples[1]);
+        assertEquals(10427, cut.startMs);
+        assertEquals(20854, cut.endMs);
+
+        // Resolving a resolved cut gives the same cut
+        final KeyframeIndex.Cut again = index.resolve(cut.startMs, cut.endMs);
+        assertArrayEquals(cut.startSamples, again.startSamples);
+        assertArrayEquals(cut.endSamples, again.endSamples);
+    }
+
+    @Test
+    public void resolveStartsOnEveryKeyframe() {
+        // A key frame every 25 frames, most of which are not on whole microseconds
+        final long[] keyframes = new long[24];
+        for (int i = 0; i < keyframes.length; i++) {
+            keyframes[i] = i * 25;
+        }
+        final KeyframeIndex index = new KeyframeIndex(TRACK_IDS, new long[]{24000, 48000},
+                new int[][]{{600}, {1174}}, new long[][]{{1001}, {1024}}, 0, keyframes);
+        final long[] keyframeTimesUs = index.getKeyframeTimesUs();
+        for (int i = 0; i < keyframes.length - 1; i++) {
+            final KeyframeIndex.Cut cut = index.resolve(
+                    (keyframeTimesUs[i] + 500) / 1000, (keyframeTimesUs[i + 1] + 500) / 1000);
+            assertEquals(keyframes[i], cut.startSamples[0]);
+            assertEquals(keyframes[i + 1], cut.endSamples[0]);
+        }
+    }
+
+    @Test
+    public void resolveToEndOfFile() {
+        final KeyframeIndex.Cut cut = ntscFilmIndex().resolve(21000, 24000);
+
+        assertEquals(500, cut.startSamples[0]);
+        assertEquals(600, cut.endSamples[0]);
+        assertEquals(1174, cut.endSamples[1]);
+        // The audio track is the longest: 1174 * 1024 / 48000 s
+        assertEquals(25045, cut.endMs);
+    }
+
+    @Test
+    public void resolveWithEverySampleSync() {
+        // 29.97 fps video without a sync sample table, before the audio track
+        final KeyframeIndex index = new KeyframeIndex(new int[]{1, 2}, new long[]{48000, 90000},
+                new int[][]{{1000}, {600}}, new long[][]{{1024}, {3003}}, 1, null);
+        assertNull(index.getKeyframeTimesUs());
+
+        final KeyframeIndex.Cut cut = index.resolve(1000, 2000);
+        // Sample 29 is shown from 87087/90000 s to 90090/90000 s
+        assertEquals(29, cut.startSamples[1]);
+        assertEquals(60, cut.endSamples[1]);
+        // 87087/90000 s = 46446.4/48000 s and 180180/90000 s = 96096/48000 s
+        assertEquals(46, cut.startSamples[0]);
+        assertEquals(94, cut.endSamples[0]);
+        assertEquals(968, cut.startMs);
+        assertEquals(2002, cut.endMs);
+    }
+}
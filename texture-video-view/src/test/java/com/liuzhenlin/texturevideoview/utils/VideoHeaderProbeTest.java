@@ -0,0 +1,263 @@
+/*
+ * Created on 2026-10-20 3:48:22 AM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Probes sample MP4 and Matroska files, built with only the boxes and elements that matter,
+ * on the JVM.
+ *
+ * @author 刘振林
+ */
+public class VideoHeaderProbeTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final int[] MATRIX_ROTATE_0 = {0x10000, 0, 0, 0, 0x10000, 0, 0, 0, 0x40000000};
+    private static final int[] MATRIX_ROTATE_90 = {0, 0x10000, 0, -0x10000, 0, 0, 0, 0, 0x40000000};
+
+    // --------------- MP4 ---------------
+
+    private static byte[] box(String type, byte[]... children) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (byte[] child : children) {
+            payload.write(child, 0, child.length);
+        }
+        ByteArrayOutputStream box = new ByteArrayOutputStream();
+        writeInt(box, 8 + payload.size());
+        box.write(type.getBytes(US_ASCII), 0, 4);
+        box.write(payload.toByteArray(), 0, payload.size());
+        return box.toByteArray();
+    }
+
+    private static byte[] ints(int... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int value : values) {
+            writeInt(out, value);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static byte[] mvhd(int timescale, int duration) {
+        // version/flags, creation, modification, timescale, duration, and the rest zeroed
+        return box("mvhd", ints(0, 0, 0, timescale, duration), new byte[80]);
+    }
+
+    private static byte[] tkhd(int[] matrix, int width, int height) {
+        return box("tkhd",
+                ints(0 /* version/flags */, 0, 0, 1 /* track id */, 0, 0 /* duration */, 0, 0),
+                ints(0, 0) /* layer, alternate group, volume, reserved */,
+                ints(matrix),
+                ints(width << 16, height << 16));
+    }
+
+    private static byte[] mdhd(int timescale, int duration) {
+        return box("mdhd", ints(0, 0, 0, timescale, duration, 0));
+    }
+
+    private static byte[] hdlr(String handlerType) {
+        return box("hdlr", ints(0, 0), handlerType.getBytes(US_ASCII), ints(0, 0, 0), new byte[1]);
+    }
+
+    private static byte[] stsd(int codedWidth, int codedHeight) {
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        entry.write(new byte[24], 0, 24); // reserved, data reference index, pre-defined
+        entry.write(codedWidth >>> 8);
+        entry.write(codedWidth);
+        entry.write(codedHeight >>> 8);
+        entry.write(codedHeight);
+        entry.write(new byte[50], 0, 50);
+        return box("stsd", ints(0, 1), box("avc1", entry.toByteArray()));
+    }
+
+    private static byte[] videoTrak(int[] matrix, int width, int height, int timescale, int duration) {
+        return box("trak",
+                tkhd(matrix, width, height),
+                box("mdia",
+                        mdhd(timescale, duration),
+                        hdlr("vide"),
+                        box("minf", box("stbl", stsd(width, height)))));
+    }
+
+    private static byte[] audioTrak() {
+        return box("trak",
+                tkhd(MATRIX_ROTATE_0, 0, 0),
+                box("mdia", mdhd(44100, 44100 * 10), hdlr("soun"), box("minf")));
+    }
+
+    // --------------- Matroska ---------------
+
+    private static byte[] element(int id, byte[]... children) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (byte[] child : children) {
+            payload.write(child, 0, child.length);
+        }
+        ByteArrayOutputStream element = new ByteArrayOutputStream();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            if ((id >>> shift) != 0) {
+                element.write(id >>> shift);
+            }
+        }
+        // An 8-byte size
+        element.write(0x01);
+        final long size = payload.size();
+        for (int shift = 48; shift >= 0; shift -= 8) {
+            element.write((int) (size >>> shift));
+        }
+        element.write(payload.toByteArray(), 0, payload.size());
+        return element.toByteArray();
+    }
+
+    private static byte[] uint(int id, long value) {
+        return element(id, new byte[]{
+                (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    private static byte[] floatElement(int id, double value) {
+        final long bits = Double.doubleToLongBits(value);
+        byte[] data = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            data[i] = (byte) (bits >>> (56 - i * 8));
+        }
+        return element(id, data);
+    }
+
+    private static byte[] matroska(boolean infoAfterClusters, long durationMs, int width, int height) {
+        final byte[] info = element(0x1549A966,
+                uint(0x2AD7B1, 1000000),
+                floatElement(0x4489, durationMs));
+        final byte[] tracks = element(0x1654AE6B,
+                element(0xAE, uint(0x83, 2 /* audio */)),
+                element(0xAE, uint(0x83, 1 /* video */),
+                        element(0xE0, uint(0xB0, width), uint(0xBA, height))));
+        final byte[] cluster = element(0x1F43B675, new byte[1000]);
+
+        final byte[] segmentData;
+        if (infoAfterClusters) {
+            // The SeekHead is of a fixed size, so the positions in it can be computed up front
+            final int seekHeadSize = seekHead(0, 0).length;
+            final int infoPosition = seekHeadSize + cluster.length;
+            final int tracksPosition = infoPosition + info.length;
+            segmentData = concat(seekHead(infoPosition, tracksPosition), cluster, info, tracks);
+        } else {
+            segmentData = concat(info, tracks, cluster);
+        }
+        return concat(
+                element(0x1A45DFA3, element(0x4282, "webm".getBytes(US_ASCII))),
+                element(0x18538067, segmentData));
+    }
+
+    private static byte[] seekHead(int infoPosition, int tracksPosition) {
+        return element(0x114D9B74,
+                element(0x4DBB, uint(0x53AB, 0x1549A966), uint(0x53AC, infoPosition)),
+                element(0x4DBB, uint(0x53AB, 0x1654AE6B), uint(0x53AC, tracksPosition)));
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static File writeTempFile(byte[] data) throws IOException {
+        File file = File.createTempFile("VideoHeaderProbeTest", null);
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    @Test
+    public void probeMp4WithMoovAfterMdat() throws IOException {
+        final byte[] file = concat(
+                box("ftyp", "isom".getBytes(US_ASCII), ints(0x200)),
+                box("mdat", new byte[4096]),
+                box("moov",
+                        mvhd(1000, 63500),
+                        audioTrak(),
+                        videoTrak(MATRIX_ROTATE_0, 1920, 1080, 90000, 90000 * 63)));
+
+        VideoHeaderProbe.Result result = VideoHeaderProbe.probe(writeTempFile(file));
+        assertNotNull(result);
+        assertEquals(63500, result.durationMs);
+        assertEquals(1920, result.width);
+        assertEquals(1080, result.height);
+        assertEquals(0, result.rotation);
+    }
+
+    @Test
+    public void probeRotatedMp4WithoutMovieDuration() throws IOException {
+        final byte[] file = concat(
+                box("ftyp", "mp42".getBytes(US_ASCII), ints(0)),
+                box("moov",
+                        mvhd(1000, 0),
+                        videoTrak(MATRIX_ROTATE_90, 1280, 720, 30000, 30000 * 12)),
+                box("mdat", new byte[16]));
+
+        VideoHeaderProbe.Result result = VideoHeaderProbe.probe(writeTempFile(file));
+        assertNotNull(result);
+        assertEquals(12000, result.durationMs);
+        assertEquals(1280, result.width);
+        assertEquals(720, result.height);
+        assertEquals(90, result.rotation);
+    }
+
+    @Test
+    public void probeAudioOnlyMp4() throws IOException {
+        final byte[] file = concat(
+                box("ftyp", "M4A ".getBytes(US_ASCII), ints(0)),
+                box("moov", mvhd(1000, 10000), audioTrak()));
+        assertNull(VideoHeaderProbe.probe(writeTempFile(file)));
+    }
+
+    @Test
+    public void probeMatroska() throws IOException {
+        VideoHeaderProbe.Result result =
+                VideoHeaderProbe.probe(writeTempFile(matroska(false, 754321, 3840, 2160)));
+        assertNotNull(result);
+        assertEquals(754321, result.durationMs);
+        assertEquals(3840, result.width);
+        assertEquals(2160, result.height);
+        assertEquals(0, result.rotation);
+    }
+
+    @Test
+    public void probeMatroskaWithHeadersAfterClusters() throws IOException {
+        VideoHeaderProbe.Result result =
+                VideoHeaderProbe.probe(writeTempFile(matroska(true, 5000, 640, 360)));
+        assertNotNull(result);
+        assertEquals(5000, result.durationMs);
+        assertEquals(640, result.width);
+        assertEquals(360, result.height);
+    }
+
+    @Test
+    public void probeUnknownFile() throws IOException {
+        assertNull(VideoHeaderProbe.probe(writeTempFile("Not a video file".getBytes(US_ASCII))));
+        assertNull(VideoHeaderProbe.probe(writeTempFile(new byte[4])));
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Created on 2026-10-20 12:16:08 PM.
+ * Copyright © 2026 刘振林. All rights reserved.
+ */
+
+package com.liuzhenlin.texturevideoview.utils;
+
+import com.coremedia.iso.boxes.SampleDescriptionBox;
+import com.coremedia.iso.boxes.sampleentry.AudioSampleEntry;
+import com.coremedia.iso.boxes.sampleentry.VisualSampleEntry;
+import com.googlecode.mp4parser.authoring.AbstractTrack;
+import com.googlecode.mp4parser.authoring.Edit;
+import com.googlecode.mp4parser.authoring.Sample;
+import com.googlecode.mp4parser.authoring.Track;
+import com.googlecode.mp4parser.authoring.TrackMetaData;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the tracks of sample movies, built in memory with only the tables that matter, for
+ * joining on the JVM.
+ *
+ * @author 刘振林
+ */
+public class VideoUtilsTest {
+
+    private static final double DELTA = 1e-9;
+
+    /** A track with the given sample tables and no sample data */
+    private static final class FakeTrack extends AbstractTrack {
+        final String handler;
+        final SampleDescriptionBox sampleDescriptionBox = new SampleDescriptionBox();
+        final TrackMetaData trackMetaData = new TrackMetaData();
+        final long[] sampleDurations;
+        long[] syncSamples;
+        List<Edit> edits = Collections.emptyList();
+
+        FakeTrack(String handler, String codec, long timescale, int width, int height,
+                  int sampleCount, long sampleDuration) {
+            super(handler);
+            this.handler = handler;
+            sampleDescriptionBox.addBox("vide".equals(handler)
+                    ? new VisualSampleEntry(codec) : new AudioSampleEntry(codec));
+            trackMetaData.setTimescale(timescale);
+            trackMetaData.setWidth(width);
+            trackMetaData.setHeight(height);
+            sampleDurations = new long[sampleCount];
+            Arrays.fill(sampleDurations, sampleDuration);
+        }
+
+        FakeTrack withSyncSamples(long... syncSamples) {
+            this.syncSamples = syncSamples;
+            return this;
+        }
+
+        FakeTrack withEdits(Edit... edits) {
+            this.edits = Arrays.asList(edits);
+            return this;
+        }
+
+        @Override
+        public SampleDescriptionBox getSampleDescriptionBox() {
+            return sampleDescriptionBox;
+        }
+
+        @Override
+        public long[] getSampleDurations() {
+            return sampleDurations;
+        }
+
+        @Override
+        public long[] getSyncSamples() {
+            return syncSamples;
+        }
+
+        @Override
+        public TrackMetaData getTrackMetaData() {
+            return trackMetaData;
+        }
+
+        @Override
+        public String getHandler() {
+            return handler;
+        }
+
+        @Override
+        public List<Sample> getSamples() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Edit> getEdits() {
+            return edits;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static FakeTrack video(int width, int height, int sampleCount) {
+        return new FakeTrack("vide", "avc1", 24000, width, height, sampleCount, 1001);
+    }
+
+    private static FakeTrack audio(String codec, int sampleCount) {
+        return new FakeTrack("soun", codec, 48000, 0, 0, sampleCount, 1024);
+    }
+
+    private static void assertIncompatible(List<Track> tracks, List<Track> otherTracks) {
+        try {
+            VideoUtils.checkCompatible(tracks, otherTracks, "other.mp4");
+            fail("Appended incompatible tracks");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("other.mp4"));
+        }
+    }
+
+    // --------------- Edit lists ---------------
+
+    @Test
+    public void joinEditsCarriesOverCommonDelay() {
+        // The same delay of two frames, in the movie timescale and in the track timescale
+        final Track[] sources = {
+                video(1920, 1080, 300).withEdits(new Edit(2002, 24000, 1.0, 12.429)),
+                video(1920, 1080, 300).withEdits(new Edit(1001, 12000, 1.0, 12.429)),
+        };
+        final Track joined = video(1920, 1080, 500);
+
+        final List<Edit> edits = VideoUtils.joinEdits(sources, joined);
+        assertEquals(1, edits.size());
+        final Edit edit = edits.get(0);
+        assertEquals(2002, edit.getMediaTime());
+        assertEquals(24000, edit.getTimeScale());
+        assertEquals(1.0, edit.getMediaRate(), DELTA);
+        assertEquals((500 * 1001 - 2002) / 24000d, edit.getSegmentDuration(), DELTA);
+    }
+
+    @Test
+    public void joinEditsDropsDisagreeingOrMissingEdits() {
+        final Track joined = video(1920, 1080, 500);
+        final Edit delay = new Edit(2002, 24000, 1.0, 12.429);
+
+        // Different delays
+        assertTrue(VideoUtils.joinEdits(new Track[]{
+                video(1920, 1080, 300).withEdits(delay),
+                video(1920, 1080, 300).withEdits(new Edit(1001, 24000, 1.0, 12.47)),
+        }, joined).isEmpty());
+        // No edit list in one source
+        assertTrue(VideoUtils.joinEdits(new Track[]{
+                video(1920, 1080, 300).withEdits(delay),
+                video(1920, 1080, 300),
+        }, joined).isEmpty());
+        // More than a single edit
+        assertTrue(VideoUtils.joinEdits(new Track[]{
+                video(1920, 1080, 300).withEdits(new Edit(-1, 24000, 1.0, 1), delay),
+        }, joined).isEmpty());
+        // An edit not skipping anything
+        assertTrue(VideoUtils.joinEdits(new Track[]{
+                video(1920, 1080, 300).withEdits(new Edit(0, 24000, 1.0, 12.5)),
+        }, joined).isEmpty());
+    }
+
+    @Test
+    public void joinEditsDropsDelayLongerThanJoinedTrack() {
+        final Track[] sources = {
+                video(1920, 1080, 300).withEdits(new Edit(24000, 24000, 1.0, 11.5)),
+        };
+        assertTrue(VideoUtils.joinEdits(sources, video(1920, 1080, 20)).isEmpty());
+    }
+
+    // --------------- Compatibility ---------------
+
+    @Test
+    public void checkCompatibleAcceptsSameTracks() {
+        VideoUtils.checkCompatible(
+                Arrays.<Track>asList(video(1920, 1080, 300), audio("mp4a", 600)),
+                Arrays.<Track>asList(video(1920, 1080, 50), audio("mp4a", 100)),
+                "other.mp4");
+    }
+
+    @Test
+    public void checkCompatibleRejectsDifferentTracks() {
+        final List<Track> tracks =
+                Arrays.<Track>asList(video(1920, 1080, 300), audio("mp4a", 600));
+
+        // Missing the audio track
+        assertIncompatible(tracks, Collections.<Track>singletonList(video(1920, 1080, 300)));
+        // Tracks in a different order
+        assertIncompatible(tracks,
+                Arrays.<Track>asList(audio("mp4a", 600), video(1920, 1080, 300)));
+        // A different audio codec
+        assertIncompatible(tracks,
+                Arrays.<Track>asList(video(1920, 1080, 300), audio("ac-3", 600)));
+        // A different video size
+        assertIncompatible(tracks,
+                Arrays.<Track>asList(video(1280, 720, 300), audio("mp4a", 600)));
+        // A different timescale
+        assertIncompatible(tracks, Arrays.<Track>asList(
+                new FakeTrack("vide", "avc1", 30000, 1920, 1080, 300, 1001),
+                audio("mp4a", 600)));
+    }
+
+    // --------------- Sync samples ---------------
+
+    @Test
+    public void checkStartsAtSyncSample() {
+        // Sample numbers in the sync sample table start with 1
+        final Track video = video(1920, 1080, 300).withSyncSamples(1, 251);
+        VideoUtils.checkStartsAtSyncSample(video, 0);
+        VideoUtils.checkStartsAtSyncSample(video, 250);
+        try {
+            VideoUtils.checkStartsAtSyncSample(video, 249);
+            fail("Started a video track at a non-sync sample");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // Every sample is a sync one
+        VideoUtils.checkStartsAtSyncSample(video(1920, 1080, 300), 249);
+        // Only video tracks need to start at a key frame
+        VideoUtils.checkStartsAtSyncSample(audio("mp4a", 600).withSyncSamples(1, 251), 249);
+    }
+}